@@ -0,0 +1,146 @@
+#!/bin/bash
+
+# Benchmark of the HTTP execution modes (alerts.http.execution)
+#
+# Starts the application once per mode, drives /api/alert with the open-loop
+# load generator (loadgen/) at several rates and reports achieved throughput,
+# latency percentiles (corrected for coordinated omission), peak JVM thread
+# count and peak RSS per run. Requests are started on schedule whether or not
+# earlier ones have completed, so a mode that stalls shows it in its latency
+# instead of quietly sending less.
+#
+# Usage: ./benchmark-execution-modes.sh [extra application args...]
+#   e.g. ./benchmark-execution-modes.sh --spring.kafka.bootstrap-servers=localhost:9092
+#
+# Environment:
+#   MODES          modes to compare                    (default: "platform virtual async")
+#   RATES          events/s per run                    (default: "2000 5000 10000")
+#   DURATION       measured seconds per run            (default: 30)
+#   WARMUP         seconds sent first, not recorded    (default: 10)
+#   MAX_IN_FLIGHT  outstanding requests before the schedule waits (default: 1000)
+#   PORT           application port                    (default: 18090)
+#   REPORT_DIR     loadgen JSON reports, one per run   (default: ./benchmark-reports)
+#   APP_CMD        command starting the app (default: java -jar target/kafka-alerts-processor-1.0.0.jar)
+#
+# Two runs can be compared in detail with
+#   java -jar loadgen/target/loadgen.jar compare <report> <report>
+#
+# "virtual" needs Java 21+ (older JVMs fall back to the platform pool, which
+# the application log reports). Async only pays off where lookups leave the
+# process: run several instances sharing application.id so remote
+# config-store partitions are queried over /internal/thresholds.
+
+SCRIPT_DIR="$(cd "$(dirname "${BASH_SOURCE[0]}")" && pwd)"
+MODES="${MODES:-platform virtual async}"
+RATES="${RATES:-2000 5000 10000}"
+DURATION="${DURATION:-30}"
+WARMUP="${WARMUP:-10}"
+MAX_IN_FLIGHT="${MAX_IN_FLIGHT:-1000}"
+PORT="${PORT:-18090}"
+REPORT_DIR="${REPORT_DIR:-$SCRIPT_DIR/benchmark-reports}"
+APP_CMD="${APP_CMD:-java -jar $SCRIPT_DIR/target/kafka-alerts-processor-1.0.0.jar}"
+LOADGEN_JAR="$SCRIPT_DIR/loadgen/target/loadgen.jar"
+WORK_DIR="$(mktemp -d)"
+
+trap 'stop_app; rm -rf "$WORK_DIR"' EXIT
+
+APP_PID=""
+
+start_app() {
+    local MODE="$1"
+    shift
+    $APP_CMD --server.port="$PORT" --alerts.http.execution="$MODE" "$@" > "$WORK_DIR/app-$MODE.log" 2>&1 &
+    APP_PID=$!
+    for i in $(seq 1 120); do
+        grep -q "Ready to process alerts" "$WORK_DIR/app-$MODE.log" && return 0
+        ps -p "$APP_PID" > /dev/null 2>&1 || break
+        sleep 1
+    done
+    echo "Application failed to start in $MODE mode:"
+    tail -20 "$WORK_DIR/app-$MODE.log"
+    exit 1
+}
+
+stop_app() {
+    if [ -n "$APP_PID" ] && ps -p "$APP_PID" > /dev/null 2>&1; then
+        kill "$APP_PID"
+        wait "$APP_PID" 2>/dev/null
+    fi
+    APP_PID=""
+}
+
+# Peak threads / RSS of the application while the load runs
+sample_peak() {
+    local PEAK_THREADS=0
+    local PEAK_RSS=0
+    while [ -f "$WORK_DIR/running" ]; do
+        local THREADS=$(awk '/^Threads:/ {print $2}' "/proc/$APP_PID/status" 2>/dev/null)
+        local RSS=$(awk '/^VmRSS:/ {print $2}' "/proc/$APP_PID/status" 2>/dev/null)
+        [ -n "$THREADS" ] && [ "$THREADS" -gt "$PEAK_THREADS" ] && PEAK_THREADS=$THREADS
+        [ -n "$RSS" ] && [ "$RSS" -gt "$PEAK_RSS" ] && PEAK_RSS=$RSS
+        sleep 0.2
+    done
+    echo "$PEAK_THREADS $((PEAK_RSS / 1024))"
+}
+
+# Number after "name": in a (compact) loadgen report fragment
+json_number() {
+    grep -o "\"$1\":[0-9.]*" <<< "$2" | head -1 | cut -d: -f2
+}
+
+run_load() {
+    local MODE="$1"
+    local RATE="$2"
+    local REPORT="$REPORT_DIR/$MODE-$RATE.json"
+    touch "$WORK_DIR/running"
+    sample_peak > "$WORK_DIR/peak" &
+    local SAMPLER=$!
+    java -jar "$LOADGEN_JAR" --url="http://localhost:$PORT" --rate="$RATE" --duration="$DURATION" \
+        --warmup="$WARMUP" --max-in-flight="$MAX_IN_FLIGHT" --label="$MODE" --report="$REPORT" \
+        > "$WORK_DIR/loadgen-$MODE-$RATE.log" 2>&1
+    local STATUS=$?
+    rm -f "$WORK_DIR/running"
+    wait "$SAMPLER"
+    read PEAK_THREADS PEAK_RSS < "$WORK_DIR/peak"
+    if [ "$STATUS" -ne 0 ] || [ ! -f "$REPORT" ]; then
+        echo "Load run failed ($MODE, $RATE/s):"
+        tail -20 "$WORK_DIR/loadgen-$MODE-$RATE.log"
+        return
+    fi
+
+    local JSON=$(cat "$REPORT")
+    local RESPONSE=$(grep -o '"responseTimeMs":{[^}]*}' <<< "$JSON")
+    local OUTCOMES=$(grep -o '"outcomes":{[^}]*}' <<< "$JSON")
+    local FAILED=0
+    for OUTCOME in rejected error timeout; do
+        FAILED=$(( FAILED + $(json_number "$OUTCOME" "$OUTCOMES") ))
+    done
+    printf "%-10s %8s %10s %9s %9s %9s %8d %12d %10d\n" "$MODE" "$RATE" "$(json_number achievedRate "$JSON")" \
+        "$(json_number p50 "$RESPONSE")" "$(json_number p99 "$RESPONSE")" "$(json_number p99.9 "$RESPONSE")" \
+        "$FAILED" "$PEAK_THREADS" "$PEAK_RSS"
+}
+
+if [ ! -f "$LOADGEN_JAR" ]; then
+    echo "Building load generator..."
+    (cd "$SCRIPT_DIR/loadgen" && mvn -B -q package -DskipTests) || { echo "Load generator build failed"; exit 1; }
+fi
+mkdir -p "$REPORT_DIR"
+
+echo "========================================="
+echo "HTTP execution mode benchmark"
+echo "========================================="
+echo "Per run: ${WARMUP}s warm-up + ${DURATION}s measured, at most $MAX_IN_FLIGHT requests in flight"
+echo "Reports: $REPORT_DIR"
+echo ""
+
+printf "%-10s %8s %10s %9s %9s %9s %8s %12s %10s\n" "MODE" "RATE" "ACHIEVED" "P50(ms)" "P99(ms)" "P99.9(ms)" \
+    "FAILED" "PEAK_THREADS" "PEAK_RSS_MB"
+for MODE in $MODES; do
+    start_app "$MODE" "$@"
+    for RATE in $RATES; do
+        run_load "$MODE" "$RATE"
+    done
+    stop_app
+done
+echo ""
+echo "Latencies are response times from each request's scheduled start; FAILED counts rejected, error and timeout."
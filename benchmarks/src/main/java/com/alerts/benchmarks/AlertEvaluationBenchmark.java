@@ -0,0 +1,134 @@
+package com.alerts.benchmarks;
+
+import com.alerts.cache.ThresholdSnapshot;
+import com.alerts.hashing.Sha256KeyHasher;
+import com.alerts.service.AlertProcessingService.AlertResult;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AlertEvaluationBenchmark - AlertProcessingService.processAlert end to end
+ *
+ * Request path after hashing: Bloom filter, near-cache or store lookup,
+ * threshold comparison and, for breaches, alert counting, suppression and
+ * publishing to a producer that discards records.
+ *
+ * store=NEAR_CACHE serves the 100 demo thresholds from ThresholdNearCache;
+ * store=SNAPSHOT disables the near-cache and serves them from a memory-mapped
+ * ThresholdSnapshot, as during a warm start. RocksDB-backed lookups are
+ * measured by StoreEvaluationBenchmark.
+ *
+ * dynamicThresholds=true adds the per-key QuantileSketch update and
+ * threshold derivation (DynamicThresholds) to every evaluation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AlertEvaluationBenchmark {
+
+    public enum Store { NEAR_CACHE, SNAPSHOT }
+
+    private static final int KEYS = 100;
+
+    @Param({"NEAR_CACHE", "SNAPSHOT"})
+    public Store store;
+
+    @Param({"false", "true"})
+    public boolean dynamicThresholds;
+
+    private BenchmarkFixtures.Pipeline pipeline;
+    private Path snapshotDir;
+    private final long[] known = new long[KEYS];
+    private final long[] unknown = new long[KEYS];
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        int nextIndex() {
+            next = next + 1 == KEYS ? 0 : next + 1;
+            return next;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        long[] thresholds = new long[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            known[i] = Sha256KeyHasher.INSTANCE.hash(BenchmarkFixtures.compositeKey(i + 1));
+            unknown[i] = Sha256KeyHasher.INSTANCE.hash(BenchmarkFixtures.compositeKey(KEYS + 1 + i));
+            // Same thresholds (40-90) for both stores so they evaluate alike
+            thresholds[i] = 40 + i % 51;
+        }
+        if (store == Store.SNAPSHOT) {
+            snapshotDir = Files.createTempDirectory("alerts-snapshot");
+            Path snapshot = snapshotDir.resolve("thresholds.snap");
+            ThresholdSnapshot.write(snapshot, known, thresholds, new long[KEYS], new int[KEYS], new int[KEYS], KEYS,
+                System.currentTimeMillis());
+            pipeline = BenchmarkFixtures.pipeline(Sha256KeyHasher.INSTANCE, false, true, snapshot, dynamicThresholds);
+        } else {
+            pipeline = BenchmarkFixtures.pipeline(Sha256KeyHasher.INSTANCE, true, true, null, dynamicThresholds);
+            for (int i = 0; i < KEYS; i++) {
+                pipeline.nearCache.fillFromStore(known[i], thresholds[i], 0, pipeline.nearCache.fillStamp());
+                pipeline.bloomFilter.addHash(known[i]);
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        pipeline.close();
+        if (snapshotDir != null) {
+            Files.deleteIfExists(snapshotDir.resolve("thresholds.snap"));
+            Files.deleteIfExists(snapshotDir);
+        }
+    }
+
+    @Benchmark
+    public AlertResult belowThreshold(Cursor cursor) {
+        return pipeline.service.processAlert(known[cursor.nextIndex()], 10);
+    }
+
+    @Benchmark
+    public AlertResult breach(Cursor cursor) {
+        // Mostly suppressed after the first breach per key, like a sustained incident
+        return pipeline.service.processAlert(known[cursor.nextIndex()], 150);
+    }
+
+    @Benchmark
+    public AlertResult noThreshold(Cursor cursor) {
+        return pipeline.service.processAlert(unknown[cursor.nextIndex()], 10);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public AlertResult belowThresholdContended(Cursor cursor) {
+        return pipeline.service.processAlert(known[cursor.nextIndex()], 10);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public AlertResult breachContended(Cursor cursor) {
+        return pipeline.service.processAlert(known[cursor.nextIndex()], 150);
+    }
+}
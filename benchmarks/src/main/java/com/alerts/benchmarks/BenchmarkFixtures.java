@@ -0,0 +1,147 @@
+package com.alerts.benchmarks;
+
+import com.alerts.cache.ThresholdHierarchy;
+import com.alerts.cache.ThresholdNearCache;
+import com.alerts.counter.AlertCounterService;
+import com.alerts.dynamic.DynamicThresholds;
+import com.alerts.hashing.KeyHasher;
+import com.alerts.metrics.AlertMetrics;
+import com.alerts.publish.AlertPublisher;
+import com.alerts.publish.AlertSuppressor;
+import com.alerts.publish.BackpressurePolicy;
+import com.alerts.routing.ThresholdRouter;
+import com.alerts.service.AlertProcessingService;
+import com.alerts.service.BloomFilterService;
+import com.alerts.service.RestErrorWindows;
+import com.alerts.service.TransactionProducer;
+import com.alerts.streams.WarmStartService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.TopicPartition;
+import org.springframework.kafka.config.StreamsBuilderFactoryBean;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Future;
+
+/**
+ * BenchmarkFixtures - Request-path components wired without Spring or a broker
+ *
+ * Producers acknowledge and discard every record (MockProducer would keep
+ * them all), and ThresholdRouter has no Kafka Streams, so lookups are served
+ * by the near-cache or, given a snapshot file, by WarmStartService.
+ */
+public final class BenchmarkFixtures {
+
+    /**
+     * Producer that completes every send immediately and keeps nothing.
+     */
+    static final class DiscardingProducer<K, V> extends MockProducer<K, V> {
+
+        private static final RecordMetadata METADATA = new RecordMetadata(new TopicPartition("discard", 0), 0, 0, 0, 0, 0);
+
+        DiscardingProducer() {
+            super(true, null, null);
+        }
+
+        @Override
+        public synchronized Future<RecordMetadata> send(ProducerRecord<K, V> record, Callback callback) {
+            if (callback != null) {
+                callback.onCompletion(METADATA, null);
+            }
+            return CompletableFuture.completedFuture(METADATA);
+        }
+
+        @Override
+        public void close(Duration timeout) {
+            // KafkaTemplate closes its producer after every send; this one is reused
+        }
+    }
+
+    /**
+     * Components behind one AlertProcessingService; close() stops their threads.
+     */
+    public static final class Pipeline implements AutoCloseable {
+        public final AlertMetrics metrics;
+        public final BloomFilterService bloomFilter;
+        public final ThresholdNearCache nearCache;
+        public final ThresholdHierarchy hierarchy;
+        public final AlertPublisher publisher;
+        public final AlertSuppressor suppressor;
+        public final AlertCounterService counters;
+        public final WarmStartService warmStart;
+        public final DynamicThresholds dynamicThresholds;
+        public final AlertProcessingService service;
+
+        Pipeline(KeyHasher keyHasher, boolean nearCacheEnabled, boolean suppression, Path snapshot,
+                 boolean dynamic) {
+            // Same sampling as the application defaults, so recording cost is included
+            metrics = new AlertMetrics(new SimpleMeterRegistry(), 16, 1000);
+            bloomFilter = new BloomFilterService(60000, 0.01);
+            nearCache = new ThresholdNearCache(nearCacheEnabled, 262144);
+            hierarchy = new ThresholdHierarchy(keyHasher, 65536, 262144);
+            publisher = new AlertPublisher(discardingTemplate(), metrics, 2, 65536, 500, BackpressurePolicy.COALESCE, 1000);
+            suppressor = new AlertSuppressor(publisher, suppression, 60000, 3600000, 2, 2.0, 262144, 1000);
+            counters = new AlertCounterService(discardingTemplate(), metrics, 1000, 5000, 300000);
+            warmStart = new WarmStartService(bloomFilter, nearCache, event -> { }, snapshot != null,
+                snapshot == null ? "thresholds.snap" : snapshot.toString(), "", 60000);
+            // Serves the snapshot (if any) until liveStoreReady(), which never comes here
+            warmStart.load();
+            dynamicThresholds = new DynamicThresholds(discardingTemplate(), metrics,
+                DynamicThresholds.Settings.defaults().withEnabled(dynamic));
+            ThresholdRouter router = new ThresholdRouter(new StreamsBuilderFactoryBean(), nearCache, "", 500, 2000, 100000);
+            service = new AlertProcessingService(router, bloomFilter, publisher, suppressor, keyHasher, nearCache,
+                hierarchy, warmStart, dynamicThresholds, new RestErrorWindows(100000), counters,
+                new TransactionProducer(discardingTemplate()), metrics, "rest");
+        }
+
+        @Override
+        public void close() {
+            suppressor.shutdown();
+            counters.shutdown();
+            publisher.shutdown();
+            warmStart.shutdown();
+            dynamicThresholds.shutdown();
+        }
+    }
+
+    private BenchmarkFixtures() {
+    }
+
+    public static Pipeline pipeline(KeyHasher keyHasher, boolean nearCacheEnabled, boolean suppression) {
+        return new Pipeline(keyHasher, nearCacheEnabled, suppression, null, false);
+    }
+
+    /**
+     * Pipeline serving lookups that miss the near-cache from a threshold snapshot.
+     */
+    public static Pipeline pipeline(KeyHasher keyHasher, boolean nearCacheEnabled, boolean suppression,
+                                    Path snapshot) {
+        return new Pipeline(keyHasher, nearCacheEnabled, suppression, snapshot, false);
+    }
+
+    /**
+     * Pipeline with quantile-derived thresholds (DynamicThresholds) enabled or not.
+     */
+    public static Pipeline pipeline(KeyHasher keyHasher, boolean nearCacheEnabled, boolean suppression,
+                                    Path snapshot, boolean dynamicThresholds) {
+        return new Pipeline(keyHasher, nearCacheEnabled, suppression, snapshot, dynamicThresholds);
+    }
+
+    static <K, V> KafkaTemplate<K, V> discardingTemplate() {
+        DiscardingProducer<K, V> producer = new DiscardingProducer<>();
+        return new KafkaTemplate<>(() -> producer);
+    }
+
+    /**
+     * The demo key format used by ThresholdLoader.
+     */
+    public static String compositeKey(int property) {
+        return "property_" + property + ";tenant_0;type_error;interface_api";
+    }
+}
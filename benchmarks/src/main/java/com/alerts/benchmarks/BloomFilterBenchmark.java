@@ -0,0 +1,105 @@
+package com.alerts.benchmarks;
+
+import com.alerts.hashing.Sha256KeyHasher;
+import com.alerts.service.BloomFilterService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BloomFilterBenchmark - BloomFilterService.mightContain on the request path
+ *
+ * The filter is shared (Scope.Benchmark) and filled with 100k key hashes.
+ * hit/miss measure single-threaded probes; the *Contended variants and the
+ * readWrite group show the cost of the shared positive/negative counters and
+ * of concurrent addHash calls while config-store loads thresholds.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BloomFilterBenchmark {
+
+    private static final int KEYS = 100_000;
+    private static final int PROBES = 4096;
+
+    private BloomFilterService bloomFilter;
+    private final long[] present = new long[PROBES];
+    private final long[] absent = new long[PROBES];
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+        long added = KEYS;
+
+        int nextIndex() {
+            return next = (next + 1) & (PROBES - 1);
+        }
+    }
+
+    @Setup
+    public void setup() {
+        bloomFilter = new BloomFilterService(KEYS, 0.01);
+        for (int i = 1; i <= KEYS; i++) {
+            long hash = Sha256KeyHasher.INSTANCE.hash(BenchmarkFixtures.compositeKey(i));
+            bloomFilter.addHash(hash);
+            if (i <= PROBES) {
+                present[i - 1] = hash;
+            }
+        }
+        for (int i = 0; i < PROBES; i++) {
+            absent[i] = Sha256KeyHasher.INSTANCE.hash(BenchmarkFixtures.compositeKey(KEYS + 1 + i));
+        }
+    }
+
+    @Benchmark
+    public boolean hit(Cursor cursor) {
+        return bloomFilter.mightContain(present[cursor.nextIndex()]);
+    }
+
+    @Benchmark
+    public boolean miss(Cursor cursor) {
+        return bloomFilter.mightContain(absent[cursor.nextIndex()]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean hitContended(Cursor cursor) {
+        return bloomFilter.mightContain(present[cursor.nextIndex()]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public boolean missContended(Cursor cursor) {
+        return bloomFilter.mightContain(absent[cursor.nextIndex()]);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(3)
+    public boolean readWriteProbe(Cursor cursor) {
+        return bloomFilter.mightContain(present[cursor.nextIndex()]);
+    }
+
+    @Benchmark
+    @Group("readWrite")
+    @GroupThreads(1)
+    public void readWriteAdd(Cursor cursor) {
+        // Synthetic hashes: grows the filter the way a threshold load would
+        bloomFilter.addHash(cursor.added++ * 0x9E3779B97F4A7C15L);
+    }
+}
@@ -0,0 +1,93 @@
+package com.alerts.benchmarks;
+
+import com.alerts.hashing.Sha256KeyHasher;
+import com.alerts.hashing.XxHash64KeyHasher;
+import com.alerts.model.PropertyThreshold;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HashingBenchmark - Composite key to 64-bit key hash
+ *
+ * legacyHexHash is PropertyThreshold.generateHashFromCompositeKey (new
+ * MessageDigest + hex String per call); the KeyHasher variants reuse per-thread
+ * digests and scratch buffers. The *Contended variants run on every core to
+ * show whether the per-thread state holds up under contention.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HashingBenchmark {
+
+    private static final int KEYS = 1024;
+
+    private final String[] keys = new String[KEYS];
+    private final byte[][] utf8Keys = new byte[KEYS][];
+    private int next;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = BenchmarkFixtures.compositeKey(i + 1);
+            utf8Keys[i] = keys[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    private int nextIndex() {
+        return next = (next + 1) & (KEYS - 1);
+    }
+
+    @Benchmark
+    public String legacyHexHash() {
+        return PropertyThreshold.generateHashFromCompositeKey(keys[nextIndex()]);
+    }
+
+    @Benchmark
+    public long sha256() {
+        return Sha256KeyHasher.INSTANCE.hash(keys[nextIndex()]);
+    }
+
+    @Benchmark
+    public long sha256Utf8() {
+        byte[] key = utf8Keys[nextIndex()];
+        return Sha256KeyHasher.INSTANCE.hash(key, 0, key.length);
+    }
+
+    @Benchmark
+    public long xxHash64() {
+        return XxHash64KeyHasher.INSTANCE.hash(keys[nextIndex()]);
+    }
+
+    @Benchmark
+    public long xxHash64Utf8() {
+        byte[] key = utf8Keys[nextIndex()];
+        return XxHash64KeyHasher.INSTANCE.hash(key, 0, key.length);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public String legacyHexHashContended() {
+        return PropertyThreshold.generateHashFromCompositeKey(keys[nextIndex()]);
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long sha256Contended() {
+        return Sha256KeyHasher.INSTANCE.hash(keys[nextIndex()]);
+    }
+}
@@ -0,0 +1,167 @@
+package com.alerts.benchmarks;
+
+import com.alerts.cache.ThresholdNearCache;
+import com.alerts.hashing.Sha256KeyHasher;
+import com.alerts.model.AlertEvent;
+import com.alerts.model.ThresholdRecord;
+import com.alerts.streams.AlertTopology;
+import com.alerts.streams.ConfigStoreRocksDBConfig;
+import com.alerts.streams.ErrorCountEvaluator;
+import com.alerts.streams.StoreBackend;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.processor.api.MockProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * StoreEvaluationBenchmark - Threshold lookups and evaluation per config-store backend
+ *
+ * Runs AlertTopology in a TopologyTestDriver with a real config-store in a
+ * temporary state directory, pre-loaded with `thresholds` keys. `store`
+ * selects the backend (alerts.store.backend): rocksdb-default is RocksDB with
+ * Kafka Streams' own options, rocksdb adds ConfigStoreRocksDBConfig with the
+ * application.properties defaults. Run with -p thresholds=<deployment's key
+ * count> to choose a backend:
+ * - configStoreGet: the point lookup behind ThresholdRouter on a near-cache miss
+ * - streamEvaluation: ErrorCountEvaluator.process on the driver's stores
+ *   (config-store read, plus a window-state read/write for windowed
+ *   thresholds), i.e. stream-mode processAlert without the Kafka hop
+ * - driverPipeInput: the same record piped through eagle-eye.errors; the
+ *   driver commits (flushes the stores and writes checkpoints) after every
+ *   record, so this is an upper bound rather than production cost
+ *
+ * The near-cache is disabled so every evaluation reaches the store, and error
+ * counts stay below the thresholds so nothing is forwarded or accumulated.
+ * TopologyTestDriver is single-threaded; contention is covered by
+ * AlertEvaluationBenchmark.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StoreEvaluationBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int thresholds;
+
+    @Param({"rocksdb-default", "rocksdb", "memory", "offheap"})
+    public String store;
+
+    @Param({"false", "true"})
+    public boolean windowed;
+
+    private BenchmarkFixtures.Pipeline pipeline;
+    private Path stateDir;
+    private TopologyTestDriver driver;
+    private KeyValueStore<Long, ThresholdRecord> configStore;
+    private TestInputTopic<Long, Long> errors;
+    private ErrorCountEvaluator evaluator;
+    private long[] keys;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        pipeline = BenchmarkFixtures.pipeline(Sha256KeyHasher.INSTANCE, false, false);
+        StreamsBuilder builder = new StreamsBuilder();
+        StoreBackend backend = store.startsWith("rocksdb")
+            ? StoreBackend.ROCKSDB
+            : StoreBackend.valueOf(store.toUpperCase());
+        new AlertTopology(AlertTopology.Options.defaults().withStreamEvaluation(true).withStoreBackend(backend),
+            new ThresholdNearCache(false, 0), pipeline.suppressor, pipeline.bloomFilter, pipeline.metrics,
+            pipeline.hierarchy, pipeline.dynamicThresholds).build(builder);
+
+        stateDir = Files.createTempDirectory("alerts-bench-state");
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "alerts-benchmark");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        if (store.equals("rocksdb")) {
+            props.put(StreamsConfig.ROCKSDB_CONFIG_SETTER_CLASS_CONFIG, ConfigStoreRocksDBConfig.class);
+        }
+        driver = new TopologyTestDriver(builder.build(), props);
+
+        // Pre-populate the store directly: piping through eagle-eye.config commits
+        // (and flushes RocksDB) after every record, which dominates setup at large sizes
+        configStore = driver.getKeyValueStore(AlertTopology.CONFIG_STORE);
+        keys = new long[thresholds];
+        for (int i = 0; i < thresholds; i++) {
+            keys[i] = Sha256KeyHasher.INSTANCE.hash(BenchmarkFixtures.compositeKey(i + 1));
+            configStore.put(keys[i], windowed
+                ? ThresholdRecord.windowed(1_000_000, 0, 60, 6)
+                : ThresholdRecord.of(1_000_000, 0));
+        }
+        configStore.flush();
+        errors = driver.createInputTopic(AlertTopology.ERRORS_TOPIC, new LongSerializer(), new LongSerializer());
+
+        MockProcessorContext<Long, AlertEvent> context = new MockProcessorContext<>();
+        context.addStateStore(configStore);
+        context.addStateStore(driver.getKeyValueStore(AlertTopology.WINDOW_STORE));
+        context.addStateStore(driver.getKeyValueStore(AlertTopology.INHERITED_STORE));
+        evaluator = new ErrorCountEvaluator(new ThresholdNearCache(false, 0), pipeline.suppressor,
+            pipeline.dynamicThresholds, pipeline.hierarchy);
+        evaluator.init(context);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        driver.close();
+        pipeline.close();
+        try (Stream<Path> files = Files.walk(stateDir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        }
+    }
+
+    private long nextKey() {
+        next = next + 1 == keys.length ? 0 : next + 1;
+        return keys[next];
+    }
+
+    @Benchmark
+    public ThresholdRecord configStoreGet() {
+        return configStore.get(nextKey());
+    }
+
+    @Benchmark
+    public void streamEvaluation() {
+        evaluator.process(new Record<>(nextKey(), 10L, System.currentTimeMillis()));
+    }
+
+    @Benchmark
+    public void driverPipeInput() {
+        errors.pipeInput(nextKey(), 10L);
+    }
+}
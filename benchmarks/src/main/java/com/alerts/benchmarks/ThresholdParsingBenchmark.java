@@ -0,0 +1,82 @@
+package com.alerts.benchmarks;
+
+import com.alerts.hashing.KeyHashes;
+import com.alerts.hashing.Sha256KeyHasher;
+import com.alerts.model.PropertyThreshold;
+import com.alerts.model.ThresholdRecord;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ThresholdParsingBenchmark - Decoding eagle-eye.config values
+ *
+ * parseThresholdValue is the legacy "hash:threshold:alertTimes" String
+ * format (split + parseLong); the binary ThresholdRecord is either wrapped
+ * in place (flyweight, no allocation) or decoded the way ThresholdLoadProcessor
+ * does for records that may still be legacy strings.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ThresholdParsingBenchmark {
+
+    private static final int VALUES = 1024;
+
+    private final String[] legacyValues = new String[VALUES];
+    private final byte[][] legacyBytes = new byte[VALUES][];
+    private final byte[][] records = new byte[VALUES][];
+    private final ThresholdRecord flyweight = new ThresholdRecord();
+    private int next;
+
+    @Setup
+    public void setup() {
+        for (int i = 0; i < VALUES; i++) {
+            String hex = KeyHashes.toHex(Sha256KeyHasher.INSTANCE.hash(BenchmarkFixtures.compositeKey(i + 1)));
+            legacyValues[i] = hex + ":" + (40 + i % 51) + ":" + i;
+            legacyBytes[i] = legacyValues[i].getBytes(StandardCharsets.UTF_8);
+            records[i] = ThresholdRecord.encode(40 + i % 51, i);
+        }
+    }
+
+    private int nextIndex() {
+        return next = (next + 1) & (VALUES - 1);
+    }
+
+    @Benchmark
+    public long parseThresholdValue() {
+        PropertyThreshold.ThresholdData data = PropertyThreshold.parseThresholdValue(legacyValues[nextIndex()]);
+        return data.threshold + data.alertTimes;
+    }
+
+    @Benchmark
+    public long wrapBinaryRecord() {
+        ThresholdRecord record = flyweight.wrap(records[nextIndex()]);
+        return record.threshold() + record.alertTimes();
+    }
+
+    @Benchmark
+    public long decodeBinaryRecord() {
+        ThresholdRecord record = ThresholdRecord.decode(records[nextIndex()], true);
+        return record.threshold() + record.alertTimes();
+    }
+
+    @Benchmark
+    public long decodeLegacyRecord() {
+        ThresholdRecord record = ThresholdRecord.decode(legacyBytes[nextIndex()], true);
+        return record.threshold() + record.alertTimes();
+    }
+}
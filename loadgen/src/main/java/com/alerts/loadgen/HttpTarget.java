@@ -0,0 +1,145 @@
+package com.alerts.loadgen;
+
+import com.alerts.loadgen.LoadRecorder.Outcome;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * HttpTarget - POST /api/alert (one event) or /api/alerts/batch (NDJSON)
+ *
+ * Requests go out through one HttpClient with sendAsync, which opens as many
+ * keep-alive connections as there are requests outstanding (bounded by
+ * max-in-flight). Responses are classified by their "status" field, batch
+ * responses by the counts in their closing summary line.
+ */
+final class HttpTarget implements Target {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private final boolean batch;
+    private final int batchSize;
+    private final URI uri;
+    private final Duration timeout;
+    private final ExecutorService executor;
+    private final HttpClient client;
+
+    HttpTarget(LoadOptions options, boolean batch) {
+        this.batch = batch;
+        this.batchSize = options.batchSize;
+        this.uri = URI.create(options.url + (batch ? "/api/alerts/batch" : "/api/alert"));
+        this.timeout = Duration.ofMillis(options.timeoutMs);
+        this.executor = Executors.newFixedThreadPool(Math.max(2, options.connections), r -> {
+            Thread t = new Thread(r, "loadgen-http");
+            t.setDaemon(true);
+            return t;
+        });
+        this.client = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(timeout)
+            .executor(executor)
+            .build();
+    }
+
+    @Override
+    public int eventsPerOperation() {
+        return batch ? batchSize : 1;
+    }
+
+    @Override
+    public void send(Workload.Event[] events, int count, LoadRecorder.Operation operation) {
+        StringBuilder body = new StringBuilder(count * 80);
+        for (int i = 0; i < count; i++) {
+            // errorCount as a string, like the shell scripts send it
+            body.append("{\"key\":\"").append(events[i].key).append("\",\"errorCount\":\"")
+                .append(events[i].errorCount).append("\"}");
+            if (batch) {
+                body.append('\n');
+            }
+        }
+        HttpRequest request = HttpRequest.newBuilder(uri)
+            .timeout(timeout)
+            .header("Content-Type", batch ? "application/x-ndjson" : "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+            .build();
+        operation.sent();
+        client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+            .whenComplete((response, error) -> {
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException ? error.getCause() : error;
+                    operation.fail(cause instanceof HttpTimeoutException ? Outcome.TIMEOUT : Outcome.ERROR, count);
+                    return;
+                }
+                if (batch) {
+                    countBatch(response, count, operation);
+                } else {
+                    operation.count(classify(response), 1);
+                }
+                operation.complete();
+            });
+    }
+
+    private static Outcome classify(HttpResponse<String> response) {
+        // Invalid request, or refused by admission control (tenant rate limit / overload)
+        if (response.statusCode() == 400 || response.statusCode() == 429 || response.statusCode() == 503) {
+            return Outcome.REJECTED;
+        }
+        if (response.statusCode() >= 300) {
+            return Outcome.ERROR;
+        }
+        String body = response.body();
+        if (body.contains("\"alert_triggered\"")) {
+            return body.contains("\"suppressed\":true") ? Outcome.SUPPRESSED : Outcome.ALERT;
+        }
+        if (body.contains("\"below_threshold\"")) {
+            return Outcome.BELOW;
+        }
+        if (body.contains("\"queued\"")) {
+            return Outcome.QUEUED;
+        }
+        return body.contains("\"no_threshold\"") ? Outcome.NO_THRESHOLD : Outcome.ERROR;
+    }
+
+    /**
+     * Count a batch's events from its summary: the last NDJSON line.
+     */
+    private static void countBatch(HttpResponse<String> response, int count, LoadRecorder.Operation operation) {
+        String body = response.body().stripTrailing();
+        if (response.statusCode() != 200) {
+            operation.count(Outcome.ERROR, count);
+            return;
+        }
+        try {
+            JsonNode summary = MAPPER.readTree(body.substring(body.lastIndexOf('\n') + 1)).path("summary");
+            // The summary does not split breaches into published and suppressed
+            long breached = summary.path("breached").asLong();
+            long below = summary.path("below").asLong();
+            long noThreshold = summary.path("noThreshold").asLong();
+            long invalid = summary.path("invalid").asLong();
+            long queued = summary.path("queued").asLong();
+            operation.count(Outcome.ALERT, breached);
+            operation.count(Outcome.BELOW, below);
+            operation.count(Outcome.NO_THRESHOLD, noThreshold);
+            operation.count(Outcome.REJECTED, invalid);
+            operation.count(Outcome.QUEUED, queued);
+            // Events the service never reported on (batch aborted mid-way)
+            operation.count(Outcome.ERROR, count - breached - below - noThreshold - invalid - queued);
+        } catch (Exception e) {
+            operation.count(Outcome.ERROR, count);
+        }
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
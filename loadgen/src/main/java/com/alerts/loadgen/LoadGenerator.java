@@ -0,0 +1,190 @@
+package com.alerts.loadgen;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * LoadGenerator - Open-loop load against a running alert processor
+ *
+ * Operations are started on a fixed schedule (--rate events per second,
+ * divided into operations of --batch-size events for the batch target),
+ * whether or not earlier ones have completed, so a slow service does not
+ * slow the load down the way a request-response loop like stress-test.sh
+ * would. Latency is measured from each operation's scheduled start
+ * (LoadRecorder). One line of interval statistics is printed per second;
+ * at the end the report is printed and written as JSON (LoadReport).
+ *
+ *   java -jar loadgen.jar --target=http --rate=5000 --duration=60 --distribution=zipf
+ *   java -jar loadgen.jar compare baseline.json candidate.json
+ */
+public final class LoadGenerator {
+
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    // Shorter waits are spun (parkNanos overshoots by tens of microseconds),
+    // unless spinning would take the only core from the response threads
+    private static final long SPIN_NANOS = Runtime.getRuntime().availableProcessors() > 1 ? 100_000 : 0;
+
+    private final LoadOptions options;
+    private final AtomicLong sent = new AtomicLong();
+    private volatile long maxLagNanos;
+
+    private LoadGenerator(LoadOptions options) {
+        this.options = options;
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && ("-h".equals(args[0]) || "--help".equals(args[0]))) {
+            System.out.print(LoadOptions.usage());
+            return;
+        }
+        if (args.length > 0 && "compare".equals(args[0])) {
+            if (args.length != 3) {
+                System.err.print(LoadOptions.usage());
+                System.exit(2);
+            }
+            LoadReport.compare(args[1], args[2], System.out);
+            return;
+        }
+        LoadOptions options;
+        try {
+            options = LoadOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(LoadOptions.usage());
+            System.exit(2);
+            return;
+        }
+        new LoadGenerator(options).run();
+        System.exit(0);
+    }
+
+    private void run() throws IOException, InterruptedException {
+        Workload workload = new Workload(options);
+        try (Target target = Target.create(options)) {
+            int perOperation = target.eventsPerOperation();
+            double operationRate = options.rate / perOperation;
+            System.out.printf("Target %s, %.0f events/s (%.1f operations/s), %ds warm-up + %ds, %d keys %s%n",
+                options.target, options.rate, operationRate, options.warmupSeconds, options.durationSeconds,
+                workload.keyCount(), options.distribution == LoadOptions.Distribution.ZIPF
+                    ? "zipf(" + options.zipfExponent + ")" : "uniform");
+
+            LoadRecorder recorder = new LoadRecorder(options.maxInFlight);
+            Histogram responseTotal = new Histogram(3);
+            Histogram serviceTotal = new Histogram(3);
+            HistogramLogWriter hlog = options.hlog.isEmpty() ? null : new HistogramLogWriter(options.hlog);
+            Instant startedAt = Instant.now();
+
+            long start = System.nanoTime();
+            long measureStart = start + options.warmupSeconds * NANOS_PER_SECOND;
+            long end = measureStart + options.durationSeconds * NANOS_PER_SECOND;
+            if (hlog != null) {
+                hlog.outputLogFormatVersion();
+                hlog.outputStartTime(startedAt.toEpochMilli() + options.warmupSeconds * 1000L);
+                hlog.setBaseTime(startedAt.toEpochMilli());
+                hlog.outputLegend();
+            }
+
+            ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "loadgen-report");
+                t.setDaemon(true);
+                return t;
+            });
+            reporter.scheduleAtFixedRate(() -> reportInterval(recorder, responseTotal, serviceTotal, hlog,
+                start, measureStart), 1, 1, TimeUnit.SECONDS);
+
+            Workload.Event[] events = new Workload.Event[perOperation];
+            for (int i = 0; i < perOperation; i++) {
+                events[i] = new Workload.Event();
+            }
+            double periodNanos = NANOS_PER_SECOND / operationRate;
+            boolean sendFailureReported = false;
+            for (long i = 0; ; i++) {
+                long intended = start + (long) (i * periodNanos);
+                if (intended >= end) {
+                    break;
+                }
+                waitUntil(intended);
+                LoadRecorder.Operation operation = recorder.begin(intended, intended >= measureStart);
+                for (Workload.Event event : events) {
+                    workload.next(event);
+                }
+                long lag = System.nanoTime() - intended;
+                if (lag > maxLagNanos && intended >= measureStart) {
+                    maxLagNanos = lag;
+                }
+                try {
+                    target.send(events, perOperation, operation);
+                } catch (IOException e) {
+                    operation.fail(LoadRecorder.Outcome.ERROR, perOperation);
+                    if (!sendFailureReported) {
+                        System.err.println("Send failed: " + e.getMessage());
+                        sendFailureReported = true;
+                    }
+                }
+                sent.incrementAndGet();
+            }
+            double measuredSeconds = (double) (Math.max(System.nanoTime(), end) - measureStart) / NANOS_PER_SECOND;
+
+            int unfinished = recorder.drain(options.timeoutMs);
+            reporter.shutdown();
+            reporter.awaitTermination(5, TimeUnit.SECONDS);
+            // Whatever completed since the last tick
+            synchronized (responseTotal) {
+                responseTotal.add(recorder.responseInterval());
+                serviceTotal.add(recorder.serviceInterval());
+            }
+            if (hlog != null) {
+                hlog.close();
+            }
+
+            Map<String, Object> report = LoadReport.build(options, startedAt, measuredSeconds, recorder,
+                responseTotal, serviceTotal, unfinished, maxLagNanos);
+            LoadReport.print(report, System.out);
+            LoadReport.write(report, options.report);
+            System.out.println("Report written to " + options.report);
+        }
+    }
+
+    private void reportInterval(LoadRecorder recorder, Histogram responseTotal, Histogram serviceTotal,
+                                HistogramLogWriter hlog, long start, long measureStart) {
+        Histogram response;
+        synchronized (responseTotal) {
+            response = recorder.responseInterval();
+            responseTotal.add(response);
+            serviceTotal.add(recorder.serviceInterval());
+        }
+        long now = System.nanoTime();
+        long elapsed = (now - start) / NANOS_PER_SECOND;
+        if (now < measureStart) {
+            System.out.printf("[%4ds] warm-up   sent=%d in-flight=%d%n", elapsed, sent.get(), recorder.inFlight());
+            return;
+        }
+        if (hlog != null) {
+            hlog.outputIntervalHistogram(response);
+        }
+        System.out.printf("[%4ds] measuring ops=%d p50=%.3f p99=%.3f p99.9=%.3f max=%.3f ms in-flight=%d%n",
+            elapsed, response.getTotalCount(), response.getValueAtPercentile(50) / 1e6,
+            response.getValueAtPercentile(99) / 1e6, response.getValueAtPercentile(99.9) / 1e6,
+            response.getMaxValue() / 1e6, recorder.inFlight());
+    }
+
+    private static void waitUntil(long deadline) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            if (remaining > SPIN_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_NANOS);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
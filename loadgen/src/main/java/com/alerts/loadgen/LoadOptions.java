@@ -0,0 +1,152 @@
+package com.alerts.loadgen;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * LoadOptions - Command line of a load run (--name=value)
+ *
+ * Every option has a default, so a bare run drives /api/alert on
+ * localhost:8080 with the demo keys ThresholdLoader publishes.
+ */
+final class LoadOptions {
+
+    enum TargetType { HTTP, BATCH, TCP_LINE, TCP_BINARY }
+
+    enum Distribution { UNIFORM, ZIPF }
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("target", "http");
+        DEFAULTS.put("url", "http://localhost:8080");
+        DEFAULTS.put("host", "localhost");
+        DEFAULTS.put("port", "0");
+        DEFAULTS.put("rate", "1000");
+        DEFAULTS.put("duration", "60");
+        DEFAULTS.put("warmup", "10");
+        DEFAULTS.put("connections", "4");
+        DEFAULTS.put("max-in-flight", "10000");
+        DEFAULTS.put("timeout-ms", "10000");
+        DEFAULTS.put("batch-size", "100");
+        DEFAULTS.put("tenants", "1");
+        DEFAULTS.put("properties", "100");
+        DEFAULTS.put("interfaces", "api");
+        DEFAULTS.put("types", "error");
+        DEFAULTS.put("distribution", "uniform");
+        DEFAULTS.put("zipf-exponent", "1.0");
+        DEFAULTS.put("error-min", "0");
+        DEFAULTS.put("error-max", "100");
+        DEFAULTS.put("seed", "42");
+        DEFAULTS.put("label", "");
+        DEFAULTS.put("report", "loadgen-report.json");
+        DEFAULTS.put("hlog", "");
+    }
+
+    final Map<String, String> values;
+
+    final TargetType target;
+    final String url;
+    final String host;
+    final int port;
+    final double rate;
+    final int durationSeconds;
+    final int warmupSeconds;
+    final int connections;
+    final int maxInFlight;
+    final long timeoutMs;
+    final int batchSize;
+    final int tenants;
+    final int properties;
+    final List<String> interfaces;
+    final List<String> types;
+    final Distribution distribution;
+    final double zipfExponent;
+    final long errorMin;
+    final long errorMax;
+    final long seed;
+    final String label;
+    final String report;
+    final String hlog;
+
+    private LoadOptions(Map<String, String> values) {
+        this.values = values;
+        target = TargetType.valueOf(values.get("target").toUpperCase().replace('-', '_'));
+        url = values.get("url").replaceAll("/+$", "");
+        host = values.get("host");
+        int configuredPort = Integer.parseInt(values.get("port"));
+        // Ingest listener defaults (alerts.ingest.line-port / binary-port)
+        port = configuredPort != 0 ? configuredPort : target == TargetType.TCP_BINARY ? 9401 : 9400;
+        rate = Double.parseDouble(values.get("rate"));
+        durationSeconds = Integer.parseInt(values.get("duration"));
+        warmupSeconds = Integer.parseInt(values.get("warmup"));
+        connections = Integer.parseInt(values.get("connections"));
+        maxInFlight = Integer.parseInt(values.get("max-in-flight"));
+        timeoutMs = Long.parseLong(values.get("timeout-ms"));
+        batchSize = Integer.parseInt(values.get("batch-size"));
+        tenants = Integer.parseInt(values.get("tenants"));
+        properties = Integer.parseInt(values.get("properties"));
+        interfaces = Arrays.asList(values.get("interfaces").split(","));
+        types = Arrays.asList(values.get("types").split(","));
+        distribution = Distribution.valueOf(values.get("distribution").toUpperCase());
+        zipfExponent = Double.parseDouble(values.get("zipf-exponent"));
+        errorMin = Long.parseLong(values.get("error-min"));
+        errorMax = Long.parseLong(values.get("error-max"));
+        seed = Long.parseLong(values.get("seed"));
+        label = values.get("label");
+        report = values.get("report");
+        hlog = values.get("hlog");
+
+        if (rate <= 0 || durationSeconds <= 0 || warmupSeconds < 0) {
+            throw new IllegalArgumentException("rate and duration must be positive, warmup not negative");
+        }
+        if (connections < 1 || maxInFlight < 1 || batchSize < 1 || tenants < 1 || properties < 1) {
+            throw new IllegalArgumentException("connections, max-in-flight, batch-size, tenants and properties must be >= 1");
+        }
+        if (errorMin < 0 || errorMax < errorMin) {
+            throw new IllegalArgumentException("error-min must be >= 0 and <= error-max");
+        }
+        if (distribution == Distribution.ZIPF && zipfExponent <= 0) {
+            throw new IllegalArgumentException("zipf-exponent must be positive");
+        }
+    }
+
+    static LoadOptions parse(String[] args) {
+        Map<String, String> values = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            String name = arg.substring(2, eq);
+            if (!DEFAULTS.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown option --" + name);
+            }
+            values.put(name, arg.substring(eq + 1));
+        }
+        return new LoadOptions(values);
+    }
+
+    static String usage() {
+        StringBuilder usage = new StringBuilder()
+            .append("Usage: java -jar loadgen.jar [--name=value ...]\n")
+            .append("       java -jar loadgen.jar compare <baseline.json> <candidate.json>\n\n")
+            .append("Options (default):\n");
+        DEFAULTS.forEach((name, value) -> usage.append("  --").append(name).append(" (").append(value).append(")\n"));
+        return usage.toString();
+    }
+
+    /**
+     * Options that decide what a run measures; reports differing in any of
+     * these are not directly comparable.
+     */
+    Map<String, String> workloadOptions() {
+        Map<String, String> workload = new LinkedHashMap<>(values);
+        workload.remove("label");
+        workload.remove("report");
+        workload.remove("hlog");
+        return workload;
+    }
+}
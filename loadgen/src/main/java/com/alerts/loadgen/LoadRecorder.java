@@ -0,0 +1,154 @@
+package com.alerts.loadgen;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LoadRecorder - Latencies and outcomes of the operations of one run
+ *
+ * Two HdrHistogram recorders per operation:
+ * - response time: completion minus the time the schedule intended the
+ *   operation to start. When the service (or the client) stalls, operations
+ *   queue up behind it and their wait is counted, as a user would
+ *   experience it - the coordinated omission correction.
+ * - service time: completion minus the time the operation was actually
+ *   sent; what a closed-loop tool such as stress-test.sh would report.
+ *
+ * Operations scheduled during warm-up are sent but not recorded.
+ * Recorders are read as interval histograms, so recording never blocks.
+ */
+final class LoadRecorder {
+
+    enum Outcome { ALERT, SUPPRESSED, BELOW, NO_THRESHOLD, QUEUED, REJECTED, ERROR, TIMEOUT }
+
+    private final Recorder responseTime = new Recorder(3);
+    private final Recorder serviceTime = new Recorder(3);
+    private final LongAdder[] outcomes = new LongAdder[Outcome.values().length];
+    private final LongAdder operations = new LongAdder();
+    private final LongAdder events = new LongAdder();
+    private final Semaphore inFlight;
+    private final int maxInFlight;
+
+    private Histogram responseInterval;
+    private Histogram serviceInterval;
+
+    LoadRecorder(int maxInFlight) {
+        this.maxInFlight = maxInFlight;
+        this.inFlight = new Semaphore(maxInFlight);
+        for (int i = 0; i < outcomes.length; i++) {
+            outcomes[i] = new LongAdder();
+        }
+    }
+
+    /**
+     * One request on the wire: a single event, or a batch of them.
+     */
+    final class Operation {
+        private final long intendedNanos;
+        private final boolean measured;
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private long sentNanos;
+
+        private Operation(long intendedNanos, boolean measured) {
+            this.intendedNanos = intendedNanos;
+            this.measured = measured;
+        }
+
+        void sent() {
+            sentNanos = System.nanoTime();
+        }
+
+        /**
+         * Count events of this operation with the given outcome.
+         */
+        void count(Outcome outcome, long eventCount) {
+            if (measured && eventCount > 0) {
+                outcomes[outcome.ordinal()].add(eventCount);
+                events.add(eventCount);
+            }
+        }
+
+        /**
+         * Record the latency; later calls (e.g. a timeout racing a response) are ignored.
+         */
+        void complete() {
+            if (!completed.compareAndSet(false, true)) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (measured) {
+                responseTime.recordValue(now - intendedNanos);
+                serviceTime.recordValue(now - sentNanos);
+                operations.increment();
+            }
+            inFlight.release();
+        }
+
+        /**
+         * Complete with every event of the operation counted as outcome.
+         */
+        void fail(Outcome outcome, int eventCount) {
+            if (!completed.get()) {
+                count(outcome, eventCount);
+                complete();
+            }
+        }
+    }
+
+    /**
+     * Start an operation, waiting while max-in-flight operations are outstanding.
+     */
+    Operation begin(long intendedNanos, boolean measured) throws InterruptedException {
+        inFlight.acquire();
+        return new Operation(intendedNanos, measured);
+    }
+
+    int inFlight() {
+        return maxInFlight - inFlight.availablePermits();
+    }
+
+    /**
+     * Wait up to timeoutMs for outstanding operations.
+     *
+     * @return operations still outstanding
+     */
+    int drain(long timeoutMs) throws InterruptedException {
+        long deadline = System.nanoTime() + timeoutMs * 1_000_000;
+        while (inFlight() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        return inFlight();
+    }
+
+    /**
+     * Response-time histogram since the previous call.
+     */
+    synchronized Histogram responseInterval() {
+        responseInterval = responseTime.getIntervalHistogram(responseInterval);
+        return responseInterval;
+    }
+
+    /**
+     * Service-time histogram since the previous call.
+     */
+    synchronized Histogram serviceInterval() {
+        serviceInterval = serviceTime.getIntervalHistogram(serviceInterval);
+        return serviceInterval;
+    }
+
+    long operations() {
+        return operations.sum();
+    }
+
+    long events() {
+        return events.sum();
+    }
+
+    long outcome(Outcome outcome) {
+        return outcomes[outcome.ordinal()].sum();
+    }
+}
@@ -0,0 +1,161 @@
+package com.alerts.loadgen;
+
+import com.alerts.loadgen.LoadRecorder.Outcome;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import org.HdrHistogram.Histogram;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * LoadReport - Result of a run as JSON, and the comparison of two runs
+ *
+ * A report holds the workload options, achieved rate, outcome counts and
+ * response / service time percentiles in milliseconds, plus the complete
+ * response-time histogram (compressed, base64) so further percentiles can
+ * be extracted later. compare prints two reports side by side; it warns
+ * when their workloads differ, since their latencies are then not
+ * comparable.
+ */
+final class LoadReport {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT);
+
+    static final double[] PERCENTILES = {50, 90, 99, 99.9, 99.99};
+
+    private LoadReport() {
+    }
+
+    static Map<String, Object> build(LoadOptions options, Instant startedAt, double measuredSeconds,
+                                     LoadRecorder recorder, Histogram responseTime, Histogram serviceTime,
+                                     int unfinished, long maxLagNanos) {
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("label", options.label);
+        report.put("startedAt", startedAt.toString());
+        report.put("workload", options.workloadOptions());
+        report.put("measuredSeconds", round(measuredSeconds));
+        report.put("operations", recorder.operations());
+        report.put("events", recorder.events());
+        // Rates in events per second, so single-event and batch runs compare
+        report.put("targetRate", options.rate);
+        report.put("achievedRate", round(recorder.events() / measuredSeconds));
+        report.put("operationRate", round(recorder.operations() / measuredSeconds));
+        // How late the generator itself started operations; large values mean the client saturated
+        report.put("maxScheduleLagMs", millis(maxLagNanos));
+        Map<String, Object> outcomes = new LinkedHashMap<>();
+        for (Outcome outcome : Outcome.values()) {
+            outcomes.put(outcome.name().toLowerCase(), recorder.outcome(outcome));
+        }
+        report.put("outcomes", outcomes);
+        report.put("unfinished", unfinished);
+        report.put("responseTimeMs", latency(responseTime));
+        report.put("serviceTimeMs", latency(serviceTime));
+        report.put("responseTimeHistogram", encode(responseTime));
+        return report;
+    }
+
+    static void write(Map<String, Object> report, String path) throws IOException {
+        MAPPER.writeValue(new File(path), report);
+    }
+
+    static void print(Map<String, Object> report, PrintStream out) {
+        out.printf("%nOperations: %s (%s events) in %ss, %s events/s achieved of %s/s scheduled%n",
+            report.get("operations"), report.get("events"), report.get("measuredSeconds"),
+            report.get("achievedRate"), report.get("targetRate"));
+        out.println("Max schedule lag: " + report.get("maxScheduleLagMs") + " ms");
+        out.println("Outcomes:   " + report.get("outcomes"));
+        if (((Number) report.get("unfinished")).longValue() > 0) {
+            out.println("Unfinished: " + report.get("unfinished") + " operations still outstanding at the end");
+        }
+        out.printf("%-12s %12s %12s%n", "ms", "response", "service");
+        @SuppressWarnings("unchecked")
+        Map<String, Object> response = (Map<String, Object>) report.get("responseTimeMs");
+        @SuppressWarnings("unchecked")
+        Map<String, Object> service = (Map<String, Object>) report.get("serviceTimeMs");
+        for (String key : response.keySet()) {
+            out.printf("%-12s %12s %12s%n", key, response.get(key), service.get(key));
+        }
+        out.println("(response time is measured from the scheduled start: corrected for coordinated omission)");
+    }
+
+    /**
+     * Print baseline and candidate side by side with the relative change.
+     */
+    static void compare(String baselinePath, String candidatePath, PrintStream out) throws IOException {
+        JsonNode baseline = MAPPER.readTree(new File(baselinePath));
+        JsonNode candidate = MAPPER.readTree(new File(candidatePath));
+
+        JsonNode baseWorkload = baseline.path("workload");
+        JsonNode candidateWorkload = candidate.path("workload");
+        Iterator<String> names = baseWorkload.fieldNames();
+        while (names.hasNext()) {
+            String name = names.next();
+            if (!baseWorkload.path(name).equals(candidateWorkload.path(name))) {
+                out.printf("WARNING: workload differs: %s=%s vs %s%n", name,
+                    baseWorkload.path(name).asText(), candidateWorkload.path(name).asText());
+            }
+        }
+
+        out.printf("%-22s %14s %14s %9s%n", "", label(baseline, baselinePath), label(candidate, candidatePath), "change");
+        row(out, "achievedRate", baseline.path("achievedRate"), candidate.path("achievedRate"));
+        row(out, "maxScheduleLagMs", baseline.path("maxScheduleLagMs"), candidate.path("maxScheduleLagMs"));
+        row(out, "outcomes.error", baseline.path("outcomes").path("error"), candidate.path("outcomes").path("error"));
+        row(out, "outcomes.timeout", baseline.path("outcomes").path("timeout"), candidate.path("outcomes").path("timeout"));
+        for (String section : new String[] {"responseTimeMs", "serviceTimeMs"}) {
+            Iterator<String> keys = baseline.path(section).fieldNames();
+            while (keys.hasNext()) {
+                String key = keys.next();
+                row(out, section.replace("Ms", "") + "." + key,
+                    baseline.path(section).path(key), candidate.path(section).path(key));
+            }
+        }
+    }
+
+    private static String label(JsonNode report, String path) {
+        String label = report.path("label").asText();
+        return label.isEmpty() ? new File(path).getName() : label;
+    }
+
+    private static void row(PrintStream out, String name, JsonNode base, JsonNode candidate) {
+        double b = base.asDouble();
+        double c = candidate.asDouble();
+        String change = b == 0 ? "" : String.format("%+.1f%%", (c - b) * 100 / b);
+        out.printf("%-22s %14s %14s %9s%n", name, base.asText(), candidate.asText(), change);
+    }
+
+    private static Map<String, Object> latency(Histogram histogram) {
+        Map<String, Object> latency = new LinkedHashMap<>();
+        latency.put("count", histogram.getTotalCount());
+        latency.put("mean", millis(histogram.getMean()));
+        for (double percentile : PERCENTILES) {
+            latency.put("p" + (percentile == Math.rint(percentile) ? Long.toString((long) percentile)
+                : Double.toString(percentile)), millis(histogram.getValueAtPercentile(percentile)));
+        }
+        latency.put("max", millis(histogram.getMaxValue()));
+        return latency;
+    }
+
+    private static String encode(Histogram histogram) {
+        ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        return Base64.getEncoder().encodeToString(Arrays.copyOf(buffer.array(), length));
+    }
+
+    private static double millis(double nanos) {
+        return Math.round(nanos / 1000.0) / 1000.0;
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 10) / 10.0;
+    }
+}
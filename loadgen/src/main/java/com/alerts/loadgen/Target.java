@@ -0,0 +1,39 @@
+package com.alerts.loadgen;
+
+import java.io.IOException;
+
+/**
+ * Target - One ingest path of the service
+ *
+ * send is called from the scheduler thread only and must not wait for the
+ * response: the operation is completed (LoadRecorder.Operation.complete)
+ * from whatever thread sees the response, so the schedule keeps its rate
+ * however slow the service is.
+ */
+interface Target extends AutoCloseable {
+
+    /**
+     * Events sent per operation (the batch size for batch targets).
+     */
+    default int eventsPerOperation() {
+        return 1;
+    }
+
+    /**
+     * Send events[0..count) as one operation; the events may be reused once
+     * this returns.
+     */
+    void send(Workload.Event[] events, int count, LoadRecorder.Operation operation) throws IOException;
+
+    static Target create(LoadOptions options) throws IOException {
+        return switch (options.target) {
+            case HTTP -> new HttpTarget(options, false);
+            case BATCH -> new HttpTarget(options, true);
+            case TCP_LINE -> new TcpTarget(options, false);
+            case TCP_BINARY -> new TcpTarget(options, true);
+        };
+    }
+
+    @Override
+    void close();
+}
@@ -0,0 +1,177 @@
+package com.alerts.loadgen;
+
+import com.alerts.loadgen.LoadRecorder.Outcome;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * TcpTarget - The ingest listeners' line or binary protocol (IngestProtocol)
+ *
+ * Events are pipelined over --connections persistent connections, used in
+ * turn. The service answers in request order, so each connection keeps a
+ * FIFO of its outstanding operations and a reader thread completes the head
+ * of it for every response. A write that blocks because the service has
+ * stopped reading delays the schedule; the delay shows in response time,
+ * which is measured from the intended start.
+ */
+final class TcpTarget implements Target {
+
+    // Binary status bytes (IngestProtocol)
+    private static final int NO_THRESHOLD = 0;
+    private static final int BELOW_THRESHOLD = 1;
+    private static final int ALERT = 2;
+    private static final int SUPPRESSED = 3;
+    private static final int QUEUED = 4;
+    private static final int PREHASHED = 0xFFFF;
+
+    private final boolean binary;
+    private final List<Connection> connections = new ArrayList<>();
+    private int next;
+
+    TcpTarget(LoadOptions options, boolean binary) throws IOException {
+        this.binary = binary;
+        for (int i = 0; i < options.connections; i++) {
+            connections.add(new Connection(options.host, options.port, (int) options.timeoutMs, i));
+        }
+    }
+
+    @Override
+    public void send(Workload.Event[] events, int count, LoadRecorder.Operation operation) throws IOException {
+        Connection connection = connections.get(next);
+        next = next + 1 == connections.size() ? 0 : next + 1;
+        connection.send(events[0], operation);
+    }
+
+    private final class Connection {
+        private final Socket socket;
+        private final DataOutputStream out;
+        private final DataInputStream in;
+        private final ConcurrentLinkedQueue<LoadRecorder.Operation> pending = new ConcurrentLinkedQueue<>();
+        private volatile boolean closed;
+
+        Connection(String host, int port, int timeoutMs, int index) throws IOException {
+            socket = new Socket();
+            socket.setTcpNoDelay(true);
+            socket.connect(new InetSocketAddress(host, port), timeoutMs);
+            out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 65536));
+            in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 65536));
+            Thread reader = new Thread(this::readResponses, "loadgen-tcp-" + index);
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        void send(Workload.Event event, LoadRecorder.Operation operation) throws IOException {
+            if (closed) {
+                operation.fail(Outcome.ERROR, 1);
+                return;
+            }
+            if (binary && event.keyBytes.length >= PREHASHED) {
+                operation.fail(Outcome.REJECTED, 1);
+                return;
+            }
+            // Queued before writing, so the response cannot overtake it
+            pending.add(operation);
+            operation.sent();
+            try {
+                if (binary) {
+                    out.writeShort(event.keyBytes.length);
+                    out.write(event.keyBytes);
+                    out.writeLong(event.errorCount);
+                } else {
+                    out.write(event.keyBytes);
+                    out.write(' ');
+                    out.writeBytes(Long.toString(event.errorCount));
+                    out.write('\n');
+                }
+                out.flush();
+            } catch (IOException e) {
+                failPending();
+                throw e;
+            }
+        }
+
+        private void readResponses() {
+            try {
+                while (true) {
+                    Outcome outcome = binary ? readBinary() : readLine();
+                    LoadRecorder.Operation operation = pending.poll();
+                    if (operation == null) {
+                        throw new IOException("Response without a request");
+                    }
+                    operation.count(outcome, 1);
+                    operation.complete();
+                }
+            } catch (IOException e) {
+                if (!closed) {
+                    System.err.println("Connection " + socket.getRemoteSocketAddress() + " lost: " + e.getMessage());
+                }
+            } finally {
+                failPending();
+            }
+        }
+
+        private Outcome readBinary() throws IOException {
+            int status = in.readUnsignedByte();
+            in.readLong();
+            in.readLong();
+            return switch (status) {
+                case NO_THRESHOLD -> Outcome.NO_THRESHOLD;
+                case BELOW_THRESHOLD -> Outcome.BELOW;
+                case ALERT -> Outcome.ALERT;
+                case SUPPRESSED -> Outcome.SUPPRESSED;
+                case QUEUED -> Outcome.QUEUED;
+                default -> Outcome.REJECTED;
+            };
+        }
+
+        private Outcome readLine() throws IOException {
+            int first = in.read();
+            int c = first;
+            while (c != '\n') {
+                if (c < 0) {
+                    throw new IOException("Connection closed");
+                }
+                c = in.read();
+            }
+            return switch (first) {
+                case 'A' -> Outcome.ALERT;
+                case 'S' -> Outcome.SUPPRESSED;
+                case 'B' -> Outcome.BELOW;
+                case 'N' -> Outcome.NO_THRESHOLD;
+                case 'Q' -> Outcome.QUEUED;
+                default -> Outcome.REJECTED;
+            };
+        }
+
+        private void failPending() {
+            closed = true;
+            LoadRecorder.Operation operation;
+            while ((operation = pending.poll()) != null) {
+                operation.fail(Outcome.ERROR, 1);
+            }
+        }
+
+        void close() {
+            closed = true;
+            try {
+                socket.close();
+            } catch (IOException e) {
+                // Closing anyway
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        connections.forEach(Connection::close);
+    }
+}
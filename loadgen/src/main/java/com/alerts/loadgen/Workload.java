@@ -0,0 +1,180 @@
+package com.alerts.loadgen;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Workload - Composite keys and error counts to send
+ *
+ * The key space is tenants x properties x types x interfaces, in the format
+ * the service hashes: property_<p>;tenant_<t>;type_<type>;interface_<name>
+ * (properties count from 1, tenants from 0, like ThresholdLoader's keys).
+ *
+ * With distribution=zipf the key of rank k is drawn with probability
+ * proportional to 1/k^exponent. Ranks are mapped to keys by a fixed
+ * pseudo-random permutation, so the hot keys are spread over tenants,
+ * properties and interfaces rather than all being property_1. Error counts
+ * are uniform in [error-min, error-max].
+ *
+ * Not thread-safe: only the scheduler thread draws events.
+ */
+final class Workload {
+
+    /**
+     * One event; reused between draws, so a Target must have serialized it
+     * by the time send returns.
+     */
+    static final class Event {
+        String key;
+        byte[] keyBytes;
+        long errorCount;
+    }
+
+    private final int tenants;
+    private final int properties;
+    private final List<String> types;
+    private final List<String> interfaces;
+    private final long keys;
+    private final long errorMin;
+    private final long errorRange;
+    private final SplittableRandom random;
+    private final ZipfSampler zipf;
+    // rank -> key index: (multiplier * rank + offset) mod keys, multiplier coprime to keys
+    private final long multiplier;
+    private final long offset;
+
+    Workload(LoadOptions options) {
+        this.tenants = options.tenants;
+        this.properties = options.properties;
+        this.types = options.types;
+        this.interfaces = options.interfaces;
+        this.keys = (long) tenants * properties * types.size() * interfaces.size();
+        this.errorMin = options.errorMin;
+        this.errorRange = options.errorMax - options.errorMin + 1;
+        this.random = new SplittableRandom(options.seed);
+        if (options.distribution == LoadOptions.Distribution.ZIPF) {
+            if (keys > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("zipf supports up to " + Integer.MAX_VALUE + " keys");
+            }
+            this.zipf = new ZipfSampler((int) keys, options.zipfExponent);
+        } else {
+            this.zipf = null;
+        }
+        long m = Math.floorMod(0x9E3779B97F4A7C15L, keys);
+        while (keys > 1 && gcd(Math.max(m, 1), keys) != 1) {
+            m++;
+        }
+        this.multiplier = Math.max(m, 1);
+        this.offset = new SplittableRandom(options.seed).nextLong(keys);
+    }
+
+    long keyCount() {
+        return keys;
+    }
+
+    void next(Event into) {
+        long index;
+        if (zipf == null) {
+            index = random.nextLong(keys);
+        } else {
+            // keys < 2^31 here, so the product cannot overflow
+            long rank = zipf.sample(random) - 1;
+            index = (multiplier * rank + offset) % keys;
+        }
+        into.key = key(index);
+        into.keyBytes = into.key.getBytes(StandardCharsets.UTF_8);
+        into.errorCount = errorMin + random.nextLong(errorRange);
+    }
+
+    /**
+     * Key of the given index in the key space.
+     */
+    String key(long index) {
+        int iface = (int) (index % interfaces.size());
+        index /= interfaces.size();
+        int type = (int) (index % types.size());
+        index /= types.size();
+        int property = (int) (index % properties) + 1;
+        int tenant = (int) (index / properties);
+        return "property_" + property + ";tenant_" + tenant + ";type_" + types.get(type)
+            + ";interface_" + interfaces.get(iface);
+    }
+
+    private static long gcd(long a, long b) {
+        while (b != 0) {
+            long t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     * Zipf(n, exponent) by rejection-inversion (Hörmann and Derflinger,
+     * "Rejection-inversion to generate variates from monotone discrete
+     * distributions", 1996): O(1) time and memory per draw for any n.
+     */
+    static final class ZipfSampler {
+
+        private final int n;
+        private final double exponent;
+        private final double hIntegralX1;
+        private final double hIntegralN;
+        private final double s;
+
+        ZipfSampler(int n, double exponent) {
+            this.n = n;
+            this.exponent = exponent;
+            this.hIntegralX1 = hIntegral(1.5) - 1;
+            this.hIntegralN = hIntegral(n + 0.5);
+            this.s = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+        }
+
+        /**
+         * @return a rank in [1, n]
+         */
+        int sample(SplittableRandom random) {
+            while (true) {
+                double u = hIntegralN + random.nextDouble() * (hIntegralX1 - hIntegralN);
+                double x = hIntegralInverse(u);
+                int k = (int) (x + 0.5);
+                if (k < 1) {
+                    k = 1;
+                } else if (k > n) {
+                    k = n;
+                }
+                if (k - x <= s || u >= hIntegral(k + 0.5) - h(k)) {
+                    return k;
+                }
+            }
+        }
+
+        private double hIntegral(double x) {
+            double logX = Math.log(x);
+            return helper2((1 - exponent) * logX) * logX;
+        }
+
+        private double h(double x) {
+            return Math.exp(-exponent * Math.log(x));
+        }
+
+        private double hIntegralInverse(double x) {
+            double t = x * (1 - exponent);
+            if (t < -1) {
+                t = -1;
+            }
+            return Math.exp(helper1(t) * x);
+        }
+
+        // log(1 + x) / x, accurate near 0
+        private static double helper1(double x) {
+            return Math.abs(x) > 1e-8 ? Math.log1p(x) / x : 1 - x * (0.5 - x * (1.0 / 3 - x * 0.25));
+        }
+
+        // (exp(x) - 1) / x, accurate near 0
+        private static double helper2(double x) {
+            return Math.abs(x) > 1e-8 ? Math.expm1(x) / x : 1 + x * 0.5 * (1 + x / 3 * (1 + x * 0.25));
+        }
+    }
+}
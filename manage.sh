@@ -60,15 +60,21 @@ show_usage() {
 Usage: $0 <command> [options]
 
 Commands:
-  create-topics <broker>    Create all 3 required Kafka topics
+  create-topics <broker>    Create all required Kafka topics
   start                     Start the application
   stop                      Stop the application
   restart                   Restart the application
   status                    Check application status
   logs [lines]              Show application logs (default: 50 lines)
+  import <file> [opts]      Bulk-import thresholds from CSV/NDJSON (resumable)
+                            opts: --import-no-diff, --import-restart
   test-connectivity <broker> Test Kafka broker connectivity
   test-performance          Run basic performance tests (10 requests)
   test-stress               Run stress test (100 requests, 5 scenarios)
+  load-test [opts]          Open-loop load test with latency percentiles (loadgen/)
+                            opts: --rate=<events/s> --duration=<s> --target=http|batch|tcp-line|tcp-binary ...
+  replay [opts]             Backtest threshold sets against recorded errors (offline, no Kafka)
+                            opts: --input=<file> --thresholds=[name=]<file> --scales=1,1.5 --mode=rest|stream ...
   build                     Build the application
   help                      Show this help message
 
@@ -82,12 +88,18 @@ Examples:
   # Check logs
   $0 logs 100
 
+  # Import thresholds (via the running app, or a one-off instance)
+  $0 import thresholds.csv
+
   # Run performance test
   $0 test-performance
 
   # Run stress test (100 requests)
   $0 test-stress
 
+  # Load test: 2000 alerts/s for 60s, Zipf-distributed keys
+  $0 load-test --rate=2000 --distribution=zipf
+
 Environment Variables:
   KAFKA_BOOTSTRAP_SERVERS   Kafka broker address (for create-topics)
 
@@ -124,10 +136,19 @@ create_topics() {
     if ! command -v kafka-topics &> /dev/null; then
         print_warning "kafka-topics command not found"
         echo ""
-        echo "Please create these 3 topics manually:"
+        echo "Please create these topics manually:"
         echo "  1. eagle-eye.config"
         echo "  2. eagle-eye.alerts"
         echo "  3. eagle-eye-stream-processor-config-store-changelog"
+        echo "  4. eagle-eye.alert-counts (same partition count as eagle-eye.config)"
+        echo "  5. eagle-eye.errors (stream evaluation mode, same partition count as eagle-eye.config)"
+        echo "  6. eagle-eye-stream-processor-window-state-changelog (stream evaluation mode)"
+        echo "  7. eagle-eye.config-defaults (compacted, default thresholds)"
+        echo "  8. eagle-eye.error-sketches (alerts.dynamic.enabled, same partition count as eagle-eye.config)"
+        echo "  9. eagle-eye-stream-processor-error-sketches-changelog (alerts.dynamic.enabled, compacted)"
+        echo " 10. eagle-eye-stream-processor-tenant-index-changelog (alerts.index.enabled, compacted)"
+        echo " 11. eagle-eye-stream-processor-key-names-changelog (alerts.index.enabled, compacted)"
+        echo " 12. eagle-eye-stream-processor-inherited-alert-times-changelog (stream evaluation mode, compacted)"
         echo ""
         echo "See README.md for detailed specifications"
         exit 1
@@ -183,6 +204,107 @@ create_topics() {
       --if-not-exists 2>&1 | grep -v "already exists" || true
     print_success "eagle-eye-stream-processor-config-store-changelog"
 
+    # Topic 4 - alertTimes deltas, must be co-partitioned with eagle-eye.config
+    echo "4. eagle-eye.alert-counts..."
+    kafka-topics --create \
+      --bootstrap-server "$BROKER" \
+      --topic eagle-eye.alert-counts \
+      --partitions $PARTITIONS \
+      --replication-factor $REPLICATION \
+      --config retention.ms=86400000 \
+      --config cleanup.policy=delete \
+      --config compression.type=$COMPRESSION \
+      --if-not-exists 2>&1 | grep -v "already exists" || true
+    print_success "eagle-eye.alert-counts"
+
+    # Topic 5 - error counts for alerts.evaluation.mode=stream, co-partitioned with eagle-eye.config
+    echo "5. eagle-eye.errors..."
+    kafka-topics --create \
+      --bootstrap-server "$BROKER" \
+      --topic eagle-eye.errors \
+      --partitions $PARTITIONS \
+      --replication-factor $REPLICATION \
+      --config retention.ms=86400000 \
+      --config cleanup.policy=delete \
+      --config compression.type=$COMPRESSION \
+      --if-not-exists 2>&1 | grep -v "already exists" || true
+    print_success "eagle-eye.errors"
+
+    # Topic 6 - sliding-window ring buffers for windowed thresholds (stream mode)
+    echo "6. eagle-eye-stream-processor-window-state-changelog..."
+    kafka-topics --create \
+      --bootstrap-server "$BROKER" \
+      --topic eagle-eye-stream-processor-window-state-changelog \
+      --partitions $PARTITIONS \
+      --replication-factor $REPLICATION \
+      --config cleanup.policy=compact \
+      --config compression.type=$COMPRESSION \
+      --if-not-exists 2>&1 | grep -v "already exists" || true
+    print_success "eagle-eye-stream-processor-window-state-changelog"
+
+    # Topic 7 - default thresholds keyed by pattern ("*;tenant_0;*;*"), read in full by every instance
+    echo "7. eagle-eye.config-defaults..."
+    kafka-topics --create \
+      --bootstrap-server "$BROKER" \
+      --topic eagle-eye.config-defaults \
+      --partitions 1 \
+      --replication-factor $REPLICATION \
+      --config cleanup.policy=compact \
+      --config compression.type=$COMPRESSION \
+      --if-not-exists 2>&1 | grep -v "already exists" || true
+    print_success "eagle-eye.config-defaults"
+
+    # Topic 8 - quantile sketch deltas for dynamic thresholds, co-partitioned with eagle-eye.config
+    echo "8. eagle-eye.error-sketches..."
+    kafka-topics --create \
+      --bootstrap-server "$BROKER" \
+      --topic eagle-eye.error-sketches \
+      --partitions $PARTITIONS \
+      --replication-factor $REPLICATION \
+      --config retention.ms=86400000 \
+      --config cleanup.policy=delete \
+      --config compression.type=$COMPRESSION \
+      --if-not-exists 2>&1 | grep -v "already exists" || true
+    print_success "eagle-eye.error-sketches"
+
+    # Topic 9 - merged per-key quantile sketches (dynamic thresholds)
+    echo "9. eagle-eye-stream-processor-error-sketches-changelog..."
+    kafka-topics --create \
+      --bootstrap-server "$BROKER" \
+      --topic eagle-eye-stream-processor-error-sketches-changelog \
+      --partitions $PARTITIONS \
+      --replication-factor $REPLICATION \
+      --config cleanup.policy=compact \
+      --config compression.type=$COMPRESSION \
+      --if-not-exists 2>&1 | grep -v "already exists" || true
+    print_success "eagle-eye-stream-processor-error-sketches-changelog"
+
+    # Topics 10, 11 - tenant index (tenant;property;type;interface -> hash) and its reverse map
+    for store in tenant-index key-names; do
+        echo "eagle-eye-stream-processor-$store-changelog..."
+        kafka-topics --create \
+          --bootstrap-server "$BROKER" \
+          --topic "eagle-eye-stream-processor-$store-changelog" \
+          --partitions $PARTITIONS \
+          --replication-factor $REPLICATION \
+          --config cleanup.policy=compact \
+          --config compression.type=$COMPRESSION \
+          --if-not-exists 2>&1 | grep -v "already exists" || true
+        print_success "eagle-eye-stream-processor-$store-changelog"
+    done
+
+    # Topic 12 - alertTimes of keys breaching an inherited default (stream mode)
+    echo "12. eagle-eye-stream-processor-inherited-alert-times-changelog..."
+    kafka-topics --create \
+      --bootstrap-server "$BROKER" \
+      --topic eagle-eye-stream-processor-inherited-alert-times-changelog \
+      --partitions $PARTITIONS \
+      --replication-factor $REPLICATION \
+      --config cleanup.policy=compact \
+      --config compression.type=$COMPRESSION \
+      --if-not-exists 2>&1 | grep -v "already exists" || true
+    print_success "eagle-eye-stream-processor-inherited-alert-times-changelog"
+
     echo ""
     print_success "All topics created successfully!"
 }
@@ -317,6 +439,58 @@ show_logs() {
     tail -n "$LINES" "$APP_LOG"
 }
 
+import_thresholds() {
+    local FILE="$1"
+    shift || true
+
+    if [ -z "$FILE" ] || [ ! -f "$FILE" ]; then
+        print_error "Threshold file not found: ${FILE:-<missing>}"
+        echo "Usage: $0 import <file.csv|file.ndjson> [--import-no-diff] [--import-restart]"
+        exit 1
+    fi
+    FILE="$(cd "$(dirname "$FILE")" && pwd)/$(basename "$FILE")"
+
+    print_header "Importing Thresholds"
+
+    # Running application: import through the REST API and poll progress
+    if [ -f "$PID_FILE" ] && ps -p "$(cat "$PID_FILE")" > /dev/null 2>&1; then
+        local DIFF=true
+        local RESUME=true
+        for OPT in "$@"; do
+            [ "$OPT" = "--import-no-diff" ] && DIFF=false
+            [ "$OPT" = "--import-restart" ] && RESUME=false
+        done
+        # The application only reads files inside alerts.import.directory (imports/)
+        local RESPONSE
+        RESPONSE=$(curl -s -X POST "http://localhost:8080/api/import" \
+          -H "Content-Type: application/json" \
+          -d "{\"path\":\"$FILE\",\"diff\":$DIFF,\"resume\":$RESUME}")
+        echo "$RESPONSE"
+        if echo "$RESPONSE" | grep -q '"status":"error"'; then
+            print_error "Import rejected - copy the file into the application's import directory (alerts.import.directory)"
+            exit 1
+        fi
+        local STATUS=""
+        while true; do
+            sleep 2
+            STATUS=$(curl -s "http://localhost:8080/api/import")
+            echo "$STATUS"
+            echo "$STATUS" | grep -q '"state":"RUNNING"' || break
+        done
+        echo "$STATUS" | grep -q '"state":"COMPLETED"' && print_success "Import completed" || { print_error "Import failed"; exit 1; }
+        return
+    fi
+
+    # Otherwise run a one-off instance that exits when done
+    if [ ! -f "$APP_JAR" ]; then
+        print_error "Application JAR not found. Run: $0 build"
+        exit 1
+    fi
+    java -Djava.net.preferIPv4Stack=true -jar "$APP_JAR" \
+      --server.port=0 --import="$FILE" --import-exit "$@" \
+      && print_success "Import completed" || { print_error "Import failed"; exit 1; }
+}
+
 # ==============================================================================
 # TESTING
 # ==============================================================================
@@ -553,6 +727,37 @@ test_stress() {
     echo "💡 Check logs for alert details: ./manage.sh logs 50"
 }
 
+# ==============================================================================
+# LOAD TEST
+# ==============================================================================
+
+load_test() {
+    local LOADGEN_JAR="$SCRIPT_DIR/loadgen/target/loadgen.jar"
+
+    if [ ! -f "$LOADGEN_JAR" ]; then
+        print_info "Building load generator..."
+        (cd "$SCRIPT_DIR/loadgen" && mvn -B -q package -DskipTests) || { print_error "Load generator build failed"; exit 1; }
+    fi
+
+    print_header "Load Test"
+    java -jar "$LOADGEN_JAR" "$@"
+}
+
+# ==============================================================================
+# REPLAY
+# ==============================================================================
+
+replay() {
+    if [ ! -f "$APP_JAR" ]; then
+        print_error "Application JAR not found. Run: $0 build"
+        exit 1
+    fi
+
+    print_header "Replay"
+    java -cp "$APP_JAR" -Dloader.main=com.alerts.replay.ReplayRunner \
+      org.springframework.boot.loader.PropertiesLauncher "$@"
+}
+
 # ==============================================================================
 # MAIN
 # ==============================================================================
@@ -582,6 +787,10 @@ main() {
         logs)
             show_logs "$2"
             ;;
+        import)
+            shift
+            import_thresholds "$@"
+            ;;
         test-connectivity)
             test_connectivity "$2"
             ;;
@@ -591,6 +800,14 @@ main() {
         test-stress)
             test_stress
             ;;
+        load-test)
+            shift
+            load_test "$@"
+            ;;
+        replay)
+            shift
+            replay "$@"
+            ;;
         help|--help|-h)
             show_usage
             ;;
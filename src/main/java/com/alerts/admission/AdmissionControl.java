@@ -0,0 +1,455 @@
+package com.alerts.admission;
+
+import com.alerts.publish.AlertPublisher;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AdmissionControl - Per-tenant rate limits and load shedding for /api/alert
+ * and the bulk paths
+ *
+ * Each tenant (the second segment of the composite key,
+ * property;tenant;type;interface) has a token bucket, kept as a GCRA
+ * theoretical arrival time: one long per tenant, advanced by CAS, so
+ * admission takes no lock and allocates nothing. A tenant may send
+ * alerts.admission.tenant-rate events/s with bursts of tenant-burst;
+ * tenant-limits overrides both per tenant ("tenant_7:50000:100000,tenant_9:100").
+ * Over its limit a tenant gets 429 with Retry-After until its bucket refills.
+ * Every event is charged to its tenant's bucket whichever way it arrives:
+ * /api/alert requests through admit(), entries of /api/alerts/batch and
+ * ingest listener events through admitEvent(), so a tenant cannot get
+ * around its limit by switching to a bulk path.
+ *
+ * Limits adapt to load: every adapt-interval-ms the mean latency of admitted
+ * requests and the alert publisher's queue fill are compared with
+ * target-latency-ms and queue-high-watermark. While either is exceeded all
+ * tenant rates are scaled down multiplicatively (down to min-rate-factor),
+ * and back up additively once both recover. Tenants well within their limit
+ * keep being admitted; the tenants causing the overload hit theirs first.
+ * max-in-flight (0 = off) additionally sheds any request with 503 while that
+ * many are being processed.
+ *
+ * Tenants are held in a fixed open-addressing table of max-tenants slots.
+ * A tenant idle for longer than its burst window (its bucket has been full
+ * for that long, so it holds no state worth keeping) is evicted at the next
+ * adapt run and its slot reused; only while max-tenants tenants are active
+ * at once do new ones share the overflow bucket.
+ */
+@Service
+public class AdmissionControl {
+
+    private static final Logger log = LoggerFactory.getLogger(AdmissionControl.class);
+
+    private static final VarHandle LONGS = MethodHandles.arrayElementVarHandle(long[].class);
+    private static final int MAX_PROBES = 16;
+    // Slot of an evicted tenant: probing continues past it, claims may reuse it
+    private static final long TOMBSTONE = -2;
+    private static final long NANOS_PER_SECOND = 1_000_000_000L;
+    // Keys without a tenant segment (or prehashed keys) share this tenant
+    static final String UNATTRIBUTED = "-";
+
+    /**
+     * Outcome of admit(); ADMITTED is shared, rejections carry their details.
+     */
+    public record Decision(boolean admitted, String reason, String tenant, long retryAfterMillis) {
+        public static final Decision ADMITTED = new Decision(true, null, null, 0);
+
+        public long retryAfterSeconds() {
+            return Math.max(1, (retryAfterMillis + 999) / 1000);
+        }
+    }
+
+    record Limit(double rate, double burst) {
+    }
+
+    private final boolean enabled;
+    private final Limit defaultLimit;
+    private final Map<String, Limit> overrides;
+    private final int maxInFlight;
+    private final long targetLatencyNanos;
+    private final double queueHighWatermark;
+    private final double minRateFactor;
+    private final double decreaseFactor;
+    private final double increaseStep;
+    private final AlertPublisher publisher;
+
+    // Slot i: tenantHashes[i] (0 = free, TOMBSTONE = evicted), tats[i] (GCRA theoretical arrival time, ns)
+    private final int mask;
+    private final long[] tenantHashes;
+    private final long[] tats;
+    private final long[] rejections;
+    private final String[] tenantNames;
+    private final Limit[] limits;
+    // Shared by tenants that found no free slot
+    private final int overflowSlot;
+
+    private volatile double rateFactor = 1.0;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder latencyNanos = new LongAdder();
+    private final LongAdder latencySamples = new LongAdder();
+    private final LongAdder admitted = new LongAdder();
+    private final LongAdder rateLimited = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+    private final LongAdder adjustments = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+    private volatile long lastMeanLatencyNanos;
+    private volatile double lastQueueFill;
+    private final ScheduledExecutorService controller;
+
+    public AdmissionControl(AlertPublisher publisher,
+                            @Value("${alerts.admission.enabled:true}") boolean enabled,
+                            @Value("${alerts.admission.tenant-rate:10000}") double tenantRate,
+                            @Value("${alerts.admission.tenant-burst:20000}") double tenantBurst,
+                            @Value("${alerts.admission.tenant-limits:}") String tenantLimits,
+                            @Value("${alerts.admission.max-tenants:4096}") int maxTenants,
+                            @Value("${alerts.admission.max-in-flight:0}") int maxInFlight,
+                            @Value("${alerts.admission.target-latency-ms:50}") long targetLatencyMillis,
+                            @Value("${alerts.admission.queue-high-watermark:0.5}") double queueHighWatermark,
+                            @Value("${alerts.admission.min-rate-factor:0.1}") double minRateFactor,
+                            @Value("${alerts.admission.adapt-interval-ms:500}") long adaptIntervalMillis) {
+        this.publisher = publisher;
+        this.enabled = enabled;
+        this.defaultLimit = new Limit(tenantRate, Math.max(1, tenantBurst));
+        this.overrides = parseLimits(tenantLimits, defaultLimit);
+        this.maxInFlight = maxInFlight;
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+        this.queueHighWatermark = queueHighWatermark;
+        this.minRateFactor = Math.min(1.0, Math.max(0.01, minRateFactor));
+        this.decreaseFactor = 0.7;
+        this.increaseStep = 0.05;
+
+        int capacity = Integer.highestOneBit(Math.max(16, maxTenants) * 2 - 1);
+        this.mask = capacity - 1;
+        this.overflowSlot = capacity;
+        this.tenantHashes = new long[capacity + 1];
+        this.tats = new long[capacity + 1];
+        this.rejections = new long[capacity + 1];
+        this.tenantNames = new String[capacity + 1];
+        this.limits = new Limit[capacity + 1];
+        tenantHashes[overflowSlot] = -1;
+        tenantNames[overflowSlot] = "(overflow)";
+        limits[overflowSlot] = defaultLimit;
+
+        this.controller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "admission-control");
+            t.setDaemon(true);
+            return t;
+        });
+        if (enabled) {
+            controller.scheduleWithFixedDelay(this::adapt, adaptIntervalMillis, adaptIntervalMillis,
+                TimeUnit.MILLISECONDS);
+            log.info("Admission control: {}/s per tenant (burst {}), {} overrides, max in flight {}, "
+                    + "target latency {}ms", tenantRate, defaultLimit.burst(), overrides.size(),
+                maxInFlight == 0 ? "unlimited" : maxInFlight, targetLatencyMillis);
+        }
+    }
+
+    /**
+     * Admit a request for key, or say why not. An admitted request must be
+     * followed by complete().
+     */
+    public Decision admit(CharSequence key) {
+        return admit(key, System.nanoTime());
+    }
+
+    Decision admit(CharSequence key, long now) {
+        if (!enabled) {
+            return Decision.ADMITTED;
+        }
+        if (maxInFlight > 0 && inFlight.get() >= maxInFlight) {
+            shed.increment();
+            return new Decision(false, "overloaded", null, 1000);
+        }
+        Decision decision = charge(key, now);
+        if (decision.admitted()) {
+            inFlight.incrementAndGet();
+        }
+        return decision;
+    }
+
+    /**
+     * Charge one event of a batch request or ingest connection to its
+     * tenant's bucket. Unlike admit(), nothing is held in flight and no
+     * complete() follows: the request or connection carrying the event is
+     * not an /api/alert request.
+     */
+    public Decision admitEvent(CharSequence key) {
+        return admitEvent(key, System.nanoTime());
+    }
+
+    Decision admitEvent(CharSequence key, long now) {
+        if (!enabled) {
+            return Decision.ADMITTED;
+        }
+        return charge(key, now);
+    }
+
+    private Decision charge(CharSequence key, long now) {
+        int slot = slotFor(key);
+        Limit limit = limits[slot];
+        if (limit == null) {
+            // Slot claimed by another thread that has not published its limit yet
+            limit = defaultLimit;
+        }
+        long retryNanos = acquire(slot, limit, now);
+        if (retryNanos > 0) {
+            rateLimited.increment();
+            LONGS.getAndAdd(rejections, slot, 1L);
+            String tenant = tenantNames[slot];
+            return new Decision(false, "tenant_rate_limited", tenant == null ? UNATTRIBUTED : tenant,
+                TimeUnit.NANOSECONDS.toMillis(retryNanos) + 1);
+        }
+        admitted.increment();
+        return Decision.ADMITTED;
+    }
+
+    /**
+     * An admitted request has been answered; admittedAt is System.nanoTime()
+     * when admit() returned.
+     */
+    public void complete(long admittedAt) {
+        if (!enabled) {
+            return;
+        }
+        inFlight.decrementAndGet();
+        latencyNanos.add(System.nanoTime() - admittedAt);
+        latencySamples.increment();
+    }
+
+    /**
+     * GCRA: consume one token from the slot's bucket.
+     *
+     * @return 0 if admitted, otherwise nanoseconds until a token is available
+     */
+    private long acquire(int slot, Limit limit, long now) {
+        double rate = limit.rate() * rateFactor;
+        if (rate <= 0) {
+            return NANOS_PER_SECOND;
+        }
+        long emission = (long) (NANOS_PER_SECOND / rate);
+        long tolerance = (long) (emission * limit.burst());
+        while (true) {
+            long tat = (long) LONGS.getVolatile(tats, slot);
+            long newTat = Math.max(tat == 0 ? now : tat, now) + emission;
+            long allowAt = newTat - tolerance;
+            if (allowAt > now) {
+                return allowAt - now;
+            }
+            if (LONGS.compareAndSet(tats, slot, tat, newTat)) {
+                return 0;
+            }
+        }
+    }
+
+    private int slotFor(CharSequence key) {
+        int start = -1;
+        int end = -1;
+        if (key != null) {
+            for (int i = 0; i < key.length(); i++) {
+                if (key.charAt(i) == ';') {
+                    if (start < 0) {
+                        start = i + 1;
+                    } else {
+                        end = i;
+                        break;
+                    }
+                }
+            }
+        }
+        if (start < 0) {
+            start = 0;
+            end = 0;
+        } else if (end < 0) {
+            end = key.length();
+        }
+        // FNV-1a over the tenant segment; 0 marks a free slot
+        long hash = 0xcbf29ce484222325L;
+        for (int i = start; i < end; i++) {
+            hash = (hash ^ key.charAt(i)) * 0x100000001b3L;
+        }
+        if (hash == 0 || hash == -1 || hash == TOMBSTONE) {
+            hash = 1;
+        }
+
+        int home = (int) (hash ^ (hash >>> 32)) & mask;
+        // A lost claim race is retried once: the winner may have been this tenant
+        for (int attempt = 0; attempt < 2; attempt++) {
+            int free = -1;
+            long freeValue = 0;
+            int slot = home;
+            for (int probe = 0; probe < MAX_PROBES; probe++) {
+                long current = (long) LONGS.getAcquire(tenantHashes, slot);
+                if (current == hash) {
+                    return slot;
+                }
+                if (current == 0 || current == TOMBSTONE) {
+                    if (free < 0) {
+                        free = slot;
+                        freeValue = current;
+                    }
+                    if (current == 0) {
+                        // End of the probe chain: the tenant is not further on
+                        break;
+                    }
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (free < 0) {
+                break;
+            }
+            if (LONGS.compareAndSet(tenantHashes, free, freeValue, hash)) {
+                String tenant = end > start ? key.subSequence(start, end).toString() : UNATTRIBUTED;
+                tenantNames[free] = tenant;
+                limits[free] = overrides.getOrDefault(tenant, defaultLimit);
+                return free;
+            }
+        }
+        overflowed.increment();
+        return overflowSlot;
+    }
+
+    /**
+     * Free the slots of tenants whose bucket has been full for longer than its
+     * burst window. A request racing with the eviction may still charge the
+     * freed slot once; the bucket it charges was full anyway.
+     *
+     * @return number of tenants evicted
+     */
+    int evictIdle(long now) {
+        int count = 0;
+        for (int slot = 0; slot <= mask; slot++) {
+            long hash = (long) LONGS.getAcquire(tenantHashes, slot);
+            Limit limit = limits[slot];
+            if (hash == 0 || hash == TOMBSTONE || limit == null) {
+                continue;
+            }
+            long tat = (long) LONGS.getVolatile(tats, slot);
+            double rate = limit.rate() * rateFactor;
+            if (tat == 0 || rate <= 0) {
+                continue;
+            }
+            long burstWindow = (long) (NANOS_PER_SECOND / rate * limit.burst());
+            if (now - tat > burstWindow && LONGS.compareAndSet(tenantHashes, slot, hash, TOMBSTONE)) {
+                // An idle tat lies in the past, so a tenant reusing the slot starts with a full bucket
+                LONGS.setOpaque(rejections, slot, 0L);
+                count++;
+            }
+        }
+        evicted.add(count);
+        return count;
+    }
+
+    /**
+     * Scale tenant rates down while latency or publisher backlog is over
+     * target, back up once both have recovered.
+     */
+    private void adapt() {
+        try {
+            evictIdle(System.nanoTime());
+            long samples = latencySamples.sumThenReset();
+            long total = latencyNanos.sumThenReset();
+            long meanLatency = samples == 0 ? 0 : total / samples;
+            double queueFill = (double) publisher.queueDepth() / publisher.queueCapacity();
+            lastMeanLatencyNanos = meanLatency;
+            lastQueueFill = queueFill;
+
+            boolean overloaded = (targetLatencyNanos > 0 && meanLatency > targetLatencyNanos)
+                || (queueHighWatermark > 0 && queueFill > queueHighWatermark);
+            double previous = rateFactor;
+            double next = overloaded
+                ? Math.max(minRateFactor, previous * decreaseFactor)
+                : Math.min(1.0, previous + increaseStep);
+            if (next != previous) {
+                rateFactor = next;
+                adjustments.increment();
+                if (overloaded && previous == 1.0) {
+                    log.warn("❌ Overload (mean latency {}ms, publisher queue {}% full): tenant rates scaled to {}%",
+                        TimeUnit.NANOSECONDS.toMillis(meanLatency), Math.round(queueFill * 100), Math.round(next * 100));
+                } else if (next == 1.0) {
+                    log.info("✅ Load recovered: tenant rates back to 100%");
+                }
+            }
+        } catch (Exception e) {
+            log.error("❌ Admission control adjustment failed: {}", e.getMessage());
+        }
+    }
+
+    static Map<String, Limit> parseLimits(String spec, Limit defaults) {
+        Map<String, Limit> limits = new HashMap<>();
+        if (spec == null || spec.isBlank()) {
+            return limits;
+        }
+        for (String entry : spec.split(",")) {
+            String[] parts = entry.trim().split(":");
+            if (parts.length < 2 || parts.length > 3 || parts[0].isEmpty()) {
+                throw new IllegalArgumentException("alerts.admission.tenant-limits: expected tenant:rate[:burst], got '"
+                    + entry.trim() + "'");
+            }
+            double rate = Double.parseDouble(parts[1]);
+            double burst = parts.length == 3 ? Double.parseDouble(parts[2]) : Math.max(1, rate * defaults.burst() / defaults.rate());
+            limits.put(parts[0], new Limit(rate, Math.max(1, burst)));
+        }
+        return limits;
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("admitted", admitted.sum());
+        stats.put("rateLimited", rateLimited.sum());
+        stats.put("shed", shed.sum());
+        stats.put("inFlight", inFlight.get());
+        stats.put("rateFactor", Math.round(rateFactor * 1000) / 1000.0);
+        stats.put("adjustments", adjustments.sum());
+        stats.put("meanLatencyMicros", TimeUnit.NANOSECONDS.toMicros(lastMeanLatencyNanos));
+        stats.put("publisherQueueFill", Math.round(lastQueueFill * 1000) / 1000.0);
+        stats.put("tenantRate", defaultLimit.rate());
+        stats.put("tenantBurst", defaultLimit.burst());
+        stats.put("overrides", overrides.size());
+        stats.put("evicted", evicted.sum());
+        stats.put("overflowed", overflowed.sum());
+
+        int tenants = 0;
+        List<Integer> limited = new ArrayList<>();
+        for (int slot = 0; slot <= overflowSlot; slot++) {
+            long hash = (long) LONGS.getOpaque(tenantHashes, slot);
+            if (hash != 0 && hash != TOMBSTONE && slot != overflowSlot) {
+                tenants++;
+            }
+            if ((long) LONGS.getOpaque(rejections, slot) > 0) {
+                limited.add(slot);
+            }
+        }
+        stats.put("tenants", tenants);
+        // Tenants that hit their limit most, for finding the noisy ones
+        limited.sort((a, b) -> Long.compare(rejections[b], rejections[a]));
+        Map<String, Object> top = new LinkedHashMap<>();
+        for (int slot : limited.subList(0, Math.min(10, limited.size()))) {
+            top.put(tenantNames[slot] == null ? UNATTRIBUTED : tenantNames[slot], rejections[slot]);
+        }
+        stats.put("topRateLimited", top);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        controller.shutdownNow();
+    }
+}
@@ -0,0 +1,203 @@
+package com.alerts.bloom;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ScalableBloomFilter - Lock-free Bloom filter over 64-bit key hashes that grows
+ * by stacking segments
+ *
+ * Each segment is a bit array in an AtomicLongArray sized for a number of
+ * keys at its own false-positive rate. Inserts set bits with CAS, so any
+ * number of threads can insert and query concurrently without locks. When
+ * the newest segment reaches its capacity a new one is stacked on top with
+ * GROWTH times the capacity and a TIGHTENING times lower false-positive
+ * rate, which keeps the compound rate below fpRate / (1 - TIGHTENING) no
+ * matter how many keys are added (Almeida et al., "Scalable Bloom Filters").
+ *
+ * Keys are already uniformly distributed hashes; the k probe positions are
+ * derived from two remixes of the key (double hashing).
+ */
+public final class ScalableBloomFilter {
+
+    private static final int GROWTH = 2;
+    private static final double TIGHTENING = 0.5;
+
+    static final class Segment {
+        final AtomicLongArray words;
+        final long bits;
+        final int hashes;
+        final long capacity;
+        final LongAdder inserted = new LongAdder();
+        final LongAdder bitsSet = new LongAdder();
+
+        Segment(long capacity, double fpRate) {
+            this.capacity = Math.max(1, capacity);
+            long m = (long) Math.ceil(-this.capacity * Math.log(fpRate) / (Math.log(2) * Math.log(2)));
+            int wordCount = (int) Math.min(Integer.MAX_VALUE - 8, Math.max(1, (m + 63) >>> 6));
+            this.words = new AtomicLongArray(wordCount);
+            this.bits = (long) wordCount << 6;
+            this.hashes = Math.max(1, (int) Math.round((double) bits / this.capacity * Math.log(2)));
+        }
+
+        boolean mightContain(long h1, long h2) {
+            for (int i = 0; i < hashes; i++) {
+                long bit = Long.remainderUnsigned(h1 + i * h2, bits);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * @return true if any bit changed
+         */
+        boolean put(long h1, long h2) {
+            boolean changed = false;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Long.remainderUnsigned(h1 + i * h2, bits);
+                int index = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long word = words.get(index);
+                while ((word & mask) == 0) {
+                    long witness = words.compareAndExchange(index, word, word | mask);
+                    if (witness == word) {
+                        bitsSet.increment();
+                        changed = true;
+                        break;
+                    }
+                    word = witness;
+                }
+            }
+            if (changed) {
+                inserted.increment();
+            }
+            return changed;
+        }
+
+        double fillRatio() {
+            return (double) bitsSet.sum() / bits;
+        }
+
+        double estimatedFpRate() {
+            return Math.pow(fillRatio(), hashes);
+        }
+    }
+
+    private final double fpRate;
+    // Copy-on-write; the last segment takes new keys
+    private volatile Segment[] segments;
+
+    public ScalableBloomFilter(long initialCapacity, double fpRate) {
+        if (fpRate <= 0 || fpRate >= 1) {
+            throw new IllegalArgumentException("fpRate must be in (0, 1): " + fpRate);
+        }
+        this.fpRate = fpRate;
+        this.segments = new Segment[] {new Segment(initialCapacity, fpRate * (1 - TIGHTENING))};
+    }
+
+    public boolean mightContain(long key) {
+        long h1 = mix(key);
+        long h2 = mix(key ^ 0x5851F42D4C957F2DL) | 1;
+        Segment[] current = segments;
+        for (int i = current.length - 1; i >= 0; i--) {
+            if (current[i].mightContain(h1, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public void put(long key) {
+        long h1 = mix(key);
+        long h2 = mix(key ^ 0x5851F42D4C957F2DL) | 1;
+        Segment[] current = segments;
+        // Already (probably) present: do not spend capacity of the newest segment on it
+        for (int i = current.length - 1; i >= 0; i--) {
+            if (current[i].mightContain(h1, h2)) {
+                return;
+            }
+        }
+        Segment last = current[current.length - 1];
+        if (last.inserted.sum() >= last.capacity) {
+            last = grow(current);
+        }
+        last.put(h1, h2);
+    }
+
+    private synchronized Segment grow(Segment[] seen) {
+        Segment[] current = segments;
+        if (current != seen) {
+            // Another thread already grew the filter
+            return current[current.length - 1];
+        }
+        Segment last = current[current.length - 1];
+        double segmentFpRate = fpRate * (1 - TIGHTENING) * Math.pow(TIGHTENING, current.length);
+        Segment next = new Segment(last.capacity * GROWTH, segmentFpRate);
+        Segment[] grown = new Segment[current.length + 1];
+        System.arraycopy(current, 0, grown, 0, current.length);
+        grown[current.length] = next;
+        segments = grown;
+        return next;
+    }
+
+    public int segmentCount() {
+        return segments.length;
+    }
+
+    public long approximateKeys() {
+        long keys = 0;
+        for (Segment segment : segments) {
+            keys += segment.inserted.sum();
+        }
+        return keys;
+    }
+
+    public long capacity() {
+        long capacity = 0;
+        for (Segment segment : segments) {
+            capacity += segment.capacity;
+        }
+        return capacity;
+    }
+
+    public long sizeInBytes() {
+        long bytes = 0;
+        for (Segment segment : segments) {
+            bytes += segment.bits >>> 3;
+        }
+        return bytes;
+    }
+
+    /**
+     * Set bits / total bits over all segments
+     */
+    public double fillRatio() {
+        long set = 0;
+        long bits = 0;
+        for (Segment segment : segments) {
+            set += segment.bitsSet.sum();
+            bits += segment.bits;
+        }
+        return bits == 0 ? 0 : (double) set / bits;
+    }
+
+    /**
+     * False-positive rate implied by the current fill: a key is a false
+     * positive if any segment reports it.
+     */
+    public double estimatedFpRate() {
+        double allNegative = 1;
+        for (Segment segment : segments) {
+            allNegative *= 1 - segment.estimatedFpRate();
+        }
+        return 1 - allNegative;
+    }
+
+    private static long mix(long z) {
+        z = (z ^ (z >>> 33)) * 0xFF51AFD7ED558CCDL;
+        z = (z ^ (z >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        return z ^ (z >>> 33);
+    }
+}
@@ -0,0 +1,322 @@
+package com.alerts.cache;
+
+import com.alerts.hashing.KeyHasher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ThresholdHierarchy - Default thresholds for keys without an explicit one
+ *
+ * A default is a threshold whose key has "*" for some of the
+ * "property;tenant;type;interface" components, e.g. "*;tenant_0;*;*" for a
+ * tenant-wide default or "property_7;tenant_0;*;*" for a property override.
+ * Defaults live on eagle-eye.config-defaults (compacted, read in full by
+ * every instance as a global store), so only overrides are stored - never
+ * the cross-product of keys they cover.
+ *
+ * A key with no threshold of its own resolves to the most specific default:
+ * fewer wildcards first, then - on equal count - the level keeping property,
+ * then interface, then type, then tenant. Only levels that actually have
+ * defaults are tried, each costing one hash and one in-memory lookup.
+ *
+ * Resolutions (including "no default") are cached per concrete key hash, so
+ * a key that is seen again costs a single primitive lookup. Any change to the
+ * defaults invalidates that cache.
+ */
+@Component
+public class ThresholdHierarchy {
+
+    public static final String WILDCARD = "*";
+    public static final int COMPONENTS = 4;
+    // Wildcard mask bits, in key order
+    public static final int PROPERTY = 1;
+    public static final int TENANT = 1 << 1;
+    public static final int TYPE = 1 << 2;
+    public static final int INTERFACE = 1 << 3;
+    private static final int ALL = PROPERTY | TENANT | TYPE | INTERFACE;
+
+    /**
+     * Wildcard masks from most to least specific (exact keys, mask 0, excluded).
+     */
+    static final int[] RESOLUTION_ORDER;
+
+    static {
+        List<Integer> masks = new ArrayList<>();
+        for (int mask = 1; mask <= ALL; mask++) {
+            masks.add(mask);
+        }
+        masks.sort(Comparator.comparingInt(Integer::bitCount).thenComparingInt(mask -> -keptWeight(mask)));
+        RESOLUTION_ORDER = masks.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private static final ThreadLocal<StringBuilder> SCRATCH = ThreadLocal.withInitial(() -> new StringBuilder(128));
+    private static final ThreadLocal<int[]> BOUNDS = ThreadLocal.withInitial(() -> new int[COMPONENTS + 1]);
+
+    private final KeyHasher keyHasher;
+    // Level key hash -> default threshold
+    private final ThresholdNearCache defaults;
+    // Concrete key hash -> resolved threshold (REMOVED = no default applies)
+    private final ThresholdNearCache resolved;
+
+    // Guarded by this
+    private final Map<Long, Integer> maskByHash = new HashMap<>();
+    private final int[] defaultsPerLevel = new int[ALL + 1];
+    // Written under this, read by resolve() without locking
+    private volatile long generation;
+
+    // Masks with at least one default, in RESOLUTION_ORDER
+    private volatile int[] activeLevels = new int[0];
+
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder resolutions = new LongAdder();
+    private final LongAdder unresolved = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public ThresholdHierarchy(KeyHasher keyHasher,
+                              @Value("${alerts.hierarchy.max-defaults:65536}") int maxDefaults,
+                              @Value("${alerts.hierarchy.resolved-cache-entries:262144}") int resolvedCacheEntries) {
+        this.keyHasher = keyHasher;
+        this.defaults = new ThresholdNearCache(true, maxDefaults);
+        this.resolved = new ThresholdNearCache(resolvedCacheEntries > 0, Math.max(1, resolvedCacheEntries));
+    }
+
+    public boolean isEmpty() {
+        return activeLevels.length == 0;
+    }
+
+    /**
+     * Apply a default from eagle-eye.config-defaults.
+     *
+     * @return false if pattern is not a default key (no wildcard, or not four components)
+     */
+    public boolean put(String pattern, long threshold) {
+        int mask = wildcardMask(pattern);
+        if (mask <= 0) {
+            rejected.increment();
+            return false;
+        }
+        long hash = keyHasher.hash(pattern);
+        synchronized (this) {
+            if (maskByHash.putIfAbsent(hash, mask) == null) {
+                defaultsPerLevel[mask]++;
+            }
+            defaults.put(hash, threshold, 0);
+            changed();
+        }
+        return true;
+    }
+
+    public void remove(String pattern) {
+        long hash = keyHasher.hash(pattern);
+        synchronized (this) {
+            Integer mask = maskByHash.remove(hash);
+            if (mask == null) {
+                return;
+            }
+            defaultsPerLevel[mask]--;
+            defaults.remove(hash);
+            changed();
+        }
+    }
+
+    public synchronized void clear() {
+        maskByHash.clear();
+        Arrays.fill(defaultsPerLevel, 0);
+        defaults.clear();
+        changed();
+    }
+
+    // Guarded by this
+    private void changed() {
+        generation++;
+        resolved.clear();
+        int[] levels = new int[RESOLUTION_ORDER.length];
+        int count = 0;
+        for (int mask : RESOLUTION_ORDER) {
+            if (defaultsPerLevel[mask] > 0) {
+                levels[count++] = mask;
+            }
+        }
+        activeLevels = Arrays.copyOf(levels, count);
+    }
+
+    /**
+     * Find the default threshold for a key that has no threshold of its own.
+     *
+     * @param hash hash of key
+     * @param key  "property;tenant;type;interface", or null if only the hash is known
+     * @param into receives the threshold when found
+     * @return true if a default applies
+     */
+    public boolean resolve(long hash, CharSequence key, ThresholdNearCache.Entry into) {
+        int[] levels = activeLevels;
+        if (levels.length == 0) {
+            return false;
+        }
+        int cached = resolved.get(hash, into);
+        if (cached != ThresholdNearCache.MISS) {
+            cacheHits.increment();
+            return cached == ThresholdNearCache.HIT;
+        }
+        if (key == null) {
+            return false;
+        }
+        long generationBefore = generation;
+
+        boolean found = false;
+        int[] bounds = BOUNDS.get();
+        if (split(key, bounds)) {
+            StringBuilder levelKey = SCRATCH.get();
+            for (int mask : levels) {
+                levelKey.setLength(0);
+                for (int c = 0; c < COMPONENTS; c++) {
+                    if (c > 0) {
+                        levelKey.append(';');
+                    }
+                    if ((mask & (1 << c)) != 0) {
+                        levelKey.append('*');
+                    } else {
+                        levelKey.append(key, bounds[c], bounds[c + 1] - 1);
+                    }
+                }
+                if (defaults.get(keyHasher.hash(levelKey), into) == ThresholdNearCache.HIT) {
+                    found = true;
+                    break;
+                }
+            }
+        }
+        (found ? resolutions : unresolved).increment();
+
+        synchronized (this) {
+            // Defaults changed while resolving: the answer may be stale, do not cache it
+            if (generation == generationBefore) {
+                if (found) {
+                    resolved.put(hash, into.threshold, 0);
+                } else {
+                    resolved.remove(hash);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Start offsets of the components, bounds[COMPONENTS] = length + 1.
+     *
+     * @return false unless key has exactly four components
+     */
+    private static boolean split(CharSequence key, int[] bounds) {
+        int component = 0;
+        bounds[0] = 0;
+        for (int i = 0; i < key.length(); i++) {
+            if (key.charAt(i) == ';') {
+                if (++component == COMPONENTS) {
+                    return false;
+                }
+                bounds[component] = i + 1;
+            }
+        }
+        bounds[COMPONENTS] = key.length() + 1;
+        return component == COMPONENTS - 1;
+    }
+
+    /**
+     * Wildcard mask of a key: bit c set if component c is "*"; 0 for an exact
+     * key, -1 if key does not have four components.
+     */
+    public static int wildcardMask(CharSequence key) {
+        int[] bounds = new int[COMPONENTS + 1];
+        if (!split(key, bounds)) {
+            return -1;
+        }
+        int mask = 0;
+        for (int c = 0; c < COMPONENTS; c++) {
+            if (bounds[c + 1] - 1 - bounds[c] == 1 && key.charAt(bounds[c]) == '*') {
+                mask |= 1 << c;
+            }
+        }
+        return mask;
+    }
+
+    /**
+     * Whether bytes[offset, offset + length) contains a "*" component (the
+     * importer's cheap check before building a String).
+     */
+    public static boolean hasWildcard(byte[] bytes, int offset, int length) {
+        int start = offset;
+        int end = offset + length;
+        for (int i = offset; i <= end; i++) {
+            if (i == end || bytes[i] == ';') {
+                if (i - start == 1 && bytes[start] == '*') {
+                    return true;
+                }
+                start = i + 1;
+            }
+        }
+        return false;
+    }
+
+    public static boolean hasWildcard(CharSequence key) {
+        int start = 0;
+        for (int i = 0; i <= key.length(); i++) {
+            if (i == key.length() || key.charAt(i) == ';') {
+                if (i - start == 1 && key.charAt(start) == '*') {
+                    return true;
+                }
+                start = i + 1;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Level as a readable pattern, e.g. "P;T;*;*".
+     */
+    static String describe(int mask) {
+        String[] names = {"property", "tenant", "type", "interface"};
+        StringBuilder sb = new StringBuilder();
+        for (int c = 0; c < COMPONENTS; c++) {
+            if (c > 0) {
+                sb.append(';');
+            }
+            sb.append((mask & (1 << c)) != 0 ? WILDCARD : names[c]);
+        }
+        return sb.toString();
+    }
+
+    // Specificity of the components a level keeps: property > interface > type > tenant
+    private static int keptWeight(int mask) {
+        int kept = ~mask & ALL;
+        return ((kept & PROPERTY) != 0 ? 8 : 0)
+            + ((kept & INTERFACE) != 0 ? 4 : 0)
+            + ((kept & TYPE) != 0 ? 2 : 0)
+            + ((kept & TENANT) != 0 ? 1 : 0);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Map<String, Object> levels = new LinkedHashMap<>();
+        synchronized (this) {
+            stats.put("defaults", maskByHash.size());
+            for (int mask : activeLevels) {
+                levels.put(describe(mask), defaultsPerLevel[mask]);
+            }
+        }
+        stats.put("levels", levels);
+        stats.put("cacheHits", cacheHits.sum());
+        stats.put("resolutions", resolutions.sum());
+        stats.put("unresolved", unresolved.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("resolvedCacheEntries", resolved.stats().get("entries"));
+        return stats;
+    }
+}
@@ -0,0 +1,361 @@
+package com.alerts.cache;
+
+import com.alerts.model.ThresholdRecord;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ThresholdNearCache - In-process copy of config-store for the request path
+ *
+ * Open-addressing table of primitive long keys to (threshold, alertTimes,
+ * window definition),
+ * fed by AlertStreamProcessor as eagle-eye.config records are applied to
+ * config-store. Lookups are lock-free and allocation-free; a miss falls back
+ * to the RocksDB store in AlertProcessingService.
+ *
+ * Concurrency:
+ * - Writers (stream threads, store fallback fills) serialize on a lock.
+ * - Each slot carries a sequence number: 0 = empty, odd = write in progress,
+ *   even = stable. Readers retry if the sequence changed while they read
+ *   the slot (seqlock), so a reader never sees a torn threshold/alertTimes.
+ * - A slot's key never changes once published; resizing builds a new table
+ *   and publishes it through a volatile field.
+ * - Deletes leave a tombstone for the key so an in-flight store fallback
+ *   cannot resurrect a removed threshold. Growing the table carries the
+ *   tombstones over; only compaction at the memory bound (and clear) drops
+ *   them, and then bumps the fill epoch: fillFromStore takes the fillStamp()
+ *   read before the store was queried and discards the fill if the epoch
+ *   moved since, as its value may predate a delete whose tombstone is gone.
+ */
+@Component
+public class ThresholdNearCache {
+
+    private static final Logger log = LoggerFactory.getLogger(ThresholdNearCache.class);
+
+    public static final int MISS = 0;
+    public static final int HIT = 1;
+    public static final int REMOVED = 2;
+
+    private static final long TOMBSTONE = Long.MIN_VALUE;
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int SLOT_BYTES = 5 * Long.BYTES;
+
+    private static final VarHandle SEQ = MethodHandles.arrayElementVarHandle(long[].class);
+
+    /**
+     * Mutable lookup result, reused by the caller to keep lookups allocation-free.
+     */
+    public static final class Entry {
+        public long threshold;
+        public long alertTimes;
+        // 0 / 0 for a plain threshold
+        public int windowSeconds;
+        public int windowBuckets;
+    }
+
+    private static final class Table {
+        final long[] seqs;
+        final long[] keys;
+        final long[] thresholds;
+        final long[] alertTimes;
+        // windowSeconds << 32 | windowBuckets
+        final long[] windows;
+        final int mask;
+
+        Table(int capacity) {
+            seqs = new long[capacity];
+            keys = new long[capacity];
+            thresholds = new long[capacity];
+            alertTimes = new long[capacity];
+            windows = new long[capacity];
+            mask = capacity - 1;
+        }
+    }
+
+    private final boolean enabled;
+    private final int maxEntries;
+    private final int maxCapacity;
+
+    private volatile Table table;
+
+    // Guarded by this
+    private int used;
+    private int tombstones;
+    // Written under this; bumped whenever tombstones are dropped
+    private volatile long fillEpoch;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder staleFills = new LongAdder();
+
+    public ThresholdNearCache(@Value("${alerts.near-cache.enabled:true}") boolean enabled,
+                              @Value("${alerts.near-cache.max-entries:262144}") int maxEntries) {
+        this.enabled = enabled;
+        this.maxEntries = Math.max(1, maxEntries);
+        // Load factor <= 0.5 keeps probe sequences short
+        this.maxCapacity = tableSizeFor(this.maxEntries * 2L);
+        this.table = new Table(Math.min(INITIAL_CAPACITY, maxCapacity));
+    }
+
+    // Only for the application's near-cache, not for tables other components build from this class
+    @PostConstruct
+    void logConfiguration() {
+        log.info("Threshold near-cache {}: max {} entries (~{} MB)", enabled ? "enabled" : "disabled",
+            maxEntries, maxCapacity * (long) SLOT_BYTES >> 20);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Look up a key without locking or allocating.
+     *
+     * @return HIT (entry filled), REMOVED (threshold deleted) or MISS (unknown here - ask the store)
+     */
+    public int get(long key, Entry into) {
+        if (!enabled) {
+            return MISS;
+        }
+        Table t = table;
+        int idx = indexFor(key, t.mask);
+        for (int probes = 0; probes <= t.mask; probes++) {
+            long seq = (long) SEQ.getAcquire(t.seqs, idx);
+            if (seq == 0) {
+                break;
+            }
+            if ((seq & 1) != 0) {
+                // Writer mid-update on this slot: re-read it
+                Thread.onSpinWait();
+                probes--;
+                continue;
+            }
+            if (t.keys[idx] == key) {
+                long threshold = t.thresholds[idx];
+                long alertTimes = t.alertTimes[idx];
+                long window = t.windows[idx];
+                VarHandle.acquireFence();
+                if ((long) SEQ.getOpaque(t.seqs, idx) != seq) {
+                    probes--;
+                    continue;
+                }
+                if (threshold == TOMBSTONE) {
+                    hits.increment();
+                    return REMOVED;
+                }
+                into.threshold = threshold;
+                into.alertTimes = alertTimes;
+                into.windowSeconds = (int) (window >>> 32);
+                into.windowBuckets = (int) window;
+                hits.increment();
+                return HIT;
+            }
+            idx = (idx + 1) & t.mask;
+        }
+        misses.increment();
+        return MISS;
+    }
+
+    /**
+     * Apply a threshold from the stream processor (authoritative).
+     */
+    public void put(long key, long threshold, long alertTimes) {
+        put(key, threshold, alertTimes, 0, 0);
+    }
+
+    public void put(long key, ThresholdRecord record) {
+        put(key, record.threshold(), record.alertTimes(), record.windowSeconds(), record.windowBuckets());
+    }
+
+    public synchronized void put(long key, long threshold, long alertTimes, int windowSeconds, int windowBuckets) {
+        if (enabled) {
+            write(key, threshold, alertTimes, window(windowSeconds, windowBuckets), true);
+        }
+    }
+
+    /**
+     * Record a delete from the stream processor.
+     */
+    public synchronized void remove(long key) {
+        if (enabled) {
+            write(key, TOMBSTONE, 0, 0, true);
+        }
+    }
+
+    /**
+     * Stamp to take before reading the store for a later fillFromStore.
+     */
+    public long fillStamp() {
+        return fillEpoch;
+    }
+
+    /**
+     * Populate from a store read on the request path. Never overwrites what the
+     * stream processor has already applied (including deletes).
+     *
+     * @param stamp fillStamp() from before the store read
+     */
+    public void fillFromStore(long key, long threshold, long alertTimes, long stamp) {
+        fillFromStore(key, threshold, alertTimes, 0, 0, stamp);
+    }
+
+    public void fillFromStore(long key, ThresholdRecord record, long stamp) {
+        fillFromStore(key, record.threshold(), record.alertTimes(), record.windowSeconds(), record.windowBuckets(),
+            stamp);
+    }
+
+    public synchronized void fillFromStore(long key, long threshold, long alertTimes, int windowSeconds,
+                                           int windowBuckets, long stamp) {
+        if (!enabled) {
+            return;
+        }
+        if (stamp != fillEpoch) {
+            staleFills.increment();
+            return;
+        }
+        write(key, threshold, alertTimes, window(windowSeconds, windowBuckets), false);
+    }
+
+    public synchronized void clear() {
+        table = new Table(Math.min(INITIAL_CAPACITY, maxCapacity));
+        used = 0;
+        tombstones = 0;
+        fillEpoch++;
+    }
+
+    public Map<String, Object> stats() {
+        Table t = table;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("hits", hits.sum());
+        stats.put("misses", misses.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("staleFills", staleFills.sum());
+        synchronized (this) {
+            stats.put("entries", used - tombstones);
+            stats.put("tombstones", tombstones);
+        }
+        stats.put("capacity", t.mask + 1);
+        stats.put("maxEntries", maxEntries);
+        stats.put("memoryBytes", (t.mask + 1L) * SLOT_BYTES);
+        return stats;
+    }
+
+    private void write(long key, long threshold, long alertTimes, long window, boolean overwrite) {
+        Table t = table;
+        int idx = indexFor(key, t.mask);
+        while (true) {
+            long seq = t.seqs[idx];
+            if (seq == 0) {
+                break;
+            }
+            if (t.keys[idx] == key) {
+                if (overwrite) {
+                    boolean wasTombstone = t.thresholds[idx] == TOMBSTONE;
+                    if (wasTombstone != (threshold == TOMBSTONE)) {
+                        tombstones += wasTombstone ? -1 : 1;
+                    }
+                    publish(t, idx, seq, threshold, alertTimes, window);
+                }
+                return;
+            }
+            idx = (idx + 1) & t.mask;
+        }
+
+        // New key
+        if (threshold == TOMBSTONE && !overwrite) {
+            return;
+        }
+        if (used - tombstones >= maxEntries) {
+            rejected.increment();
+            return;
+        }
+        if (used + 1 > (t.mask + 1) / 2) {
+            if (!resize()) {
+                rejected.increment();
+                return;
+            }
+            write(key, threshold, alertTimes, window, overwrite);
+            return;
+        }
+        t.keys[idx] = key;
+        used++;
+        if (threshold == TOMBSTONE) {
+            tombstones++;
+        }
+        publish(t, idx, 0, threshold, alertTimes, window);
+    }
+
+    private static void publish(Table t, int idx, long seq, long threshold, long alertTimes, long window) {
+        SEQ.setOpaque(t.seqs, idx, seq + 1);
+        VarHandle.releaseFence();
+        t.thresholds[idx] = threshold;
+        t.alertTimes[idx] = alertTimes;
+        t.windows[idx] = window;
+        SEQ.setRelease(t.seqs, idx, seq + 2);
+    }
+
+    /**
+     * Grow (keeping tombstones) or, at the memory bound, compact tombstones
+     * into a new table.
+     *
+     * @return false when the cache is at its memory bound
+     */
+    private boolean resize() {
+        Table old = table;
+        int live = used - tombstones;
+        int capacity = old.mask + 1;
+        boolean grow = capacity < maxCapacity;
+        if (grow) {
+            capacity <<= 1;
+        } else if (tombstones == 0 || live + 1 > maxEntries) {
+            return false;
+        }
+        Table next = new Table(capacity);
+        for (int i = 0; i <= old.mask; i++) {
+            if (old.seqs[i] != 0 && (grow || old.thresholds[i] != TOMBSTONE)) {
+                int idx = indexFor(old.keys[i], next.mask);
+                while (next.seqs[idx] != 0) {
+                    idx = (idx + 1) & next.mask;
+                }
+                next.keys[idx] = old.keys[i];
+                next.thresholds[idx] = old.thresholds[i];
+                next.alertTimes[idx] = old.alertTimes[i];
+                next.windows[idx] = old.windows[i];
+                next.seqs[idx] = 2;
+            }
+        }
+        if (!grow) {
+            used = live;
+            tombstones = 0;
+            // Fills read before now may hold a threshold whose tombstone was just dropped
+            fillEpoch++;
+        }
+        table = next;
+        return true;
+    }
+
+    private static long window(int windowSeconds, int windowBuckets) {
+        return windowSeconds <= 0 ? 0 : (long) windowSeconds << 32 | (windowBuckets & 0xFFFFFFFFL);
+    }
+
+    private static int indexFor(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private static int tableSizeFor(long n) {
+        long capacity = Long.highestOneBit(Math.max(2, n - 1)) << 1;
+        return (int) Math.min(capacity, 1 << 30);
+    }
+}
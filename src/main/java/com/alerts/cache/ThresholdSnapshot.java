@@ -0,0 +1,196 @@
+package com.alerts.cache;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * ThresholdSnapshot - Memory-mapped copy of the thresholds an instance hosts
+ *
+ * Written periodically by WarmStartService and mapped read-only on the next
+ * start, so thresholds can be served before config-store has been restored.
+ * The file is the lookup structure itself - an open-addressing table probed
+ * directly in the mapping - so opening it costs a header check, not a load.
+ *
+ * Layout (big-endian):
+ *   [0..3]   magic "ATSN"
+ *   [4..7]   version (2)
+ *   [8..15]  createdAt (epoch ms)
+ *   [16..19] capacity (slots, power of two)
+ *   [20..23] reserved
+ *   [24..31] entries
+ *   then capacity slots of [hash:8][threshold:8][alertTimes:8]
+ *   [windowSeconds:4][windowBuckets:4]; threshold -1 marks an empty slot
+ *
+ * Version 1 files (no window) are not read; the instance starts without a
+ * snapshot and writes a version 2 one once config-store is live.
+ *
+ * Written to a temporary file, forced to disk and renamed over the previous
+ * snapshot, so a reader never sees a partial file.
+ */
+public final class ThresholdSnapshot {
+
+    private static final int MAGIC = 0x4154534E;
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 32;
+    private static final int SLOT_BYTES = 32;
+    private static final long EMPTY = -1;
+
+    /**
+     * Receives the entries of a snapshot.
+     */
+    public interface Visitor {
+        void accept(long hash, long threshold, long alertTimes, int windowSeconds, int windowBuckets);
+    }
+
+    private final MappedByteBuffer map;
+    private final int mask;
+    private final long entries;
+    private final long createdAt;
+
+    private ThresholdSnapshot(MappedByteBuffer map, int capacity, long entries, long createdAt) {
+        this.map = map;
+        this.mask = capacity - 1;
+        this.entries = entries;
+        this.createdAt = createdAt;
+    }
+
+    /**
+     * Write count entries to path, replacing any previous snapshot.
+     */
+    public static void write(Path path, long[] hashes, long[] thresholds, long[] alertTimes, int[] windowSeconds,
+                             int[] windowBuckets, int count, long createdAt) throws IOException {
+        // Load factor <= 0.5
+        int capacity = Integer.highestOneBit(Math.max(16, count) * 2 - 1) << 1;
+        long size = HEADER_BYTES + (long) capacity * SLOT_BYTES;
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot of " + count + " thresholds exceeds the 2GB mapping limit");
+        }
+        Files.createDirectories(path.toAbsolutePath().getParent());
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer out = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            for (int slot = 0; slot < capacity; slot++) {
+                out.putLong(slotOffset(slot) + 8, EMPTY);
+            }
+            int mask = capacity - 1;
+            long written = 0;
+            for (int i = 0; i < count; i++) {
+                if (thresholds[i] < 0) {
+                    continue;
+                }
+                int slot = index(hashes[i]) & mask;
+                while (true) {
+                    int offset = slotOffset(slot);
+                    boolean empty = out.getLong(offset + 8) == EMPTY;
+                    if (empty || out.getLong(offset) == hashes[i]) {
+                        out.putLong(offset, hashes[i]);
+                        out.putLong(offset + 8, thresholds[i]);
+                        out.putLong(offset + 16, alertTimes[i]);
+                        out.putInt(offset + 24, windowSeconds[i]);
+                        out.putInt(offset + 28, windowBuckets[i]);
+                        if (empty) {
+                            written++;
+                        }
+                        break;
+                    }
+                    slot = (slot + 1) & mask;
+                }
+            }
+            out.putInt(0, MAGIC);
+            out.putInt(4, VERSION);
+            out.putLong(8, createdAt);
+            out.putInt(16, capacity);
+            out.putLong(24, written);
+            out.force();
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Map a snapshot read-only.
+     *
+     * @return null if there is no snapshot at path
+     * @throws IOException if the file is not a valid snapshot
+     */
+    public static ThresholdSnapshot open(Path path) throws IOException {
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                throw new IOException("Truncated snapshot (" + size + " bytes)");
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+            channel.read(header, 0);
+            if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+                throw new IOException("Not a threshold snapshot (or unsupported version)");
+            }
+            int capacity = header.getInt(16);
+            if (capacity <= 0 || Integer.bitCount(capacity) != 1
+                    || size != HEADER_BYTES + (long) capacity * SLOT_BYTES) {
+                throw new IOException("Snapshot size does not match its header");
+            }
+            // The mapping stays valid after the channel is closed
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new ThresholdSnapshot(map, capacity, header.getLong(24), header.getLong(8));
+        }
+    }
+
+    /**
+     * @return true if the snapshot holds a threshold for hash (copied into into)
+     */
+    public boolean get(long hash, ThresholdNearCache.Entry into) {
+        int slot = index(hash) & mask;
+        while (true) {
+            int offset = slotOffset(slot);
+            long threshold = map.getLong(offset + 8);
+            if (threshold == EMPTY) {
+                return false;
+            }
+            if (map.getLong(offset) == hash) {
+                into.threshold = threshold;
+                into.alertTimes = map.getLong(offset + 16);
+                into.windowSeconds = map.getInt(offset + 24);
+                into.windowBuckets = map.getInt(offset + 28);
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    public void forEach(Visitor visitor) {
+        for (int slot = 0; slot <= mask; slot++) {
+            int offset = slotOffset(slot);
+            long threshold = map.getLong(offset + 8);
+            if (threshold != EMPTY) {
+                visitor.accept(map.getLong(offset), threshold, map.getLong(offset + 16), map.getInt(offset + 24),
+                    map.getInt(offset + 28));
+            }
+        }
+    }
+
+    public long entries() {
+        return entries;
+    }
+
+    public long createdAt() {
+        return createdAt;
+    }
+
+    private static int slotOffset(int slot) {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    private static int index(long hash) {
+        long h = hash * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,53 @@
+package com.alerts.config;
+
+import com.alerts.model.AlertEvent;
+import com.alerts.serde.AlertEventSerde;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.common.serialization.LongDeserializer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.ConcurrentKafkaListenerContainerFactory;
+import org.springframework.kafka.core.DefaultKafkaConsumerFactory;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+
+import java.util.Map;
+
+/**
+ * AlertConsumerConfig - Batch listener container for eagle-eye.alerts
+ *
+ * AlertConsumer receives each poll as one list of typed AlertEvents. Up to
+ * alerts.consumer.concurrency consumers share the topic's partitions (more
+ * than the partition count leaves the extra ones idle).
+ *
+ * Keys and values go through ErrorHandlingDeserializer: an undecodable record
+ * arrives with a null key or value instead of failing the whole batch on every
+ * redelivery. The key hash is carried in the value, so only an undecodable
+ * value makes an alert unparsable.
+ */
+@Configuration
+public class AlertConsumerConfig {
+
+    public static final String CONTAINER_FACTORY = "alertListenerContainerFactory";
+
+    @Bean(CONTAINER_FACTORY)
+    public ConcurrentKafkaListenerContainerFactory<Long, AlertEvent> alertListenerContainerFactory(
+            KafkaProperties kafkaProperties,
+            @Value("${alerts.consumer.concurrency:1}") int concurrency,
+            @Value("${alerts.consumer.max-poll-records:500}") int maxPollRecords) {
+        Map<String, Object> props = kafkaProperties.buildConsumerProperties();
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, maxPollRecords);
+
+        ConcurrentKafkaListenerContainerFactory<Long, AlertEvent> factory =
+            new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(new DefaultKafkaConsumerFactory<>(
+            props,
+            new ErrorHandlingDeserializer<>(new LongDeserializer()),
+            new ErrorHandlingDeserializer<>(new AlertEventSerde.AlertEventDeserializer())
+        ));
+        factory.setBatchListener(true);
+        factory.setConcurrency(Math.max(1, concurrency));
+        return factory;
+    }
+}
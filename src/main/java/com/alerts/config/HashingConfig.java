@@ -0,0 +1,40 @@
+package com.alerts.config;
+
+import com.alerts.hashing.KeyHasher;
+import com.alerts.hashing.Sha256KeyHasher;
+import com.alerts.hashing.XxHash64KeyHasher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * HashingConfig - Selects the KeyHasher used for all 64-bit keys
+ *
+ * alerts.hashing.algorithm:   sha256 (default, compatible with existing keys) | xxhash64
+ * alerts.hashing.legacy-keys: accept 16-char hex keys (and colon-joined values)
+ *                             on eagle-eye.config while producers are being
+ *                             migrated to long keys and binary records
+ */
+@Configuration
+public class HashingConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(HashingConfig.class);
+
+    @Bean
+    public KeyHasher keyHasher(@Value("${alerts.hashing.algorithm:sha256}") String algorithm,
+                               @Value("${alerts.hashing.legacy-keys:true}") boolean legacyKeys) {
+        KeyHasher hasher = switch (algorithm.toLowerCase()) {
+            case Sha256KeyHasher.NAME -> Sha256KeyHasher.INSTANCE;
+            case XxHash64KeyHasher.NAME -> XxHash64KeyHasher.INSTANCE;
+            default -> throw new IllegalArgumentException("Unknown alerts.hashing.algorithm: " + algorithm);
+        };
+        if (legacyKeys && hasher != Sha256KeyHasher.INSTANCE) {
+            // Legacy hex keys are truncated SHA-256; any other hash would never match them
+            throw new IllegalStateException("alerts.hashing.legacy-keys requires alerts.hashing.algorithm=sha256");
+        }
+        log.info("Key hasher: {}{}", hasher.name(), legacyKeys ? " (accepting legacy hex keys)" : "");
+        return hasher;
+    }
+}
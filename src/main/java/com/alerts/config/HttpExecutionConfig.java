@@ -0,0 +1,70 @@
+package com.alerts.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.web.embedded.tomcat.TomcatProtocolHandlerCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * HttpExecutionConfig - How HTTP requests are executed (alerts.http.execution)
+ *
+ * platform: Tomcat's worker pool (server.tomcat.threads.max); a request
+ *           waiting on a slow lookup or a Kafka stall holds a worker thread
+ * virtual:  one virtual thread per request (Java 21+); blocking parks the
+ *           virtual thread instead of a worker, so concurrency is no longer
+ *           capped by the pool. Falls back to platform on older JVMs.
+ * async:    /api/alert is served by AsyncTransactionController, which returns
+ *           a CompletionStage (Servlet async); the worker is released while
+ *           a remote threshold lookup is in flight
+ */
+@Configuration
+public class HttpExecutionConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(HttpExecutionConfig.class);
+
+    public enum Mode {
+        PLATFORM,
+        VIRTUAL,
+        ASYNC;
+
+        public static Mode of(String value) {
+            return Mode.valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    @Bean
+    public TomcatProtocolHandlerCustomizer<?> executionModeCustomizer(
+            @Value("${alerts.http.execution:platform}") String execution) {
+        Mode mode = Mode.of(execution);
+        ExecutorService virtualThreads = mode == Mode.VIRTUAL ? newVirtualThreadPerTaskExecutor() : null;
+        if (mode == Mode.VIRTUAL && virtualThreads == null) {
+            log.error("❌ alerts.http.execution=virtual needs Java 21+ (running {}) - using the platform thread pool",
+                Runtime.version().feature());
+        }
+        log.info("HTTP execution: {}", virtualThreads != null ? "virtual threads"
+            : mode == Mode.ASYNC ? "async (Servlet async /api/alert)" : "platform thread pool");
+        return protocolHandler -> {
+            if (virtualThreads != null) {
+                protocolHandler.setExecutor(virtualThreads);
+            }
+        };
+    }
+
+    /**
+     * Executors.newVirtualThreadPerTaskExecutor() looked up reflectively so the
+     * build keeps targeting Java 17; null if the JVM has no virtual threads.
+     */
+    private static ExecutorService newVirtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package com.alerts.config;
+
+import com.alerts.model.AlertEvent;
+import com.alerts.model.ThresholdRecord;
+import com.alerts.serde.AlertEventSerde;
+import com.alerts.serde.ThresholdRecordSerde;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.kafka.core.DefaultKafkaProducerFactory;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.core.ProducerFactory;
+
+/**
+ * KafkaTemplateConfig - Producer templates
+ *
+ * eagle-eye.config, eagle-eye.alerts, eagle-eye.alert-counts,
+ * eagle-eye.errors and eagle-eye.error-sketches are keyed by the 64-bit key hash (LongSerializer, 8 bytes).
+ * eagle-eye.config values are binary ThresholdRecords, eagle-eye.alerts values
+ * binary AlertEvents; alert-counts (deltas) and errors (error counts) carry
+ * plain longs, eagle-eye.error-sketches values QuantileSketch bytes.
+ * Declaring any KafkaTemplate disables Boot's auto-configured one, so the
+ * String template is declared here as well.
+ */
+@Configuration
+public class KafkaTemplateConfig {
+
+    @Bean
+    @Primary
+    public KafkaTemplate<String, String> kafkaTemplate(ProducerFactory<String, String> producerFactory) {
+        return new KafkaTemplate<>(producerFactory);
+    }
+
+    @Bean
+    public KafkaTemplate<Long, AlertEvent> alertKafkaTemplate(KafkaProperties kafkaProperties) {
+        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(
+            kafkaProperties.buildProducerProperties(),
+            new LongSerializer(),
+            new AlertEventSerde.AlertEventSerializer()
+        ));
+    }
+
+    @Bean
+    public KafkaTemplate<Long, ThresholdRecord> thresholdKafkaTemplate(KafkaProperties kafkaProperties) {
+        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(
+            kafkaProperties.buildProducerProperties(),
+            new LongSerializer(),
+            new ThresholdRecordSerde.ThresholdRecordSerializer()
+        ));
+    }
+
+    @Bean
+    public KafkaTemplate<Long, Long> longKafkaTemplate(KafkaProperties kafkaProperties) {
+        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(
+            kafkaProperties.buildProducerProperties(),
+            new LongSerializer(),
+            new LongSerializer()
+        ));
+    }
+
+    @Bean
+    public KafkaTemplate<Long, byte[]> sketchKafkaTemplate(KafkaProperties kafkaProperties) {
+        return new KafkaTemplate<>(new DefaultKafkaProducerFactory<>(
+            kafkaProperties.buildProducerProperties(),
+            new LongSerializer(),
+            new ByteArraySerializer()
+        ));
+    }
+}
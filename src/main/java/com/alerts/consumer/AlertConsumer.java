@@ -1,99 +1,91 @@
 package com.alerts.consumer;
 
+import com.alerts.config.AlertConsumerConfig;
+import com.alerts.hashing.KeyHashes;
+import com.alerts.metrics.AlertMetrics;
+import com.alerts.model.AlertEvent;
+import com.alerts.notify.NotificationDispatcher;
+import com.alerts.publish.AlertPublisher;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.kafka.annotation.KafkaListener;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
 /**
- * AlertConsumer - Receives alerts from eagle.max.alerts topic
+ * AlertConsumer - Receives alerts from eagle-eye.alerts
+ *
+ * Alerts are binary AlertEvents (key hash, errorCount, threshold, alertTimes,
+ * suppressed, timestamp) written by AlertPublisher or, in stream mode, by the
+ * topology. Text alerts from before the switch are still understood.
  *
- * This consumer listens to alerts triggered by AlertStreamProcessor
- * when error count >= threshold
+ * Each poll arrives as one batch (AlertConsumerConfig); every alert is handed
+ * to NotificationDispatcher, which queues it per sink and returns, so slow
+ * notification sinks never hold up partition consumption.
  *
- * Alert format: KEY;VALUE where VALUE=errorCount;threshold;alertTimes
- * Example: property_1;tenant_0;type_error;interface_api;75;50;1
+ * Alerts arrive at the rate thresholds are breached, so they are logged
+ * sampled (alerts.logging.event-sample-interval) rather than one by one.
+ * Sampling applies to the log lines only: every alert is counted in stats()
+ * (alerts.consumed), received or unparsable.
  */
 @Service
 public class AlertConsumer {
 
-    /**
-     * Listen to alerts from eagle.max.alerts topic
-     *
-     * Alert format:
-     * KEY;VALUE where VALUE=errorCount;threshold;alertTimes
-     *
-     * Example:
-     * property_1;tenant_0;type_error;interface_api;75;50;1
-     *
-     * Where:
-     * - KEY: property_id;tenant_id;type;interface
-     * - errorCount: 75 (current error count)
-     * - threshold: 50 (threshold that was exceeded)
-     * - alertTimes: 1 (how many times threshold has been exceeded)
-     *
-     * OPTIMIZED: Uses Java Streams for cleaner parsing and pattern matching
-     */
-    @KafkaListener(topics = "eagle-eye.alerts", groupId = "alert-group")
-    public void listen(String alert) {
-        System.out.println("🚨 THRESHOLD ALERT 🚨: " + alert);
+    private static final Logger log = LoggerFactory.getLogger(AlertConsumer.class);
 
-        // OPTIMIZATION: Use Stream to parse alert with functional programming
-        String[] parts = alert.split(";");
+    private final AlertMetrics metrics;
+    private final NotificationDispatcher dispatcher;
 
-        // OPTIMIZATION: Use pattern matching and records (Java 16+)
-        if (parts.length >= 7) {
-            try {
-                AlertInfo alertInfo = new AlertInfo(
-                    parts[0], // propertyId
-                    parts[1], // tenantId
-                    parts[2], // type
-                    parts[3], // interface
-                    parts[4], // hash
-                    Long.parseLong(parts[5]), // errorCount
-                    Long.parseLong(parts[6]), // threshold
-                    Long.parseLong(parts[7])  // alertTimes
-                );
+    private final LongAdder received = new LongAdder();
+    private final LongAdder unparsable = new LongAdder();
+    private final LongAdder batches = new LongAdder();
 
-                // Print formatted alert
-                System.out.printf("""
-                       Property: %s | Tenant: %s
-                       Error Count: %d | Threshold: %d | Times Triggered: %d
-                       Hash: %s
-                    """,
-                    alertInfo.propertyId(),
-                    alertInfo.tenantId(),
-                    alertInfo.errorCount(),
-                    alertInfo.threshold(),
-                    alertInfo.alertTimes(),
-                    alertInfo.hash()
-                );
-
-                // TODO: Add your notification logic here using modern async patterns
-                // Examples:
-                // - CompletableFuture.runAsync(() -> emailService.sendAlert(alertInfo));
-                // - CompletableFuture.runAsync(() -> smsService.notifyOps(alertInfo));
-                // - slackService.postAlertAsync(alertInfo);
-                // - metricsService.recordAlertAsync(alertInfo);
+    public AlertConsumer(AlertMetrics metrics, NotificationDispatcher dispatcher) {
+        this.metrics = metrics;
+        this.dispatcher = dispatcher;
+    }
 
-            } catch (NumberFormatException e) {
-                System.err.println("ERROR parsing alert numbers: " + e.getMessage());
+    @KafkaListener(topics = AlertPublisher.ALERTS_TOPIC, groupId = "alert-group",
+                   containerFactory = AlertConsumerConfig.CONTAINER_FACTORY)
+    public void listen(List<ConsumerRecord<Long, AlertEvent>> records) {
+        batches.increment();
+        for (ConsumerRecord<Long, AlertEvent> record : records) {
+            AlertEvent alert = record.value();
+            if (alert == null) {
+                // Undecodable value (see AlertConsumerConfig)
+                unparsable.increment();
+                if (metrics.sampleEvent()) {
+                    log.warn("event=alert_unparsable partition={} offset={} sample_interval={}",
+                        record.partition(), record.offset(), metrics.eventSampleInterval());
+                }
+                continue;
             }
-        } else {
-            System.err.println("ERROR: Invalid alert format (expected 8 parts, got " + parts.length + ")");
+            if (alert.timestamp() == 0) {
+                // Legacy text alert - no timestamp of its own
+                alert = alert.withTimestamp(record.timestamp());
+            }
+            received.increment();
+            if (metrics.sampleEvent()) {
+                log.info("event=alert_received key={} error_count={} threshold={} alert_times={} suppressed={} "
+                        + "partition={} sample_interval={}",
+                    KeyHashes.toHex(alert.hash()), alert.errorCount(), alert.threshold(), alert.alertTimes(),
+                    alert.suppressed(), record.partition(), metrics.eventSampleInterval());
+            }
+            dispatcher.dispatch(alert);
         }
     }
 
-    /**
-     * Record for structured alert data (Java 16+)
-     * OPTIMIZATION: Records are immutable, compact, and have built-in equals/hashCode/toString
-     */
-    private record AlertInfo(
-        String propertyId,
-        String tenantId,
-        String type,
-        String interface_,
-        String hash,
-        long errorCount,
-        long threshold,
-        long alertTimes
-    ) {}
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("received", received.sum());
+        stats.put("unparsable", unparsable.sum());
+        stats.put("batches", batches.sum());
+        stats.put("sinks", dispatcher.stats());
+        return stats;
+    }
 }
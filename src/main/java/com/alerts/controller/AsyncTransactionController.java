@@ -0,0 +1,63 @@
+package com.alerts.controller;
+
+import com.alerts.admission.AdmissionControl;
+import com.alerts.controller.TransactionController.AlertRequest;
+import com.alerts.controller.TransactionController.ParsedAlert;
+import com.alerts.hashing.KeyHasher;
+import com.alerts.metrics.AlertMetrics;
+import com.alerts.service.AlertProcessingService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * AsyncTransactionController - /api/alert in async execution (alerts.http.execution=async)
+ *
+ * Returns a CompletionStage, so Spring MVC handles the request with Servlet
+ * async: Tomcat's thread is released until the threshold lookup (possibly
+ * on another instance) completes. Answers are the same as TransactionController's.
+ */
+@RestController
+@RequestMapping("/api")
+@ConditionalOnExpression("'${alerts.http.execution:platform}'.trim().equalsIgnoreCase('async')")
+public class AsyncTransactionController {
+
+    private final AlertProcessingService alertProcessingService;
+    private final KeyHasher keyHasher;
+    private final AlertMetrics metrics;
+    private final AdmissionControl admission;
+
+    public AsyncTransactionController(AlertProcessingService alertProcessingService, KeyHasher keyHasher,
+                                      AlertMetrics metrics, AdmissionControl admission) {
+        this.alertProcessingService = alertProcessingService;
+        this.keyHasher = keyHasher;
+        this.metrics = metrics;
+        this.admission = admission;
+    }
+
+    @PostMapping("/alert")
+    public CompletionStage<ResponseEntity<Map<String, Object>>> receiveAlert(@RequestBody AlertRequest request) {
+        AdmissionControl.Decision decision = admission.admit(request.getKey());
+        if (!decision.admitted()) {
+            return CompletableFuture.completedFuture(TransactionController.rejected(decision));
+        }
+        long admittedAt = System.nanoTime();
+        ParsedAlert alert = ParsedAlert.of(request, keyHasher, metrics);
+        CompletionStage<ResponseEntity<Map<String, Object>>> response;
+        if (alert.error() != null) {
+            response = CompletableFuture.completedFuture(alert.error());
+        } else {
+            response = alertProcessingService.processAlertAsync(alert.hash(), request.getKey(), alert.errorCount())
+                .thenApply(result -> TransactionController.toResponse(request.getKey(), alert.errorCount(), result))
+                .exceptionally(e -> TransactionController.internalError());
+        }
+        return response.whenComplete((answer, e) -> admission.complete(admittedAt));
+    }
+}
@@ -0,0 +1,311 @@
+package com.alerts.controller;
+
+import com.alerts.service.BatchAlertService;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonLocation;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+
+/**
+ * BatchAlertController - Bulk ingest of error counts
+ *
+ * POST /api/alerts/batch accepts either
+ * - application/json:     [{"key":"...","errorCount":"75"}, ...]
+ * - application/x-ndjson: one {"key":"...","errorCount":75} object per line
+ *
+ * The body is stream-parsed chunk by chunk (never materialized as a whole),
+ * each chunk is evaluated in parallel by BatchAlertService, and results are
+ * streamed back in input order as they complete:
+ * - JSON input:   {"results":[...],"summary":{...}}
+ * - NDJSON input: one result object per line, then a {"summary":{...}} line
+ *
+ * Malformed input found before any result was sent is rejected with 400
+ * and the byte offset of the error; later, the results sent so far stand and
+ * the summary carries the error and its offset. Entries of a chunk whose
+ * evaluation was interrupted are reported as not_processed.
+ *
+ * Every entry counts against its tenant's rate (AdmissionControl); entries
+ * over it are reported as rejected with the tenant and retryAfterMs, and the
+ * rest of the batch is still evaluated.
+ */
+@RestController
+@RequestMapping("/api/alerts")
+public class BatchAlertController {
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final BatchAlertService batchAlertService;
+    private final JsonFactory jsonFactory;
+
+    public BatchAlertController(BatchAlertService batchAlertService, ObjectMapper objectMapper) {
+        this.batchAlertService = batchAlertService;
+        this.jsonFactory = objectMapper.getFactory();
+    }
+
+    @PostMapping(value = "/batch", consumes = {MediaType.APPLICATION_JSON_VALUE, NDJSON})
+    public void receiveBatch(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        boolean ndjson = request.getContentType() != null && request.getContentType().startsWith(NDJSON);
+        long startNanos = System.nanoTime();
+        Summary summary = new Summary();
+
+        try (JsonParser parser = jsonFactory.createParser(request.getInputStream())) {
+            try {
+                JsonToken first = parser.nextToken();
+                boolean array = first == JsonToken.START_ARRAY;
+                if (!ndjson && !array && first != null) {
+                    badRequest(response, "Expected a JSON array of alerts", -1);
+                    return;
+                }
+                if (array) {
+                    parser.nextToken();
+                }
+            } catch (JsonProcessingException e) {
+                badRequest(response, "Malformed input: " + e.getOriginalMessage(), offsetOf(e));
+                return;
+            }
+
+            // Created once the first chunk parsed, so a malformed start can still be a 400
+            JsonGenerator out = null;
+            BatchAlertService.Entry[] chunk = batchAlertService.newChunk();
+            String failure = null;
+            long failureOffset = -1;
+            while (failure == null) {
+                int count = 0;
+                try {
+                    while (count < chunk.length && parser.currentToken() != null
+                            && parser.currentToken() != JsonToken.END_ARRAY) {
+                        readEntry(parser, chunk[count]);
+                        count++;
+                        parser.nextToken();
+                    }
+                } catch (JsonProcessingException e) {
+                    if (out == null) {
+                        badRequest(response, "Malformed input after " + count + " entries: "
+                            + e.getOriginalMessage(), offsetOf(e));
+                        return;
+                    }
+                    failure = "Malformed input after " + (summary.total + count) + " entries: " + e.getOriginalMessage();
+                    failureOffset = offsetOf(e);
+                }
+                if (count == 0) {
+                    break;
+                }
+                if (out == null) {
+                    out = startResults(response, ndjson);
+                }
+                try {
+                    batchAlertService.evaluate(chunk, count);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    failure = "Interrupted";
+                } catch (IllegalStateException e) {
+                    failure = e.getMessage() + ": " + e.getCause();
+                }
+                for (int i = 0; i < count; i++) {
+                    writeResult(out, chunk[i], summary, ndjson);
+                }
+                // Hand completed results to the client before parsing the next chunk
+                out.flush();
+            }
+            if (out == null) {
+                out = startResults(response, ndjson);
+            }
+
+            if (!ndjson) {
+                out.writeEndArray();
+                writeSummary(out, summary, failure, failureOffset, startNanos);
+                out.writeEndObject();
+            } else {
+                out.writeStartObject();
+                writeSummary(out, summary, failure, failureOffset, startNanos);
+                out.writeEndObject();
+                out.writeRaw('\n');
+            }
+            out.close();
+        }
+    }
+
+    private JsonGenerator startResults(HttpServletResponse response, boolean ndjson) throws IOException {
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(ndjson ? NDJSON : MediaType.APPLICATION_JSON_VALUE);
+        JsonGenerator out = jsonFactory.createGenerator(response.getOutputStream(), JsonEncoding.UTF8);
+        if (ndjson) {
+            out.setRootValueSeparator(null);
+        } else {
+            out.writeStartObject();
+            out.writeArrayFieldStart("results");
+        }
+        return out;
+    }
+
+    private void badRequest(HttpServletResponse response, String message, long offset) throws IOException {
+        response.setStatus(HttpStatus.BAD_REQUEST.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        try (JsonGenerator out = jsonFactory.createGenerator(response.getOutputStream(), JsonEncoding.UTF8)) {
+            out.writeStartObject();
+            out.writeStringField("status", "error");
+            out.writeStringField("message", message);
+            if (offset >= 0) {
+                out.writeNumberField("offset", offset);
+            }
+            out.writeEndObject();
+        }
+    }
+
+    /**
+     * Byte offset of a parse error in the request body, -1 if unknown.
+     */
+    private static long offsetOf(JsonProcessingException e) {
+        JsonLocation location = e.getLocation();
+        if (location == null) {
+            return -1;
+        }
+        return location.getByteOffset() >= 0 ? location.getByteOffset() : location.getCharOffset();
+    }
+
+    /**
+     * Read one {"key":..., "errorCount":...} object; the parser is positioned on
+     * its START_OBJECT and is left on its END_OBJECT. Invalid entries are
+     * marked with an error instead of failing the whole batch.
+     */
+    private void readEntry(JsonParser parser, BatchAlertService.Entry entry) throws IOException {
+        entry.reset();
+        if (parser.currentToken() != JsonToken.START_OBJECT) {
+            entry.error = "Expected an object";
+            parser.skipChildren();
+            return;
+        }
+        boolean hasCount = false;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("key".equals(field) && value == JsonToken.VALUE_STRING) {
+                entry.key = parser.getText();
+            } else if ("errorCount".equals(field)) {
+                if (value == JsonToken.VALUE_NUMBER_INT) {
+                    entry.errorCount = parser.getLongValue();
+                    hasCount = true;
+                } else if (value == JsonToken.VALUE_STRING) {
+                    try {
+                        entry.errorCount = Long.parseLong(parser.getText().trim());
+                        hasCount = true;
+                    } catch (NumberFormatException e) {
+                        entry.error = "Invalid errorCount";
+                    }
+                } else {
+                    entry.error = "Invalid errorCount";
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (entry.error == null && (entry.key == null || entry.key.isEmpty())) {
+            entry.error = "Missing key";
+        } else if (entry.error == null && !hasCount) {
+            entry.error = "Missing errorCount";
+        }
+    }
+
+    private void writeResult(JsonGenerator out, BatchAlertService.Entry entry, Summary summary, boolean ndjson)
+            throws IOException {
+        summary.total++;
+        out.writeStartObject();
+        if (entry.key != null) {
+            out.writeStringField("key", entry.key);
+        }
+        if (entry.error != null) {
+            summary.invalid++;
+            out.writeStringField("status", "invalid");
+            out.writeStringField("message", entry.error);
+        } else if (entry.rejectedReason != null) {
+            summary.rejected++;
+            out.writeStringField("status", "rejected");
+            out.writeStringField("reason", entry.rejectedReason);
+            if (entry.tenant != null) {
+                out.writeStringField("tenant", entry.tenant);
+            }
+            out.writeNumberField("retryAfterMs", entry.retryAfterMillis);
+        } else if ("threshold_breached".equals(entry.reason)) {
+            summary.breached++;
+            out.writeStringField("status", "alert_triggered");
+            out.writeNumberField("errorCount", entry.errorCount);
+            out.writeNumberField("threshold", entry.threshold);
+            out.writeNumberField("alertTimes", entry.alertTimes);
+            if (entry.suppressed) {
+                out.writeBooleanField("suppressed", true);
+            }
+        } else if ("below_threshold".equals(entry.reason)) {
+            summary.below++;
+            out.writeStringField("status", "below_threshold");
+            out.writeNumberField("errorCount", entry.errorCount);
+            out.writeNumberField("threshold", entry.threshold);
+        } else if ("queued".equals(entry.reason)) {
+            summary.queued++;
+            out.writeStringField("status", "queued");
+            out.writeNumberField("errorCount", entry.errorCount);
+        } else if (entry.reason == null) {
+            summary.notProcessed++;
+            out.writeStringField("status", "not_processed");
+            out.writeNumberField("errorCount", entry.errorCount);
+        } else {
+            summary.noThreshold++;
+            out.writeStringField("status", "no_threshold");
+            out.writeNumberField("errorCount", entry.errorCount);
+        }
+        out.writeEndObject();
+        if (ndjson) {
+            out.writeRaw('\n');
+        }
+    }
+
+    private void writeSummary(JsonGenerator out, Summary summary, String failure, long failureOffset, long startNanos)
+            throws IOException {
+        out.writeObjectFieldStart("summary");
+        out.writeNumberField("total", summary.total);
+        out.writeNumberField("breached", summary.breached);
+        out.writeNumberField("below", summary.below);
+        out.writeNumberField("noThreshold", summary.noThreshold);
+        out.writeNumberField("invalid", summary.invalid);
+        if (summary.queued > 0) {
+            out.writeNumberField("queued", summary.queued);
+        }
+        if (summary.rejected > 0) {
+            out.writeNumberField("rejected", summary.rejected);
+        }
+        if (summary.notProcessed > 0) {
+            out.writeNumberField("notProcessed", summary.notProcessed);
+        }
+        out.writeNumberField("elapsedMs", (System.nanoTime() - startNanos) / 1_000_000);
+        if (failure != null) {
+            out.writeStringField("error", failure);
+            if (failureOffset >= 0) {
+                out.writeNumberField("offset", failureOffset);
+            }
+        }
+        out.writeEndObject();
+    }
+
+    private static class Summary {
+        long total;
+        long breached;
+        long below;
+        long noThreshold;
+        long invalid;
+        long queued;
+        long rejected;
+        long notProcessed;
+    }
+}
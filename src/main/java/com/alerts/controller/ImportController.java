@@ -0,0 +1,82 @@
+package com.alerts.controller;
+
+import com.alerts.importer.BulkThresholdImporter;
+import com.alerts.importer.ImportFormat;
+import com.alerts.importer.ImportJob;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ImportController - Starts and monitors bulk threshold imports
+ *
+ * POST /api/import {"path":"thresholds.csv","format":"CSV","diff":true,"resume":true}
+ *   starts an import of a file in alerts.import.directory on this instance
+ *   (202), 400 for paths outside it, or 409 if one is already running.
+ *   format defaults to the file extension.
+ * GET /api/import returns the progress of the current / last import.
+ */
+@RestController
+@RequestMapping("/api/import")
+public class ImportController {
+
+    private final BulkThresholdImporter importer;
+
+    public ImportController(BulkThresholdImporter importer) {
+        this.importer = importer;
+    }
+
+    public static class ImportRequest {
+        private String path;
+        private String format;
+        private Boolean diff;
+        private Boolean resume;
+
+        public String getPath() { return path; }
+        public void setPath(String path) { this.path = path; }
+        public String getFormat() { return format; }
+        public void setFormat(String format) { this.format = format; }
+        public Boolean getDiff() { return diff; }
+        public void setDiff(Boolean diff) { this.diff = diff; }
+        public Boolean getResume() { return resume; }
+        public void setResume(Boolean resume) { this.resume = resume; }
+    }
+
+    @PostMapping
+    public ResponseEntity<Map<String, Object>> startImport(@RequestBody ImportRequest request) {
+        if (request.getPath() == null || request.getPath().isBlank()) {
+            return error(HttpStatus.BAD_REQUEST, "path is required");
+        }
+        try {
+            ImportFormat format = request.getFormat() == null ? null : ImportFormat.valueOf(request.getFormat().toUpperCase());
+            ImportJob job = importer.start(request.getPath(), format,
+                !Boolean.FALSE.equals(request.getDiff()), !Boolean.FALSE.equals(request.getResume()));
+            return ResponseEntity.accepted().body(job.stats());
+        } catch (IllegalStateException e) {
+            return error(HttpStatus.CONFLICT, e.getMessage());
+        } catch (IllegalArgumentException e) {
+            return error(HttpStatus.BAD_REQUEST, e.getMessage());
+        }
+    }
+
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> status() {
+        ImportJob job = importer.currentJob();
+        if (job == null) {
+            Map<String, Object> response = new LinkedHashMap<>();
+            response.put("state", "IDLE");
+            return ResponseEntity.ok(response);
+        }
+        return ResponseEntity.ok(job.stats());
+    }
+
+    private static ResponseEntity<Map<String, Object>> error(HttpStatus status, String message) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("status", "error");
+        error.put("message", message);
+        return ResponseEntity.status(status).body(error);
+    }
+}
@@ -0,0 +1,104 @@
+package com.alerts.controller;
+
+import com.alerts.hashing.KeyHashes;
+import com.alerts.index.TenantIndexService;
+import com.alerts.model.ThresholdRecord;
+import com.alerts.routing.ThresholdRouter;
+import org.apache.kafka.streams.errors.InvalidStateStoreException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * InternalThresholdController - Instance-to-instance threshold lookups
+ *
+ * Called by ThresholdRouter on the instance that hosts a key's config-store
+ * partition. Answers from the local store only and returns the binary
+ * ThresholdRecord: 200 with the record, 404 if the key has no threshold,
+ * 503 if this instance does not (or no longer) host the partition.
+ *
+ * /internal/tenant-index answers TenantIndexService's scatter-gather with the
+ * entries of this instance's active partitions only, as {"items":[...]}.
+ *
+ * Neither endpoint is authenticated: they serve any key's threshold and any
+ * tenant's keys to whoever can reach the port. They are meant for the
+ * instances' own network only - keep /internal/** off load balancers and
+ * ingress, and restrict the port to the other instances where that network
+ * is shared.
+ */
+@RestController
+@RequestMapping("/internal")
+public class InternalThresholdController {
+
+    private final ThresholdRouter thresholdRouter;
+    private final TenantIndexService tenantIndex;
+
+    public InternalThresholdController(ThresholdRouter thresholdRouter, TenantIndexService tenantIndex) {
+        this.thresholdRouter = thresholdRouter;
+        this.tenantIndex = tenantIndex;
+    }
+
+    @GetMapping(value = "/thresholds/{hash}", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> threshold(@PathVariable String hash,
+                                            @RequestParam(defaultValue = "false") boolean stale) {
+        long key;
+        try {
+            key = KeyHashes.parseHex(hash.getBytes(StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            ThresholdRecord record = thresholdRouter.lookupLocal(key, stale);
+            if (record == null) {
+                return ResponseEntity.notFound().build();
+            }
+            return ResponseEntity.ok(record.toByteArray());
+        } catch (InvalidStateStoreException | IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    @GetMapping("/tenant-index/{tenant}")
+    public ResponseEntity<Map<String, Object>> tenantPage(@PathVariable String tenant,
+                                                          @RequestParam(required = false) String property,
+                                                          @RequestParam(required = false) String after,
+                                                          @RequestParam(defaultValue = "100") int limit) {
+        if (!tenantIndex.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            return items(tenantIndex.localPage(tenant, property, after,
+                Math.min(Math.max(1, limit), tenantIndex.maxPageSize())));
+        } catch (InvalidStateStoreException | IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    @GetMapping("/tenant-index/{tenant}/top")
+    public ResponseEntity<Map<String, Object>> tenantTop(@PathVariable String tenant,
+                                                         @RequestParam(required = false) String property,
+                                                         @RequestParam(defaultValue = "10") int limit) {
+        if (!tenantIndex.isEnabled()) {
+            return ResponseEntity.notFound().build();
+        }
+        try {
+            return items(tenantIndex.localTop(tenant, property,
+                Math.min(Math.max(1, limit), tenantIndex.maxPageSize())));
+        } catch (InvalidStateStoreException | IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    private static ResponseEntity<Map<String, Object>> items(List<TenantIndexService.Entry> entries) {
+        return ResponseEntity.ok(Map.of("items", entries.stream().map(TenantIndexService.Entry::toMap).toList()));
+    }
+}
@@ -0,0 +1,58 @@
+package com.alerts.controller;
+
+import com.alerts.admission.AdmissionControl;
+import com.alerts.consumer.AlertConsumer;
+import com.alerts.index.TenantIndexService;
+import com.alerts.ingest.IngestServer;
+import com.alerts.service.AlertProcessingService;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * StatsController - Runtime counters of the request-path components
+ */
+@RestController
+@RequestMapping("/api")
+public class StatsController {
+
+    private final AlertProcessingService alertProcessingService;
+    private final IngestServer ingestServer;
+    private final AlertConsumer alertConsumer;
+    private final AdmissionControl admission;
+    private final TenantIndexService tenantIndex;
+
+    public StatsController(AlertProcessingService alertProcessingService, IngestServer ingestServer,
+                           AlertConsumer alertConsumer, AdmissionControl admission,
+                           TenantIndexService tenantIndex) {
+        this.alertProcessingService = alertProcessingService;
+        this.ingestServer = ingestServer;
+        this.alertConsumer = alertConsumer;
+        this.admission = admission;
+        this.tenantIndex = tenantIndex;
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<Map<String, Object>> stats() {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("readiness", alertProcessingService.readinessStats());
+        response.put("admission", admission.stats());
+        response.put("bloomFilter", alertProcessingService.bloomFilterStats());
+        response.put("nearCache", alertProcessingService.nearCacheStats());
+        response.put("hierarchy", alertProcessingService.hierarchyStats());
+        response.put("dynamicThresholds", alertProcessingService.dynamicThresholdStats());
+        response.put("windows", alertProcessingService.windowStats());
+        response.put("routing", alertProcessingService.routingStats());
+        response.put("tenantIndex", tenantIndex.stats());
+        response.put("alertCounters", alertProcessingService.alertCounterStats());
+        response.put("publisher", alertProcessingService.publisherStats());
+        response.put("suppression", alertProcessingService.suppressionStats());
+        response.put("ingest", ingestServer.stats());
+        response.put("notifications", alertConsumer.stats());
+        return ResponseEntity.ok(response);
+    }
+}
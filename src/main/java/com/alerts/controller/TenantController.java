@@ -0,0 +1,134 @@
+package com.alerts.controller;
+
+import com.alerts.index.TenantIndexService;
+import org.apache.kafka.streams.errors.InvalidStateStoreException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongUnaryOperator;
+import java.util.function.Supplier;
+
+/**
+ * TenantController - Tenant-scoped threshold queries and updates (alerts.index.enabled)
+ *
+ * GET  /api/tenants/{tenant}/thresholds?property=&limit=100&after=
+ *   one page of the tenant's thresholds in key order; pass next as after to
+ *   get the following page (next is null on the last one).
+ * POST /api/tenants/{tenant}/thresholds/bulk {"property":"property_7","scale":1.5,"dryRun":true}
+ *   changes the threshold of every matching key: exactly one of set, scale
+ *   or add. dryRun reports what would change without sending anything.
+ * GET  /api/tenants/{tenant}/top-breaching?property=&limit=10
+ *   keys with the most alerts (alertTimes).
+ *
+ * Answers are marked partial when an instance hosting part of the index did
+ * not respond. 404 while the index is disabled, 503 while Kafka Streams is
+ * not running or rebalancing.
+ */
+@RestController
+@RequestMapping("/api/tenants")
+public class TenantController {
+
+    private final TenantIndexService tenantIndex;
+
+    public TenantController(TenantIndexService tenantIndex) {
+        this.tenantIndex = tenantIndex;
+    }
+
+    public static class BulkUpdateRequest {
+        private String property;
+        private Long set;
+        private Double scale;
+        private Long add;
+        private Boolean dryRun;
+
+        public String getProperty() { return property; }
+        public void setProperty(String property) { this.property = property; }
+        public Long getSet() { return set; }
+        public void setSet(Long set) { this.set = set; }
+        public Double getScale() { return scale; }
+        public void setScale(Double scale) { this.scale = scale; }
+        public Long getAdd() { return add; }
+        public void setAdd(Long add) { this.add = add; }
+        public Boolean getDryRun() { return dryRun; }
+        public void setDryRun(Boolean dryRun) { this.dryRun = dryRun; }
+    }
+
+    @GetMapping("/{tenant}/thresholds")
+    public ResponseEntity<Map<String, Object>> thresholds(@PathVariable String tenant,
+                                                          @RequestParam(required = false) String property,
+                                                          @RequestParam(defaultValue = "100") int limit,
+                                                          @RequestParam(required = false) String after) {
+        return query(() -> {
+            TenantIndexService.Result result = tenantIndex.page(tenant, property, after, limit);
+            Map<String, Object> response = response(tenant, property, result);
+            response.put("next", result.next);
+            return response;
+        });
+    }
+
+    @GetMapping("/{tenant}/top-breaching")
+    public ResponseEntity<Map<String, Object>> topBreaching(@PathVariable String tenant,
+                                                            @RequestParam(required = false) String property,
+                                                            @RequestParam(defaultValue = "10") int limit) {
+        return query(() -> response(tenant, property, tenantIndex.topBreaching(tenant, property, limit)));
+    }
+
+    @PostMapping("/{tenant}/thresholds/bulk")
+    public ResponseEntity<Map<String, Object>> bulkUpdate(@PathVariable String tenant,
+                                                          @RequestBody BulkUpdateRequest request) {
+        int operations = (request.getSet() != null ? 1 : 0) + (request.getScale() != null ? 1 : 0)
+            + (request.getAdd() != null ? 1 : 0);
+        if (operations != 1) {
+            return error(HttpStatus.BAD_REQUEST, "Exactly one of set, scale or add is required");
+        }
+        if ((request.getSet() != null && request.getSet() < 0)
+                || (request.getScale() != null && !(request.getScale() >= 0))) {
+            return error(HttpStatus.BAD_REQUEST, "set and scale must not be negative");
+        }
+        LongUnaryOperator update;
+        if (request.getSet() != null) {
+            long value = request.getSet();
+            update = threshold -> value;
+        } else if (request.getScale() != null) {
+            double factor = request.getScale();
+            update = threshold -> Math.round(threshold * factor);
+        } else {
+            long delta = request.getAdd();
+            update = threshold -> threshold + delta;
+        }
+        boolean dryRun = Boolean.TRUE.equals(request.getDryRun());
+        return query(() -> tenantIndex.bulkUpdate(tenant, request.getProperty(), update, dryRun));
+    }
+
+    private ResponseEntity<Map<String, Object>> query(Supplier<Map<String, Object>> query) {
+        if (!tenantIndex.isEnabled()) {
+            return error(HttpStatus.NOT_FOUND, "Tenant index is disabled (alerts.index.enabled=false)");
+        }
+        try {
+            return ResponseEntity.ok(query.get());
+        } catch (InvalidStateStoreException | IllegalStateException e) {
+            return error(HttpStatus.SERVICE_UNAVAILABLE, e.getMessage());
+        }
+    }
+
+    private static Map<String, Object> response(String tenant, String property, TenantIndexService.Result result) {
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("tenant", tenant);
+        response.put("property", property);
+        response.put("count", result.entries.size());
+        response.put("items", result.entries.stream().map(TenantIndexService.Entry::toMap).toList());
+        response.put("partial", result.partial());
+        response.put("unavailableHosts", result.unavailableHosts);
+        return response;
+    }
+
+    private static ResponseEntity<Map<String, Object>> error(HttpStatus status, String message) {
+        Map<String, Object> error = new LinkedHashMap<>();
+        error.put("status", "error");
+        error.put("message", message);
+        return ResponseEntity.status(status).body(error);
+    }
+}
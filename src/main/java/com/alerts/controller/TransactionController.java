@@ -1,7 +1,11 @@
 package com.alerts.controller;
 
-import com.alerts.model.PropertyThreshold;
+import com.alerts.admission.AdmissionControl;
+import com.alerts.hashing.KeyHasher;
+import com.alerts.metrics.AlertMetrics;
 import com.alerts.service.AlertProcessingService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -9,14 +13,33 @@ import org.springframework.web.bind.annotation.*;
 import java.util.HashMap;
 import java.util.Map;
 
+/**
+ * TransactionController - /api/alert in platform and virtual execution
+ *
+ * The request is evaluated on the thread that received it. In async
+ * execution AsyncTransactionController serves /api/alert instead; the two
+ * share the parsing and the responses below, so clients cannot tell them apart.
+ *
+ * Requests over their tenant's rate are answered 429 and, while the
+ * service is overloaded, any request 503; both carry Retry-After
+ * (AdmissionControl).
+ */
 @RestController
 @RequestMapping("/api")
+@ConditionalOnExpression("!'${alerts.http.execution:platform}'.trim().equalsIgnoreCase('async')")
 public class TransactionController {
 
     private final AlertProcessingService alertProcessingService;
+    private final KeyHasher keyHasher;
+    private final AlertMetrics metrics;
+    private final AdmissionControl admission;
 
-    public TransactionController(AlertProcessingService alertProcessingService) {
+    public TransactionController(AlertProcessingService alertProcessingService, KeyHasher keyHasher,
+                                 AlertMetrics metrics, AdmissionControl admission) {
         this.alertProcessingService = alertProcessingService;
+        this.keyHasher = keyHasher;
+        this.metrics = metrics;
+        this.admission = admission;
     }
 
     public static class AlertRequest {
@@ -29,49 +52,100 @@ public class TransactionController {
         public void setErrorCount(String errorCount) { this.errorCount = errorCount; }
     }
 
+    /**
+     * Hashed key and errorCount of a request, or the answer to a malformed one.
+     */
+    record ParsedAlert(long hash, long errorCount, ResponseEntity<Map<String, Object>> error) {
+
+        static ParsedAlert of(AlertRequest request, KeyHasher keyHasher, AlertMetrics metrics) {
+            try {
+                long start = metrics.start();
+                long hash = keyHasher.hash(request.getKey());
+                metrics.stop(AlertMetrics.Stage.HASH, start);
+                return new ParsedAlert(hash, Long.parseLong(request.getErrorCount()), null);
+            } catch (NumberFormatException e) {
+                Map<String, Object> error = new HashMap<>();
+                error.put("status", "error");
+                error.put("message", "Invalid errorCount: " + request.getErrorCount());
+                return new ParsedAlert(0, 0, ResponseEntity.badRequest().body(error));
+            } catch (Exception e) {
+                return new ParsedAlert(0, 0, internalError());
+            }
+        }
+    }
+
     @PostMapping("/alert")
     public ResponseEntity<Map<String, Object>> receiveAlert(@RequestBody AlertRequest request) {
+        AdmissionControl.Decision decision = admission.admit(request.getKey());
+        if (!decision.admitted()) {
+            return rejected(decision);
+        }
+        long admittedAt = System.nanoTime();
         try {
-            String hash = PropertyThreshold.generateHashFromCompositeKey(request.getKey());
-            long errorCount = Long.parseLong(request.getErrorCount());
+            ParsedAlert alert = ParsedAlert.of(request, keyHasher, metrics);
+            if (alert.error() != null) {
+                return alert.error();
+            }
+            return toResponse(request.getKey(), alert.errorCount(),
+                alertProcessingService.processAlert(alert.hash(), request.getKey(), alert.errorCount()));
+        } catch (Exception e) {
+            return internalError();
+        } finally {
+            admission.complete(admittedAt);
+        }
+    }
 
-            AlertProcessingService.AlertResult result = alertProcessingService.processAlert(hash, errorCount);
+    static ResponseEntity<Map<String, Object>> rejected(AdmissionControl.Decision decision) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("status", "rejected");
+        response.put("reason", decision.reason());
+        if (decision.tenant() != null) {
+            response.put("tenant", decision.tenant());
+        }
+        response.put("retryAfterMs", decision.retryAfterMillis());
+        HttpStatus status = decision.tenant() != null ? HttpStatus.TOO_MANY_REQUESTS : HttpStatus.SERVICE_UNAVAILABLE;
+        return ResponseEntity.status(status)
+            .header(HttpHeaders.RETRY_AFTER, Long.toString(decision.retryAfterSeconds()))
+            .body(response);
+    }
 
-            Map<String, Object> response = new HashMap<>();
+    static ResponseEntity<Map<String, Object>> toResponse(String key, long errorCount,
+                                                                  AlertProcessingService.AlertResult result) {
+        Map<String, Object> response = new HashMap<>();
 
-            if ("threshold_breached".equals(result.getReason())) {
-                response.put("status", "alert_triggered");
-                response.put("key", request.getKey());
-                response.put("errorCount", errorCount);
-                response.put("threshold", result.getThreshold());
-                response.put("alertTimes", result.getAlertTimes());
-                return ResponseEntity.ok(response);
-            } else if ("below_threshold".equals(result.getReason())) {
-                response.put("status", "below_threshold");
-                response.put("key", request.getKey());
-                response.put("errorCount", errorCount);
-                response.put("threshold", result.getThreshold());
-                return ResponseEntity.ok(response);
-            } else {
-                response.put("status", "no_threshold");
-                response.put("key", request.getKey());
-                response.put("errorCount", errorCount);
-                return ResponseEntity.ok(response);
+        if ("threshold_breached".equals(result.getReason())) {
+            response.put("status", "alert_triggered");
+            response.put("key", key);
+            response.put("errorCount", errorCount);
+            response.put("threshold", result.getThreshold());
+            response.put("alertTimes", result.getAlertTimes());
+            if (result.isSuppressed()) {
+                response.put("suppressed", true);
             }
-        } catch (Exception e) {
-            Map<String, Object> error = new HashMap<>();
-            error.put("status", "error");
-            error.put("message", "Internal server error");
-            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
+            return ResponseEntity.ok(response);
+        } else if ("below_threshold".equals(result.getReason())) {
+            response.put("status", "below_threshold");
+            response.put("key", key);
+            response.put("errorCount", errorCount);
+            response.put("threshold", result.getThreshold());
+            return ResponseEntity.ok(response);
+        } else if ("queued".equals(result.getReason())) {
+            response.put("status", "queued");
+            response.put("key", key);
+            response.put("errorCount", errorCount);
+            return ResponseEntity.accepted().body(response);
+        } else {
+            response.put("status", "no_threshold");
+            response.put("key", key);
+            response.put("errorCount", errorCount);
+            return ResponseEntity.ok(response);
         }
     }
 
-    @PostMapping("/test-mode")
-    public ResponseEntity<Map<String, Object>> enableTestMode() {
-        alertProcessingService.enableTestMode();
-        Map<String, Object> response = new HashMap<>();
-        response.put("status", "success");
-        response.put("message", "Test mode enabled with 100 thresholds");
-        return ResponseEntity.ok(response);
+    static ResponseEntity<Map<String, Object>> internalError() {
+        Map<String, Object> error = new HashMap<>();
+        error.put("status", "error");
+        error.put("message", "Internal server error");
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(error);
     }
 }
@@ -0,0 +1,242 @@
+package com.alerts.counter;
+
+import com.alerts.hashing.KeyHashes;
+import com.alerts.metrics.AlertMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AlertCounterService - In-process alertTimes counters with coalesced flush
+ *
+ * Each key gets a cell with a striped LongAdder, so concurrent breaches on the
+ * same key never lose increments and never contend on a single CAS. The count
+ * returned to callers is base (alertTimes in config-store when the cell was
+ * created) + all increments seen by this instance.
+ *
+ * Instead of writing a whole new record to eagle-eye.config per breach, dirty
+ * cells are flushed as one delta per key to eagle-eye.alert-counts every
+ * alerts.counters.flush-interval-ms, or earlier once
+ * alerts.counters.flush-max-keys keys are pending. AlertStreamProcessor adds
+ * the deltas into config-store, so counts survive restarts via its changelog.
+ *
+ * Keys evaluated against an inherited default (ThresholdHierarchy) have no
+ * config-store record for a delta to land in; their breaches are counted in
+ * this instance only (incrementInherited) and never flushed.
+ */
+@Service
+public class AlertCounterService {
+
+    private static final Logger log = LoggerFactory.getLogger(AlertCounterService.class);
+
+    public static final String COUNTS_TOPIC = "eagle-eye.alert-counts";
+
+    private static final VarHandle DIRTY;
+
+    static {
+        try {
+            DIRTY = MethodHandles.lookup().findVarHandle(Cell.class, "dirty", boolean.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private static final class Cell {
+        final long hash;
+        final long base;
+        final LongAdder total = new LongAdder();
+        // False while the key only breached inherited (default) thresholds
+        volatile boolean persistent;
+        // Written by the flush thread only
+        long flushed;
+        volatile boolean dirty;
+        volatile long lastTouchedMillis;
+
+        Cell(long hash, long base) {
+            this.hash = hash;
+            this.base = base;
+        }
+    }
+
+    private final KafkaTemplate<Long, Long> kafkaTemplate;
+    private final AlertMetrics metrics;
+    private final int flushMaxKeys;
+    private final long idleEvictMillis;
+
+    private final ConcurrentHashMap<Long, Cell> cells = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Cell> dirtyCells = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger dirtyCount = new AtomicInteger();
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+    private final ScheduledExecutorService flusher;
+
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder deltasSent = new LongAdder();
+    private final LongAdder sendFailures = new LongAdder();
+
+    public AlertCounterService(KafkaTemplate<Long, Long> kafkaTemplate,
+                               AlertMetrics metrics,
+                               @Value("${alerts.counters.flush-interval-ms:1000}") long flushIntervalMillis,
+                               @Value("${alerts.counters.flush-max-keys:5000}") int flushMaxKeys,
+                               @Value("${alerts.counters.idle-evict-ms:300000}") long idleEvictMillis) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.metrics = metrics;
+        this.flushMaxKeys = flushMaxKeys;
+        this.idleEvictMillis = idleEvictMillis;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "alert-counter-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        flusher.scheduleWithFixedDelay(this::scheduledFlush, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Count one breach for a key.
+     *
+     * @param persistedAlertTimes alertTimes currently in config-store; only used
+     *                            when this instance has no cell for the key yet
+     * @return alertTimes including this breach
+     */
+    public long increment(long hash, long persistedAlertTimes) {
+        Cell cell = cells.get(hash);
+        if (cell == null) {
+            cell = cells.computeIfAbsent(hash, k -> new Cell(k, persistedAlertTimes));
+        }
+        if (!cell.persistent) {
+            // Earlier inherited breaches are included in the first delta
+            cell.persistent = true;
+        }
+        return count(cell);
+    }
+
+    /**
+     * Count one breach for a key that inherits its threshold; kept in this
+     * instance only.
+     *
+     * @return breaches of the key seen by this instance, including this one
+     */
+    public long incrementInherited(long hash) {
+        Cell cell = cells.get(hash);
+        if (cell == null) {
+            cell = cells.computeIfAbsent(hash, k -> new Cell(k, 0));
+        }
+        return count(cell);
+    }
+
+    private long count(Cell cell) {
+        cell.total.increment();
+        cell.lastTouchedMillis = System.currentTimeMillis();
+        if (cell.persistent && !cell.dirty && DIRTY.compareAndSet(cell, false, true)) {
+            dirtyCells.add(cell);
+            if (dirtyCount.incrementAndGet() >= flushMaxKeys && flushRequested.compareAndSet(false, true)
+                    && !flusher.isShutdown()) {
+                flusher.execute(this::flush);
+            }
+        }
+        return cell.base + cell.total.sum();
+    }
+
+    /**
+     * Current count for a key as seen by this instance, or -1 if it has no cell.
+     */
+    public long current(long hash) {
+        Cell cell = cells.get(hash);
+        return cell == null ? -1 : cell.base + cell.total.sum();
+    }
+
+    private void scheduledFlush() {
+        try {
+            flush();
+            evictIdle();
+        } catch (Exception e) {
+            log.error("❌ Alert counter flush failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Send one coalesced delta per dirty key.
+     */
+    synchronized void flush() {
+        flushRequested.set(false);
+        int sent = 0;
+        Cell cell;
+        while ((cell = dirtyCells.poll()) != null) {
+            dirtyCount.decrementAndGet();
+            // Clear before reading the sum: an increment racing with this flush
+            // either lands in this sum or re-marks the cell for the next flush
+            cell.dirty = false;
+            long total = cell.total.sum();
+            long delta = total - cell.flushed;
+            if (delta <= 0) {
+                continue;
+            }
+            cell.flushed = total;
+            sent++;
+            long hash = cell.hash;
+            kafkaTemplate.send(COUNTS_TOPIC, hash, delta).whenComplete((result, ex) -> {
+                if (ex != null) {
+                    sendFailures.increment();
+                    if (metrics.sampleEvent()) {
+                        log.warn("event=counter_flush_failed key={} delta={} error=\"{}\" sample_interval={}",
+                            KeyHashes.toHex(hash), delta, ex.getMessage(), metrics.eventSampleInterval());
+                    }
+                }
+            });
+        }
+        if (sent > 0) {
+            flushes.increment();
+            deltasSent.add(sent);
+        }
+    }
+
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleEvictMillis;
+        for (Iterator<Cell> it = cells.values().iterator(); it.hasNext(); ) {
+            Cell cell = it.next();
+            if (cell.lastTouchedMillis < cutoff && !cell.dirty
+                    && (!cell.persistent || cell.total.sum() == cell.flushed)) {
+                it.remove();
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("cells", cells.size());
+        stats.put("pendingKeys", dirtyCount.get());
+        stats.put("flushes", flushes.sum());
+        stats.put("deltasSent", deltasSent.sum());
+        stats.put("sendFailures", sendFailures.sum());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        // Last flush so increments since the previous interval reach the changelog
+        flush();
+        kafkaTemplate.flush();
+    }
+}
@@ -0,0 +1,332 @@
+package com.alerts.dynamic;
+
+import com.alerts.hashing.KeyHashes;
+import com.alerts.metrics.AlertMetrics;
+import com.alerts.window.QuantileSketch;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * DynamicThresholds - Per-key thresholds derived from recent error counts
+ *
+ * With alerts.dynamic.enabled=true every evaluated error count is added to a
+ * QuantileSketch of its key, and the key's threshold becomes
+ * quantile(alerts.dynamic.quantile) x alerts.dynamic.factor of the counts
+ * seen so far (at least alerts.dynamic.min-threshold). Each count is judged
+ * against the sketch before it is added. Until a key's sketch holds
+ * min-samples counts (counts decay with half-life-ms) its configured
+ * threshold applies; only keys with a threshold - their own or an inherited
+ * default - are evaluated at all, so thresholdValue still decides which keys
+ * are monitored.
+ *
+ * REST mode: the sketch of a key is held by every instance that evaluates it.
+ * What an instance added since its last flush is sent as a sketch delta to
+ * eagle-eye.error-sketches every flush-interval-ms; SketchMergeProcessor, in
+ * the task owning the key, merges the deltas of all instances into the
+ * error-sketches store (restored from its changelog) and hands the merged
+ * sketch back to this instance through merged() - close to, not exactly,
+ * the sketch of all counts (QuantileSketch.merge rounds decayed buckets
+ * down). Instances not hosting a key derive its threshold from the counts
+ * they saw themselves, a sample of the same distribution.
+ *
+ * Stream mode: ErrorCountEvaluator keeps the sketches in error-sketches
+ * directly, through threshold() and record().
+ */
+@Service
+public class DynamicThresholds {
+
+    private static final Logger log = LoggerFactory.getLogger(DynamicThresholds.class);
+
+    public static final String SKETCHES_TOPIC = "eagle-eye.error-sketches";
+
+    /**
+     * The alerts.dynamic.* settings; defaults() are the application defaults.
+     */
+    public record Settings(boolean enabled, double quantile, double factor, long minSamples, long minThreshold,
+                           long halfLifeMillis, int maxKeys, long flushIntervalMillis, long idleEvictMillis) {
+
+        public Settings {
+            if (quantile <= 0 || quantile > 1) {
+                throw new IllegalArgumentException("alerts.dynamic.quantile must be in (0, 1]: " + quantile);
+            }
+        }
+
+        public static Settings defaults() {
+            return new Settings(false, 0.99, 1.5, 100, 1, 3_600_000, 200_000, 5000, 3_600_000);
+        }
+
+        public Settings withEnabled(boolean enabled) {
+            return new Settings(enabled, quantile, factor, minSamples, minThreshold, halfLifeMillis, maxKeys,
+                flushIntervalMillis, idleEvictMillis);
+        }
+
+        public Settings withMaxKeys(int maxKeys) {
+            return new Settings(enabled, quantile, factor, minSamples, minThreshold, halfLifeMillis, maxKeys,
+                flushIntervalMillis, idleEvictMillis);
+        }
+    }
+
+    private static final class Cell {
+        final long hash;
+        // Merged view used for evaluation; guarded by the cell
+        byte[] sketch = QuantileSketch.create();
+        // Counts added since the last flush, null when there are none
+        byte[] pending;
+        // Derived threshold, -1 while the sketch has fewer than min-samples counts
+        volatile long threshold = -1;
+        volatile boolean dirty;
+        volatile long lastTouchedMillis;
+
+        Cell(long hash) {
+            this.hash = hash;
+        }
+    }
+
+    private final KafkaTemplate<Long, byte[]> kafkaTemplate;
+    private final AlertMetrics metrics;
+    private final boolean enabled;
+    private final double quantile;
+    private final double factor;
+    private final long minSamples;
+    private final long minThreshold;
+    private final long halfLifeMillis;
+    private final int maxKeys;
+    private final long idleEvictMillis;
+
+    private final ConcurrentHashMap<Long, Cell> cells = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Cell> dirtyCells = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService flusher;
+
+    private final LongAdder dynamicEvaluations = new LongAdder();
+    private final LongAdder staticEvaluations = new LongAdder();
+    private final LongAdder untracked = new LongAdder();
+    private final LongAdder deltasSent = new LongAdder();
+    private final LongAdder sendFailures = new LongAdder();
+    private final LongAdder merges = new LongAdder();
+
+    @Autowired
+    public DynamicThresholds(KafkaTemplate<Long, byte[]> kafkaTemplate,
+                             AlertMetrics metrics,
+                             @Value("${alerts.dynamic.enabled:false}") boolean enabled,
+                             @Value("${alerts.dynamic.quantile:0.99}") double quantile,
+                             @Value("${alerts.dynamic.factor:1.5}") double factor,
+                             @Value("${alerts.dynamic.min-samples:100}") long minSamples,
+                             @Value("${alerts.dynamic.min-threshold:1}") long minThreshold,
+                             @Value("${alerts.dynamic.half-life-ms:3600000}") long halfLifeMillis,
+                             @Value("${alerts.dynamic.max-keys:200000}") int maxKeys,
+                             @Value("${alerts.dynamic.flush-interval-ms:5000}") long flushIntervalMillis,
+                             @Value("${alerts.dynamic.idle-evict-ms:3600000}") long idleEvictMillis) {
+        this(kafkaTemplate, metrics, new Settings(enabled, quantile, factor, minSamples, minThreshold,
+            halfLifeMillis, maxKeys, flushIntervalMillis, idleEvictMillis));
+    }
+
+    public DynamicThresholds(KafkaTemplate<Long, byte[]> kafkaTemplate, AlertMetrics metrics, Settings settings) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.metrics = metrics;
+        this.enabled = settings.enabled();
+        this.quantile = settings.quantile();
+        this.factor = settings.factor();
+        this.minSamples = Math.max(1, settings.minSamples());
+        this.minThreshold = settings.minThreshold();
+        this.halfLifeMillis = Math.max(1, settings.halfLifeMillis());
+        this.maxKeys = settings.maxKeys();
+        this.idleEvictMillis = settings.idleEvictMillis();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "error-sketch-flush");
+            t.setDaemon(true);
+            return t;
+        });
+        if (enabled) {
+            flusher.scheduleWithFixedDelay(this::scheduledFlush, settings.flushIntervalMillis(),
+                settings.flushIntervalMillis(), TimeUnit.MILLISECONDS);
+            log.info("Dynamic thresholds: p{} x {} after {} samples (half-life {}s)",
+                quantile * 100, factor, this.minSamples, this.halfLifeMillis / 1000);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Threshold to evaluate errorCount against, then count errorCount in the
+     * key's sketch. Returns configuredThreshold while disabled, while the key
+     * is warming up, or once max-keys keys are tracked.
+     */
+    public long thresholdFor(long hash, long errorCount, long configuredThreshold) {
+        if (!enabled) {
+            return configuredThreshold;
+        }
+        Cell cell = cells.get(hash);
+        if (cell == null) {
+            if (cells.size() >= maxKeys) {
+                untracked.increment();
+                staticEvaluations.increment();
+                return configuredThreshold;
+            }
+            cell = cells.computeIfAbsent(hash, Cell::new);
+        }
+        long now = System.currentTimeMillis();
+        long threshold = cell.threshold;
+        synchronized (cell) {
+            QuantileSketch.add(cell.sketch, now, errorCount, halfLifeMillis);
+            if (cell.pending == null) {
+                cell.pending = QuantileSketch.create();
+            }
+            QuantileSketch.add(cell.pending, now, errorCount, halfLifeMillis);
+            cell.threshold = derive(cell.sketch);
+        }
+        cell.lastTouchedMillis = now;
+        if (!cell.dirty) {
+            cell.dirty = true;
+            dirtyCells.add(cell);
+        }
+        return count(threshold, configuredThreshold);
+    }
+
+    /**
+     * Stream mode: threshold for the next count from a sketch held in state.
+     */
+    public long threshold(byte[] sketch, long configuredThreshold) {
+        return count(derive(sketch), configuredThreshold);
+    }
+
+    /**
+     * Stream mode: count a value in a sketch held in state.
+     */
+    public void record(byte[] sketch, long timestampMillis, long value) {
+        QuantileSketch.add(sketch, timestampMillis, value, halfLifeMillis);
+    }
+
+    /**
+     * The merged sketch of a key hosted here changed (SketchMergeProcessor);
+     * counts not yet flushed are added on top.
+     */
+    public void merged(long hash, byte[] sketch) {
+        merges.increment();
+        Cell cell = cells.get(hash);
+        if (cell == null) {
+            return;
+        }
+        byte[] view = sketch.clone();
+        synchronized (cell) {
+            if (cell.pending != null) {
+                QuantileSketch.merge(view, cell.pending);
+            }
+            cell.sketch = view;
+            cell.threshold = derive(view);
+        }
+    }
+
+    private long derive(byte[] sketch) {
+        if (QuantileSketch.count(sketch) < minSamples) {
+            return -1;
+        }
+        return Math.max(minThreshold, (long) Math.ceil(QuantileSketch.quantile(sketch, quantile) * factor));
+    }
+
+    private long count(long derived, long configuredThreshold) {
+        if (derived < 0) {
+            staticEvaluations.increment();
+            return configuredThreshold;
+        }
+        dynamicEvaluations.increment();
+        return derived;
+    }
+
+    private void scheduledFlush() {
+        try {
+            flush();
+            evictIdle();
+        } catch (Exception e) {
+            log.error("❌ Error sketch flush failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Send the counts each key gathered since the last flush.
+     */
+    synchronized void flush() {
+        Cell cell;
+        int sent = 0;
+        while ((cell = dirtyCells.poll()) != null) {
+            // Cleared first: a count racing with this flush re-queues the cell
+            cell.dirty = false;
+            byte[] delta;
+            synchronized (cell) {
+                delta = cell.pending;
+                cell.pending = null;
+            }
+            if (delta == null) {
+                continue;
+            }
+            sent++;
+            long hash = cell.hash;
+            kafkaTemplate.send(SKETCHES_TOPIC, hash, delta).whenComplete((result, ex) -> {
+                if (ex != null) {
+                    sendFailures.increment();
+                    if (metrics.sampleEvent()) {
+                        log.warn("event=sketch_flush_failed key={} error=\"{}\" sample_interval={}",
+                            KeyHashes.toHex(hash), ex.getMessage(), metrics.eventSampleInterval());
+                    }
+                }
+            });
+        }
+        deltasSent.add(sent);
+    }
+
+    private void evictIdle() {
+        long cutoff = System.currentTimeMillis() - idleEvictMillis;
+        for (Iterator<Cell> it = cells.values().iterator(); it.hasNext(); ) {
+            Cell cell = it.next();
+            if (cell.lastTouchedMillis < cutoff && !cell.dirty) {
+                it.remove();
+            }
+        }
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("quantile", quantile);
+        stats.put("factor", factor);
+        stats.put("keys", cells.size());
+        stats.put("dynamicEvaluations", dynamicEvaluations.sum());
+        stats.put("staticEvaluations", staticEvaluations.sum());
+        stats.put("untracked", untracked.sum());
+        stats.put("deltasSent", deltasSent.sum());
+        stats.put("sendFailures", sendFailures.sum());
+        stats.put("merges", merges.sum());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flusher.shutdown();
+        try {
+            flusher.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (enabled) {
+            // Counts since the previous interval reach the merged sketches
+            flush();
+            kafkaTemplate.flush();
+        }
+    }
+}
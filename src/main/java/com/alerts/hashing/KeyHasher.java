@@ -0,0 +1,43 @@
+package com.alerts.hashing;
+
+import java.nio.ByteBuffer;
+
+/**
+ * KeyHasher - Maps a composite key (property;tenant;type;interface) to the
+ * 64-bit key used by config-store, the Bloom filter and eagle-eye.alerts.
+ *
+ * Implementations must be thread-safe and must not allocate per call on the
+ * hot path: no intermediate Strings, no hex encoding, no new digests.
+ */
+public interface KeyHasher {
+
+    /**
+     * Hash a composite key given as characters (UTF-8 encoded before hashing).
+     */
+    long hash(CharSequence compositeKey);
+
+    /**
+     * Hash a composite key that is already UTF-8 encoded.
+     */
+    long hash(byte[] utf8, int offset, int length);
+
+    /**
+     * Hash UTF-8 key bytes at an absolute position of a buffer (position and
+     * limit are left untouched). Direct buffers are copied into the per-thread
+     * scratch array first.
+     */
+    default long hash(ByteBuffer utf8, int offset, int length) {
+        if (utf8.hasArray()) {
+            return hash(utf8.array(), utf8.arrayOffset() + offset, length);
+        }
+        Utf8Scratch scratch = Utf8Scratch.get();
+        byte[] bytes = scratch.ensureCapacity(length);
+        utf8.get(offset, bytes, 0, length);
+        return hash(bytes, 0, length);
+    }
+
+    /**
+     * Algorithm name as used in alerts.hashing.algorithm
+     */
+    String name();
+}
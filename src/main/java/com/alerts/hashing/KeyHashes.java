@@ -0,0 +1,88 @@
+package com.alerts.hashing;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * KeyHashes - Conversions between the 64-bit key and its wire/legacy forms.
+ *
+ * Wire form (eagle-eye.config / eagle-eye.alerts keys, config-store keys):
+ * 8 bytes big-endian, as written by Kafka's LongSerializer.
+ *
+ * Legacy form: 16 lowercase hex chars (first 8 bytes of SHA-256), as written
+ * by PropertyThreshold.generateHashFromCompositeKey and older loaders.
+ */
+public final class KeyHashes {
+
+    public static final int LEGACY_HEX_LENGTH = 16;
+
+    private static final VarHandle LONG_BE =
+        MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private KeyHashes() {
+    }
+
+    static long readLong(byte[] bytes, int offset) {
+        return (long) LONG_BE.get(bytes, offset);
+    }
+
+    /**
+     * Decode a record key from eagle-eye.config.
+     *
+     * @param legacyKeys also accept 16-char hex keys written before the switch to long keys
+     * @throws IllegalArgumentException if the key is in neither form
+     */
+    public static long decodeKey(byte[] key, boolean legacyKeys) {
+        if (key != null && key.length == Long.BYTES) {
+            return readLong(key, 0);
+        }
+        if (legacyKeys && key != null && key.length == LEGACY_HEX_LENGTH) {
+            return parseHex(key);
+        }
+        throw new IllegalArgumentException("Unsupported config key of "
+            + (key == null ? "null" : key.length + " bytes"));
+    }
+
+    /**
+     * Encode a key in wire form (same bytes as LongSerializer, so the same partition).
+     */
+    public static byte[] toBytes(long hash) {
+        byte[] bytes = new byte[Long.BYTES];
+        LONG_BE.set(bytes, 0, hash);
+        return bytes;
+    }
+
+    /**
+     * Parse the legacy 16-char hex form (ASCII bytes).
+     */
+    public static long parseHex(byte[] hex) {
+        if (hex.length != LEGACY_HEX_LENGTH) {
+            throw new IllegalArgumentException("Legacy hash must be 16 hex chars");
+        }
+        long value = 0;
+        for (byte b : hex) {
+            int digit = Character.digit(b, 16);
+            if (digit < 0) {
+                throw new IllegalArgumentException("Invalid hex digit in legacy hash");
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    /**
+     * Render the key in legacy hex form. Only for logs and messages - never on
+     * the lookup path.
+     */
+    public static String toHex(long hash) {
+        char[] chars = new char[LEGACY_HEX_LENGTH];
+        for (int i = LEGACY_HEX_LENGTH - 1; i >= 0; i--) {
+            chars[i] = HEX[(int) (hash & 0xF)];
+            hash >>>= 4;
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,63 @@
+package com.alerts.hashing;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Sha256KeyHasher - First 8 bytes of SHA-256 as a big-endian long.
+ *
+ * Produces exactly the key that PropertyThreshold.generateHashFromCompositeKey
+ * renders as 16 hex chars, so legacy config-store entries keep matching.
+ *
+ * OPTIMIZED: MessageDigest and output buffer are cached per thread instead of
+ * MessageDigest.getInstance() + hex StringBuilder per request
+ */
+public final class Sha256KeyHasher implements KeyHasher {
+
+    public static final String NAME = "sha256";
+
+    public static final Sha256KeyHasher INSTANCE = new Sha256KeyHasher();
+
+    private static final ThreadLocal<DigestState> DIGEST = ThreadLocal.withInitial(DigestState::new);
+
+    private Sha256KeyHasher() {
+    }
+
+    @Override
+    public long hash(CharSequence compositeKey) {
+        Utf8Scratch scratch = Utf8Scratch.get();
+        int length = scratch.encode(compositeKey);
+        return hash(scratch.bytes, 0, length);
+    }
+
+    @Override
+    public long hash(byte[] utf8, int offset, int length) {
+        DigestState state = DIGEST.get();
+        state.digest.update(utf8, offset, length);
+        try {
+            state.digest.digest(state.output, 0, state.output.length);
+        } catch (DigestException e) {
+            throw new IllegalStateException("SHA-256 digest failed", e);
+        }
+        return KeyHashes.readLong(state.output, 0);
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    private static final class DigestState {
+        final MessageDigest digest;
+        final byte[] output = new byte[32];
+
+        DigestState() {
+            try {
+                digest = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not found", e);
+            }
+        }
+    }
+}
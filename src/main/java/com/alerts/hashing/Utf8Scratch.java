@@ -0,0 +1,73 @@
+package com.alerts.hashing;
+
+/**
+ * Utf8Scratch - Per-thread UTF-8 encode buffer for hashers.
+ *
+ * String.getBytes(UTF_8) allocates a fresh array for every key; the hashers
+ * encode into a reusable per-thread array instead (also used to copy keys
+ * out of direct buffers).
+ */
+final class Utf8Scratch {
+
+    private static final int INITIAL_CAPACITY = 256;
+
+    private static final ThreadLocal<Utf8Scratch> LOCAL = ThreadLocal.withInitial(Utf8Scratch::new);
+
+    byte[] bytes = new byte[INITIAL_CAPACITY];
+
+    private Utf8Scratch() {
+    }
+
+    static Utf8Scratch get() {
+        return LOCAL.get();
+    }
+
+    /**
+     * {@link #bytes}, grown to hold at least length bytes.
+     */
+    byte[] ensureCapacity(int length) {
+        if (bytes.length < length) {
+            bytes = new byte[Math.max(length, bytes.length * 2)];
+        }
+        return bytes;
+    }
+
+    /**
+     * Encode the characters into {@link #bytes}, growing it if needed.
+     *
+     * @return number of bytes written
+     */
+    int encode(CharSequence chars) {
+        int length = chars.length();
+        // Worst case is 3 bytes per UTF-16 char (surrogate pairs are 4 bytes per 2 chars)
+        if (bytes.length < length * 3) {
+            bytes = new byte[Math.max(length * 3, bytes.length * 2)];
+        }
+        byte[] dst = bytes;
+        int pos = 0;
+        for (int i = 0; i < length; i++) {
+            char c = chars.charAt(i);
+            if (c < 0x80) {
+                dst[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                dst[pos++] = (byte) (0xC0 | (c >> 6));
+                dst[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < length
+                    && Character.isLowSurrogate(chars.charAt(i + 1))) {
+                int cp = Character.toCodePoint(c, chars.charAt(++i));
+                dst[pos++] = (byte) (0xF0 | (cp >> 18));
+                dst[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                dst[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                dst[pos++] = (byte) (0x80 | (cp & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogate: same replacement as String.getBytes(UTF_8)
+                dst[pos++] = (byte) '?';
+            } else {
+                dst[pos++] = (byte) (0xE0 | (c >> 12));
+                dst[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                dst[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return pos;
+    }
+}
@@ -0,0 +1,112 @@
+package com.alerts.hashing;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * XxHash64KeyHasher - Non-cryptographic XXH64 (seed 0) over the UTF-8 key.
+ *
+ * Several times cheaper than SHA-256 and with the same 64-bit collision
+ * behaviour for our key counts (see HASH-COLLISION-ANALYSIS.md). Keys differ
+ * from the SHA-256 ones, so it cannot be combined with legacy key migration.
+ */
+public final class XxHash64KeyHasher implements KeyHasher {
+
+    public static final String NAME = "xxhash64";
+
+    public static final XxHash64KeyHasher INSTANCE = new XxHash64KeyHasher();
+
+    private static final long PRIME64_1 = 0x9E3779B185EBCA87L;
+    private static final long PRIME64_2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long PRIME64_3 = 0x165667B19E3779F9L;
+    private static final long PRIME64_4 = 0x85EBCA77C2B2AE63L;
+    private static final long PRIME64_5 = 0x27D4EB2F165667C5L;
+
+    private static final VarHandle LONG_LE =
+        MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.LITTLE_ENDIAN);
+    private static final VarHandle INT_LE =
+        MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private XxHash64KeyHasher() {
+    }
+
+    @Override
+    public long hash(CharSequence compositeKey) {
+        Utf8Scratch scratch = Utf8Scratch.get();
+        int length = scratch.encode(compositeKey);
+        return hash(scratch.bytes, 0, length);
+    }
+
+    @Override
+    public long hash(byte[] utf8, int offset, int length) {
+        int end = offset + length;
+        int p = offset;
+        long h;
+
+        if (length >= 32) {
+            long v1 = PRIME64_1 + PRIME64_2;
+            long v2 = PRIME64_2;
+            long v3 = 0;
+            long v4 = -PRIME64_1;
+            int limit = end - 32;
+            do {
+                v1 = round(v1, (long) LONG_LE.get(utf8, p));
+                v2 = round(v2, (long) LONG_LE.get(utf8, p + 8));
+                v3 = round(v3, (long) LONG_LE.get(utf8, p + 16));
+                v4 = round(v4, (long) LONG_LE.get(utf8, p + 24));
+                p += 32;
+            } while (p <= limit);
+
+            h = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7)
+                + Long.rotateLeft(v3, 12) + Long.rotateLeft(v4, 18);
+            h = mergeRound(h, v1);
+            h = mergeRound(h, v2);
+            h = mergeRound(h, v3);
+            h = mergeRound(h, v4);
+        } else {
+            h = PRIME64_5;
+        }
+
+        h += length;
+
+        while (p + 8 <= end) {
+            h ^= round(0, (long) LONG_LE.get(utf8, p));
+            h = Long.rotateLeft(h, 27) * PRIME64_1 + PRIME64_4;
+            p += 8;
+        }
+        if (p + 4 <= end) {
+            h ^= ((int) INT_LE.get(utf8, p) & 0xFFFFFFFFL) * PRIME64_1;
+            h = Long.rotateLeft(h, 23) * PRIME64_2 + PRIME64_3;
+            p += 4;
+        }
+        while (p < end) {
+            h ^= (utf8[p] & 0xFFL) * PRIME64_5;
+            h = Long.rotateLeft(h, 11) * PRIME64_1;
+            p++;
+        }
+
+        h ^= h >>> 33;
+        h *= PRIME64_2;
+        h ^= h >>> 29;
+        h *= PRIME64_3;
+        h ^= h >>> 32;
+        return h;
+    }
+
+    @Override
+    public String name() {
+        return NAME;
+    }
+
+    private static long round(long acc, long input) {
+        acc += input * PRIME64_2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * PRIME64_1;
+    }
+
+    private static long mergeRound(long acc, long val) {
+        acc ^= round(0, val);
+        return acc * PRIME64_1 + PRIME64_4;
+    }
+}
@@ -0,0 +1,486 @@
+package com.alerts.importer;
+
+import com.alerts.hashing.KeyHasher;
+import com.alerts.index.TenantIndex;
+import com.alerts.model.PropertyThreshold;
+import com.alerts.model.ThresholdRecord;
+import com.alerts.routing.ThresholdRouter;
+import com.alerts.serde.ThresholdRecordSerde;
+import com.alerts.streams.AlertTopology;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * BulkThresholdImporter - Loads threshold tables from CSV / NDJSON files into eagle-eye.config
+ *
+ * The input is memory-mapped and split at line boundaries into segments that
+ * are parsed, hashed and produced by alerts.import.parallelism workers in
+ * parallel. All workers share one idempotent producer (acks=all) with large
+ * compressed batches.
+ *
+ * With diff enabled each row whose key this instance hosts is compared with
+ * the threshold in the local config-store; unchanged rows are skipped. Rows
+ * of remote partitions are sent without a lookup - a round trip per row to
+ * their host would cost more than the send. Rows are sent without alertTimes; config-store
+ * keeps the counts of existing keys (ThresholdLoadProcessor).
+ *
+ * Each worker waits for its batch of alerts.import.batch-rows lines to be
+ * acknowledged before moving the segment's offset in the ImportCheckpoint,
+ * so an interrupted import resumes after the last acknowledged batch.
+ *
+ * Every row carries its composite key in the TenantIndex.KEY_HEADER header,
+ * so the tenant index covers imported thresholds.
+ *
+ * Rows whose key has "*" components ("*;tenant_0;*;*") are default
+ * thresholds (ThresholdHierarchy): they go to eagle-eye.config-defaults,
+ * keyed by the pattern itself, and are never diffed.
+ *
+ * One import runs at a time; it is started from the CLI (ImportRunner) or
+ * POST /api/import and reports progress through ImportJob. Imports started
+ * over REST are confined to alerts.import.directory: the path is resolved
+ * against it, and anything outside it (after normalizing and following
+ * links) is rejected, as is the checkpoint written next to the input. The
+ * CLI imports any file the operator names.
+ */
+@Service
+public class BulkThresholdImporter {
+
+    private static final Logger log = LoggerFactory.getLogger(BulkThresholdImporter.class);
+
+    private static final long MAX_SEGMENT_BYTES = 1L << 30;
+    private static final long MIN_SEGMENT_BYTES = 4L << 20;
+    private static final long PROGRESS_INTERVAL_MS = 5000;
+
+    private final KafkaProperties kafkaProperties;
+    private final KeyHasher keyHasher;
+    private final ThresholdRouter thresholdRouter;
+    private final int parallelism;
+    private final int batchRows;
+    private final String compression;
+    private final int lingerMillis;
+    private final int batchBytes;
+    private final long storeWaitMillis;
+    private final Path importDirectory;
+    private final ExecutorService jobRunner;
+
+    private volatile ImportJob currentJob;
+    private final AtomicLong lastProgress = new AtomicLong();
+
+    public BulkThresholdImporter(KafkaProperties kafkaProperties,
+                                 KeyHasher keyHasher,
+                                 ThresholdRouter thresholdRouter,
+                                 @Value("${alerts.import.parallelism:0}") int parallelism,
+                                 @Value("${alerts.import.batch-rows:10000}") int batchRows,
+                                 @Value("${alerts.import.compression:lz4}") String compression,
+                                 @Value("${alerts.import.linger-ms:50}") int lingerMillis,
+                                 @Value("${alerts.import.batch-bytes:262144}") int batchBytes,
+                                 @Value("${alerts.import.store-wait-ms:30000}") long storeWaitMillis,
+                                 @Value("${alerts.import.directory:imports}") String importDirectory) {
+        this.kafkaProperties = kafkaProperties;
+        this.keyHasher = keyHasher;
+        this.thresholdRouter = thresholdRouter;
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.batchRows = Math.max(1, batchRows);
+        this.compression = compression;
+        this.lingerMillis = lingerMillis;
+        this.batchBytes = batchBytes;
+        this.storeWaitMillis = storeWaitMillis;
+        this.importDirectory = Path.of(importDirectory).toAbsolutePath().normalize();
+        this.jobRunner = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "threshold-import");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /**
+     * Start an import in the background (REST).
+     *
+     * @param path file inside alerts.import.directory, absolute or relative to it
+     * @throws IllegalStateException    if an import is already running
+     * @throws IllegalArgumentException if the file is outside the import directory or cannot be read
+     */
+    public synchronized ImportJob start(String path, ImportFormat format, boolean diff, boolean resume) {
+        ImportJob job = newJob(resolveImportPath(path), format, diff);
+        jobRunner.execute(() -> run(job, resume));
+        return job;
+    }
+
+    /**
+     * Run an import in the calling thread (CLI).
+     */
+    public ImportJob runBlocking(Path path, ImportFormat format, boolean diff, boolean resume) {
+        ImportJob job;
+        synchronized (this) {
+            job = newJob(path, format, diff);
+        }
+        run(job, resume);
+        return job;
+    }
+
+    public ImportJob currentJob() {
+        return currentJob;
+    }
+
+    private Path resolveImportPath(String requested) {
+        Path path;
+        try {
+            path = importDirectory.resolve(requested).normalize();
+        } catch (InvalidPathException e) {
+            throw new IllegalArgumentException("Invalid path");
+        }
+        if (!path.startsWith(importDirectory)) {
+            throw new IllegalArgumentException("path must be inside the import directory");
+        }
+        try {
+            // Links must not lead out of the directory either
+            if (Files.exists(path) && !path.toRealPath().startsWith(importDirectory.toRealPath())) {
+                throw new IllegalArgumentException("path must be inside the import directory");
+            }
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Cannot read " + importDirectory.relativize(path));
+        }
+        return path;
+    }
+
+    private ImportJob newJob(Path path, ImportFormat format, boolean diff) {
+        ImportJob running = currentJob;
+        if (running != null && running.isRunning()) {
+            throw new IllegalStateException("An import is already running: " + running.path);
+        }
+        if (!Files.isReadable(path) || Files.isDirectory(path)) {
+            throw new IllegalArgumentException("Cannot read " + path);
+        }
+        ImportJob job = new ImportJob(path, format != null ? format : ImportFormat.forPath(path), diff);
+        currentJob = job;
+        return job;
+    }
+
+    private void run(ImportJob job, boolean resume) {
+        log.info("Importing thresholds from {} ({}, diff={})", job.path, job.format, job.diff);
+        try (FileChannel channel = FileChannel.open(job.path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            long modified = Files.getLastModifiedTime(job.path).toMillis();
+
+            // CSV header (if any) maps the columns; data starts after it
+            int[] columns = null;
+            long dataStart = 0;
+            if (job.format == ImportFormat.CSV) {
+                long firstLineEnd = nextLineStart(channel, 0, size);
+                byte[] first = new byte[(int) Math.min(firstLineEnd, 64 * 1024)];
+                channel.read(ByteBuffer.wrap(first), 0);
+                columns = ThresholdLineParser.headerColumns(first, first.length);
+                if (columns != null) {
+                    dataStart = firstLineEnd;
+                }
+            }
+
+            ImportCheckpoint checkpoint = resume ? ImportCheckpoint.load(job.path, size, modified) : null;
+            if (checkpoint == null) {
+                Files.deleteIfExists(ImportCheckpoint.pathFor(job.path));
+                checkpoint = plan(channel, job.path, size, modified, dataStart);
+            } else {
+                log.info("  Resuming from checkpoint ({} bytes already imported)", checkpoint.bytesDone());
+            }
+            job.segments = checkpoint.segments();
+            job.bytesTotal = size - dataStart;
+            job.resumedFromBytes = checkpoint.bytesDone();
+            job.bytesDone.set(job.resumedFromBytes);
+
+            if (job.diff) {
+                job.diffApplied = thresholdRouter.awaitRunning(storeWaitMillis);
+                if (!job.diffApplied) {
+                    log.warn("  config-store not queryable - importing without diff");
+                }
+            }
+
+            try (Producer<Long, ThresholdRecord> producer = createProducer("threshold-import", new LongSerializer());
+                 Producer<String, ThresholdRecord> defaultsProducer = createProducer("threshold-import-defaults", new StringSerializer())) {
+                runSegments(job, channel, checkpoint, columns, producer, defaultsProducer);
+                producer.flush();
+                defaultsProducer.flush();
+            }
+            checkpoint.delete();
+            job.state = ImportJob.State.COMPLETED;
+        } catch (Exception e) {
+            job.error = e.getMessage();
+            job.state = ImportJob.State.FAILED;
+            log.error("❌ Threshold import failed: {}", e.getMessage());
+        } finally {
+            job.finishedAt = System.currentTimeMillis();
+            log.info("Threshold import {}: {}", job.state, job.stats());
+        }
+    }
+
+    private void runSegments(ImportJob job, FileChannel channel, ImportCheckpoint checkpoint, int[] columns,
+                             Producer<Long, ThresholdRecord> producer,
+                             Producer<String, ThresholdRecord> defaultsProducer) throws Exception {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService workers = Executors.newFixedThreadPool(Math.min(parallelism, checkpoint.segments()), r -> {
+            Thread t = new Thread(r, "threshold-import-" + threadIndex.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        });
+        try {
+            List<Future<?>> segments = new ArrayList<>();
+            for (int i = 0; i < checkpoint.segments(); i++) {
+                int segment = i;
+                segments.add(workers.submit(() -> {
+                    importSegment(job, channel, checkpoint, segment, columns, producer, defaultsProducer);
+                    return null;
+                }));
+            }
+            for (Future<?> segment : segments) {
+                try {
+                    segment.get();
+                } catch (ExecutionException e) {
+                    throw e.getCause() instanceof Exception cause ? cause : e;
+                }
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private void importSegment(ImportJob job, FileChannel channel, ImportCheckpoint checkpoint, int segment,
+                               int[] columns, Producer<Long, ThresholdRecord> producer,
+                               Producer<String, ThresholdRecord> defaultsProducer) throws IOException {
+        long from = checkpoint.done(segment);
+        long lineNumber = checkpoint.doneLine(segment);
+        long end = checkpoint.end(segment);
+        if (from >= end) {
+            return;
+        }
+        MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, from, end - from);
+        int limit = map.limit();
+        ThresholdLineParser parser = new ThresholdLineParser(job.format, keyHasher, columns);
+        ThresholdLineParser.Row row = new ThresholdLineParser.Row();
+        byte[] line = new byte[1024];
+        List<Future<RecordMetadata>> pending = new ArrayList<>(batchRows);
+        List<Future<RecordMetadata>> pendingDefaults = new ArrayList<>();
+
+        int pos = 0;
+        while (pos < limit) {
+            int batchStart = pos;
+            for (int lines = 0; lines < batchRows && pos < limit; lines++) {
+                int eol = pos;
+                while (eol < limit && map.get(eol) != '\n') {
+                    eol++;
+                }
+                int length = eol - pos;
+                if (length > line.length) {
+                    line = new byte[Math.max(length, line.length * 2)];
+                }
+                map.get(pos, line, 0, length);
+                long rowLine = lineNumber++;
+                pos = Math.min(limit, eol + 1);
+
+                if (!parser.parse(line, length, row)) {
+                    continue;
+                }
+                job.rowsRead.increment();
+                if (row.error != null) {
+                    job.invalidRow(rowLine, row.error);
+                    continue;
+                }
+                if (row.pattern != null) {
+                    pendingDefaults.add(defaultsProducer.send(new ProducerRecord<>(AlertTopology.DEFAULTS_TOPIC,
+                        row.pattern, PropertyThreshold.toRecord(row.threshold, 0, row.windowSeconds, row.windowBuckets))));
+                    continue;
+                }
+                ThresholdRecord existing = job.diffApplied ? lookupExisting(job, row.hash) : null;
+                ThresholdRecord record = PropertyThreshold.toRecord(row.threshold, 0, row.windowSeconds,
+                    row.windowBuckets);
+                if (existing != null && existing.threshold() == record.threshold()
+                        && existing.windowSeconds() == record.windowSeconds()
+                        && existing.windowBuckets() == record.windowBuckets()) {
+                    job.rowsUnchanged.increment();
+                    continue;
+                }
+                ProducerRecord<Long, ThresholdRecord> send =
+                    new ProducerRecord<>(AlertTopology.CONFIG_TOPIC, row.hash, record);
+                send.headers().add(TenantIndex.KEY_HEADER, row.key);
+                pending.add(producer.send(send));
+            }
+
+            // Checkpoint only what Kafka acknowledged
+            awaitSends(job, pending, job.rowsSent, AlertTopology.CONFIG_TOPIC);
+            awaitSends(job, pendingDefaults, job.defaultsSent, AlertTopology.DEFAULTS_TOPIC);
+            checkpoint.advance(segment, from + pos, lineNumber);
+            job.bytesDone.addAndGet(pos - batchStart);
+            printProgress(job);
+        }
+    }
+
+    private static void awaitSends(ImportJob job, List<Future<RecordMetadata>> pending, LongAdder sent,
+                                   String topic) throws IOException {
+        Exception failure = null;
+        for (Future<RecordMetadata> send : pending) {
+            try {
+                send.get();
+                sent.increment();
+            } catch (ExecutionException e) {
+                job.rowsFailed.increment();
+                failure = e;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Import interrupted", e);
+            }
+        }
+        pending.clear();
+        if (failure != null) {
+            throw new IOException("Send to " + topic + " failed: " + failure.getCause().getMessage(), failure);
+        }
+    }
+
+    private ThresholdRecord lookupExisting(ImportJob job, long hash) {
+        if (thresholdRouter.isRemote(hash)) {
+            job.rowsNotDiffed.increment();
+            return null;
+        }
+        try {
+            return thresholdRouter.lookupLocal(hash, false);
+        } catch (RuntimeException e) {
+            // Not queryable right now: send the row
+            return null;
+        }
+    }
+
+    private void printProgress(ImportJob job) {
+        long now = System.currentTimeMillis();
+        long last = lastProgress.get();
+        if (now - last >= PROGRESS_INTERVAL_MS && lastProgress.compareAndSet(last, now)) {
+            Map<String, Object> stats = job.stats();
+            log.info("  Import {}%: {} rows read, {} sent, {} unchanged, {} invalid ({} rows/s)",
+                stats.get("percent"), job.rowsRead.sum(), job.rowsSent.sum(), job.rowsUnchanged.sum(),
+                job.rowsInvalid.sum(), stats.get("rowsPerSecond"));
+        }
+    }
+
+    /**
+     * Split [dataStart, size) into segments ending on line boundaries.
+     */
+    private ImportCheckpoint plan(FileChannel channel, Path path, long size, long modified, long dataStart)
+            throws IOException {
+        long length = size - dataStart;
+        int count = (int) Math.max(1, Math.min(parallelism, length / MIN_SEGMENT_BYTES));
+        count = (int) Math.max(count, (length + MAX_SEGMENT_BYTES - 1) / MAX_SEGMENT_BYTES);
+        List<Long> starts = new ArrayList<>();
+        List<Long> ends = new ArrayList<>();
+        long start = dataStart;
+        for (int i = 1; i <= count && start < size; i++) {
+            long end = i == count ? size : nextLineStart(channel, dataStart + length * i / count, size);
+            end = Math.min(end, start + MAX_SEGMENT_BYTES);
+            if (end > start) {
+                starts.add(start);
+                ends.add(end);
+                start = end;
+            }
+        }
+        if (start < size) {
+            starts.add(start);
+            ends.add(size);
+        }
+        // Line number each segment starts at, for invalid-row reports
+        long[] startLines = new long[starts.size()];
+        long line = dataStart > 0 ? 2 : 1;
+        for (int i = 0; i < startLines.length; i++) {
+            startLines[i] = line;
+            line += countLines(channel, starts.get(i), ends.get(i));
+        }
+        return ImportCheckpoint.start(path, size, modified,
+            starts.stream().mapToLong(Long::longValue).toArray(),
+            ends.stream().mapToLong(Long::longValue).toArray(), startLines);
+    }
+
+    private static long countLines(FileChannel channel, long from, long to) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 20);
+        long lines = 0;
+        long offset = from;
+        while (offset < to) {
+            buffer.clear().limit((int) Math.min(buffer.capacity(), to - offset));
+            int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    lines++;
+                }
+            }
+            offset += read;
+        }
+        return lines;
+    }
+
+    /**
+     * Offset just after the first '\n' at or after position (or size).
+     */
+    private static long nextLineStart(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        long offset = position;
+        while (offset < size) {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return offset + i + 1;
+                }
+            }
+            offset += read;
+        }
+        return size;
+    }
+
+    <K> Producer<K, ThresholdRecord> createProducer(String clientId, Serializer<K> keySerializer) {
+        Map<String, Object> props = new HashMap<>(kafkaProperties.buildProducerProperties());
+        props.put(ProducerConfig.CLIENT_ID_CONFIG, clientId);
+        props.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, true);
+        props.put(ProducerConfig.ACKS_CONFIG, "all");
+        props.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, 5);
+        props.put(ProducerConfig.COMPRESSION_TYPE_CONFIG, compression);
+        props.put(ProducerConfig.LINGER_MS_CONFIG, lingerMillis);
+        props.put(ProducerConfig.BATCH_SIZE_CONFIG, batchBytes);
+        return new KafkaProducer<>(props, keySerializer, new ThresholdRecordSerde.ThresholdRecordSerializer());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobRunner.shutdownNow();
+    }
+}
@@ -0,0 +1,152 @@
+package com.alerts.importer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Properties;
+
+/**
+ * ImportCheckpoint - Resume point of a bulk import
+ *
+ * Stored next to the input as <file>.checkpoint. The file is split into
+ * segments at line boundaries; for each segment the checkpoint records the
+ * offset up to which every row has been acknowledged by Kafka, and the line
+ * number at that offset (invalid rows are reported by line). A checkpoint
+ * only applies to the same file (size and modification time) and the same
+ * segmentation; anything else starts over.
+ *
+ * Rows after a segment's offset may already have been sent when the import
+ * stopped - re-sending them is harmless since thresholds are idempotent
+ * per key.
+ */
+final class ImportCheckpoint {
+
+    private final Path file;
+    private final long inputSize;
+    private final long inputModified;
+    private final long[] segmentStart;
+    private final long[] segmentEnd;
+    private final long[] done;
+    // Line number (1-based) of the line starting at done
+    private final long[] doneLine;
+
+    private ImportCheckpoint(Path file, long inputSize, long inputModified,
+                             long[] segmentStart, long[] segmentEnd, long[] done, long[] doneLine) {
+        this.file = file;
+        this.inputSize = inputSize;
+        this.inputModified = inputModified;
+        this.segmentStart = segmentStart;
+        this.segmentEnd = segmentEnd;
+        this.done = done;
+        this.doneLine = doneLine;
+    }
+
+    static Path pathFor(Path input) {
+        return input.resolveSibling(input.getFileName() + ".checkpoint");
+    }
+
+    /**
+     * Fresh checkpoint for the given segmentation.
+     */
+    static ImportCheckpoint start(Path input, long size, long modified, long[] starts, long[] ends,
+                                  long[] startLines) {
+        return new ImportCheckpoint(pathFor(input), size, modified, starts, ends, starts.clone(), startLines.clone());
+    }
+
+    /**
+     * Checkpoint left by an earlier run of the same file, or null.
+     */
+    static ImportCheckpoint load(Path input, long size, long modified) throws IOException {
+        Path path = pathFor(input);
+        if (!Files.exists(path)) {
+            return null;
+        }
+        Properties props = new Properties();
+        try (InputStream in = Files.newInputStream(path)) {
+            props.load(in);
+        }
+        try {
+            if (Long.parseLong(props.getProperty("size")) != size
+                    || Long.parseLong(props.getProperty("modified")) != modified) {
+                return null;
+            }
+            int segments = Integer.parseInt(props.getProperty("segments"));
+            long[] starts = new long[segments];
+            long[] ends = new long[segments];
+            long[] done = new long[segments];
+            long[] doneLine = new long[segments];
+            for (int i = 0; i < segments; i++) {
+                starts[i] = Long.parseLong(props.getProperty("segment." + i + ".start"));
+                ends[i] = Long.parseLong(props.getProperty("segment." + i + ".end"));
+                done[i] = Long.parseLong(props.getProperty("segment." + i + ".done"));
+                doneLine[i] = Long.parseLong(props.getProperty("segment." + i + ".line"));
+            }
+            return new ImportCheckpoint(path, size, modified, starts, ends, done, doneLine);
+        } catch (RuntimeException e) {
+            // Unreadable checkpoint: start over
+            return null;
+        }
+    }
+
+    int segments() {
+        return segmentStart.length;
+    }
+
+    long start(int segment) {
+        return segmentStart[segment];
+    }
+
+    long end(int segment) {
+        return segmentEnd[segment];
+    }
+
+    synchronized long done(int segment) {
+        return done[segment];
+    }
+
+    synchronized long doneLine(int segment) {
+        return doneLine[segment];
+    }
+
+    /**
+     * Bytes already imported according to this checkpoint
+     */
+    synchronized long bytesDone() {
+        long bytes = 0;
+        for (int i = 0; i < done.length; i++) {
+            bytes += done[i] - segmentStart[i];
+        }
+        return bytes;
+    }
+
+    synchronized void advance(int segment, long offset, long line) throws IOException {
+        done[segment] = offset;
+        doneLine[segment] = line;
+        save();
+    }
+
+    private void save() throws IOException {
+        Properties props = new Properties();
+        props.setProperty("size", Long.toString(inputSize));
+        props.setProperty("modified", Long.toString(inputModified));
+        props.setProperty("segments", Integer.toString(segmentStart.length));
+        for (int i = 0; i < segmentStart.length; i++) {
+            props.setProperty("segment." + i + ".start", Long.toString(segmentStart[i]));
+            props.setProperty("segment." + i + ".end", Long.toString(segmentEnd[i]));
+            props.setProperty("segment." + i + ".done", Long.toString(done[i]));
+            props.setProperty("segment." + i + ".line", Long.toString(doneLine[i]));
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            props.store(out, "Bulk threshold import checkpoint");
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    void delete() throws IOException {
+        Files.deleteIfExists(file);
+    }
+}
@@ -0,0 +1,23 @@
+package com.alerts.importer;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Input formats accepted by BulkThresholdImporter
+ */
+public enum ImportFormat {
+    CSV,
+    NDJSON;
+
+    /**
+     * .ndjson / .jsonl / .json files are NDJSON, everything else CSV.
+     */
+    public static ImportFormat forPath(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".json")) {
+            return NDJSON;
+        }
+        return CSV;
+    }
+}
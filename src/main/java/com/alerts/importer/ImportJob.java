@@ -0,0 +1,102 @@
+package com.alerts.importer;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ImportJob - Progress of one bulk import, updated by its worker threads
+ */
+public final class ImportJob {
+
+    public enum State { RUNNING, COMPLETED, FAILED }
+
+    private static final int MAX_ERROR_SAMPLES = 10;
+
+    final Path path;
+    final ImportFormat format;
+    final boolean diff;
+    final long startedAt = System.currentTimeMillis();
+
+    volatile State state = State.RUNNING;
+    volatile String error;
+    volatile long finishedAt;
+    volatile long bytesTotal;
+    volatile long resumedFromBytes;
+    volatile int segments;
+    volatile boolean diffApplied;
+
+    final AtomicLong bytesDone = new AtomicLong();
+    final LongAdder rowsRead = new LongAdder();
+    final LongAdder rowsSent = new LongAdder();
+    final LongAdder defaultsSent = new LongAdder();
+    final LongAdder rowsUnchanged = new LongAdder();
+    // Sent without a diff: the key is hosted by another instance
+    final LongAdder rowsNotDiffed = new LongAdder();
+    final LongAdder rowsInvalid = new LongAdder();
+    final LongAdder rowsFailed = new LongAdder();
+    private final List<String> errorSamples = new ArrayList<>();
+
+    ImportJob(Path path, ImportFormat format, boolean diff) {
+        this.path = path;
+        this.format = format;
+        this.diff = diff;
+    }
+
+    /**
+     * @param message names the invalid field only - samples are served by GET /api/import
+     */
+    void invalidRow(long line, String message) {
+        rowsInvalid.increment();
+        synchronized (errorSamples) {
+            if (errorSamples.size() < MAX_ERROR_SAMPLES) {
+                errorSamples.add("line " + line + ": " + message);
+            }
+        }
+    }
+
+    public State state() {
+        return state;
+    }
+
+    public boolean isRunning() {
+        return state == State.RUNNING;
+    }
+
+    public Map<String, Object> stats() {
+        long end = finishedAt == 0 ? System.currentTimeMillis() : finishedAt;
+        long elapsed = Math.max(1, end - startedAt);
+        long done = bytesDone.get();
+        long sent = rowsSent.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("state", state.name());
+        stats.put("path", path.toString());
+        stats.put("format", format.name());
+        stats.put("segments", segments);
+        stats.put("diff", diffApplied);
+        stats.put("bytesTotal", bytesTotal);
+        stats.put("bytesDone", done);
+        stats.put("percent", bytesTotal == 0 ? 100.0 : Math.round(done * 1000.0 / bytesTotal) / 10.0);
+        stats.put("resumedFromBytes", resumedFromBytes);
+        stats.put("rowsRead", rowsRead.sum());
+        stats.put("rowsSent", sent);
+        stats.put("defaultsSent", defaultsSent.sum());
+        stats.put("rowsUnchanged", rowsUnchanged.sum());
+        stats.put("rowsNotDiffed", rowsNotDiffed.sum());
+        stats.put("rowsInvalid", rowsInvalid.sum());
+        stats.put("rowsFailed", rowsFailed.sum());
+        stats.put("elapsedMs", elapsed);
+        stats.put("rowsPerSecond", rowsRead.sum() * 1000 / elapsed);
+        synchronized (errorSamples) {
+            stats.put("invalidSamples", new ArrayList<>(errorSamples));
+        }
+        if (error != null) {
+            stats.put("error", error);
+        }
+        return stats;
+    }
+}
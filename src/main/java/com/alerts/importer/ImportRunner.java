@@ -0,0 +1,60 @@
+package com.alerts.importer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/**
+ * ImportRunner - Command-line entry point for bulk threshold imports
+ *
+ *   java -jar alerts.jar --import=thresholds.csv [--import=more.ndjson]
+ *                        [--import-no-diff] [--import-restart] [--import-exit]
+ *
+ * Files are imported one after another once the application is up (and
+ * config-store is queryable for the diff). --import-exit stops the
+ * application afterwards, exiting with 1 if any import failed.
+ */
+@Component
+public class ImportRunner implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportRunner.class);
+
+    private final BulkThresholdImporter importer;
+    private final ApplicationContext context;
+
+    public ImportRunner(BulkThresholdImporter importer, ApplicationContext context) {
+        this.importer = importer;
+        this.context = context;
+    }
+
+    @Override
+    public void run(ApplicationArguments args) {
+        List<String> files = args.getOptionValues("import");
+        if (files == null || files.isEmpty()) {
+            return;
+        }
+        boolean diff = !args.containsOption("import-no-diff");
+        boolean resume = !args.containsOption("import-restart");
+        boolean failed = false;
+        for (String file : files) {
+            try {
+                ImportJob job = importer.runBlocking(Path.of(file), null, diff, resume);
+                failed |= job.state() != ImportJob.State.COMPLETED;
+            } catch (RuntimeException e) {
+                log.error("❌ Cannot import {}: {}", file, e.getMessage());
+                failed = true;
+            }
+        }
+        if (args.containsOption("import-exit")) {
+            int code = failed ? 1 : 0;
+            System.exit(SpringApplication.exit(context, () -> code));
+        }
+    }
+}
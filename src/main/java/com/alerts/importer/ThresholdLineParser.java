@@ -0,0 +1,443 @@
+package com.alerts.importer;
+
+import com.alerts.cache.ThresholdHierarchy;
+import com.alerts.hashing.KeyHasher;
+import com.alerts.index.TenantIndex;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.function.Consumer;
+
+/**
+ * ThresholdLineParser - Parses one import line into a hashed threshold row
+ *
+ * One instance per worker thread: all scratch buffers are reused, and CSV
+ * keys are composed and hashed straight from the line bytes without creating
+ * Strings.
+ *
+ * CSV columns are matched by header name (tenantId, propertyId, interfaceId,
+ * transactionType, thresholdValue, windowSeconds, windowBuckets, or a single
+ * key column holding the full composite key). The first line is a header if
+ * one of its columns is named threshold or thresholdValue; otherwise the
+ * PropertyThreshold field order is assumed. windowSeconds must fit an int and
+ * windowBuckets 0..65535 (the ThresholdRecord fields); rows outside are invalid. NDJSON lines are objects with the
+ * same field names. Keys are composed as "property;tenant;type;interface",
+ * the form sent to /api/alert. A key with "*" components is a default
+ * (ThresholdHierarchy); it is returned as a pattern instead of a hash.
+ * Exact keys also keep their bytes, sent along for the tenant index.
+ *
+ * Row errors name the field, never its content: they are served back by
+ * GET /api/import.
+ *
+ * readAll parses a whole (small) file in the calling thread, for threshold
+ * sets that are loaded rather than imported (ReplayEngine).
+ */
+public final class ThresholdLineParser {
+
+    static final int TENANT = 0;
+    static final int PROPERTY = 1;
+    static final int INTERFACE = 2;
+    static final int TYPE = 3;
+    static final int THRESHOLD = 4;
+    static final int WINDOW_SECONDS = 5;
+    static final int WINDOW_BUCKETS = 6;
+    static final int KEY = 7;
+    private static final int COLUMNS = 8;
+
+    private static final int[] DEFAULT_COLUMNS = {0, 1, 2, 3, 4, 5, 6, -1};
+    private static final JsonFactory JSON = new JsonFactory();
+
+    /**
+     * Result of parsing one line; reused for every line.
+     */
+    public static final class Row {
+        long hash;
+        // UTF-8 composite key of an exact key (TenantIndex.KEY_HEADER)
+        byte[] key;
+        // Wildcard key of a default threshold, null for an exact key
+        String pattern;
+        long threshold;
+        int windowSeconds;
+        int windowBuckets;
+        String error;
+
+        public long hash() {
+            return hash;
+        }
+
+        public byte[] key() {
+            return key;
+        }
+
+        public String pattern() {
+            return pattern;
+        }
+
+        public long threshold() {
+            return threshold;
+        }
+
+        public int windowSeconds() {
+            return windowSeconds;
+        }
+
+        public int windowBuckets() {
+            return windowBuckets;
+        }
+
+        public String error() {
+            return error;
+        }
+    }
+
+    private final ImportFormat format;
+    private final KeyHasher keyHasher;
+    // CSV column index per field, -1 if absent
+    private final int[] columns;
+
+    private byte[] fields = new byte[256];
+    private int[] fieldStart = new int[16];
+    private int[] fieldLength = new int[16];
+    private int fieldCount;
+    private byte[] key = new byte[256];
+    private final StringBuilder jsonKey = new StringBuilder(128);
+    private final String[] jsonParts = new String[4];
+
+    ThresholdLineParser(ImportFormat format, KeyHasher keyHasher, int[] columns) {
+        this.format = format;
+        this.keyHasher = keyHasher;
+        this.columns = columns == null ? DEFAULT_COLUMNS : columns;
+    }
+
+    /**
+     * Parse every line of a threshold file; rows (valid or not) are handed to
+     * rows one by one, reusing the same Row.
+     *
+     * @param format null to go by the file extension
+     */
+    public static void readAll(Path path, ImportFormat format, KeyHasher keyHasher, Consumer<Row> rows)
+            throws IOException {
+        ImportFormat fileFormat = format != null ? format : ImportFormat.forPath(path);
+        ThresholdLineParser parser = null;
+        Row row = new Row();
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String text;
+            while ((text = reader.readLine()) != null) {
+                byte[] line = text.getBytes(StandardCharsets.UTF_8);
+                if (parser == null) {
+                    // CSV header (if any) maps the columns
+                    int[] columns = fileFormat == ImportFormat.CSV ? headerColumns(line, line.length) : null;
+                    parser = new ThresholdLineParser(fileFormat, keyHasher, columns);
+                    if (columns != null) {
+                        continue;
+                    }
+                }
+                if (parser.parse(line, line.length, row)) {
+                    rows.accept(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Column mapping from a CSV header line, or null if the line is data.
+     */
+    static int[] headerColumns(byte[] line, int length) {
+        String header = new String(line, 0, length, StandardCharsets.UTF_8).toLowerCase(Locale.ROOT);
+        int[] columns = new int[COLUMNS];
+        Arrays.fill(columns, -1);
+        String[] names = header.split(",");
+        for (int i = 0; i < names.length; i++) {
+            String name = names[i].trim().replace("\"", "").replace("_", "");
+            switch (name) {
+                case "tenant", "tenantid" -> columns[TENANT] = i;
+                case "property", "propertyid" -> columns[PROPERTY] = i;
+                case "interface", "interfaceid" -> columns[INTERFACE] = i;
+                case "type", "transactiontype" -> columns[TYPE] = i;
+                case "threshold", "thresholdvalue" -> columns[THRESHOLD] = i;
+                case "windowseconds" -> columns[WINDOW_SECONDS] = i;
+                case "windowbuckets" -> columns[WINDOW_BUCKETS] = i;
+                case "key" -> columns[KEY] = i;
+                default -> { }
+            }
+        }
+        // A data row never has a column named threshold
+        return columns[THRESHOLD] >= 0 ? columns : null;
+    }
+
+    /**
+     * @return false for blank and comment lines (nothing to import)
+     */
+    boolean parse(byte[] line, int length, Row row) {
+        while (length > 0 && (line[length - 1] == '\r' || line[length - 1] == ' ')) {
+            length--;
+        }
+        if (length == 0 || line[0] == '#') {
+            return false;
+        }
+        row.error = null;
+        row.pattern = null;
+        row.windowSeconds = 0;
+        row.windowBuckets = 0;
+        if (format == ImportFormat.NDJSON) {
+            parseJson(line, length, row);
+        } else {
+            parseCsv(line, length, row);
+        }
+        if (row.error == null && row.threshold < 0) {
+            row.error = "Threshold must not be negative";
+        }
+        return true;
+    }
+
+    /**
+     * Range-check the window fields before narrowing them to the record's int and short.
+     */
+    private static void setWindow(Row row, long windowSeconds, long windowBuckets) {
+        if (windowSeconds < 0 || windowSeconds > Integer.MAX_VALUE) {
+            row.error = "windowSeconds out of range (0.." + Integer.MAX_VALUE + ")";
+        } else if (windowBuckets < 0 || windowBuckets > 0xFFFF) {
+            row.error = "windowBuckets out of range (0..65535)";
+        } else {
+            row.windowSeconds = (int) windowSeconds;
+            row.windowBuckets = (int) windowBuckets;
+        }
+    }
+
+    private void parseCsv(byte[] line, int length, Row row) {
+        splitCsv(line, length);
+        if (columns[THRESHOLD] < 0 || columns[THRESHOLD] >= fieldCount) {
+            row.error = "Missing threshold column";
+            return;
+        }
+        String field = "thresholdValue";
+        long windowSeconds;
+        long windowBuckets;
+        try {
+            row.threshold = parseLong(columns[THRESHOLD]);
+            field = "windowSeconds";
+            windowSeconds = optionalLong(columns[WINDOW_SECONDS]);
+            field = "windowBuckets";
+            windowBuckets = optionalLong(columns[WINDOW_BUCKETS]);
+        } catch (NumberFormatException e) {
+            row.error = "Invalid number in " + field;
+            return;
+        }
+        setWindow(row, windowSeconds, windowBuckets);
+        if (row.error != null) {
+            return;
+        }
+
+        int keyColumn = columns[KEY];
+        if (keyColumn >= 0 && keyColumn < fieldCount && fieldLength[keyColumn] > 0) {
+            setKey(row, fields, fieldStart[keyColumn], fieldLength[keyColumn]);
+            return;
+        }
+        int keyLength = 0;
+        int[] parts = {columns[PROPERTY], columns[TENANT], columns[TYPE], columns[INTERFACE]};
+        for (int i = 0; i < parts.length; i++) {
+            int column = parts[i];
+            if (column < 0 || column >= fieldCount || fieldLength[column] == 0) {
+                row.error = "Missing key column";
+                return;
+            }
+            int needed = keyLength + fieldLength[column] + 1;
+            if (needed > key.length) {
+                key = Arrays.copyOf(key, Math.max(needed, key.length * 2));
+            }
+            if (i > 0) {
+                key[keyLength++] = ';';
+            }
+            System.arraycopy(fields, fieldStart[column], key, keyLength, fieldLength[column]);
+            keyLength += fieldLength[column];
+        }
+        setKey(row, key, 0, keyLength);
+    }
+
+    private void setKey(Row row, byte[] bytes, int offset, int length) {
+        if (ThresholdHierarchy.hasWildcard(bytes, offset, length)) {
+            setPattern(row, new String(bytes, offset, length, StandardCharsets.UTF_8));
+            return;
+        }
+        row.hash = keyHasher.hash(bytes, offset, length);
+        row.key = Arrays.copyOfRange(bytes, offset, offset + length);
+    }
+
+    private void setKey(Row row, CharSequence key) {
+        if (ThresholdHierarchy.hasWildcard(key)) {
+            setPattern(row, key.toString());
+            return;
+        }
+        row.hash = keyHasher.hash(key);
+        row.key = TenantIndex.header(key);
+    }
+
+    private static void setPattern(Row row, String pattern) {
+        if (ThresholdHierarchy.wildcardMask(pattern) <= 0) {
+            row.error = "Default threshold key must be property;tenant;type;interface with * components";
+            return;
+        }
+        row.pattern = pattern;
+    }
+
+    /**
+     * Split into unquoted fields (RFC 4180 quoting, "" inside quotes is a quote).
+     */
+    private void splitCsv(byte[] line, int length) {
+        if (fields.length < length) {
+            fields = new byte[Math.max(length, fields.length * 2)];
+        }
+        fieldCount = 0;
+        int out = 0;
+        int i = 0;
+        while (true) {
+            if (fieldCount == fieldStart.length) {
+                fieldStart = Arrays.copyOf(fieldStart, fieldCount * 2);
+                fieldLength = Arrays.copyOf(fieldLength, fieldCount * 2);
+            }
+            fieldStart[fieldCount] = out;
+            if (i < length && line[i] == '"') {
+                i++;
+                while (i < length) {
+                    if (line[i] == '"') {
+                        if (i + 1 < length && line[i + 1] == '"') {
+                            fields[out++] = '"';
+                            i += 2;
+                            continue;
+                        }
+                        i++;
+                        break;
+                    }
+                    fields[out++] = line[i++];
+                }
+                while (i < length && line[i] != ',') {
+                    i++;
+                }
+            } else {
+                while (i < length && line[i] != ',') {
+                    fields[out++] = line[i++];
+                }
+            }
+            int start = fieldStart[fieldCount];
+            int end = out;
+            while (start < end && fields[start] == ' ') {
+                start++;
+            }
+            while (end > start && fields[end - 1] == ' ') {
+                end--;
+            }
+            fieldStart[fieldCount] = start;
+            fieldLength[fieldCount] = end - start;
+            fieldCount++;
+            if (i >= length) {
+                return;
+            }
+            i++; // comma
+        }
+    }
+
+    private long optionalLong(int column) {
+        if (column < 0 || column >= fieldCount || fieldLength[column] == 0) {
+            return 0;
+        }
+        return parseLong(column);
+    }
+
+    private long parseLong(int column) {
+        int start = fieldStart[column];
+        int end = start + fieldLength[column];
+        if (start == end) {
+            throw new NumberFormatException("empty");
+        }
+        boolean negative = fields[start] == '-';
+        if (negative) {
+            start++;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = fields[i] - '0';
+            if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+                throw new NumberFormatException();
+            }
+            value = value * 10 + digit;
+        }
+        return negative ? -value : value;
+    }
+
+    private void parseJson(byte[] line, int length, Row row) {
+        String compositeKey = null;
+        boolean hasThreshold = false;
+        long windowSeconds = 0;
+        long windowBuckets = 0;
+        Arrays.fill(jsonParts, null);
+        try (JsonParser parser = JSON.createParser(line, 0, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                row.error = "Expected a JSON object";
+                return;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                switch (field) {
+                    case "key" -> compositeKey = parser.getValueAsString();
+                    case "propertyId" -> jsonParts[0] = parser.getValueAsString();
+                    case "tenantId" -> jsonParts[1] = parser.getValueAsString();
+                    case "transactionType" -> jsonParts[2] = parser.getValueAsString();
+                    case "interfaceId" -> jsonParts[3] = parser.getValueAsString();
+                    case "thresholdValue", "threshold" -> {
+                        row.threshold = parser.getValueAsLong(-1);
+                        hasThreshold = true;
+                    }
+                    case "windowSeconds" -> windowSeconds = parser.getValueAsLong(-1);
+                    case "windowBuckets" -> windowBuckets = parser.getValueAsLong(-1);
+                    default -> {
+                        if (value.isStructStart()) {
+                            parser.skipChildren();
+                        }
+                    }
+                }
+            }
+        } catch (JsonProcessingException e) {
+            row.error = e.getLocation() == null
+                ? "Malformed JSON"
+                : "Malformed JSON at column " + e.getLocation().getColumnNr();
+            return;
+        } catch (IOException e) {
+            row.error = "Malformed JSON";
+            return;
+        }
+        if (!hasThreshold) {
+            row.error = "Missing thresholdValue";
+            return;
+        }
+        setWindow(row, windowSeconds, windowBuckets);
+        if (row.error != null) {
+            return;
+        }
+        if (compositeKey != null && !compositeKey.isEmpty()) {
+            setKey(row, compositeKey);
+            return;
+        }
+        jsonKey.setLength(0);
+        for (int i = 0; i < jsonParts.length; i++) {
+            if (jsonParts[i] == null || jsonParts[i].isEmpty()) {
+                row.error = "Missing key field";
+                return;
+            }
+            if (i > 0) {
+                jsonKey.append(';');
+            }
+            jsonKey.append(jsonParts[i]);
+        }
+        setKey(row, jsonKey);
+    }
+}
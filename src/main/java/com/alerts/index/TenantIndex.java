@@ -0,0 +1,83 @@
+package com.alerts.index;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * TenantIndex - Key layout of the tenant-index store
+ *
+ * config-store is keyed by key hash, which scatters a tenant's thresholds
+ * over the whole store. tenant-index maps the composite key, reordered to
+ * "tenant;property;type;interface", to the hash, so a sorted store answers
+ * "all of tenant_7" or "all of tenant_7's property_12" with a prefix range.
+ * key-names maps the hash back to the composite key, so a deleted threshold
+ * (a tombstone carries only the hash) can be removed from the index.
+ *
+ * The composite key is not part of an eagle-eye.config record; producers add
+ * it as the KEY_HEADER header. Records without it are applied to config-store
+ * but not indexed.
+ */
+public final class TenantIndex {
+
+    /** eagle-eye.config record header holding the UTF-8 composite key */
+    public static final String KEY_HEADER = "alerts.key";
+
+    private TenantIndex() {
+    }
+
+    public static byte[] header(CharSequence compositeKey) {
+        return compositeKey.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * "property;tenant;type;interface" to "tenant;property;type;interface",
+     * or null unless the key has exactly four non-empty, non-wildcard parts.
+     */
+    public static String indexKey(String compositeKey) {
+        String[] parts = split(compositeKey);
+        if (parts == null) {
+            return null;
+        }
+        return parts[1] + ';' + parts[0] + ';' + parts[2] + ';' + parts[3];
+    }
+
+    /**
+     * Inverse of indexKey.
+     */
+    public static String compositeKey(String indexKey) {
+        String[] parts = split(indexKey);
+        if (parts == null) {
+            return indexKey;
+        }
+        return parts[1] + ';' + parts[0] + ';' + parts[2] + ';' + parts[3];
+    }
+
+    /**
+     * Prefix of all index keys of a tenant, or of one of its properties.
+     */
+    public static String prefix(String tenant, String property) {
+        return property == null || property.isEmpty() ? tenant + ';' : tenant + ';' + property + ';';
+    }
+
+    /**
+     * Smallest string above every key starting with prefix (prefix ends in ';').
+     */
+    static String prefixEnd(String prefix) {
+        return prefix.substring(0, prefix.length() - 1) + (char) (';' + 1);
+    }
+
+    private static String[] split(String key) {
+        if (key == null) {
+            return null;
+        }
+        String[] parts = key.split(";", -1);
+        if (parts.length != 4) {
+            return null;
+        }
+        for (String part : parts) {
+            if (part.isEmpty() || "*".equals(part)) {
+                return null;
+            }
+        }
+        return parts;
+    }
+}
@@ -0,0 +1,495 @@
+package com.alerts.index;
+
+import com.alerts.hashing.KeyHashes;
+import com.alerts.model.PropertyThreshold;
+import com.alerts.model.ThresholdRecord;
+import com.alerts.streams.AlertTopology;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StoreQueryParameters;
+import org.apache.kafka.streams.StreamsMetadata;
+import org.apache.kafka.streams.TaskMetadata;
+import org.apache.kafka.streams.ThreadMetadata;
+import org.apache.kafka.streams.state.HostInfo;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.QueryableStoreTypes;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.config.StreamsBuilderFactoryBean;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongUnaryOperator;
+
+/**
+ * TenantIndexService - Tenant-scoped threshold queries over the tenant index
+ *
+ * tenant-index is partitioned like config-store (a key's index entry lives in
+ * the task that owns its hash), so a tenant's keys are spread over all
+ * instances. Each query runs on every instance hosting tenant-index
+ * partitions: locally one RocksDB range scan per active partition, joined with
+ * config-store of the same partition; remote instances are asked in parallel
+ * through /internal/tenant-index. Instances that do not answer within
+ * alerts.index.timeout-ms are reported as unavailable and the answer is
+ * marked partial.
+ *
+ * - page: keys of a tenant (optionally one property) in index-key order.
+ *   Pagination is by cursor: next is the last index key returned, and every
+ *   instance resumes strictly after it, so pages stay consistent while
+ *   thresholds are added or removed.
+ * - bulkUpdate: set, scale or offset the threshold of all matching keys
+ *   (at most alerts.index.bulk-max-keys), re-sent to eagle-eye.config with
+ *   their window unchanged. Records carry no alertTimes: config-store keeps
+ *   the current count (ThresholdLoadProcessor), so breaches counted between
+ *   the scan and the update are not lost.
+ * - topBreaching: keys with the highest alertTimes, from a bounded heap on
+ *   each instance.
+ *
+ * Without application.server (single instance) only local partitions are read.
+ */
+@Service
+public class TenantIndexService {
+
+    private static final Logger log = LoggerFactory.getLogger(TenantIndexService.class);
+
+    private static final Comparator<Entry> BY_INDEX_KEY = Comparator.comparing(e -> e.indexKey);
+    private static final Comparator<Entry> BY_ALERT_TIMES =
+        Comparator.<Entry>comparingLong(e -> e.alertTimes).thenComparing(BY_INDEX_KEY.reversed());
+
+    /**
+     * One indexed threshold.
+     */
+    public static final class Entry {
+        final String indexKey;
+        final long hash;
+        final long threshold;
+        final long alertTimes;
+        final int windowSeconds;
+        final int windowBuckets;
+
+        Entry(String indexKey, long hash, long threshold, long alertTimes, int windowSeconds, int windowBuckets) {
+            this.indexKey = indexKey;
+            this.hash = hash;
+            this.threshold = threshold;
+            this.alertTimes = alertTimes;
+            this.windowSeconds = windowSeconds;
+            this.windowBuckets = windowBuckets;
+        }
+
+        public Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("key", TenantIndex.compositeKey(indexKey));
+            map.put("hash", KeyHashes.toHex(hash));
+            map.put("threshold", threshold);
+            map.put("alertTimes", alertTimes);
+            map.put("windowSeconds", windowSeconds);
+            map.put("windowBuckets", windowBuckets);
+            return map;
+        }
+
+        static Entry fromJson(JsonNode node) {
+            String key = node.path("key").asText();
+            String indexKey = TenantIndex.indexKey(key);
+            return new Entry(indexKey == null ? key : indexKey,
+                KeyHashes.parseHex(node.path("hash").asText().getBytes(StandardCharsets.US_ASCII)),
+                node.path("threshold").asLong(), node.path("alertTimes").asLong(),
+                node.path("windowSeconds").asInt(), node.path("windowBuckets").asInt());
+        }
+    }
+
+    /**
+     * Entries gathered from all instances, and which instances did not answer.
+     */
+    public static final class Result {
+        public final List<Entry> entries;
+        public final List<String> unavailableHosts;
+        // Cursor of the next page, null on the last one (page only)
+        public final String next;
+
+        Result(List<Entry> entries, List<String> unavailableHosts, String next) {
+            this.entries = entries;
+            this.unavailableHosts = unavailableHosts;
+            this.next = next;
+        }
+
+        public boolean partial() {
+            return !unavailableHosts.isEmpty();
+        }
+    }
+
+    private final StreamsBuilderFactoryBean streamsBuilderFactoryBean;
+    private final KafkaTemplate<Long, ThresholdRecord> kafkaTemplate;
+    private final ObjectMapper objectMapper;
+    private final HostInfo self;
+    private final boolean enabled;
+    private final int maxPageSize;
+    private final int bulkMaxKeys;
+    private final Duration timeout;
+    private final HttpClient httpClient;
+
+    private final LongAdder pageQueries = new LongAdder();
+    private final LongAdder topQueries = new LongAdder();
+    private final LongAdder bulkUpdates = new LongAdder();
+    private final LongAdder keysUpdated = new LongAdder();
+    private final LongAdder localScans = new LongAdder();
+    private final LongAdder entriesScanned = new LongAdder();
+    private final LongAdder remoteQueries = new LongAdder();
+    private final LongAdder remoteFailures = new LongAdder();
+
+    public TenantIndexService(StreamsBuilderFactoryBean streamsBuilderFactoryBean,
+                              KafkaTemplate<Long, ThresholdRecord> kafkaTemplate,
+                              ObjectMapper objectMapper,
+                              @Value("${spring.kafka.streams.properties.application.server:}") String applicationServer,
+                              @Value("${alerts.index.enabled:false}") boolean enabled,
+                              @Value("${alerts.index.max-page-size:1000}") int maxPageSize,
+                              @Value("${alerts.index.bulk-max-keys:100000}") int bulkMaxKeys,
+                              @Value("${alerts.index.timeout-ms:2000}") long timeoutMillis) {
+        this.streamsBuilderFactoryBean = streamsBuilderFactoryBean;
+        this.kafkaTemplate = kafkaTemplate;
+        this.objectMapper = objectMapper;
+        this.self = applicationServer.isBlank() ? null : HostInfo.buildFromEndpoint(applicationServer);
+        this.enabled = enabled;
+        this.maxPageSize = Math.max(1, maxPageSize);
+        this.bulkMaxKeys = Math.max(1, bulkMaxKeys);
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(timeout)
+            .build();
+        if (enabled) {
+            log.info("Tenant index enabled (max page {}, bulk max {} keys)", this.maxPageSize, this.bulkMaxKeys);
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int maxPageSize() {
+        return maxPageSize;
+    }
+
+    /**
+     * Up to limit keys of tenant (and property, if given) after the cursor, from all instances.
+     *
+     * @throws IllegalStateException if Kafka Streams is not running
+     */
+    public Result page(String tenant, String property, String after, int limit) {
+        pageQueries.increment();
+        int size = Math.min(Math.max(1, limit), maxPageSize);
+        String query = "?limit=" + size + param("property", property) + param("after", after);
+        Result result = gather(localPage(tenant, property, after, size), "/internal/tenant-index/" + encode(tenant)
+            + query);
+        List<Entry> entries = result.entries;
+        entries.sort(BY_INDEX_KEY);
+        if (entries.size() < size) {
+            return new Result(entries, result.unavailableHosts, null);
+        }
+        List<Entry> page = new ArrayList<>(entries.subList(0, size));
+        return new Result(page, result.unavailableHosts, page.get(size - 1).indexKey);
+    }
+
+    /**
+     * Keys of tenant (and property, if given) with the highest alertTimes, from all instances.
+     *
+     * @throws IllegalStateException if Kafka Streams is not running
+     */
+    public Result topBreaching(String tenant, String property, int limit) {
+        topQueries.increment();
+        int size = Math.min(Math.max(1, limit), maxPageSize);
+        Result result = gather(localTop(tenant, property, size), "/internal/tenant-index/" + encode(tenant)
+            + "/top?limit=" + size + param("property", property));
+        List<Entry> entries = result.entries;
+        entries.sort(BY_ALERT_TIMES.reversed());
+        return new Result(entries.size() > size ? new ArrayList<>(entries.subList(0, size)) : entries,
+            result.unavailableHosts, null);
+    }
+
+    /**
+     * Apply update to the threshold of every matching key, page by page.
+     *
+     * @throws IllegalStateException if Kafka Streams is not running
+     */
+    public Map<String, Object> bulkUpdate(String tenant, String property, LongUnaryOperator update, boolean dryRun) {
+        bulkUpdates.increment();
+        long matched = 0;
+        long updated = 0;
+        long unchanged = 0;
+        long failed = 0;
+        boolean truncated = false;
+        TreeSet<String> unavailableHosts = new TreeSet<>();
+        List<CompletableFuture<?>> sends = new ArrayList<>();
+
+        String cursor = null;
+        do {
+            Result page = page(tenant, property, cursor, maxPageSize);
+            unavailableHosts.addAll(page.unavailableHosts);
+            for (Entry entry : page.entries) {
+                if (matched == bulkMaxKeys) {
+                    truncated = true;
+                    break;
+                }
+                matched++;
+                long threshold = Math.max(0, update.applyAsLong(entry.threshold));
+                if (threshold == entry.threshold) {
+                    unchanged++;
+                    continue;
+                }
+                updated++;
+                if (!dryRun) {
+                    sends.add(send(entry, threshold));
+                }
+            }
+            cursor = truncated ? null : page.next;
+        } while (cursor != null);
+
+        for (CompletableFuture<?> send : sends) {
+            try {
+                send.get();
+            } catch (ExecutionException e) {
+                failed++;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while sending thresholds", e);
+            }
+        }
+        if (!dryRun) {
+            keysUpdated.add(updated - failed);
+        }
+
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("tenant", tenant);
+        response.put("property", property);
+        response.put("dryRun", dryRun);
+        response.put("matched", matched);
+        response.put("updated", updated - failed);
+        response.put("unchanged", unchanged);
+        response.put("failed", failed);
+        response.put("truncated", truncated);
+        response.put("partial", !unavailableHosts.isEmpty());
+        response.put("unavailableHosts", new ArrayList<>(unavailableHosts));
+        log.info("Tenant bulk update {}{}: {} matched, {} updated, {} unchanged, {} failed{}",
+            tenant, property == null ? "" : "/" + property, matched, updated - failed, unchanged, failed,
+            dryRun ? " (dry run)" : "");
+        return response;
+    }
+
+    private CompletableFuture<?> send(Entry entry, long threshold) {
+        ThresholdRecord record = PropertyThreshold.toRecord(threshold, 0, entry.windowSeconds, entry.windowBuckets);
+        ProducerRecord<Long, ThresholdRecord> producerRecord =
+            new ProducerRecord<>(AlertTopology.CONFIG_TOPIC, entry.hash, record);
+        producerRecord.headers().add(TenantIndex.KEY_HEADER,
+            TenantIndex.header(TenantIndex.compositeKey(entry.indexKey)));
+        return kafkaTemplate.send(producerRecord);
+    }
+
+    /**
+     * Page of this instance's active partitions only (/internal/tenant-index).
+     *
+     * @throws IllegalStateException if Kafka Streams is not running
+     */
+    public List<Entry> localPage(String tenant, String property, String after, int limit) {
+        String prefix = TenantIndex.prefix(tenant, property);
+        String from = after != null && after.compareTo(prefix) > 0 ? after : prefix;
+        String to = TenantIndex.prefixEnd(prefix);
+        List<Entry> entries = new ArrayList<>();
+        for (int partition : localPartitions()) {
+            ReadOnlyKeyValueStore<Long, ThresholdRecord> config = configStore(partition);
+            int taken = 0;
+            try (KeyValueIterator<String, Long> it = indexStore(partition).range(from, to)) {
+                while (it.hasNext() && taken < limit) {
+                    KeyValue<String, Long> next = it.next();
+                    entriesScanned.increment();
+                    if (!next.key.startsWith(prefix) || next.key.equals(after)) {
+                        continue;
+                    }
+                    Entry entry = join(next, config);
+                    if (entry != null) {
+                        entries.add(entry);
+                        taken++;
+                    }
+                }
+            }
+        }
+        localScans.increment();
+        entries.sort(BY_INDEX_KEY);
+        return entries;
+    }
+
+    /**
+     * Top breaching keys of this instance's active partitions only.
+     *
+     * @throws IllegalStateException if Kafka Streams is not running
+     */
+    public List<Entry> localTop(String tenant, String property, int limit) {
+        String prefix = TenantIndex.prefix(tenant, property);
+        PriorityQueue<Entry> top = new PriorityQueue<>(limit + 1, BY_ALERT_TIMES);
+        for (int partition : localPartitions()) {
+            ReadOnlyKeyValueStore<Long, ThresholdRecord> config = configStore(partition);
+            try (KeyValueIterator<String, Long> it =
+                     indexStore(partition).range(prefix, TenantIndex.prefixEnd(prefix))) {
+                while (it.hasNext()) {
+                    KeyValue<String, Long> next = it.next();
+                    entriesScanned.increment();
+                    if (!next.key.startsWith(prefix)) {
+                        continue;
+                    }
+                    Entry entry = join(next, config);
+                    if (entry == null || entry.alertTimes <= 0) {
+                        continue;
+                    }
+                    top.add(entry);
+                    if (top.size() > limit) {
+                        top.poll();
+                    }
+                }
+            }
+        }
+        localScans.increment();
+        List<Entry> entries = new ArrayList<>(top);
+        entries.sort(BY_ALERT_TIMES.reversed());
+        return entries;
+    }
+
+    private static Entry join(KeyValue<String, Long> indexed, ReadOnlyKeyValueStore<Long, ThresholdRecord> config) {
+        ThresholdRecord record = config.get(indexed.value);
+        if (record == null) {
+            // Deleted between the two reads
+            return null;
+        }
+        return new Entry(indexed.key, indexed.value, record.threshold(), record.alertTimes(),
+            record.windowSeconds(), record.windowBuckets());
+    }
+
+    /**
+     * Local entries plus those of every other instance hosting tenant-index.
+     */
+    private Result gather(List<Entry> local, String pathAndQuery) {
+        List<Entry> entries = new ArrayList<>(local);
+        List<String> unavailableHosts = new ArrayList<>();
+        if (self == null) {
+            return new Result(entries, unavailableHosts, null);
+        }
+        Map<HostInfo, CompletableFuture<HttpResponse<byte[]>>> requests = new LinkedHashMap<>();
+        for (StreamsMetadata metadata : runningStreams().streamsMetadataForStore(AlertTopology.TENANT_INDEX_STORE)) {
+            HostInfo host = metadata.hostInfo();
+            if (self.equals(host) || requests.containsKey(host)) {
+                continue;
+            }
+            URI uri = URI.create("http://" + host.host() + ":" + host.port() + pathAndQuery);
+            requests.put(host, httpClient.sendAsync(HttpRequest.newBuilder(uri).timeout(timeout).GET().build(),
+                HttpResponse.BodyHandlers.ofByteArray()));
+            remoteQueries.increment();
+        }
+        for (Map.Entry<HostInfo, CompletableFuture<HttpResponse<byte[]>>> request : requests.entrySet()) {
+            String host = request.getKey().host() + ":" + request.getKey().port();
+            try {
+                HttpResponse<byte[]> response = request.getValue().get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+                if (response.statusCode() != 200) {
+                    throw new IOException("HTTP " + response.statusCode());
+                }
+                for (JsonNode item : objectMapper.readTree(response.body()).path("items")) {
+                    entries.add(Entry.fromJson(item));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while querying " + host, e);
+            } catch (ExecutionException | TimeoutException | IOException | IllegalArgumentException e) {
+                request.getValue().cancel(true);
+                remoteFailures.increment();
+                unavailableHosts.add(host);
+                log.warn("Tenant index query to {} failed: {}", host, e.getMessage());
+            }
+        }
+        return new Result(entries, unavailableHosts, null);
+    }
+
+    private KafkaStreams runningStreams() {
+        KafkaStreams streams = streamsBuilderFactoryBean.getKafkaStreams();
+        if (streams == null || !streams.state().isRunningOrRebalancing()) {
+            throw new IllegalStateException("Kafka Streams is not running");
+        }
+        return streams;
+    }
+
+    /**
+     * eagle-eye.config partitions of this instance's active tasks. The local
+     * store accessors are package-private so tests can serve the stores of a
+     * TopologyTestDriver.
+     *
+     * @throws IllegalStateException if Kafka Streams is not running
+     */
+    List<Integer> localPartitions() {
+        List<Integer> partitions = new ArrayList<>();
+        for (ThreadMetadata thread : runningStreams().metadataForLocalThreads()) {
+            for (TaskMetadata task : thread.activeTasks()) {
+                for (TopicPartition tp : task.topicPartitions()) {
+                    if (AlertTopology.CONFIG_TOPIC.equals(tp.topic())) {
+                        partitions.add(tp.partition());
+                    }
+                }
+            }
+        }
+        return partitions;
+    }
+
+    ReadOnlyKeyValueStore<String, Long> indexStore(int partition) {
+        return runningStreams().store(StoreQueryParameters
+            .fromNameAndType(AlertTopology.TENANT_INDEX_STORE, QueryableStoreTypes.<String, Long>keyValueStore())
+            .withPartition(partition));
+    }
+
+    ReadOnlyKeyValueStore<Long, ThresholdRecord> configStore(int partition) {
+        return runningStreams().store(StoreQueryParameters
+            .fromNameAndType(AlertTopology.CONFIG_STORE, QueryableStoreTypes.<Long, ThresholdRecord>keyValueStore())
+            .withPartition(partition));
+    }
+
+    private static String param(String name, String value) {
+        return value == null || value.isEmpty() ? "" : "&" + name + "=" + encode(value);
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8).replace("+", "%20");
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("pageQueries", pageQueries.sum());
+        stats.put("topQueries", topQueries.sum());
+        stats.put("bulkUpdates", bulkUpdates.sum());
+        stats.put("keysUpdated", keysUpdated.sum());
+        stats.put("localScans", localScans.sum());
+        stats.put("entriesScanned", entriesScanned.sum());
+        stats.put("remoteQueries", remoteQueries.sum());
+        stats.put("remoteFailures", remoteFailures.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,183 @@
+package com.alerts.ingest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * IngestConnection - One TCP ingest connection, shared by its IO loop and the workers
+ *
+ * The IO loop thread only reads and writes the socket. Requests are processed
+ * on an ingest worker straight out of the read buffer, with responses
+ * appended to the write buffer, so a read carrying many pipelined requests is
+ * answered with a single write. While a worker holds the connection its
+ * selection key has no interest ops, so the buffers always belong to exactly
+ * one thread; the worker hands the connection back through the loop's
+ * resume queue. When the client stops reading responses, the connection
+ * stops reading requests until the write buffer drains.
+ */
+final class IngestConnection {
+
+    private final SocketChannel channel;
+    private final boolean binary;
+    private final IngestProtocol protocol;
+    private final IngestStats stats;
+    private final BufferPool pool;
+    private final Executor workers;
+    private final Consumer<IngestConnection> resume;
+    private ByteBuffer in;
+    private ByteBuffer out;
+    private SelectionKey key;
+
+    // IO loop thread only
+    private boolean processing;
+    private boolean closed;
+    // Written by the worker, read by the IO loop after resume
+    private boolean outFull;
+    private boolean protocolError;
+
+    IngestConnection(SocketChannel channel, boolean binary, IngestProtocol protocol, IngestStats stats,
+                     BufferPool pool, Executor workers, Consumer<IngestConnection> resume) {
+        this.channel = channel;
+        this.binary = binary;
+        this.protocol = protocol;
+        this.stats = stats;
+        this.pool = pool;
+        this.workers = workers;
+        this.resume = resume;
+        this.in = pool.acquire();
+        this.out = pool.acquire();
+    }
+
+    void register(Selector selector) throws IOException {
+        key = channel.register(selector, SelectionKey.OP_READ, this);
+        stats.open.increment();
+    }
+
+    void onReadable() throws IOException {
+        int read = channel.read(in);
+        if (read < 0) {
+            close();
+            return;
+        }
+        stats.bytesIn.add(read);
+        dispatch();
+    }
+
+    void onWritable() throws IOException {
+        if (!flush()) {
+            return;
+        }
+        if (outFull) {
+            dispatch();
+        } else {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    /**
+     * Back on the IO loop after a worker pass: write the responses, then either
+     * process what did not fit or wait for more input.
+     */
+    void onResumed() throws IOException {
+        processing = false;
+        if (closed) {
+            release();
+            return;
+        }
+        if (protocolError) {
+            stats.protocolErrors.increment();
+            flush();
+            close();
+            return;
+        }
+        if (!flush()) {
+            stats.writeStalls.increment();
+            key.interestOps(SelectionKey.OP_WRITE);
+            return;
+        }
+        if (outFull) {
+            dispatch();
+        } else {
+            key.interestOps(SelectionKey.OP_READ);
+        }
+    }
+
+    private void dispatch() {
+        processing = true;
+        key.interestOps(0);
+        try {
+            workers.execute(this::process);
+        } catch (RejectedExecutionException e) {
+            // Shutting down
+            processing = false;
+            close();
+        }
+    }
+
+    /**
+     * Worker: process buffered requests until input runs out or the write
+     * buffer has no room for another response.
+     */
+    private void process() {
+        try {
+            in.flip();
+            if (binary) {
+                protocol.processFrames(in, out);
+            } else {
+                protocol.processLines(in, out);
+            }
+            in.compact();
+            outFull = out.remaining() < (binary ? IngestProtocol.BINARY_RESPONSE_BYTES
+                : IngestProtocol.MAX_LINE_RESPONSE_BYTES);
+        } catch (IngestProtocol.ProtocolException e) {
+            protocolError = true;
+            if (!binary && out.remaining() >= IngestProtocol.MAX_LINE_RESPONSE_BYTES) {
+                IngestProtocol.writeLineError(out, "line too long");
+            }
+        }
+        resume.accept(this);
+    }
+
+    private boolean flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining() && channel.write(out) > 0) {
+            // keep writing while the socket accepts data
+        }
+        boolean drained = !out.hasRemaining();
+        out.compact();
+        return drained;
+    }
+
+    void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (key != null) {
+            key.cancel();
+            stats.open.decrement();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // already gone
+        }
+        if (!processing) {
+            // Otherwise the worker still uses the buffers; onResumed releases them
+            release();
+        }
+    }
+
+    private void release() {
+        pool.release(in);
+        pool.release(out);
+        in = null;
+        out = null;
+    }
+}
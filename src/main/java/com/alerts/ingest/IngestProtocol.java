@@ -0,0 +1,386 @@
+package com.alerts.ingest;
+
+import com.alerts.admission.AdmissionControl;
+import com.alerts.hashing.KeyHasher;
+import com.alerts.metrics.AlertMetrics;
+import com.alerts.service.AlertProcessingService;
+import com.alerts.service.AlertProcessingService.AlertResult;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * IngestProtocol - Wire formats of the ingest listeners
+ *
+ * Line protocol (TCP and UDP), ASCII, one event per line:
+ *   request:  <property;tenant;type;interface> <errorCount>\n
+ *   response: A <threshold> <alertTimes>\n   alert published
+ *             S <threshold> <alertTimes>\n   alert suppressed (cooldown)
+ *             B <threshold>\n                below threshold
+ *             N\n                            no threshold
+ *             Q\n                            queued (stream evaluation)
+ *             E <message>\n                  rejected event
+ *             E tenant_rate_limited <ms>\n   over the tenant's rate, retry after ms
+ * The key is everything before the last space. UDP datagrams hold one or
+ * more lines and get no response.
+ *
+ * Binary protocol (TCP), big-endian, length-prefixed:
+ *   request:  u16 keyLength, key (UTF-8), i64 errorCount
+ *             keyLength 0xFFFF: the key is an i64 key hash instead
+ *   response: u8 status, i64 threshold, i64 alertTimes (17 bytes)
+ *             status RATE_LIMITED: i64 retry-after ms, i64 0
+ *
+ * TCP responses come back in request order, so clients may pipeline any
+ * number of requests.
+ *
+ * Events are parsed in place from the connection buffer; keys are hashed
+ * from the buffer bytes without creating Strings. Only while default
+ * thresholds exist (ThresholdHierarchy) is the key also decoded, so keys
+ * without a threshold of their own can resolve to one. Prehashed keys only
+ * resolve to defaults they were resolved to before.
+ *
+ * Every event is charged to its tenant's bucket (AdmissionControl), as an
+ * /api/alert request would be; events over the limit are answered with the
+ * rate-limited error and not evaluated (UDP events are dropped). Prehashed
+ * keys carry no tenant and share the bucket of keys without one.
+ */
+final class IngestProtocol {
+
+    static final byte NO_THRESHOLD = 0;
+    static final byte BELOW_THRESHOLD = 1;
+    static final byte ALERT = 2;
+    static final byte SUPPRESSED = 3;
+    static final byte QUEUED = 4;
+    static final byte RATE_LIMITED = (byte) 0xFE;
+    static final byte ERROR = (byte) 0xFF;
+
+    static final int PREHASHED = 0xFFFF;
+    static final int BINARY_RESPONSE_BYTES = 17;
+    // "A " + 2 x 20 digits + separator + '\n', also covers the error lines
+    static final int MAX_LINE_RESPONSE_BYTES = 64;
+
+    /**
+     * Malformed input a connection cannot recover from (binary framing lost,
+     * line longer than the buffer).
+     */
+    static final class ProtocolException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        ProtocolException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * ASCII key bytes of the connection buffer seen as characters, so the
+     * tenant can be charged without decoding the key. One per thread.
+     */
+    private static final class AsciiKey implements CharSequence {
+        ByteBuffer buffer;
+        int offset;
+        int length;
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) buffer.get(offset + index);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            byte[] bytes = new byte[end - start];
+            buffer.get(offset + start, bytes);
+            return new String(bytes, StandardCharsets.US_ASCII);
+        }
+
+        @Override
+        public String toString() {
+            return subSequence(0, length).toString();
+        }
+    }
+
+    private static final ThreadLocal<AsciiKey> ASCII_KEY = ThreadLocal.withInitial(AsciiKey::new);
+
+    private final AlertProcessingService alertProcessingService;
+    private final KeyHasher keyHasher;
+    private final AlertMetrics metrics;
+    private final AdmissionControl admission;
+    private final int maxKeyBytes;
+    private final IngestStats stats;
+
+    IngestProtocol(AlertProcessingService alertProcessingService, KeyHasher keyHasher, AlertMetrics metrics,
+                   AdmissionControl admission, int maxKeyBytes, IngestStats stats) {
+        this.alertProcessingService = alertProcessingService;
+        this.keyHasher = keyHasher;
+        this.metrics = metrics;
+        this.admission = admission;
+        this.maxKeyBytes = maxKeyBytes;
+        this.stats = stats;
+    }
+
+    /**
+     * Process complete lines between in.position() and in.limit(), stopping
+     * early when out (if any) has no room for another response. in.position()
+     * is left at the first unprocessed byte.
+     *
+     * @param out responses, or null for fire-and-forget (UDP)
+     * @return number of events processed
+     */
+    int processLines(ByteBuffer in, ByteBuffer out) throws ProtocolException {
+        int processed = 0;
+        int pos = in.position();
+        int limit = in.limit();
+        while (pos < limit && (out == null || out.remaining() >= MAX_LINE_RESPONSE_BYTES)) {
+            int eol = pos;
+            while (eol < limit && in.get(eol) != '\n') {
+                eol++;
+            }
+            if (eol == limit) {
+                if (out == null) {
+                    // Datagram without trailing newline: the last line ends there
+                    eol = limit;
+                } else {
+                    if (limit - pos >= in.capacity()) {
+                        throw new ProtocolException("Line longer than " + in.capacity() + " bytes");
+                    }
+                    break;
+                }
+            }
+            int end = eol;
+            if (end > pos && in.get(end - 1) == '\r') {
+                end--;
+            }
+            if (end > pos) {
+                processLine(in, pos, end, out);
+                processed++;
+            }
+            pos = Math.min(limit, eol + 1);
+        }
+        in.position(pos);
+        return processed;
+    }
+
+    private void processLine(ByteBuffer in, int start, int end, ByteBuffer out) {
+        int space = end - 1;
+        while (space > start && in.get(space) != ' ') {
+            space--;
+        }
+        int keyLength = space - start;
+        if (keyLength <= 0 || keyLength > maxKeyBytes) {
+            rejectLine(out, "expected <key> <errorCount>");
+            return;
+        }
+        long errorCount = parseCount(in, space + 1, end);
+        if (errorCount < 0) {
+            rejectLine(out, "invalid errorCount");
+            return;
+        }
+        AdmissionControl.Decision decision = admit(in, start, keyLength);
+        if (!decision.admitted()) {
+            if (out != null) {
+                writeLineError(out, "tenant_rate_limited " + decision.retryAfterMillis());
+            }
+            return;
+        }
+        AlertResult result = process(hash(in, start, keyLength), key(in, start, keyLength), errorCount);
+        if (out == null) {
+            return;
+        }
+        if (result == null) {
+            writeLineError(out, "internal error");
+            return;
+        }
+        byte status = status(result);
+        switch (status) {
+            case ALERT -> out.put((byte) 'A');
+            case SUPPRESSED -> out.put((byte) 'S');
+            case BELOW_THRESHOLD -> out.put((byte) 'B');
+            case QUEUED -> out.put((byte) 'Q');
+            default -> out.put((byte) 'N');
+        }
+        if (status == ALERT || status == SUPPRESSED || status == BELOW_THRESHOLD) {
+            out.put((byte) ' ');
+            putDecimal(out, result.threshold);
+            if (status != BELOW_THRESHOLD) {
+                out.put((byte) ' ');
+                putDecimal(out, result.alertTimes);
+            }
+        }
+        out.put((byte) '\n');
+    }
+
+    private void rejectLine(ByteBuffer out, String message) {
+        stats.malformed.increment();
+        if (out != null) {
+            writeLineError(out, message);
+        }
+    }
+
+    /**
+     * Process complete binary frames between in.position() and in.limit(),
+     * stopping early when out has no room for another response.
+     */
+    int processFrames(ByteBuffer in, ByteBuffer out) throws ProtocolException {
+        int processed = 0;
+        int pos = in.position();
+        int limit = in.limit();
+        while (limit - pos >= 2 && out.remaining() >= BINARY_RESPONSE_BYTES) {
+            int keyLength = in.getShort(pos) & 0xFFFF;
+            boolean prehashed = keyLength == PREHASHED;
+            if (!prehashed && (keyLength == 0 || keyLength > maxKeyBytes)) {
+                stats.malformed.increment();
+                throw new ProtocolException("Invalid key length " + keyLength);
+            }
+            int frameLength = 2 + (prehashed ? 8 : keyLength) + 8;
+            if (limit - pos < frameLength) {
+                break;
+            }
+            int keyStart = pos + 2;
+            long errorCount = in.getLong(pos + frameLength - 8);
+            pos += frameLength;
+            processed++;
+            if (errorCount < 0) {
+                stats.malformed.increment();
+                out.put(ERROR).putLong(0).putLong(0);
+                continue;
+            }
+            AdmissionControl.Decision decision = prehashed
+                ? admitted(admission.admitEvent(null))
+                : admit(in, keyStart, keyLength);
+            if (!decision.admitted()) {
+                out.put(RATE_LIMITED).putLong(decision.retryAfterMillis()).putLong(0);
+                continue;
+            }
+
+            long hash = prehashed ? in.getLong(keyStart) : hash(in, keyStart, keyLength);
+            AlertResult result = process(hash, prehashed ? null : key(in, keyStart, keyLength), errorCount);
+            if (result == null) {
+                out.put(ERROR).putLong(0).putLong(0);
+            } else {
+                out.put(status(result)).putLong(result.threshold).putLong(result.alertTimes);
+            }
+        }
+        in.position(pos);
+        return processed;
+    }
+
+    /**
+     * Charge the event to the tenant of the key bytes. Keys with non-ASCII
+     * bytes are decoded first, so their tenant gets the same bucket as over HTTP.
+     */
+    private AdmissionControl.Decision admit(ByteBuffer in, int offset, int length) {
+        for (int i = offset; i < offset + length; i++) {
+            if (in.get(i) < 0) {
+                byte[] bytes = new byte[length];
+                in.get(offset, bytes);
+                return admitted(admission.admitEvent(new String(bytes, StandardCharsets.UTF_8)));
+            }
+        }
+        AsciiKey key = ASCII_KEY.get();
+        key.buffer = in;
+        key.offset = offset;
+        key.length = length;
+        try {
+            return admitted(admission.admitEvent(key));
+        } finally {
+            key.buffer = null;
+        }
+    }
+
+    private AdmissionControl.Decision admitted(AdmissionControl.Decision decision) {
+        if (!decision.admitted()) {
+            stats.rateLimited.increment();
+        }
+        return decision;
+    }
+
+    private long hash(ByteBuffer in, int offset, int length) {
+        long start = metrics.start();
+        long hash = keyHasher.hash(in, offset, length);
+        metrics.stop(AlertMetrics.Stage.HASH, start);
+        return hash;
+    }
+
+    /**
+     * Key for default threshold resolution; null (nothing decoded) while there are no defaults.
+     */
+    private CharSequence key(ByteBuffer in, int offset, int length) {
+        if (!alertProcessingService.hasDefaults()) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(offset, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * @return the result, or null if processing failed
+     */
+    private AlertResult process(long hash, CharSequence key, long errorCount) {
+        try {
+            AlertResult result = alertProcessingService.processAlert(hash, key, errorCount);
+            stats.events.increment();
+            return result;
+        } catch (RuntimeException e) {
+            stats.failed.increment();
+            return null;
+        }
+    }
+
+    static byte status(AlertResult result) {
+        return switch (result.getReason()) {
+            case "threshold_breached" -> result.isSuppressed() ? SUPPRESSED : ALERT;
+            case "below_threshold" -> BELOW_THRESHOLD;
+            case "queued" -> QUEUED;
+            default -> NO_THRESHOLD;
+        };
+    }
+
+    static void writeLineError(ByteBuffer out, String message) {
+        out.put((byte) 'E').put((byte) ' ');
+        for (int i = 0; i < message.length(); i++) {
+            out.put((byte) message.charAt(i));
+        }
+        out.put((byte) '\n');
+    }
+
+    /**
+     * Non-negative decimal without a sign; -1 if the bytes are not one.
+     */
+    private static long parseCount(ByteBuffer in, int start, int end) {
+        if (start >= end || end - start > 18) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = in.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static void putDecimal(ByteBuffer out, long value) {
+        if (value < 0) {
+            out.put((byte) '-');
+            value = -value;
+        }
+        int start = out.position();
+        do {
+            out.put((byte) ('0' + (int) (value % 10)));
+            value /= 10;
+        } while (value > 0);
+        // Digits were written least significant first
+        for (int i = start, j = out.position() - 1; i < j; i++, j--) {
+            byte b = out.get(i);
+            out.put(i, out.get(j));
+            out.put(j, b);
+        }
+    }
+}
@@ -0,0 +1,340 @@
+package com.alerts.ingest;
+
+import com.alerts.admission.AdmissionControl;
+import com.alerts.hashing.KeyHasher;
+import com.alerts.metrics.AlertMetrics;
+import com.alerts.service.AlertProcessingService;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * IngestServer - Compact TCP/UDP ingest of error counts next to /api/alert
+ *
+ * For agents where HTTP + JSON framing costs more than the event itself.
+ * Three optional listeners (see IngestProtocol for the formats):
+ * - alerts.ingest.line-port:   TCP line protocol with pipelined acks
+ * - alerts.ingest.binary-port: TCP length-prefixed binary protocol with
+ *                              pipelined acks
+ * - alerts.ingest.udp-port:    UDP line protocol, fire-and-forget
+ *
+ * TCP connections are spread over alerts.ingest.io-threads NIO selector
+ * loops, which only accept, read and write. Once a read arrives the
+ * connection is handed to one of alerts.ingest.worker-threads workers, which
+ * parse its pooled direct buffers in place and call
+ * AlertProcessingService.processAlert; a threshold lookup that has to ask
+ * another instance (ThresholdRouter) then holds up a worker, not every
+ * connection of the loop. An event still costs one parse, one hash and one
+ * evaluation with no per-event allocation, and a connection is on at most
+ * one worker at a time, so responses stay in request order.
+ *
+ * UDP datagrams are received and processed on their own ingest-udp thread.
+ */
+@Component
+public class IngestServer {
+
+    private static final Logger log = LoggerFactory.getLogger(IngestServer.class);
+
+    private final class IoLoop implements Runnable {
+        final Selector selector;
+        final ConcurrentLinkedQueue<IngestConnection> pending = new ConcurrentLinkedQueue<>();
+        // Connections handed back by the workers
+        final ConcurrentLinkedQueue<IngestConnection> resumed = new ConcurrentLinkedQueue<>();
+        final Thread thread;
+
+        IoLoop(int index) throws IOException {
+            selector = Selector.open();
+            thread = new Thread(this, "ingest-io-" + index);
+            thread.setDaemon(true);
+        }
+
+        void add(IngestConnection connection) {
+            pending.add(connection);
+            selector.wakeup();
+        }
+
+        void resume(IngestConnection connection) {
+            resumed.add(connection);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select();
+                    IngestConnection connection;
+                    while ((connection = pending.poll()) != null) {
+                        try {
+                            connection.register(selector);
+                        } catch (ClosedChannelException e) {
+                            connection.close();
+                        }
+                    }
+                    while ((connection = resumed.poll()) != null) {
+                        try {
+                            connection.onResumed();
+                        } catch (IOException e) {
+                            connection.close();
+                        }
+                    }
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        handle(key);
+                    }
+                    selector.selectedKeys().clear();
+                } catch (IOException | RuntimeException e) {
+                    if (running) {
+                        log.error("❌ Ingest IO loop error: {}", e.getMessage());
+                    }
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                if (key.attachment() instanceof IngestConnection connection) {
+                    connection.close();
+                }
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // shutting down
+            }
+        }
+
+        private void handle(SelectionKey key) {
+            if (!key.isValid()) {
+                return;
+            }
+            if (key.attachment() instanceof Boolean binary) {
+                accept((ServerSocketChannel) key.channel(), binary);
+                return;
+            }
+            IngestConnection connection = (IngestConnection) key.attachment();
+            try {
+                if (key.isReadable()) {
+                    connection.onReadable();
+                } else if (key.isWritable()) {
+                    connection.onWritable();
+                }
+            } catch (IOException e) {
+                connection.close();
+            }
+        }
+    }
+
+    private final IngestProtocol protocol;
+    private final IngestStats stats = new IngestStats();
+    private final boolean enabled;
+    private final String bindAddress;
+    private final int linePort;
+    private final int binaryPort;
+    private final int udpPort;
+    private final BufferPool bufferPool;
+    private final IoLoop[] loops;
+    private final ExecutorService workers;
+    private final int workerThreads;
+    private final List<ServerSocketChannel> servers = new ArrayList<>();
+    private DatagramChannel udpChannel;
+    private Thread udpThread;
+    private int nextLoop;
+    private volatile boolean running = true;
+
+    public IngestServer(AlertProcessingService alertProcessingService,
+                        KeyHasher keyHasher,
+                        AlertMetrics metrics,
+                        AdmissionControl admission,
+                        @Value("${alerts.ingest.enabled:false}") boolean enabled,
+                        @Value("${alerts.ingest.bind-address:0.0.0.0}") String bindAddress,
+                        @Value("${alerts.ingest.line-port:9400}") int linePort,
+                        @Value("${alerts.ingest.binary-port:9401}") int binaryPort,
+                        @Value("${alerts.ingest.udp-port:9402}") int udpPort,
+                        @Value("${alerts.ingest.io-threads:0}") int ioThreads,
+                        @Value("${alerts.ingest.worker-threads:0}") int workerThreads,
+                        @Value("${alerts.ingest.buffer-bytes:65536}") int bufferBytes,
+                        @Value("${alerts.ingest.max-key-bytes:1024}") int maxKeyBytes) {
+        if (bufferBytes < maxKeyBytes + 2 * IngestProtocol.MAX_LINE_RESPONSE_BYTES) {
+            throw new IllegalArgumentException("alerts.ingest.buffer-bytes must exceed max-key-bytes + "
+                + 2 * IngestProtocol.MAX_LINE_RESPONSE_BYTES);
+        }
+        this.protocol = new IngestProtocol(alertProcessingService, keyHasher, metrics, admission, maxKeyBytes,
+            stats);
+        this.enabled = enabled;
+        this.bindAddress = bindAddress;
+        this.linePort = linePort;
+        this.binaryPort = binaryPort;
+        this.udpPort = udpPort;
+        int threads = ioThreads > 0 ? ioThreads : Runtime.getRuntime().availableProcessors();
+        // Two buffers per connection; keep enough idle ones for a burst of reconnects
+        this.bufferPool = new BufferPool(bufferBytes, threads * 64);
+        this.loops = new IoLoop[enabled ? threads : 0];
+        this.workerThreads = workerThreads > 0 ? workerThreads : Runtime.getRuntime().availableProcessors();
+        if (!enabled) {
+            this.workers = null;
+            return;
+        }
+        AtomicInteger threadId = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(this.workerThreads, r -> {
+            Thread t = new Thread(r, "ingest-worker-" + threadId.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+
+        try {
+            for (int i = 0; i < loops.length; i++) {
+                loops[i] = new IoLoop(i);
+            }
+            listen(linePort, false);
+            listen(binaryPort, true);
+            if (udpPort > 0) {
+                udpChannel = DatagramChannel.open();
+                udpChannel.setOption(StandardSocketOptions.SO_RCVBUF, 4 * 1024 * 1024);
+                udpChannel.bind(new InetSocketAddress(bindAddress, udpPort));
+                udpThread = new Thread(this::receiveDatagrams, "ingest-udp");
+                udpThread.setDaemon(true);
+                udpThread.start();
+            }
+        } catch (IOException e) {
+            shutdown();
+            throw new IllegalStateException("Cannot start ingest listeners: " + e.getMessage(), e);
+        }
+        for (IoLoop loop : loops) {
+            loop.thread.start();
+        }
+        log.info("✅ Ingest listeners on {} - line: {}, binary: {}, udp: {} ({} IO threads, {} workers)",
+            bindAddress, portLabel(linePort), portLabel(binaryPort), portLabel(udpPort), loops.length,
+            this.workerThreads);
+    }
+
+    private void listen(int port, boolean binary) throws IOException {
+        if (port <= 0) {
+            return;
+        }
+        ServerSocketChannel server = ServerSocketChannel.open();
+        servers.add(server);
+        server.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        server.bind(new InetSocketAddress(bindAddress, port), 1024);
+        server.configureBlocking(false);
+        // Accepts run on the first loop, which hands connections out round-robin
+        server.register(loops[0].selector, SelectionKey.OP_ACCEPT, binary);
+    }
+
+    private void accept(ServerSocketChannel server, boolean binary) {
+        try {
+            SocketChannel channel;
+            while ((channel = server.accept()) != null) {
+                channel.configureBlocking(false);
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                stats.accepted.increment();
+                IoLoop loop = loops[nextLoop++ % loops.length];
+                loop.add(new IngestConnection(channel, binary, protocol, stats, bufferPool, workers, loop::resume));
+            }
+        } catch (IOException e) {
+            if (running) {
+                log.error("❌ Ingest accept failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void receiveDatagrams() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(Math.max(bufferPool.bufferBytes(), 65536));
+        while (running) {
+            try {
+                buffer.clear();
+                if (udpChannel.receive(buffer) == null) {
+                    continue;
+                }
+                buffer.flip();
+                stats.datagrams.increment();
+                stats.bytesIn.add(buffer.remaining());
+                protocol.processLines(buffer, null);
+            } catch (IngestProtocol.ProtocolException e) {
+                stats.protocolErrors.increment();
+            } catch (IOException e) {
+                if (running) {
+                    log.error("❌ Ingest UDP receive failed: {}", e.getMessage());
+                }
+                return;
+            }
+        }
+    }
+
+    private static String portLabel(int port) {
+        return port > 0 ? Integer.toString(port) : "off";
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("enabled", enabled);
+        if (enabled) {
+            result.put("linePort", linePort);
+            result.put("binaryPort", binaryPort);
+            result.put("udpPort", udpPort);
+            result.put("ioThreads", loops.length);
+            result.put("workerThreads", workerThreads);
+            result.putAll(stats.toMap());
+        }
+        return result;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        for (ServerSocketChannel server : servers) {
+            try {
+                server.close();
+            } catch (IOException e) {
+                // shutting down
+            }
+        }
+        if (udpChannel != null) {
+            try {
+                udpChannel.close();
+            } catch (IOException e) {
+                // shutting down
+            }
+        }
+        for (IoLoop loop : loops) {
+            if (loop == null) {
+                continue;
+            }
+            if (!loop.thread.isAlive()) {
+                try {
+                    loop.selector.close();
+                } catch (IOException e) {
+                    // shutting down
+                }
+                continue;
+            }
+            loop.selector.wakeup();
+            try {
+                loop.thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (workers != null) {
+            workers.shutdown();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.alerts.ingest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * IngestStats - Counters shared by the ingest listeners
+ */
+final class IngestStats {
+
+    final LongAdder accepted = new LongAdder();
+    final LongAdder open = new LongAdder();
+    final LongAdder events = new LongAdder();
+    final LongAdder malformed = new LongAdder();
+    final LongAdder failed = new LongAdder();
+    final LongAdder rateLimited = new LongAdder();
+    final LongAdder bytesIn = new LongAdder();
+    final LongAdder datagrams = new LongAdder();
+    final LongAdder protocolErrors = new LongAdder();
+    final LongAdder writeStalls = new LongAdder();
+
+    Map<String, Object> toMap() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("connectionsAccepted", accepted.sum());
+        stats.put("connectionsOpen", open.sum());
+        stats.put("events", events.sum());
+        stats.put("malformed", malformed.sum());
+        stats.put("failed", failed.sum());
+        stats.put("rateLimited", rateLimited.sum());
+        stats.put("bytesIn", bytesIn.sum());
+        stats.put("datagrams", datagrams.sum());
+        stats.put("protocolErrors", protocolErrors.sum());
+        stats.put("writeStalls", writeStalls.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,148 @@
+package com.alerts.metrics;
+
+import com.alerts.service.AlertProcessingService.AlertResult;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AlertMetrics - Hot-path instrumentation recorded into Micrometer
+ *
+ * - alerts.stage.latency{stage}: per-stage latency histograms (see Stage).
+ *   Only one call in alerts.metrics.stage-sample-interval is timed, so the
+ *   untimed calls cost one ThreadLocalRandom draw and no System.nanoTime().
+ * - alerts.results{reason}: every AlertResult, by reason
+ * - alerts.store.fallbacks: lookups answered by the warm-start snapshot while
+ *   config-store was being restored (WarmStartService)
+ *
+ * Counters kept by the components themselves (Bloom false positives, routing
+ * failures, publish failures, ...) are exposed by ComponentMetricsBinder.
+ *
+ * Also decides which per-event log lines are written
+ * (alerts.logging.event-sample-interval), so high-rate events cannot turn
+ * logging into the bottleneck.
+ */
+@Component
+public class AlertMetrics {
+
+    /**
+     * Stages of an alert's way through the request path (and of threshold loading).
+     */
+    public enum Stage {
+        HASH("hash"),              // composite key -> 64-bit hash
+        BLOOM("bloom"),            // Bloom filter pre-check
+        NEAR_CACHE("near_cache"),  // near-cache probe
+        LOOKUP("lookup"),          // config-store read on a near-cache miss (local, remote or standby)
+        DECODE("decode"),          // eagle-eye.config value -> ThresholdRecord
+        COUNTER("counter"),        // alertTimes increment
+        PUBLISH("publish"),        // suppression check and publisher enqueue
+        PROCESS("process");        // whole processAlert call
+
+        final String tag;
+
+        Stage(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    /**
+     * Returned by start() when this call is not timed.
+     */
+    public static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+    // Indexed as in result()
+    private static final String[] REASONS = {"threshold_breached", "below_threshold", "no_threshold", "queued"};
+
+    private final int stageSampleInterval;
+    private final int eventLogInterval;
+    private final Timer[] stageTimers = new Timer[Stage.values().length];
+    private final Counter[] resultCounters = new Counter[REASONS.length];
+    private final Counter suppressedResults;
+    private final Counter storeFallbacks;
+
+    public AlertMetrics(MeterRegistry registry,
+                        @Value("${alerts.metrics.stage-sample-interval:16}") int stageSampleInterval,
+                        @Value("${alerts.logging.event-sample-interval:1000}") int eventLogInterval) {
+        this.stageSampleInterval = Math.max(1, stageSampleInterval);
+        this.eventLogInterval = Math.max(1, eventLogInterval);
+        for (Stage stage : Stage.values()) {
+            stageTimers[stage.ordinal()] = Timer.builder("alerts.stage.latency")
+                .description("Latency of one alert processing stage (sampled)")
+                .tag("stage", stage.tag)
+                .publishPercentileHistogram()
+                .minimumExpectedValue(Duration.ofNanos(100))
+                .maximumExpectedValue(Duration.ofSeconds(1))
+                .register(registry);
+        }
+        for (int i = 0; i < REASONS.length; i++) {
+            resultCounters[i] = Counter.builder("alerts.results")
+                .description("Alert evaluations by result")
+                .tag("reason", REASONS[i])
+                .register(registry);
+        }
+        suppressedResults = Counter.builder("alerts.results.suppressed")
+            .description("Threshold breaches not published because the key was cooling down")
+            .register(registry);
+        storeFallbacks = Counter.builder("alerts.store.fallbacks")
+            .description("Lookups served from the warm-start snapshot while config-store restores")
+            .register(registry);
+    }
+
+    /**
+     * Start timing a stage.
+     *
+     * @return start time to pass to stop(), or NOT_SAMPLED
+     */
+    public long start() {
+        if (stageSampleInterval > 1 && ThreadLocalRandom.current().nextInt(stageSampleInterval) != 0) {
+            return NOT_SAMPLED;
+        }
+        return System.nanoTime();
+    }
+
+    public void stop(Stage stage, long start) {
+        if (start != NOT_SAMPLED) {
+            stageTimers[stage.ordinal()].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Count an evaluation result; returns it for use in return statements.
+     */
+    public AlertResult result(AlertResult result) {
+        int index = switch (result.getReason()) {
+            case "threshold_breached" -> 0;
+            case "below_threshold" -> 1;
+            case "no_threshold" -> 2;
+            default -> 3;
+        };
+        resultCounters[index].increment();
+        if (result.isSuppressed()) {
+            suppressedResults.increment();
+        }
+        return result;
+    }
+
+    public void storeFallback() {
+        storeFallbacks.increment();
+    }
+
+    /**
+     * Whether to write the log line of a high-rate event (one in
+     * alerts.logging.event-sample-interval). Log lines carry
+     * sample_interval so counts can be scaled back up.
+     */
+    public boolean sampleEvent() {
+        return eventLogInterval == 1 || ThreadLocalRandom.current().nextInt(eventLogInterval) == 0;
+    }
+
+    public int eventSampleInterval() {
+        return eventLogInterval;
+    }
+}
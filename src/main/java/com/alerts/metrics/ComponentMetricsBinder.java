@@ -0,0 +1,188 @@
+package com.alerts.metrics;
+
+import com.alerts.admission.AdmissionControl;
+import com.alerts.cache.ThresholdHierarchy;
+import com.alerts.cache.ThresholdNearCache;
+import com.alerts.consumer.AlertConsumer;
+import com.alerts.counter.AlertCounterService;
+import com.alerts.dynamic.DynamicThresholds;
+import com.alerts.index.TenantIndexService;
+import com.alerts.ingest.IngestServer;
+import com.alerts.notify.NotificationDispatcher;
+import com.alerts.publish.AlertPublisher;
+import com.alerts.publish.AlertSuppressor;
+import com.alerts.routing.ThresholdRouter;
+import com.alerts.service.BloomFilterService;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * ComponentMetricsBinder - Exposes the components' own counters as meters
+ *
+ * The request-path components already count into LongAdders for /api/stats.
+ * Rather than counting twice, the meters read those values at scrape time
+ * through the same stats() maps, so they add nothing to the hot path.
+ */
+@Component
+public class ComponentMetricsBinder implements MeterBinder {
+
+    private final BloomFilterService bloomFilter;
+    private final ThresholdNearCache nearCache;
+    private final ThresholdHierarchy hierarchy;
+    private final ThresholdRouter router;
+    private final AlertPublisher publisher;
+    private final AlertSuppressor suppressor;
+    private final AlertCounterService alertCounters;
+    private final IngestServer ingestServer;
+    private final AlertConsumer alertConsumer;
+    private final NotificationDispatcher dispatcher;
+    private final AdmissionControl admission;
+    private final DynamicThresholds dynamicThresholds;
+    private final TenantIndexService tenantIndex;
+
+    public ComponentMetricsBinder(BloomFilterService bloomFilter, ThresholdNearCache nearCache,
+                                  ThresholdHierarchy hierarchy, ThresholdRouter router,
+                                  AlertPublisher publisher, AlertSuppressor suppressor,
+                                  AlertCounterService alertCounters, IngestServer ingestServer,
+                                  AlertConsumer alertConsumer, NotificationDispatcher dispatcher,
+                                  AdmissionControl admission, DynamicThresholds dynamicThresholds,
+                                  TenantIndexService tenantIndex) {
+        this.bloomFilter = bloomFilter;
+        this.nearCache = nearCache;
+        this.hierarchy = hierarchy;
+        this.router = router;
+        this.publisher = publisher;
+        this.suppressor = suppressor;
+        this.alertCounters = alertCounters;
+        this.ingestServer = ingestServer;
+        this.alertConsumer = alertConsumer;
+        this.dispatcher = dispatcher;
+        this.admission = admission;
+        this.dynamicThresholds = dynamicThresholds;
+        this.tenantIndex = tenantIndex;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        new Source<>(registry, bloomFilter, BloomFilterService::stats)
+            .counter("alerts.bloom.checks", "Bloom filter checks", "positives", "result", "positive")
+            .counter("alerts.bloom.checks", "Bloom filter checks", "negatives", "result", "negative")
+            .counter("alerts.bloom.false.positives", "Bloom positives without a threshold", "falsePositives")
+            .gauge("alerts.bloom.keys", "Approximate keys in the Bloom filter", "approximateKeys");
+
+        new Source<>(registry, nearCache, ThresholdNearCache::stats)
+            .counter("alerts.near.cache.requests", "Near-cache lookups", "hits", "result", "hit")
+            .counter("alerts.near.cache.requests", "Near-cache lookups", "misses", "result", "miss")
+            .gauge("alerts.near.cache.entries", "Thresholds held in the near-cache", "entries");
+
+        new Source<>(registry, hierarchy, ThresholdHierarchy::stats)
+            .counter("alerts.hierarchy.resolutions", "Default threshold lookups", "cacheHits", "result", "cache_hit")
+            .counter("alerts.hierarchy.resolutions", "Default threshold lookups", "resolutions", "result", "resolved")
+            .counter("alerts.hierarchy.resolutions", "Default threshold lookups", "unresolved", "result", "unresolved")
+            .gauge("alerts.hierarchy.defaults", "Default thresholds loaded", "defaults");
+
+        new Source<>(registry, dynamicThresholds, DynamicThresholds::stats)
+            .counter("alerts.dynamic.evaluations", "Evaluations by threshold source", "dynamicEvaluations", "threshold", "dynamic")
+            .counter("alerts.dynamic.evaluations", "Evaluations by threshold source", "staticEvaluations", "threshold", "configured")
+            .counter("alerts.dynamic.sketch.deltas", "Sketch deltas sent to eagle-eye.error-sketches", "deltasSent")
+            .gauge("alerts.dynamic.keys", "Keys with a quantile sketch in this instance", "keys");
+
+        new Source<>(registry, tenantIndex, TenantIndexService::stats)
+            .counter("alerts.index.queries", "Tenant index queries", "pageQueries", "type", "page")
+            .counter("alerts.index.queries", "Tenant index queries", "topQueries", "type", "top")
+            .counter("alerts.index.queries", "Tenant index queries", "bulkUpdates", "type", "bulk")
+            .counter("alerts.index.keys.updated", "Thresholds changed by tenant bulk updates", "keysUpdated")
+            .counter("alerts.index.remote.failures", "Instances that did not answer a tenant index query", "remoteFailures");
+
+        new Source<>(registry, router, ThresholdRouter::stats)
+            .counter("alerts.routing.reads", "config-store reads by source", "localReads", "source", "local")
+            .counter("alerts.routing.reads", "config-store reads by source", "remoteReads", "source", "remote")
+            .counter("alerts.routing.reads", "config-store reads by source", "remoteCacheHits", "source", "remote_cache")
+            .counter("alerts.routing.reads", "config-store reads by source", "standbyReads", "source", "standby")
+            .counter("alerts.routing.remote.failures", "Failed queries to other instances", "remoteFailures")
+            .counter("alerts.store.unavailable", "Lookups no config-store replica could answer", "unavailable");
+
+        new Source<>(registry, admission, AdmissionControl::stats)
+            .counter("alerts.admission.decisions", "/api/alert admission decisions", "admitted", "result", "admitted")
+            .counter("alerts.admission.decisions", "/api/alert admission decisions", "rateLimited", "result", "rate_limited")
+            .counter("alerts.admission.decisions", "/api/alert admission decisions", "shed", "result", "shed")
+            .gauge("alerts.admission.rate.factor", "Current scaling of tenant rates (1 = configured)", "rateFactor");
+
+        new Source<>(registry, publisher, AlertPublisher::stats)
+            .counter("alerts.publish", "Alerts by publish outcome", "published", "outcome", "published")
+            .counter("alerts.publish", "Alerts by publish outcome", "failed", "outcome", "failed")
+            .counter("alerts.publish", "Alerts by publish outcome", "dropped", "outcome", "dropped")
+            .counter("alerts.publish", "Alerts by publish outcome", "coalesced", "outcome", "coalesced")
+            .gauge("alerts.publish.queue.depth", "Alerts waiting for a publisher worker", "queueDepth");
+
+        new Source<>(registry, suppressor, AlertSuppressor::stats)
+            .counter("alerts.suppression", "Breaches by suppression decision", "notified", "decision", "notified")
+            .counter("alerts.suppression", "Breaches by suppression decision", "suppressed", "decision", "suppressed")
+            .counter("alerts.suppression", "Breaches by suppression decision", "escalations", "decision", "escalated");
+
+        new Source<>(registry, alertCounters, AlertCounterService::stats)
+            .counter("alerts.counters.deltas", "alertTimes deltas sent to eagle-eye.alert-counts", "deltasSent")
+            .counter("alerts.counters.failures", "alertTimes deltas that failed to send", "sendFailures");
+
+        new Source<>(registry, ingestServer, IngestServer::stats)
+            .counter("alerts.ingest.events", "Events received by the ingest listeners", "events")
+            .counter("alerts.ingest.malformed", "Malformed ingest events", "malformed")
+            .gauge("alerts.ingest.connections", "Open ingest connections", "connectionsOpen");
+
+        new Source<>(registry, alertConsumer, AlertConsumer::stats)
+            .counter("alerts.consumed", "Alerts read from eagle-eye.alerts", "received", "result", "received")
+            .counter("alerts.consumed", "Alerts read from eagle-eye.alerts", "unparsable", "result", "unparsable");
+
+        for (String sink : dispatcher.sinkNames()) {
+            new Source<>(registry, dispatcher, d -> d.sinkStats(sink))
+                .counter("alerts.notifications", "Alerts by notification outcome", "delivered", "sink", sink, "outcome", "delivered")
+                .counter("alerts.notifications", "Alerts by notification outcome", "failed", "sink", sink, "outcome", "failed")
+                .counter("alerts.notifications", "Alerts by notification outcome", "dropped", "sink", sink, "outcome", "dropped")
+                .counter("alerts.notification.retries", "Notification batches retried", "retries", "sink", sink)
+                .gauge("alerts.notification.queue.depth", "Alerts waiting for a notification sink", "queueDepth", "sink", sink);
+        }
+    }
+
+    /**
+     * Meters reading one component's stats() map. Meters hold their source
+     * weakly; the components are singletons, so they stay reachable.
+     */
+    private static final class Source<T> {
+        private final MeterRegistry registry;
+        private final T component;
+        private final Function<T, Map<String, Object>> stats;
+
+        Source(MeterRegistry registry, T component, Function<T, Map<String, Object>> stats) {
+            this.registry = registry;
+            this.component = component;
+            this.stats = stats;
+        }
+
+        Source<T> counter(String name, String description, String key, String... tags) {
+            FunctionCounter.builder(name, component, c -> value(c, key))
+                .description(description)
+                .tags(tags)
+                .register(registry);
+            return this;
+        }
+
+        Source<T> gauge(String name, String description, String key, String... tags) {
+            Gauge.builder(name, component, c -> value(c, key))
+                .description(description)
+                .tags(tags)
+                .register(registry);
+            return this;
+        }
+
+        private double value(T c, String key) {
+            // Absent keys (e.g. ingest disabled) read as 0
+            return stats.apply(c).get(key) instanceof Number number ? number.doubleValue() : 0;
+        }
+    }
+}
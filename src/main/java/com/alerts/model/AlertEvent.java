@@ -0,0 +1,136 @@
+package com.alerts.model;
+
+import com.alerts.hashing.KeyHashes;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * AlertEvent - Typed value of eagle-eye.alerts
+ *
+ * Replaces the "ALERT: Hash ... ErrorCount=..." string, which the consumer
+ * could not parse back. AlertPublisher (rest mode) and ErrorCountEvaluator
+ * (stream mode) produce it; AlertConsumer and the notification sinks read it.
+ *
+ * Layout v1 (52 bytes, big-endian):
+ *   [0]      version     (1)
+ *   [1]      flags       (reserved, 0)
+ *   [2..3]   reserved
+ *   [4..11]  hash        (long) - also the record key
+ *   [12..19] errorCount  (long) - observed count (window sum for windowed thresholds)
+ *   [20..27] threshold   (long)
+ *   [28..35] alertTimes  (long)
+ *   [36..43] suppressed  (long) - breaches suppressed since the key's previous alert
+ *   [44..51] timestamp   (long) - epoch millis of the breach
+ *
+ * Sinks that leave the process (webhooks) get the JSON form from toJson().
+ */
+public record AlertEvent(long hash, long errorCount, long threshold, long alertTimes, long suppressed,
+                         long timestamp) {
+
+    public static final byte VERSION_1 = 1;
+    public static final int V1_SIZE = 52;
+
+    private static final int HASH_OFFSET = 4;
+    private static final int ERROR_COUNT_OFFSET = 12;
+    private static final int THRESHOLD_OFFSET = 20;
+    private static final int ALERT_TIMES_OFFSET = 28;
+    private static final int SUPPRESSED_OFFSET = 36;
+    private static final int TIMESTAMP_OFFSET = 44;
+
+    private static final String LEGACY_PREFIX = "ALERT: Hash ";
+
+    private static final VarHandle LONG_BE =
+        MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[V1_SIZE];
+        bytes[0] = VERSION_1;
+        LONG_BE.set(bytes, HASH_OFFSET, hash);
+        LONG_BE.set(bytes, ERROR_COUNT_OFFSET, errorCount);
+        LONG_BE.set(bytes, THRESHOLD_OFFSET, threshold);
+        LONG_BE.set(bytes, ALERT_TIMES_OFFSET, alertTimes);
+        LONG_BE.set(bytes, SUPPRESSED_OFFSET, suppressed);
+        LONG_BE.set(bytes, TIMESTAMP_OFFSET, timestamp);
+        return bytes;
+    }
+
+    /**
+     * Decode a v1 record, or a legacy text alert still on the topic from
+     * before the upgrade (its timestamp reads as 0).
+     *
+     * @throws IllegalArgumentException if bytes is neither
+     */
+    public static AlertEvent decode(byte[] bytes) {
+        if (bytes.length > 0 && bytes[0] == 'A') {
+            return parseLegacy(new String(bytes, StandardCharsets.UTF_8));
+        }
+        if (bytes.length < V1_SIZE || bytes[0] != VERSION_1) {
+            throw new IllegalArgumentException("Not an alert event: " + bytes.length + " bytes, version "
+                + (bytes.length > 0 ? bytes[0] : -1));
+        }
+        return new AlertEvent(
+            (long) LONG_BE.get(bytes, HASH_OFFSET),
+            (long) LONG_BE.get(bytes, ERROR_COUNT_OFFSET),
+            (long) LONG_BE.get(bytes, THRESHOLD_OFFSET),
+            (long) LONG_BE.get(bytes, ALERT_TIMES_OFFSET),
+            (long) LONG_BE.get(bytes, SUPPRESSED_OFFSET),
+            (long) LONG_BE.get(bytes, TIMESTAMP_OFFSET));
+    }
+
+    /**
+     * "ALERT: Hash %s exceeded threshold! ErrorCount=%d, Threshold=%d, AlertTimes=%d[, Suppressed=%d]"
+     */
+    static AlertEvent parseLegacy(String text) {
+        if (!text.startsWith(LEGACY_PREFIX)) {
+            throw new IllegalArgumentException("Not a legacy alert");
+        }
+        int hashEnd = text.indexOf(' ', LEGACY_PREFIX.length());
+        if (hashEnd < 0) {
+            throw new IllegalArgumentException("Legacy alert without hash");
+        }
+        try {
+            return new AlertEvent(
+                KeyHashes.parseHex(text.substring(LEGACY_PREFIX.length(), hashEnd).getBytes(StandardCharsets.US_ASCII)),
+                legacyField(text, "ErrorCount="),
+                legacyField(text, "Threshold="),
+                legacyField(text, "AlertTimes="),
+                text.contains("Suppressed=") ? legacyField(text, "Suppressed=") : 0,
+                0);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid legacy alert: " + e.getMessage(), e);
+        }
+    }
+
+    private static long legacyField(String text, String name) {
+        int start = text.indexOf(name);
+        if (start < 0) {
+            throw new IllegalArgumentException("Legacy alert without " + name);
+        }
+        start += name.length();
+        int end = start;
+        while (end < text.length() && Character.isDigit(text.charAt(end))) {
+            end++;
+        }
+        return Long.parseLong(text, start, end, 10);
+    }
+
+    public AlertEvent withTimestamp(long timestamp) {
+        return new AlertEvent(hash, errorCount, threshold, alertTimes, suppressed, timestamp);
+    }
+
+    /**
+     * JSON object for external sinks; the hash is the 16-char hex form used by
+     * /internal/thresholds and the logs.
+     */
+    public String toJson() {
+        return "{\"hash\":\"" + KeyHashes.toHex(hash)
+            + "\",\"errorCount\":" + errorCount
+            + ",\"threshold\":" + threshold
+            + ",\"alertTimes\":" + alertTimes
+            + ",\"suppressed\":" + suppressed
+            + ",\"timestamp\":" + timestamp + "}";
+    }
+}
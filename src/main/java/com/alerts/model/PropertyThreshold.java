@@ -14,7 +14,47 @@ public class PropertyThreshold {
     private String interfaceId;
     private String transactionType;
     private int thresholdValue;
+    // Sliding window: thresholdValue errors within windowSeconds (0 = compare each report)
+    private int windowSeconds;
+    private int windowBuckets;
 
+    public PropertyThreshold(String tenantId, String propertyId, String interfaceId,
+                             String transactionType, int thresholdValue) {
+        this(tenantId, propertyId, interfaceId, transactionType, thresholdValue, 0, 0);
+    }
+
+    /**
+     * Binary record for config-store / eagle-eye.config
+     */
+    public ThresholdRecord toRecord() {
+        return toRecord(thresholdValue, 0, windowSeconds, windowBuckets);
+    }
+
+    /**
+     * Record for a threshold definition; windowBuckets 0 picks one bucket per
+     * second up to 60.
+     */
+    public static ThresholdRecord toRecord(long threshold, long alertTimes, int windowSeconds, int windowBuckets) {
+        if (windowSeconds > 0) {
+            return ThresholdRecord.windowed(threshold, alertTimes, windowSeconds,
+                windowBuckets > 0 ? windowBuckets : Math.min(windowSeconds, 60));
+        }
+        return ThresholdRecord.of(threshold, alertTimes);
+    }
+
+    /**
+     * Composite key as sent to /api/alert ("property;tenant;type;interface"),
+     * hashed by the configured KeyHasher.
+     */
+    public String requestKey() {
+        return propertyId + ';' + tenantId + ';' + transactionType + ';' + interfaceId;
+    }
+
+    /**
+     * Legacy 16-char hex form of the key. The request path uses a KeyHasher and
+     * the primitive long key instead; this stays for tooling that still reads
+     * hex-keyed config-store entries.
+     */
     public String generateHashKey() {
         String composite = String.format("%s:%s:%s:%s",
             tenantId, propertyId, interfaceId, transactionType);
@@ -35,6 +75,10 @@ public class PropertyThreshold {
         }
     }
 
+    /**
+     * Legacy 16-char hex form of a composite key (see {@link #generateHashKey()}).
+     * Equal to KeyHashes.toHex(Sha256KeyHasher.INSTANCE.hash(compositeKey)).
+     */
     public static String generateHashFromCompositeKey(String compositeKey) {
         try {
             java.security.MessageDigest md = java.security.MessageDigest.getInstance("SHA-256");
@@ -0,0 +1,252 @@
+package com.alerts.model;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ThresholdRecord - Fixed-width binary value of config-store / eagle-eye.config
+ *
+ * Replaces the "hash:threshold:alertTimes" string. The hash is not repeated in
+ * the value (it is the record key), and fields are read straight from the
+ * backing array or buffer - no split(), no parseLong().
+ *
+ * Layout v1 (20 bytes, big-endian):
+ *   [0]      version     (1)
+ *   [1]      flags       (reserved, 0)
+ *   [2..3]   reserved
+ *   [4..11]  threshold   (long)
+ *   [12..19] alertTimes  (long)
+ *
+ * Layout v2 (28 bytes) = v1 + sliding window definition:
+ *   [20..23] windowSeconds (int)   - threshold applies to the error sum over this window
+ *   [24..25] windowBuckets (short) - ring buffer resolution
+ *   [26..27] reserved
+ *
+ * Instances are flyweights: wrap() re-points an existing instance at new bytes
+ * without copying, so a reader can reuse one instance per thread.
+ */
+public final class ThresholdRecord {
+
+    public static final byte VERSION_1 = 1;
+    public static final byte VERSION_2 = 2;
+    public static final int V1_SIZE = 20;
+    public static final int V2_SIZE = 28;
+
+    private static final int VERSION_OFFSET = 0;
+    private static final int THRESHOLD_OFFSET = 4;
+    private static final int ALERT_TIMES_OFFSET = 12;
+    private static final int WINDOW_SECONDS_OFFSET = 20;
+    private static final int WINDOW_BUCKETS_OFFSET = 24;
+
+    private static final VarHandle LONG_BE =
+        MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT_BE =
+        MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle SHORT_BE =
+        MethodHandles.byteArrayViewVarHandle(short[].class, ByteOrder.BIG_ENDIAN);
+
+    private byte[] array;
+    private ByteBuffer buffer;
+    private int offset;
+
+    /**
+     * Create an unwrapped flyweight; call one of the wrap methods before reading.
+     */
+    public ThresholdRecord() {
+    }
+
+    public static ThresholdRecord of(long threshold, long alertTimes) {
+        return new ThresholdRecord().wrap(encode(threshold, alertTimes));
+    }
+
+    /**
+     * Threshold on the error sum over the last windowSeconds (v2 record).
+     */
+    public static ThresholdRecord windowed(long threshold, long alertTimes, int windowSeconds, int windowBuckets) {
+        return new ThresholdRecord().wrap(encode(threshold, alertTimes, windowSeconds, windowBuckets));
+    }
+
+    public ThresholdRecord wrap(byte[] bytes) {
+        return wrap(bytes, 0);
+    }
+
+    public ThresholdRecord wrap(byte[] bytes, int offset) {
+        checkHeader(bytes.length - offset, bytes[offset]);
+        this.array = bytes;
+        this.buffer = null;
+        this.offset = offset;
+        return this;
+    }
+
+    /**
+     * Wrap a record at an absolute offset of a (heap or direct) buffer. The
+     * record must end at or before the buffer's limit; the position is not
+     * used, and neither is modified.
+     */
+    public ThresholdRecord wrap(ByteBuffer buffer, int offset) {
+        checkHeader(buffer.limit() - offset, buffer.get(offset));
+        this.array = null;
+        this.buffer = buffer.order() == ByteOrder.BIG_ENDIAN ? buffer : buffer.duplicate().order(ByteOrder.BIG_ENDIAN);
+        this.offset = offset;
+        return this;
+    }
+
+    public int version() {
+        return array != null ? array[offset + VERSION_OFFSET] : buffer.get(offset + VERSION_OFFSET);
+    }
+
+    public int size() {
+        return sizeOf(version());
+    }
+
+    public long threshold() {
+        return readLong(THRESHOLD_OFFSET);
+    }
+
+    public long alertTimes() {
+        return readLong(ALERT_TIMES_OFFSET);
+    }
+
+    public boolean isWindowed() {
+        return version() >= VERSION_2 && windowSeconds() > 0;
+    }
+
+    /**
+     * @return window length in seconds, 0 for a plain (v1) threshold
+     */
+    public int windowSeconds() {
+        if (version() < VERSION_2) {
+            return 0;
+        }
+        return array != null
+            ? (int) INT_BE.get(array, offset + WINDOW_SECONDS_OFFSET)
+            : buffer.getInt(offset + WINDOW_SECONDS_OFFSET);
+    }
+
+    public int windowBuckets() {
+        if (version() < VERSION_2) {
+            return 0;
+        }
+        return array != null
+            ? (short) SHORT_BE.get(array, offset + WINDOW_BUCKETS_OFFSET) & 0xFFFF
+            : buffer.getShort(offset + WINDOW_BUCKETS_OFFSET) & 0xFFFF;
+    }
+
+    public ThresholdRecord withAlertTimes(long alertTimes) {
+        if (version() >= VERSION_2) {
+            return windowed(threshold(), alertTimes, windowSeconds(), windowBuckets());
+        }
+        return of(threshold(), alertTimes);
+    }
+
+    /**
+     * Serialized form. Returns the backing array when it holds exactly this
+     * record, otherwise a copy.
+     */
+    public byte[] toByteArray() {
+        if (array != null && offset == 0 && array.length == size()) {
+            return array;
+        }
+        if (version() >= VERSION_2) {
+            return encode(threshold(), alertTimes(), windowSeconds(), windowBuckets());
+        }
+        return encode(threshold(), alertTimes());
+    }
+
+    public static byte[] encode(long threshold, long alertTimes) {
+        byte[] bytes = new byte[V1_SIZE];
+        bytes[VERSION_OFFSET] = VERSION_1;
+        LONG_BE.set(bytes, THRESHOLD_OFFSET, threshold);
+        LONG_BE.set(bytes, ALERT_TIMES_OFFSET, alertTimes);
+        return bytes;
+    }
+
+    public static byte[] encode(long threshold, long alertTimes, int windowSeconds, int windowBuckets) {
+        if (windowBuckets < 1 || windowBuckets > 0xFFFF) {
+            throw new IllegalArgumentException("windowBuckets must be 1..65535");
+        }
+        byte[] bytes = new byte[V2_SIZE];
+        bytes[VERSION_OFFSET] = VERSION_2;
+        LONG_BE.set(bytes, THRESHOLD_OFFSET, threshold);
+        LONG_BE.set(bytes, ALERT_TIMES_OFFSET, alertTimes);
+        INT_BE.set(bytes, WINDOW_SECONDS_OFFSET, windowSeconds);
+        SHORT_BE.set(bytes, WINDOW_BUCKETS_OFFSET, (short) windowBuckets);
+        return bytes;
+    }
+
+    /**
+     * Encode a v1 record into a buffer at an absolute offset (position and
+     * byte order are not changed; the record is big-endian either way).
+     */
+    public static void encode(ByteBuffer dst, int offset, long threshold, long alertTimes) {
+        if (dst.order() != ByteOrder.BIG_ENDIAN) {
+            dst = dst.duplicate().order(ByteOrder.BIG_ENDIAN);
+        }
+        dst.put(offset + VERSION_OFFSET, VERSION_1);
+        dst.put(offset + 1, (byte) 0);
+        dst.putShort(offset + 2, (short) 0);
+        dst.putLong(offset + THRESHOLD_OFFSET, threshold);
+        dst.putLong(offset + ALERT_TIMES_OFFSET, alertTimes);
+    }
+
+    /**
+     * Decode a raw eagle-eye.config value.
+     *
+     * @param acceptLegacy also accept the old "hash:threshold:alertTimes" string
+     * @return the record, or null if the value is in neither form
+     */
+    public static ThresholdRecord decode(byte[] raw, boolean acceptLegacy) {
+        if (raw == null || raw.length == 0) {
+            return null;
+        }
+        int size = sizeOf(raw[0]);
+        if (size > 0 && raw.length >= size) {
+            return new ThresholdRecord().wrap(raw);
+        }
+        if (acceptLegacy) {
+            // Legacy values start with a hex digit, never with a version byte
+            try {
+                PropertyThreshold.ThresholdData data =
+                    PropertyThreshold.parseThresholdValue(new String(raw, StandardCharsets.UTF_8));
+                return data == null ? null : of(data.threshold, data.alertTimes);
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+        return null;
+    }
+
+    private long readLong(int field) {
+        return array != null ? (long) LONG_BE.get(array, offset + field) : buffer.getLong(offset + field);
+    }
+
+    private static int sizeOf(int version) {
+        return switch (version) {
+            case VERSION_1 -> V1_SIZE;
+            case VERSION_2 -> V2_SIZE;
+            default -> -1;
+        };
+    }
+
+    private static void checkHeader(int available, byte version) {
+        int size = sizeOf(version);
+        if (size < 0) {
+            throw new IllegalArgumentException("Unsupported threshold record version: " + version);
+        }
+        if (available < size) {
+            throw new IllegalArgumentException("Threshold record truncated: " + available + " bytes");
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (isWindowed()) {
+            return "ThresholdRecord{threshold=" + threshold() + ", alertTimes=" + alertTimes()
+                + ", window=" + windowSeconds() + "s/" + windowBuckets() + "}";
+        }
+        return "ThresholdRecord{threshold=" + threshold() + ", alertTimes=" + alertTimes() + "}";
+    }
+}
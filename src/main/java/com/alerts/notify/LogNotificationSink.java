@@ -0,0 +1,47 @@
+package com.alerts.notify;
+
+import com.alerts.hashing.KeyHashes;
+import com.alerts.metrics.AlertMetrics;
+import com.alerts.model.AlertEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * LogNotificationSink - Writes alerts to the application log
+ *
+ * Alerts arrive at the rate thresholds are breached, so they are logged
+ * sampled (alerts.logging.event-sample-interval) rather than one by one.
+ */
+@Component
+@ConditionalOnProperty(name = "alerts.notify.log.enabled", havingValue = "true", matchIfMissing = true)
+public class LogNotificationSink implements NotificationSink {
+
+    private static final Logger log = LoggerFactory.getLogger(LogNotificationSink.class);
+
+    private final AlertMetrics metrics;
+
+    public LogNotificationSink(AlertMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    @Override
+    public String name() {
+        return "log";
+    }
+
+    @Override
+    public void send(List<AlertEvent> alerts) {
+        for (AlertEvent alert : alerts) {
+            if (metrics.sampleEvent()) {
+                log.info("event=alert_notified key={} error_count={} threshold={} alert_times={} suppressed={} "
+                        + "ts={} sample_interval={}",
+                    KeyHashes.toHex(alert.hash()), alert.errorCount(), alert.threshold(), alert.alertTimes(),
+                    alert.suppressed(), alert.timestamp(), metrics.eventSampleInterval());
+            }
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package com.alerts.notify;
+
+import com.alerts.model.AlertEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * NotificationDispatcher - Asynchronous fan-out of alerts to the NotificationSinks
+ *
+ * AlertConsumer hands every alert to dispatch(), which only offers it to one
+ * bounded queue per sink and returns; partition consumption never waits for
+ * a sink. Each sink has a single worker thread that drains its queue in
+ * batches of up to alerts.notify.batch-size, waiting at most
+ * alerts.notify.linger-ms for a batch to fill.
+ *
+ * A failed batch is retried up to alerts.notify.max-attempts times with
+ * exponential backoff; meanwhile only that sink's queue fills up. When a
+ * queue is full the oldest alert is dropped, so a stalled sink loses its
+ * oldest alerts instead of slowing the consumer or the other sinks.
+ */
+@Service
+public class NotificationDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(NotificationDispatcher.class);
+
+    private final class SinkWorker implements Runnable {
+        final NotificationSink sink;
+        final ArrayBlockingQueue<AlertEvent> queue;
+        final Thread thread;
+        final LongAdder enqueued = new LongAdder();
+        final LongAdder delivered = new LongAdder();
+        final LongAdder failed = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+        final LongAdder retries = new LongAdder();
+        final LongAdder batches = new LongAdder();
+
+        SinkWorker(NotificationSink sink) {
+            this.sink = sink;
+            this.queue = new ArrayBlockingQueue<>(queueCapacity);
+            this.thread = new Thread(this, "notify-" + sink.name());
+            thread.setDaemon(true);
+        }
+
+        void offer(AlertEvent alert) {
+            while (!queue.offer(alert)) {
+                if (queue.poll() != null) {
+                    dropped.increment();
+                }
+            }
+            enqueued.increment();
+        }
+
+        @Override
+        public void run() {
+            List<AlertEvent> batch = new ArrayList<>(batchSize);
+            while (running || !queue.isEmpty()) {
+                try {
+                    AlertEvent first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    fill(batch);
+                    deliver(batch);
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        break;
+                    }
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+
+        private void fill(List<AlertEvent> batch) throws InterruptedException {
+            queue.drainTo(batch, batchSize - batch.size());
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+            while (batch.size() < batchSize && running) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return;
+                }
+                AlertEvent next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                if (next == null) {
+                    return;
+                }
+                batch.add(next);
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+        }
+
+        private void deliver(List<AlertEvent> batch) throws InterruptedException {
+            long backoff = retryBackoffMillis;
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    sink.send(batch);
+                    delivered.add(batch.size());
+                    batches.increment();
+                    return;
+                } catch (InterruptedException e) {
+                    failed.add(batch.size());
+                    throw e;
+                } catch (Exception e) {
+                    // No retries once shutting down; the remaining queue still gets one attempt each
+                    if (attempt >= maxAttempts || !running) {
+                        failed.add(batch.size());
+                        log.warn("event=notification_failed sink={} alerts={} attempts={} error=\"{} - {}\"",
+                            sink.name(), batch.size(), attempt, e.getClass().getName(), e.getMessage());
+                        return;
+                    }
+                    retries.increment();
+                    TimeUnit.MILLISECONDS.sleep(backoff);
+                    backoff = Math.min(backoff * 2, maxBackoffMillis);
+                }
+            }
+        }
+
+        Map<String, Object> stats() {
+            Map<String, Object> stats = new LinkedHashMap<>();
+            stats.put("queueDepth", queue.size());
+            stats.put("enqueued", enqueued.sum());
+            stats.put("delivered", delivered.sum());
+            stats.put("failed", failed.sum());
+            stats.put("dropped", dropped.sum());
+            stats.put("retries", retries.sum());
+            stats.put("batches", batches.sum());
+            return stats;
+        }
+    }
+
+    private final int queueCapacity;
+    private final int batchSize;
+    private final long lingerMillis;
+    private final int maxAttempts;
+    private final long retryBackoffMillis;
+    private final long maxBackoffMillis;
+    private final List<SinkWorker> workers = new ArrayList<>();
+    private volatile boolean running = true;
+
+    public NotificationDispatcher(ObjectProvider<NotificationSink> sinks,
+                                  @Value("${alerts.notify.queue-capacity:10000}") int queueCapacity,
+                                  @Value("${alerts.notify.batch-size:100}") int batchSize,
+                                  @Value("${alerts.notify.linger-ms:200}") long lingerMillis,
+                                  @Value("${alerts.notify.max-attempts:5}") int maxAttempts,
+                                  @Value("${alerts.notify.retry-backoff-ms:500}") long retryBackoffMillis,
+                                  @Value("${alerts.notify.max-backoff-ms:30000}") long maxBackoffMillis) {
+        this.queueCapacity = Math.max(1, queueCapacity);
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerMillis = Math.max(0, lingerMillis);
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryBackoffMillis = Math.max(1, retryBackoffMillis);
+        this.maxBackoffMillis = Math.max(this.retryBackoffMillis, maxBackoffMillis);
+        sinks.orderedStream().forEach(sink -> workers.add(new SinkWorker(sink)));
+        for (SinkWorker worker : workers) {
+            worker.thread.start();
+        }
+        log.info("Notification dispatcher: sinks {}, queue {}, batch {}, linger {}ms, max attempts {}",
+            sinkNames(), this.queueCapacity, this.batchSize, this.lingerMillis, this.maxAttempts);
+    }
+
+    /**
+     * Queue an alert for every sink. Never blocks.
+     */
+    public void dispatch(AlertEvent alert) {
+        for (int i = 0; i < workers.size(); i++) {
+            workers.get(i).offer(alert);
+        }
+    }
+
+    public List<String> sinkNames() {
+        return workers.stream().map(worker -> worker.sink.name()).toList();
+    }
+
+    /**
+     * Counters of one sink (empty if there is no such sink)
+     */
+    public Map<String, Object> sinkStats(String name) {
+        for (SinkWorker worker : workers) {
+            if (worker.sink.name().equals(name)) {
+                return worker.stats();
+            }
+        }
+        return Map.of();
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        for (SinkWorker worker : workers) {
+            stats.put(worker.sink.name(), worker.stats());
+        }
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        for (SinkWorker worker : workers) {
+            try {
+                worker.thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            if (worker.thread.isAlive()) {
+                worker.thread.interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.alerts.notify;
+
+import com.alerts.model.AlertEvent;
+
+import java.util.List;
+
+/**
+ * NotificationSink - Destination for alerts read from eagle-eye.alerts
+ *
+ * Every NotificationSink bean is picked up by NotificationDispatcher, which
+ * gives it its own bounded queue and worker thread. send() is only ever
+ * called from that thread, one batch at a time, so implementations need no
+ * locking and may block on I/O without holding up the consumer or other sinks.
+ */
+public interface NotificationSink {
+
+    /**
+     * Short name used for the worker thread, stats and metric tags.
+     */
+    String name();
+
+    /**
+     * Deliver a batch of alerts. Throw to have the whole batch retried
+     * (alerts.notify.max-attempts); delivery should therefore be idempotent.
+     */
+    void send(List<AlertEvent> alerts) throws Exception;
+}
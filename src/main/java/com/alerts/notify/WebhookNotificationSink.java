@@ -0,0 +1,65 @@
+package com.alerts.notify;
+
+import com.alerts.model.AlertEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * WebhookNotificationSink - POSTs alert batches as a JSON array
+ *
+ * Enabled by setting alerts.notify.webhook.url. Each batch is one request;
+ * any non-2xx status or I/O error fails the batch so the dispatcher retries it.
+ */
+@Component
+@ConditionalOnProperty(name = "alerts.notify.webhook.url")
+public class WebhookNotificationSink implements NotificationSink {
+
+    private final URI url;
+    private final Duration timeout;
+    private final HttpClient client;
+
+    public WebhookNotificationSink(@Value("${alerts.notify.webhook.url}") String url,
+                                   @Value("${alerts.notify.webhook.timeout-ms:5000}") long timeoutMillis) {
+        this.url = URI.create(url);
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.client = HttpClient.newBuilder()
+            .connectTimeout(timeout)
+            .build();
+    }
+
+    @Override
+    public String name() {
+        return "webhook";
+    }
+
+    @Override
+    public void send(List<AlertEvent> alerts) throws IOException, InterruptedException {
+        StringBuilder body = new StringBuilder(alerts.size() * 128).append('[');
+        for (int i = 0; i < alerts.size(); i++) {
+            if (i > 0) {
+                body.append(',');
+            }
+            body.append(alerts.get(i).toJson());
+        }
+        body.append(']');
+
+        HttpRequest request = HttpRequest.newBuilder(url)
+            .timeout(timeout)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+            .build();
+        HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException("Webhook returned HTTP " + response.statusCode());
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.alerts.publish;
+
+import com.alerts.hashing.KeyHashes;
+import com.alerts.metrics.AlertMetrics;
+import com.alerts.model.AlertEvent;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AlertPublisher - Bounded asynchronous pipeline to eagle-eye.alerts
+ *
+ * Replaces the thread-per-alert publish. Alerts are sharded by key onto a
+ * small fixed set of workers; each shard is a bounded queue with many
+ * producers (request threads) and exactly one consumer (its worker), which
+ * also keeps alerts for one key in order.
+ *
+ * A worker drains up to alerts.publisher.batch-size alerts at a time and
+ * hands them to KafkaTemplate back to back, so they share producer batches.
+ * Completion is handled in callbacks; nothing waits on a send future.
+ *
+ * When a queue is full, alerts.publisher.backpressure decides between
+ * blocking, dropping the oldest alert or coalescing per key.
+ */
+@Service
+public class AlertPublisher {
+
+    private static final Logger log = LoggerFactory.getLogger(AlertPublisher.class);
+
+    public static final String ALERTS_TOPIC = "eagle-eye.alerts";
+
+    static final class PendingAlert {
+        final long hash;
+        long errorCount;
+        long threshold;
+        long alertTimes;
+        long suppressed;
+        long enqueuedNanos;
+        int merged;
+        // Set by the worker once the alert left the coalescing map (guarded by this)
+        boolean taken;
+
+        PendingAlert(long hash, long errorCount, long threshold, long alertTimes, long suppressed) {
+            this.hash = hash;
+            this.errorCount = errorCount;
+            this.threshold = threshold;
+            this.alertTimes = alertTimes;
+            this.suppressed = suppressed;
+            this.enqueuedNanos = System.nanoTime();
+        }
+    }
+
+    private final class Shard implements Runnable {
+        final ArrayBlockingQueue<PendingAlert> queue;
+        final ConcurrentHashMap<Long, PendingAlert> pendingByKey = new ConcurrentHashMap<>();
+        final Thread thread;
+
+        Shard(int index, int capacity) {
+            queue = new ArrayBlockingQueue<>(capacity);
+            thread = new Thread(this, "alert-publisher-" + index);
+            thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            List<PendingAlert> batch = new ArrayList<>(batchSize);
+            while (running || !queue.isEmpty()) {
+                try {
+                    PendingAlert first = queue.poll(100, TimeUnit.MILLISECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                    queue.drainTo(batch, batchSize - 1);
+                    for (PendingAlert alert : batch) {
+                        send(this, alert);
+                    }
+                    batches.increment();
+                } catch (InterruptedException e) {
+                    if (!running) {
+                        break;
+                    }
+                } catch (RuntimeException e) {
+                    failed.add(batch.size());
+                    log.error("❌ Alert publish batch failed: {}", e.getMessage());
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+    }
+
+    private final KafkaTemplate<Long, AlertEvent> kafkaTemplate;
+    private final AlertMetrics metrics;
+    private final BackpressurePolicy policy;
+    private final int batchSize;
+    private final long blockTimeoutMillis;
+    private final Shard[] shards;
+    private final int queueCapacity;
+    private volatile boolean running = true;
+
+    private final LongAdder enqueued = new LongAdder();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder latencySamples = new LongAdder();
+    private final LongAdder latencyNanosTotal = new LongAdder();
+    private final LongAccumulator latencyNanosMax = new LongAccumulator(Long::max, 0);
+
+    public AlertPublisher(KafkaTemplate<Long, AlertEvent> kafkaTemplate,
+                          AlertMetrics metrics,
+                          @Value("${alerts.publisher.workers:2}") int workers,
+                          @Value("${alerts.publisher.queue-capacity:65536}") int queueCapacity,
+                          @Value("${alerts.publisher.batch-size:500}") int batchSize,
+                          @Value("${alerts.publisher.backpressure:COALESCE}") BackpressurePolicy policy,
+                          @Value("${alerts.publisher.block-timeout-ms:1000}") long blockTimeoutMillis) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.metrics = metrics;
+        this.policy = policy;
+        this.batchSize = Math.max(1, batchSize);
+        this.blockTimeoutMillis = blockTimeoutMillis;
+        int shardCount = Math.max(1, workers);
+        int shardCapacity = Math.max(1, queueCapacity / shardCount);
+        this.shards = new Shard[shardCount];
+        this.queueCapacity = shardCapacity * shardCount;
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new Shard(i, shardCapacity);
+            shards[i].thread.start();
+        }
+        log.info("Alert publisher: {} workers, queue {}, batch {}, backpressure {}",
+            shardCount, this.queueCapacity, this.batchSize, policy);
+    }
+
+    /**
+     * Queue an alert for publishing. Never blocks the caller unless the policy is BLOCK.
+     *
+     * @return false if the alert was dropped
+     */
+    public boolean publish(long hash, long errorCount, long threshold, long alertTimes) {
+        return publish(hash, errorCount, threshold, alertTimes, 0);
+    }
+
+    /**
+     * Queue an alert that also reports breaches suppressed by AlertSuppressor.
+     */
+    public boolean publish(long hash, long errorCount, long threshold, long alertTimes, long suppressedCount) {
+        Shard shard = shards[shardFor(hash)];
+
+        if (policy == BackpressurePolicy.COALESCE) {
+            PendingAlert existing = shard.pendingByKey.get(hash);
+            if (existing != null) {
+                synchronized (existing) {
+                    if (!existing.taken) {
+                        existing.errorCount = errorCount;
+                        existing.threshold = threshold;
+                        existing.alertTimes = Math.max(existing.alertTimes, alertTimes);
+                        existing.suppressed += suppressedCount;
+                        existing.merged++;
+                        coalesced.increment();
+                        return true;
+                    }
+                }
+            }
+        }
+
+        PendingAlert alert = new PendingAlert(hash, errorCount, threshold, alertTimes, suppressedCount);
+        if (policy == BackpressurePolicy.COALESCE) {
+            shard.pendingByKey.put(hash, alert);
+        }
+
+        boolean accepted;
+        if (policy == BackpressurePolicy.BLOCK) {
+            try {
+                accepted = shard.queue.offer(alert, blockTimeoutMillis, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                accepted = false;
+            }
+        } else {
+            while (!(accepted = shard.queue.offer(alert))) {
+                PendingAlert oldest = shard.queue.poll();
+                if (oldest != null) {
+                    discard(shard, oldest);
+                }
+            }
+        }
+
+        if (!accepted) {
+            discard(shard, alert);
+            return false;
+        }
+        enqueued.increment();
+        return true;
+    }
+
+    private void discard(Shard shard, PendingAlert alert) {
+        if (policy == BackpressurePolicy.COALESCE) {
+            synchronized (alert) {
+                alert.taken = true;
+            }
+            shard.pendingByKey.remove(alert.hash, alert);
+        }
+        dropped.increment();
+    }
+
+    private void send(Shard shard, PendingAlert alert) {
+        long errorCount;
+        long threshold;
+        long alertTimes;
+        long suppressedCount;
+        int merged;
+        synchronized (alert) {
+            alert.taken = true;
+            errorCount = alert.errorCount;
+            threshold = alert.threshold;
+            alertTimes = alert.alertTimes;
+            suppressedCount = alert.suppressed;
+            merged = alert.merged;
+        }
+        if (policy == BackpressurePolicy.COALESCE) {
+            shard.pendingByKey.remove(alert.hash, alert);
+        }
+
+        AlertEvent event = new AlertEvent(alert.hash, errorCount, threshold, alertTimes, suppressedCount,
+            System.currentTimeMillis());
+        long enqueuedNanos = alert.enqueuedNanos;
+        int count = 1 + merged;
+
+        kafkaTemplate.send(ALERTS_TOPIC, alert.hash, event).whenComplete((result, ex) -> {
+            if (ex != null) {
+                failed.add(count);
+                if (metrics.sampleEvent()) {
+                    log.warn("event=alert_publish_failed key={} alerts={} error=\"{} - {}\" sample_interval={}",
+                        KeyHashes.toHex(alert.hash), count, ex.getClass().getName(), ex.getMessage(),
+                        metrics.eventSampleInterval());
+                }
+                return;
+            }
+            long latency = System.nanoTime() - enqueuedNanos;
+            published.add(count);
+            latencySamples.increment();
+            latencyNanosTotal.add(latency);
+            latencyNanosMax.accumulate(latency);
+        });
+    }
+
+    private int shardFor(long hash) {
+        return (int) ((hash ^ (hash >>> 32)) & 0x7fffffff) % shards.length;
+    }
+
+    public int queueDepth() {
+        int depth = 0;
+        for (Shard shard : shards) {
+            depth += shard.queue.size();
+        }
+        return depth;
+    }
+
+    public int queueCapacity() {
+        return queueCapacity;
+    }
+
+    public Map<String, Object> stats() {
+        long samples = latencySamples.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("policy", policy.name());
+        stats.put("queueDepth", queueDepth());
+        stats.put("enqueued", enqueued.sum());
+        stats.put("published", published.sum());
+        stats.put("failed", failed.sum());
+        stats.put("dropped", dropped.sum());
+        stats.put("coalesced", coalesced.sum());
+        stats.put("batches", batches.sum());
+        stats.put("avgPublishLatencyMicros", samples == 0 ? 0 : latencyNanosTotal.sum() / samples / 1000);
+        stats.put("maxPublishLatencyMicros", latencyNanosMax.get() / 1000);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        for (Shard shard : shards) {
+            try {
+                shard.thread.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        kafkaTemplate.flush();
+    }
+}
@@ -0,0 +1,328 @@
+package com.alerts.publish;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AlertSuppressor - Per-key cooldown in front of eagle-eye.alerts
+ *
+ * A key that stays over its threshold breaches on every report. Instead of
+ * publishing each breach, the first one is published and later ones are
+ * counted until the key's cooldown has passed:
+ * - Cooldown starts at alerts.suppression.cooldown-ms. If breaches were
+ *   suppressed during a cooldown the next one is backoff-multiplier times
+ *   longer (up to max-cooldown-ms); a key that stayed quiet for a full
+ *   cooldown starts over at the base.
+ * - A breach whose errorCount is escalation-factor times the last published
+ *   errorCount is published immediately (0 disables escalation). A last
+ *   published errorCount of 0 (e.g. a dynamic threshold of 0) gives no
+ *   baseline to escalate from.
+ * - When a cooldown with suppressed breaches expires, one summary alert
+ *   carrying the suppressed count is published by the sweep thread, so a
+ *   storm that stops mid-cooldown is still reported.
+ *
+ * alertTimes keeps counting every breach; only publishing is suppressed.
+ *
+ * State is a striped open-addressing table of primitive longs, one 64-byte
+ * slot per key, each stripe guarded by its own lock. Quiet keys are dropped
+ * by the sweep.
+ */
+@Service
+public class AlertSuppressor {
+
+    private static final Logger log = LoggerFactory.getLogger(AlertSuppressor.class);
+
+    // Slot layout (longs)
+    private static final int KEY = 0;
+    private static final int NOTIFIED_AT = 1;     // 0 = empty slot
+    private static final int COOLDOWN = 2;
+    private static final int NOTIFIED_COUNT = 3;
+    private static final int SUPPRESSED = 4;
+    private static final int LAST_ERROR_COUNT = 5;
+    private static final int THRESHOLD = 6;
+    private static final int ALERT_TIMES = 7;
+    private static final int STRIDE = 8;
+
+    private static final int STRIPES = 64;
+    private static final int INITIAL_STRIPE_CAPACITY = 64;
+
+    private static final class Stripe {
+        long[] slots = new long[INITIAL_STRIPE_CAPACITY * STRIDE];
+        int mask = INITIAL_STRIPE_CAPACITY - 1;
+        int size;
+    }
+
+    private final AlertPublisher alertPublisher;
+    private final boolean enabled;
+    private final long cooldownMillis;
+    private final long maxCooldownMillis;
+    private final long backoffMultiplier;
+    private final double escalationFactor;
+    private final int maxStripeCapacity;
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final ScheduledExecutorService sweeper;
+
+    private final LongAdder notified = new LongAdder();
+    private final LongAdder suppressed = new LongAdder();
+    private final LongAdder escalations = new LongAdder();
+    private final LongAdder summaries = new LongAdder();
+    private final LongAdder untracked = new LongAdder();
+
+    public AlertSuppressor(AlertPublisher alertPublisher,
+                           @Value("${alerts.suppression.enabled:true}") boolean enabled,
+                           @Value("${alerts.suppression.cooldown-ms:60000}") long cooldownMillis,
+                           @Value("${alerts.suppression.max-cooldown-ms:3600000}") long maxCooldownMillis,
+                           @Value("${alerts.suppression.backoff-multiplier:2}") long backoffMultiplier,
+                           @Value("${alerts.suppression.escalation-factor:2.0}") double escalationFactor,
+                           @Value("${alerts.suppression.max-keys:262144}") int maxKeys,
+                           @Value("${alerts.suppression.sweep-interval-ms:1000}") long sweepIntervalMillis) {
+        this.alertPublisher = alertPublisher;
+        this.enabled = enabled;
+        this.cooldownMillis = Math.max(1, cooldownMillis);
+        this.maxCooldownMillis = Math.max(this.cooldownMillis, maxCooldownMillis);
+        this.backoffMultiplier = Math.max(1, backoffMultiplier);
+        this.escalationFactor = escalationFactor;
+        // Stripe capacity is a power of two kept at load factor <= 0.5
+        this.maxStripeCapacity = Integer.highestOneBit(Math.max(INITIAL_STRIPE_CAPACITY, 2 * maxKeys / STRIPES - 1)) << 1;
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        if (enabled) {
+            sweeper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "alert-suppressor-sweep");
+                t.setDaemon(true);
+                return t;
+            });
+            sweeper.scheduleWithFixedDelay(this::scheduledSweep, sweepIntervalMillis, sweepIntervalMillis, TimeUnit.MILLISECONDS);
+            log.info("Alert suppression: cooldown {}ms (max {}ms, x{}), escalation x{}",
+                this.cooldownMillis, this.maxCooldownMillis, this.backoffMultiplier, escalationFactor);
+        } else {
+            sweeper = null;
+        }
+    }
+
+    /**
+     * Decide whether a breach is published.
+     *
+     * @return -1 to suppress the breach, otherwise the number of breaches
+     *         suppressed since the key's previous alert (to report with this one)
+     */
+    public long check(long hash, long errorCount, long threshold, long alertTimes) {
+        if (!enabled) {
+            return 0;
+        }
+        return check(hash, errorCount, threshold, alertTimes, Math.max(1, System.currentTimeMillis()));
+    }
+
+    long check(long hash, long errorCount, long threshold, long alertTimes, long now) {
+        Stripe stripe = stripes[stripeFor(hash)];
+        synchronized (stripe) {
+            int slot = find(stripe, hash);
+            long[] s = stripe.slots;
+            if (slot < 0) {
+                slot = insert(stripe, hash);
+                if (slot < 0) {
+                    // Table full of active keys: fail open
+                    untracked.increment();
+                    notified.increment();
+                    return 0;
+                }
+                s = stripe.slots;
+                s[slot + NOTIFIED_AT] = now;
+                s[slot + COOLDOWN] = cooldownMillis;
+                s[slot + NOTIFIED_COUNT] = errorCount;
+                recordLast(s, slot, errorCount, threshold, alertTimes);
+                notified.increment();
+                return 0;
+            }
+
+            recordLast(s, slot, errorCount, threshold, alertTimes);
+            long cooldownEnd = s[slot + NOTIFIED_AT] + s[slot + COOLDOWN];
+            if (now < cooldownEnd) {
+                if (escalationFactor > 0 && s[slot + NOTIFIED_COUNT] > 0
+                        && errorCount >= s[slot + NOTIFIED_COUNT] * escalationFactor) {
+                    escalations.increment();
+                    return markNotified(s, slot, now, errorCount, s[slot + COOLDOWN]);
+                }
+                s[slot + SUPPRESSED]++;
+                suppressed.increment();
+                return -1;
+            }
+
+            long cooldown = s[slot + COOLDOWN];
+            if (s[slot + SUPPRESSED] > 0) {
+                cooldown = backoff(cooldown);
+            } else if (now - cooldownEnd >= cooldown) {
+                cooldown = cooldownMillis;
+            }
+            return markNotified(s, slot, now, errorCount, cooldown);
+        }
+    }
+
+    private long markNotified(long[] s, int slot, long now, long errorCount, long cooldown) {
+        long pending = s[slot + SUPPRESSED];
+        s[slot + NOTIFIED_AT] = now;
+        s[slot + COOLDOWN] = cooldown;
+        s[slot + NOTIFIED_COUNT] = errorCount;
+        s[slot + SUPPRESSED] = 0;
+        notified.increment();
+        return pending;
+    }
+
+    private static void recordLast(long[] s, int slot, long errorCount, long threshold, long alertTimes) {
+        s[slot + LAST_ERROR_COUNT] = errorCount;
+        s[slot + THRESHOLD] = threshold;
+        s[slot + ALERT_TIMES] = alertTimes;
+    }
+
+    private long backoff(long cooldown) {
+        return cooldown >= maxCooldownMillis / backoffMultiplier ? maxCooldownMillis : cooldown * backoffMultiplier;
+    }
+
+    private void scheduledSweep() {
+        try {
+            sweep(Math.max(1, System.currentTimeMillis()));
+        } catch (Exception e) {
+            log.error("❌ Alert suppression sweep failed: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Publish summaries for expired cooldowns with suppressed breaches and
+     * drop keys that have been quiet for longer than max-cooldown-ms.
+     */
+    void sweep(long now) {
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                long[] s = stripe.slots;
+                int expired = 0;
+                for (int slot = 0; slot < s.length; slot += STRIDE) {
+                    if (s[slot + NOTIFIED_AT] == 0) {
+                        continue;
+                    }
+                    long cooldownEnd = s[slot + NOTIFIED_AT] + s[slot + COOLDOWN];
+                    if (now < cooldownEnd) {
+                        continue;
+                    }
+                    long pending = s[slot + SUPPRESSED];
+                    if (pending > 0) {
+                        if (alertPublisher.publish(s[slot + KEY], s[slot + LAST_ERROR_COUNT], s[slot + THRESHOLD],
+                                s[slot + ALERT_TIMES], pending)) {
+                            summaries.increment();
+                        }
+                        markNotified(s, slot, now, s[slot + LAST_ERROR_COUNT], backoff(s[slot + COOLDOWN]));
+                    } else if (now - cooldownEnd >= maxCooldownMillis) {
+                        s[slot + NOTIFIED_AT] = 0;
+                        expired++;
+                    }
+                }
+                if (expired > 0) {
+                    rehash(stripe, stripe.mask + 1);
+                }
+            }
+        }
+    }
+
+    private static int stripeFor(long hash) {
+        return (int) ((hash * 0x9E3779B97F4A7C15L) >>> 58);
+    }
+
+    private static int indexFor(long hash, int mask) {
+        long h = hash * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private static int find(Stripe stripe, long hash) {
+        long[] s = stripe.slots;
+        int i = indexFor(hash, stripe.mask);
+        while (true) {
+            int slot = i * STRIDE;
+            if (s[slot + NOTIFIED_AT] == 0) {
+                return -1;
+            }
+            if (s[slot + KEY] == hash) {
+                return slot;
+            }
+            i = (i + 1) & stripe.mask;
+        }
+    }
+
+    private int insert(Stripe stripe, long hash) {
+        int capacity = stripe.mask + 1;
+        if ((stripe.size + 1) * 2 > capacity) {
+            if (capacity >= maxStripeCapacity) {
+                return -1;
+            }
+            rehash(stripe, capacity * 2);
+        }
+        long[] s = stripe.slots;
+        int i = indexFor(hash, stripe.mask);
+        while (s[i * STRIDE + NOTIFIED_AT] != 0) {
+            i = (i + 1) & stripe.mask;
+        }
+        int slot = i * STRIDE;
+        s[slot + KEY] = hash;
+        stripe.size++;
+        return slot;
+    }
+
+    private static void rehash(Stripe stripe, int capacity) {
+        long[] old = stripe.slots;
+        long[] s = new long[capacity * STRIDE];
+        int mask = capacity - 1;
+        int size = 0;
+        for (int from = 0; from < old.length; from += STRIDE) {
+            if (old[from + NOTIFIED_AT] == 0) {
+                continue;
+            }
+            int i = indexFor(old[from + KEY], mask);
+            while (s[i * STRIDE + NOTIFIED_AT] != 0) {
+                i = (i + 1) & mask;
+            }
+            System.arraycopy(old, from, s, i * STRIDE, STRIDE);
+            size++;
+        }
+        stripe.slots = s;
+        stripe.mask = mask;
+        stripe.size = size;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public Map<String, Object> stats() {
+        int keys = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                keys += stripe.size;
+            }
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("trackedKeys", keys);
+        stats.put("notified", notified.sum());
+        stats.put("suppressed", suppressed.sum());
+        stats.put("escalations", escalations.sum());
+        stats.put("summaries", summaries.sum());
+        stats.put("untracked", untracked.sum());
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.alerts.publish;
+
+/**
+ * BackpressurePolicy - What AlertPublisher does when a shard queue is full
+ */
+public enum BackpressurePolicy {
+
+    /**
+     * Wait up to alerts.publisher.block-timeout-ms for space, then drop the new alert
+     */
+    BLOCK,
+
+    /**
+     * Evict the oldest queued alert to make room for the new one
+     */
+    DROP_OLDEST,
+
+    /**
+     * Merge into the alert already queued for the same key (latest values win,
+     * the merge is counted); a new key on a full queue evicts the oldest
+     */
+    COALESCE
+}
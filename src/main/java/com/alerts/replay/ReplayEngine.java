@@ -0,0 +1,705 @@
+package com.alerts.replay;
+
+import com.alerts.cache.ThresholdNearCache;
+import com.alerts.hashing.KeyHasher;
+import com.alerts.hashing.KeyHashes;
+import com.alerts.service.AlertEvaluation;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ReplayEngine - Evaluates recorded error reports against threshold sets, offline
+ *
+ * Answers "how many alerts would these thresholds have raised" without
+ * touching the live service: nothing is sent to Kafka, no alertTimes change,
+ * no state store is read or written. Each report is evaluated against every
+ * ThresholdSet through AlertEvaluation, the decision AlertProcessingService
+ * (REST mode) and ErrorCountEvaluator (stream mode) make - windowed
+ * thresholds compare the window sum, in REST mode as for a single instance
+ * receiving every report - with the same default resolution
+ * (ThresholdHierarchy). Counted are breaches - what alertTimes counts; the
+ * AlertSuppressor cooldown only decides which of them are published.
+ *
+ * The input is cut into chunks of chunk-mb at line boundaries:
+ * - parser threads read and parse chunks in parallel, hash each key and
+ *   route the record to the partition owning the key;
+ * - one evaluation thread per partition takes the chunks in file order, so
+ *   each key sees its reports in the recorded order (as sliding windows
+ *   need) and its state is only ever touched by one thread, without locks;
+ * - at most 2 x parallelism chunks are parsed ahead of evaluation, so memory
+ *   is bounded by chunk size and key count, not by input size.
+ *
+ * Per-key state is primitive: open-addressing slots holding, per set, the
+ * resolved threshold (resolved once per key), breach count and - for
+ * windowed thresholds - the key's ErrorRateWindow.
+ */
+final class ReplayEngine {
+
+    static final int MAX_LINE = 64 * 1024;
+    private static final long PROGRESS_INTERVAL_MS = 5000;
+    private static final JsonFactory JSON = new JsonFactory();
+
+    /**
+     * Receives progress every few seconds, on the engine's progress thread.
+     * The engine itself prints nothing; ReplayRunner decides where it goes.
+     */
+    interface Progress {
+        void report(int percent, long records, double recordsPerSecond);
+    }
+
+    private final Path input;
+    private final ReplayFormat format;
+    private final List<ThresholdSet> sets;
+    private final KeyHasher keyHasher;
+    private final int parallelism;
+    private final int chunkBytes;
+    // Composite key per hash, for defaults and per-tenant totals (filled by parsers and threshold files)
+    private final Map<Long, String> names;
+    private final Progress progress;
+
+    private final AtomicLong bytesParsed = new AtomicLong();
+    private final LongAdder recordsEvaluated = new LongAdder();
+    private volatile boolean aborted;
+
+    ReplayEngine(Path input, ReplayFormat format, List<ThresholdSet> sets, KeyHasher keyHasher, int parallelism,
+                 int chunkBytes, Map<Long, String> names, Progress progress) {
+        this.input = input;
+        this.format = format;
+        this.sets = sets;
+        this.keyHasher = keyHasher;
+        this.parallelism = Math.max(1, parallelism);
+        this.chunkBytes = chunkBytes;
+        this.names = names;
+        this.progress = progress;
+    }
+
+    /**
+     * Parsed records of one chunk, by partition.
+     */
+    static final class Batch {
+        final long[][] timestamps;
+        final long[][] hashes;
+        final long[][] counts;
+        final int[] sizes;
+        final AtomicInteger pending;
+        long invalid;
+        String firstError;
+
+        Batch(int partitions, int capacity) {
+            timestamps = new long[partitions][capacity];
+            hashes = new long[partitions][capacity];
+            counts = new long[partitions][capacity];
+            sizes = new int[partitions];
+            pending = new AtomicInteger(partitions);
+        }
+
+        void add(int partition, long timestamp, long hash, long count) {
+            int n = sizes[partition];
+            if (n == hashes[partition].length) {
+                int grown = n * 2;
+                timestamps[partition] = Arrays.copyOf(timestamps[partition], grown);
+                hashes[partition] = Arrays.copyOf(hashes[partition], grown);
+                counts[partition] = Arrays.copyOf(counts[partition], grown);
+            }
+            timestamps[partition][n] = timestamp;
+            hashes[partition][n] = hash;
+            counts[partition][n] = count;
+            sizes[partition] = n + 1;
+        }
+    }
+
+    /**
+     * Key state of one partition; slot data is laid out [slot * sets + set].
+     */
+    final class Partition {
+        final int setCount = sets.size();
+        private long[] keys = new long[1024];
+        // slot + 1, 0 = empty
+        private int[] slotOf = new int[1024];
+        int size;
+        long[] slotKeys = new long[512];
+        long[] reports = new long[512];
+        long[] thresholds = new long[512 * setCount];
+        long[] breaches = new long[512 * setCount];
+        int[] windowSeconds = new int[512 * setCount];
+        int[] windowBuckets = new int[512 * setCount];
+        byte[][] windows = new byte[512 * setCount][];
+
+        final long[] evaluated = new long[setCount];
+        final long[] setBreaches = new long[setCount];
+        long records;
+        long noThreshold;
+
+        private final int[] window = new int[2];
+        private final ThresholdNearCache.Entry scratch = new ThresholdNearCache.Entry();
+
+        void evaluate(Batch batch, int partition) {
+            long[] timestamps = batch.timestamps[partition];
+            long[] hashes = batch.hashes[partition];
+            long[] counts = batch.counts[partition];
+            int n = batch.sizes[partition];
+            for (int i = 0; i < n; i++) {
+                evaluate(timestamps[i], hashes[i], counts[i]);
+            }
+            records += n;
+            recordsEvaluated.add(n);
+        }
+
+        private void evaluate(long timestamp, long hash, long errorCount) {
+            int slot = slot(hash);
+            reports[slot]++;
+            int base = slot * setCount;
+            boolean evaluatedAny = false;
+            for (int s = 0; s < setCount; s++) {
+                long threshold = thresholds[base + s];
+                if (threshold < 0) {
+                    continue;
+                }
+                evaluatedAny = true;
+                evaluated[s]++;
+                long observed = errorCount;
+                if (windowSeconds[base + s] > 0) {
+                    byte[] keyWindow = AlertEvaluation.window(windows[base + s], windowBuckets[base + s]);
+                    windows[base + s] = keyWindow;
+                    observed = AlertEvaluation.addToWindow(keyWindow, windowSeconds[base + s],
+                        windowBuckets[base + s], timestamp, errorCount);
+                }
+                if (AlertEvaluation.breached(observed, threshold)) {
+                    breaches[base + s]++;
+                    setBreaches[s]++;
+                }
+            }
+            if (!evaluatedAny) {
+                noThreshold++;
+            }
+        }
+
+        private int slot(long hash) {
+            int mask = keys.length - 1;
+            int i = ThresholdSet.spread(hash) & mask;
+            while (slotOf[i] != 0) {
+                if (keys[i] == hash) {
+                    return slotOf[i] - 1;
+                }
+                i = (i + 1) & mask;
+            }
+            int slot = size++;
+            keys[i] = hash;
+            slotOf[i] = slot + 1;
+            ensureSlots(size);
+            slotKeys[slot] = hash;
+            String key = names.get(hash);
+            int base = slot * setCount;
+            for (int s = 0; s < setCount; s++) {
+                thresholds[base + s] = sets.get(s).resolve(hash, key, window, scratch);
+                windowSeconds[base + s] = window[0];
+                windowBuckets[base + s] = window[1];
+            }
+            if (size * 2 > keys.length) {
+                rehash();
+            }
+            return slot;
+        }
+
+        private void ensureSlots(int slots) {
+            if (slots <= reports.length) {
+                return;
+            }
+            int grown = reports.length * 2;
+            slotKeys = Arrays.copyOf(slotKeys, grown);
+            reports = Arrays.copyOf(reports, grown);
+            thresholds = Arrays.copyOf(thresholds, grown * setCount);
+            breaches = Arrays.copyOf(breaches, grown * setCount);
+            windowSeconds = Arrays.copyOf(windowSeconds, grown * setCount);
+            windowBuckets = Arrays.copyOf(windowBuckets, grown * setCount);
+            windows = Arrays.copyOf(windows, grown * setCount);
+        }
+
+        private void rehash() {
+            long[] oldKeys = keys;
+            int[] oldSlots = slotOf;
+            keys = new long[oldKeys.length * 2];
+            slotOf = new int[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int j = 0; j < oldKeys.length; j++) {
+                if (oldSlots[j] != 0) {
+                    int i = ThresholdSet.spread(oldKeys[j]) & mask;
+                    while (slotOf[i] != 0) {
+                        i = (i + 1) & mask;
+                    }
+                    keys[i] = oldKeys[j];
+                    slotOf[i] = oldSlots[j];
+                }
+            }
+        }
+    }
+
+    /**
+     * Everything a report needs once all records were evaluated.
+     */
+    static final class Result {
+        final List<ThresholdSet> sets;
+        final Partition[] partitions;
+        final Map<Long, String> names;
+        final long bytes;
+        final long invalid;
+        final String firstError;
+        final long elapsedNanos;
+
+        Result(List<ThresholdSet> sets, Partition[] partitions, Map<Long, String> names, long bytes, long invalid,
+               String firstError, long elapsedNanos) {
+            this.sets = sets;
+            this.partitions = partitions;
+            this.names = names;
+            this.bytes = bytes;
+            this.invalid = invalid;
+            this.firstError = firstError;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        long records() {
+            long records = 0;
+            for (Partition partition : partitions) {
+                records += partition.records;
+            }
+            return records;
+        }
+    }
+
+    Result run() throws IOException, InterruptedException {
+        long started = System.nanoTime();
+        try (FileChannel channel = FileChannel.open(input, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int chunks = (int) Math.max(1, (size + chunkBytes - 1) / chunkBytes);
+            // ready[i] completes once batches[i] is parsed, which it then publishes to the evaluators
+            Batch[] batches = new Batch[chunks];
+            CompletableFuture<?>[] ready = new CompletableFuture<?>[chunks];
+            for (int i = 0; i < chunks; i++) {
+                ready[i] = new CompletableFuture<>();
+            }
+            Semaphore ahead = new Semaphore(2 * parallelism);
+            AtomicInteger nextChunk = new AtomicInteger();
+            Partition[] partitions = new Partition[parallelism];
+            long[] invalid = new long[1];
+            String[] firstError = new String[1];
+
+            ExecutorService parsers = Executors.newFixedThreadPool(parallelism, named("replay-parse"));
+            ExecutorService evaluators = Executors.newFixedThreadPool(parallelism, named("replay-eval"));
+            ScheduledExecutorService progressReporter =
+                Executors.newSingleThreadScheduledExecutor(named("replay-progress"));
+            progressReporter.scheduleAtFixedRate(() -> reportProgress(size, started), PROGRESS_INTERVAL_MS,
+                PROGRESS_INTERVAL_MS, TimeUnit.MILLISECONDS);
+            List<Future<?>> tasks = new ArrayList<>();
+            try {
+                for (int p = 0; p < parallelism; p++) {
+                    tasks.add(parsers.submit(() -> {
+                        ChunkParser parser = new ChunkParser(channel, size);
+                        try {
+                            while (true) {
+                                ahead.acquire();
+                                int chunk = nextChunk.getAndIncrement();
+                                if (chunk >= chunks || aborted) {
+                                    ahead.release();
+                                    return null;
+                                }
+                                batches[chunk] = parser.parse(chunk);
+                                ready[chunk].complete(null);
+                            }
+                        } catch (Exception | Error e) {
+                            abort(ready, ahead, e);
+                            throw e;
+                        }
+                    }));
+                }
+                for (int p = 0; p < parallelism; p++) {
+                    int partition = p;
+                    partitions[p] = new Partition();
+                    tasks.add(evaluators.submit(() -> {
+                        try {
+                            for (int chunk = 0; chunk < chunks; chunk++) {
+                                ready[chunk].get();
+                                Batch batch = batches[chunk];
+                                partitions[partition].evaluate(batch, partition);
+                                if (batch.pending.decrementAndGet() == 0) {
+                                    // Every partition is done with the chunk
+                                    synchronized (invalid) {
+                                        invalid[0] += batch.invalid;
+                                        if (firstError[0] == null) {
+                                            firstError[0] = batch.firstError;
+                                        }
+                                    }
+                                    batches[chunk] = null;
+                                    ready[chunk] = null;
+                                    ahead.release();
+                                }
+                            }
+                            return null;
+                        } catch (Exception | Error e) {
+                            abort(ready, ahead, e);
+                            throw e;
+                        }
+                    }));
+                }
+                for (Future<?> task : tasks) {
+                    task.get();
+                }
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                while (cause instanceof ExecutionException && cause.getCause() != null) {
+                    cause = cause.getCause();
+                }
+                throw cause instanceof IOException io ? io : new IOException("Replay failed: " + cause, cause);
+            } finally {
+                progressReporter.shutdownNow();
+                parsers.shutdownNow();
+                evaluators.shutdownNow();
+            }
+            return new Result(sets, partitions, names, size, invalid[0], firstError[0], System.nanoTime() - started);
+        }
+    }
+
+    /**
+     * Reads chunks into a reused buffer and parses their lines; one per parser thread.
+     */
+    private final class ChunkParser {
+        private final FileChannel channel;
+        private final long fileSize;
+        private final byte[] buffer = new byte[chunkBytes + MAX_LINE + 1];
+        // Keys whose name this parser already registered
+        private final LongSet seen = new LongSet();
+        private long timestamp;
+        private long hash;
+        private long count;
+        private String error;
+
+        ChunkParser(FileChannel channel, long fileSize) {
+            this.channel = channel;
+            this.fileSize = fileSize;
+        }
+
+        /**
+         * Lines starting in [chunk * chunkBytes, (chunk + 1) * chunkBytes).
+         */
+        Batch parse(int chunk) throws IOException {
+            long chunkStart = (long) chunk * chunkBytes;
+            long chunkEnd = Math.min(fileSize, chunkStart + chunkBytes);
+            // One byte before the chunk tells whether a line starts at chunkStart
+            long readFrom = Math.max(0, chunkStart - 1);
+            int length = (int) (Math.min(fileSize, chunkEnd + MAX_LINE) - readFrom);
+            ByteBuffer target = ByteBuffer.wrap(buffer, 0, length);
+            while (target.hasRemaining()) {
+                if (channel.read(target, readFrom + target.position()) < 0) {
+                    break;
+                }
+            }
+            int end = target.position();
+            int limit = (int) (chunkEnd - readFrom);
+
+            int pos = 0;
+            if (chunk > 0) {
+                while (pos < end && buffer[pos] != '\n') {
+                    pos++;
+                }
+                pos++;
+            }
+            Batch batch = new Batch(parallelism, Math.max(64, limit / 40 / parallelism));
+            while (pos < limit && pos < end) {
+                int eol = pos;
+                while (eol < end && buffer[eol] != '\n') {
+                    eol++;
+                }
+                if (eol == end && readFrom + end < fileSize) {
+                    throw new IOException("Line at offset " + (readFrom + pos) + " is longer than " + MAX_LINE
+                        + " bytes");
+                }
+                boolean firstLine = chunk == 0 && pos == 0;
+                if (parseLine(buffer, pos, eol)) {
+                    if (error == null) {
+                        batch.add(partitionOf(hash), timestamp, hash, count);
+                    } else if (!(firstLine && format == ReplayFormat.CSV)) {
+                        // (an unparseable first CSV line is a header)
+                        batch.invalid++;
+                        if (batch.firstError == null) {
+                            batch.firstError = "offset " + (readFrom + pos) + ": " + error;
+                        }
+                    }
+                }
+                pos = eol + 1;
+            }
+            bytesParsed.addAndGet(chunkEnd - chunkStart);
+            return batch;
+        }
+
+        /**
+         * @return false for blank and comment lines; error is set for invalid ones
+         */
+        private boolean parseLine(byte[] b, int start, int end) {
+            while (end > start && (b[end - 1] == '\r' || b[end - 1] == ' ')) {
+                end--;
+            }
+            if (end == start || b[start] == '#') {
+                return false;
+            }
+            error = null;
+            if (format == ReplayFormat.NDJSON) {
+                parseJson(b, start, end);
+            } else {
+                parseDelimited(b, start, end);
+            }
+            if (error == null && count < 0) {
+                error = "errorCount must not be negative";
+            }
+            return true;
+        }
+
+        private void parseDelimited(byte[] b, int start, int end) {
+            byte delimiter = indexOf(b, (byte) '\t', start, end) >= 0 ? (byte) '\t' : (byte) ',';
+            int first = indexOf(b, delimiter, start, end);
+            int second = first < 0 ? -1 : indexOf(b, delimiter, first + 1, end);
+            if (second < 0) {
+                error = "Expected timestamp,key,errorCount";
+                return;
+            }
+            // kafka-console-consumer prints "CreateTime:<ms>" / "NO_TIMESTAMP"
+            int tsStart = start;
+            int colon = indexOf(b, (byte) ':', start, first);
+            if (colon >= 0) {
+                tsStart = colon + 1;
+            }
+            try {
+                timestamp = startsWith(b, start, first, "NO_TIMESTAMP") ? 0 : parseLong(b, tsStart, first);
+                count = parseLong(b, second + 1, end);
+            } catch (NumberFormatException e) {
+                error = "Invalid number: " + e.getMessage();
+                return;
+            }
+            setKey(b, first + 1, second);
+        }
+
+        private void parseJson(byte[] b, int start, int end) {
+            boolean hasCount = false;
+            boolean hasKey = false;
+            timestamp = 0;
+            try (JsonParser parser = JSON.createParser(b, start, end - start)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    error = "Expected a JSON object";
+                    return;
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.getCurrentName();
+                    JsonToken value = parser.nextToken();
+                    switch (field) {
+                        case "timestamp", "ts" -> timestamp = parser.getValueAsLong(0);
+                        case "errorCount" -> {
+                            count = parser.getValueAsLong(-1);
+                            hasCount = true;
+                        }
+                        case "key" -> {
+                            byte[] key = parser.getValueAsString("").getBytes(StandardCharsets.UTF_8);
+                            setKey(key, 0, key.length);
+                            hasKey = error == null;
+                        }
+                        default -> {
+                            if (value.isStructStart()) {
+                                parser.skipChildren();
+                            }
+                        }
+                    }
+                }
+            } catch (IOException e) {
+                error = "Malformed JSON: " + e.getMessage();
+                return;
+            }
+            if (error == null && (!hasKey || !hasCount)) {
+                error = "Missing key or errorCount";
+            }
+        }
+
+        /**
+         * Composite key (hashed like /api/alert), decimal hash (eagle-eye.errors dump) or 0x hex hash.
+         */
+        private void setKey(byte[] b, int start, int end) {
+            while (start < end && (b[start] == ' ' || b[start] == '"')) {
+                start++;
+            }
+            while (end > start && (b[end - 1] == ' ' || b[end - 1] == '"')) {
+                end--;
+            }
+            if (start == end) {
+                error = "Missing key";
+                return;
+            }
+            if (indexOf(b, (byte) ';', start, end) >= 0) {
+                hash = keyHasher.hash(b, start, end - start);
+                if (seen.add(hash)) {
+                    names.putIfAbsent(hash, new String(b, start, end - start, StandardCharsets.UTF_8));
+                }
+                return;
+            }
+            try {
+                if (startsWith(b, start, end, "0x")) {
+                    hash = KeyHashes.parseHex(Arrays.copyOfRange(b, start + 2, end));
+                } else {
+                    hash = parseLong(b, start, end);
+                }
+            } catch (IllegalArgumentException e) {
+                error = "Invalid key: " + new String(b, start, end - start, StandardCharsets.UTF_8);
+            }
+        }
+    }
+
+    /**
+     * Let every other thread finish after a failure: waiting evaluators get
+     * the failure, waiting parsers a permit (and stop).
+     */
+    private void abort(CompletableFuture<?>[] ready, Semaphore ahead, Throwable failure) {
+        aborted = true;
+        for (CompletableFuture<?> chunk : ready) {
+            if (chunk != null) {
+                chunk.completeExceptionally(failure);
+            }
+        }
+        ahead.release(2 * parallelism);
+    }
+
+    /**
+     * From the high bits of the spread hash: the partition's key table indexes by the low ones.
+     */
+    int partitionOf(long hash) {
+        return (int) (((ThresholdSet.spread(hash) & 0xFFFFFFFFL) * parallelism) >>> 32);
+    }
+
+    private void reportProgress(long size, long started) {
+        long parsed = bytesParsed.get();
+        long records = recordsEvaluated.sum();
+        double seconds = (System.nanoTime() - started) / 1e9;
+        progress.report(size == 0 ? 100 : (int) (parsed * 100 / size), records, records / Math.max(seconds, 1e-3));
+    }
+
+    private static int indexOf(byte[] b, byte value, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (b[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean startsWith(byte[] b, int start, int end, String prefix) {
+        if (end - start < prefix.length()) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length(); i++) {
+            if (b[start + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long parseLong(byte[] b, int start, int end) {
+        while (start < end && (b[start] == ' ' || b[start] == '"')) {
+            start++;
+        }
+        while (end > start && (b[end - 1] == ' ' || b[end - 1] == '"')) {
+            end--;
+        }
+        if (start == end) {
+            throw new NumberFormatException("empty");
+        }
+        boolean negative = b[start] == '-';
+        int i = negative ? start + 1 : start;
+        if (i == end) {
+            throw new NumberFormatException("-");
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = b[i] - '0';
+            // Accumulate negatively so Long.MIN_VALUE (a valid hash) parses
+            if (digit < 0 || digit > 9 || value < (Long.MIN_VALUE + digit) / 10) {
+                throw new NumberFormatException(new String(b, start, end - start, StandardCharsets.UTF_8));
+            }
+            value = value * 10 - digit;
+        }
+        if (!negative && value == Long.MIN_VALUE) {
+            throw new NumberFormatException(new String(b, start, end - start, StandardCharsets.UTF_8));
+        }
+        return negative ? value : -value;
+    }
+
+    private static java.util.concurrent.ThreadFactory named(String prefix) {
+        AtomicInteger next = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, prefix + "-" + next.getAndIncrement());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Minimal open-addressing set of longs.
+     */
+    static final class LongSet {
+        private long[] keys = new long[1024];
+        private boolean[] used = new boolean[1024];
+        private int size;
+
+        /**
+         * @return true if hash was not in the set
+         */
+        boolean add(long hash) {
+            int mask = keys.length - 1;
+            int i = ThresholdSet.spread(hash) & mask;
+            while (used[i]) {
+                if (keys[i] == hash) {
+                    return false;
+                }
+                i = (i + 1) & mask;
+            }
+            used[i] = true;
+            keys[i] = hash;
+            if (++size * 2 > keys.length) {
+                long[] oldKeys = keys;
+                boolean[] oldUsed = used;
+                keys = new long[oldKeys.length * 2];
+                used = new boolean[oldKeys.length * 2];
+                mask = keys.length - 1;
+                for (int j = 0; j < oldKeys.length; j++) {
+                    if (oldUsed[j]) {
+                        int k = ThresholdSet.spread(oldKeys[j]) & mask;
+                        while (used[k]) {
+                            k = (k + 1) & mask;
+                        }
+                        used[k] = true;
+                        keys[k] = oldKeys[j];
+                    }
+                }
+            }
+            return true;
+        }
+    }
+}
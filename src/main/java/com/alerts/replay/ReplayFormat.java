@@ -0,0 +1,30 @@
+package com.alerts.replay;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * Input formats accepted by ReplayEngine
+ *
+ * CSV: timestamp,key,errorCount per line. Tab-separated lines are read the
+ * same way, so a dump of eagle-eye.errors taken with kafka-console-consumer
+ * (print.timestamp, print.key, LongDeserializer for key and value) replays
+ * as is: "CreateTime:" prefixes are skipped and decimal keys are hashes.
+ * NDJSON: {"timestamp":...,"key":"...","errorCount":...} per line, i.e.
+ * recorded /api/alert bodies with a timestamp.
+ */
+enum ReplayFormat {
+    CSV,
+    NDJSON;
+
+    /**
+     * .ndjson / .jsonl / .json files are NDJSON, everything else CSV.
+     */
+    static ReplayFormat forPath(Path path) {
+        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".ndjson") || name.endsWith(".jsonl") || name.endsWith(".json")) {
+            return NDJSON;
+        }
+        return CSV;
+    }
+}
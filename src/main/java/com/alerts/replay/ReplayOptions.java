@@ -0,0 +1,123 @@
+package com.alerts.replay;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ReplayOptions - Command line of a replay run (--name=value)
+ *
+ * --input and --thresholds are required; everything else has a default.
+ */
+final class ReplayOptions {
+
+    enum Mode { REST, STREAM }
+
+    private static final Map<String, String> DEFAULTS = new LinkedHashMap<>();
+
+    static {
+        DEFAULTS.put("input", "");
+        DEFAULTS.put("format", "auto");
+        DEFAULTS.put("thresholds", "");
+        DEFAULTS.put("scales", "1");
+        DEFAULTS.put("mode", "rest");
+        DEFAULTS.put("hashing", "sha256");
+        DEFAULTS.put("parallelism", "0");
+        DEFAULTS.put("chunk-mb", "16");
+        DEFAULTS.put("top", "20");
+        DEFAULTS.put("report", "replay-report.json");
+        DEFAULTS.put("keys-report", "");
+    }
+
+    /**
+     * One threshold file; --thresholds=name=path or just path (named after the file).
+     */
+    record SetSpec(String name, Path path) {
+    }
+
+    final Path input;
+    final ReplayFormat format;
+    final List<SetSpec> thresholds;
+    final List<Double> scales;
+    final Mode mode;
+    final String hashing;
+    final int parallelism;
+    final int chunkBytes;
+    final int top;
+    final String report;
+    final String keysReport;
+
+    private ReplayOptions(Map<String, String> values) {
+        if (values.get("input").isEmpty() || values.get("thresholds").isEmpty()) {
+            throw new IllegalArgumentException("--input and --thresholds are required");
+        }
+        input = Path.of(values.get("input"));
+        format = "auto".equalsIgnoreCase(values.get("format"))
+            ? ReplayFormat.forPath(input)
+            : ReplayFormat.valueOf(values.get("format").toUpperCase());
+        thresholds = new ArrayList<>();
+        for (String spec : values.get("thresholds").split(",")) {
+            int eq = spec.indexOf('=');
+            Path path = Path.of(eq < 0 ? spec : spec.substring(eq + 1));
+            String name = eq < 0 ? path.getFileName().toString().replaceFirst("\\.[^.]*$", "") : spec.substring(0, eq);
+            thresholds.add(new SetSpec(name, path));
+        }
+        scales = new ArrayList<>();
+        for (String scale : values.get("scales").split(",")) {
+            scales.add(Double.parseDouble(scale));
+        }
+        mode = Mode.valueOf(values.get("mode").toUpperCase());
+        hashing = values.get("hashing");
+        int configured = Integer.parseInt(values.get("parallelism"));
+        parallelism = configured > 0 ? configured : Runtime.getRuntime().availableProcessors();
+        chunkBytes = Integer.parseInt(values.get("chunk-mb")) << 20;
+        top = Integer.parseInt(values.get("top"));
+        report = values.get("report");
+        keysReport = values.get("keys-report");
+
+        if (chunkBytes <= 0 || chunkBytes > 1 << 30) {
+            throw new IllegalArgumentException("chunk-mb must be between 1 and 1024");
+        }
+        if (top < 0) {
+            throw new IllegalArgumentException("top must not be negative");
+        }
+        for (double scale : scales) {
+            if (!(scale >= 0)) {
+                throw new IllegalArgumentException("scales must not be negative");
+            }
+        }
+    }
+
+    static ReplayOptions parse(String[] args) {
+        Map<String, String> values = new LinkedHashMap<>(DEFAULTS);
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--") || eq < 0) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg);
+            }
+            String name = arg.substring(2, eq);
+            if (!DEFAULTS.containsKey(name)) {
+                throw new IllegalArgumentException("Unknown option --" + name);
+            }
+            String value = arg.substring(eq + 1);
+            // --thresholds may be repeated
+            if ("thresholds".equals(name) && !values.get(name).isEmpty()) {
+                value = values.get(name) + "," + value;
+            }
+            values.put(name, value);
+        }
+        return new ReplayOptions(values);
+    }
+
+    static String usage() {
+        StringBuilder usage = new StringBuilder()
+            .append("Usage: java -cp kafka-alerts-processor.jar -Dloader.main=com.alerts.replay.ReplayRunner \\\n")
+            .append("         org.springframework.boot.loader.PropertiesLauncher \\\n")
+            .append("         --input=errors.csv --thresholds=current=thresholds.csv [--name=value ...]\n\n")
+            .append("Options (default):\n");
+        DEFAULTS.forEach((name, value) -> usage.append("  --").append(name).append(" (").append(value).append(")\n"));
+        return usage.toString();
+    }
+}
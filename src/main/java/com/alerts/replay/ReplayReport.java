@@ -0,0 +1,242 @@
+package com.alerts.replay;
+
+import com.alerts.hashing.KeyHashes;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * ReplayReport - Per-set, per-tenant and per-key alert counts of a replay
+ *
+ * The JSON report holds, per threshold set, the breach totals, breaches per
+ * tenant (the second segment of the composite key; "(unknown)" for keys only
+ * known by hash) and the keys breaching most often. The optional keys report
+ * is a CSV with one row per key and one breach column per set, for diffing
+ * sets key by key.
+ */
+final class ReplayReport {
+
+    private static final String UNKNOWN_TENANT = "(unknown)";
+
+    private final ReplayEngine.Result result;
+    private final ReplayOptions options;
+
+    ReplayReport(ReplayEngine.Result result, ReplayOptions options) {
+        this.result = result;
+        this.options = options;
+    }
+
+    Map<String, Object> toMap() {
+        long records = result.records();
+        double seconds = result.elapsedNanos / 1e9;
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("input", options.input.toString());
+        report.put("format", options.format.name().toLowerCase());
+        report.put("mode", options.mode.name().toLowerCase());
+        report.put("records", records);
+        report.put("invalidRecords", result.invalid);
+        if (result.firstError != null) {
+            report.put("firstInvalidRecord", result.firstError);
+        }
+        report.put("keys", keys());
+        report.put("recordsWithoutThreshold", noThreshold());
+        report.put("parallelism", result.partitions.length);
+        report.put("elapsedMs", result.elapsedNanos / 1_000_000);
+        report.put("recordsPerSecond", Math.round(records / Math.max(seconds, 1e-3)));
+
+        List<Map<String, Object>> sets = new ArrayList<>();
+        for (int s = 0; s < result.sets.size(); s++) {
+            sets.add(set(s));
+        }
+        report.put("sets", sets);
+        return report;
+    }
+
+    private Map<String, Object> set(int s) {
+        ThresholdSet set = result.sets.get(s);
+        long evaluated = 0;
+        long breaches = 0;
+        long keysEvaluated = 0;
+        long keysBreaching = 0;
+        Map<String, long[]> tenants = new HashMap<>();
+        PriorityQueue<long[]> top = new PriorityQueue<>(Comparator.comparingLong(k -> k[1]));
+
+        for (ReplayEngine.Partition partition : result.partitions) {
+            evaluated += partition.evaluated[s];
+            breaches += partition.setBreaches[s];
+            for (int slot = 0; slot < partition.size; slot++) {
+                int i = slot * partition.setCount + s;
+                if (partition.thresholds[i] < 0) {
+                    continue;
+                }
+                keysEvaluated++;
+                long keyBreaches = partition.breaches[i];
+                if (keyBreaches == 0) {
+                    continue;
+                }
+                keysBreaching++;
+                long hash = partition.slotKeys[slot];
+                // {breaches, keys breaching}
+                long[] tenant = tenants.computeIfAbsent(tenantOf(hash), t -> new long[2]);
+                tenant[0] += keyBreaches;
+                tenant[1]++;
+                if (options.top > 0 && (top.size() < options.top || keyBreaches > top.peek()[1])) {
+                    top.add(new long[] {hash, keyBreaches, partition.reports[slot], partition.thresholds[i]});
+                    if (top.size() > options.top) {
+                        top.poll();
+                    }
+                }
+            }
+        }
+
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("name", set.name);
+        map.put("file", set.path.toString());
+        map.put("scale", set.scale);
+        map.put("thresholds", set.thresholds());
+        map.put("defaults", set.defaults());
+        map.put("invalidRows", set.invalidRows());
+        map.put("keysEvaluated", keysEvaluated);
+        map.put("evaluated", evaluated);
+        map.put("breaches", breaches);
+        map.put("keysBreaching", keysBreaching);
+
+        List<Map<String, Object>> tenantList = new ArrayList<>();
+        tenants.entrySet().stream()
+            .sorted((a, b) -> Long.compare(b.getValue()[0], a.getValue()[0]))
+            .forEach(e -> {
+                Map<String, Object> tenant = new LinkedHashMap<>();
+                tenant.put("tenant", e.getKey());
+                tenant.put("breaches", e.getValue()[0]);
+                tenant.put("keysBreaching", e.getValue()[1]);
+                tenantList.add(tenant);
+            });
+        map.put("tenants", tenantList);
+
+        List<long[]> topKeys = new ArrayList<>(top);
+        topKeys.sort((a, b) -> Long.compare(b[1], a[1]));
+        List<Map<String, Object>> topList = new ArrayList<>();
+        for (long[] key : topKeys) {
+            Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put("key", keyOf(key[0]));
+            entry.put("breaches", key[1]);
+            entry.put("reports", key[2]);
+            entry.put("threshold", key[3]);
+            topList.add(entry);
+        }
+        map.put("topKeys", topList);
+        return map;
+    }
+
+    void writeJson(Path path) throws IOException {
+        new ObjectMapper().enable(SerializationFeature.INDENT_OUTPUT).writeValue(path.toFile(), toMap());
+    }
+
+    /**
+     * key,tenant,reports,&lt;breaches per set&gt; for every key.
+     */
+    void writeKeys(Path path) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write("key,tenant,reports");
+            for (ThresholdSet set : result.sets) {
+                out.write(',');
+                out.write(csv(set.name));
+            }
+            out.newLine();
+            StringBuilder line = new StringBuilder();
+            for (ReplayEngine.Partition partition : result.partitions) {
+                for (int slot = 0; slot < partition.size; slot++) {
+                    long hash = partition.slotKeys[slot];
+                    line.setLength(0);
+                    line.append(csv(keyOf(hash))).append(',').append(csv(tenantOf(hash)))
+                        .append(',').append(partition.reports[slot]);
+                    for (int s = 0; s < partition.setCount; s++) {
+                        int i = slot * partition.setCount + s;
+                        // Empty: no threshold in this set
+                        line.append(',');
+                        if (partition.thresholds[i] >= 0) {
+                            line.append(partition.breaches[i]);
+                        }
+                    }
+                    out.write(line.toString());
+                    out.newLine();
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    void printSummary(PrintStream out) {
+        Map<String, Object> report = toMap();
+        out.printf("%n📊 Replay of %s (%s mode)%n", report.get("input"), report.get("mode"));
+        out.printf("   Records: %,d (%,d invalid), keys: %,d, without threshold: %,d%n",
+            (Long) report.get("records"), (Long) report.get("invalidRecords"), (Long) report.get("keys"),
+            (Long) report.get("recordsWithoutThreshold"));
+        out.printf("   Elapsed: %,d ms (%,d records/s, parallelism %d)%n%n",
+            (Long) report.get("elapsedMs"), (Long) report.get("recordsPerSecond"), report.get("parallelism"));
+        out.printf("   %-32s %14s %14s %12s %10s%n", "Set", "Evaluated", "Breaches", "Keys", "vs first");
+        Long baseline = null;
+        for (Map<String, Object> set : (List<Map<String, Object>>) report.get("sets")) {
+            long breaches = (Long) set.get("breaches");
+            String delta = "";
+            if (baseline == null) {
+                baseline = breaches;
+            } else if (baseline > 0) {
+                delta = String.format("%+.1f%%", (breaches - baseline) * 100.0 / baseline);
+            }
+            out.printf("   %-32s %,14d %,14d %,12d %10s%n", set.get("name"), (Long) set.get("evaluated"),
+                breaches, (Long) set.get("keysBreaching"), delta);
+        }
+    }
+
+    private long keys() {
+        long keys = 0;
+        for (ReplayEngine.Partition partition : result.partitions) {
+            keys += partition.size;
+        }
+        return keys;
+    }
+
+    private long noThreshold() {
+        long records = 0;
+        for (ReplayEngine.Partition partition : result.partitions) {
+            records += partition.noThreshold;
+        }
+        return records;
+    }
+
+    private String keyOf(long hash) {
+        String name = result.names.get(hash);
+        return name != null ? name : KeyHashes.toHex(hash);
+    }
+
+    private String tenantOf(long hash) {
+        String name = result.names.get(hash);
+        if (name == null) {
+            return UNKNOWN_TENANT;
+        }
+        int first = name.indexOf(';');
+        int second = first < 0 ? -1 : name.indexOf(';', first + 1);
+        return first < 0 ? UNKNOWN_TENANT : name.substring(first + 1, second < 0 ? name.length() : second);
+    }
+
+    private static String csv(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+}
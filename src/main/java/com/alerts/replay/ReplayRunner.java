@@ -0,0 +1,98 @@
+package com.alerts.replay;
+
+import com.alerts.hashing.KeyHasher;
+import com.alerts.hashing.Sha256KeyHasher;
+import com.alerts.hashing.XxHash64KeyHasher;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ReplayRunner - Backtest threshold sets against recorded error reports
+ *
+ * Runs without a Spring context: starting the application would load
+ * thresholds into Kafka and start the stream topology, and a replay must not
+ * have side effects. Every threshold file is replayed at every --scales
+ * factor in one pass over the input (ReplayEngine), then the report is
+ * printed and written as JSON (ReplayReport).
+ *
+ *   ./manage.sh replay --input=errors.csv --thresholds=current=thresholds.csv --scales=1,1.5,2
+ */
+public final class ReplayRunner {
+
+    private ReplayRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && ("-h".equals(args[0]) || "--help".equals(args[0]))) {
+            System.out.print(ReplayOptions.usage());
+            return;
+        }
+        ReplayOptions options;
+        KeyHasher keyHasher;
+        try {
+            options = ReplayOptions.parse(args);
+            keyHasher = keyHasher(options.hashing);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.print(ReplayOptions.usage());
+            System.exit(2);
+            return;
+        }
+        try {
+            run(options, keyHasher);
+        } catch (IOException e) {
+            System.err.println("❌ Replay failed: " + e.getMessage());
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    private static void run(ReplayOptions options, KeyHasher keyHasher) throws IOException, InterruptedException {
+        if (!Files.isRegularFile(options.input)) {
+            throw new IOException("Input not found: " + options.input);
+        }
+        Map<Long, String> names = new ConcurrentHashMap<>();
+        List<ThresholdSet> sets = new ArrayList<>();
+        for (ReplayOptions.SetSpec spec : options.thresholds) {
+            ThresholdSet loaded = ThresholdSet.load(spec.name(), spec.path(), keyHasher, names);
+            System.out.printf("Loaded %s: %,d thresholds, %d defaults, %,d invalid rows%n",
+                spec.name(), loaded.thresholds(), loaded.defaults(), loaded.invalidRows());
+            for (double scale : options.scales) {
+                sets.add(scale == 1.0 ? loaded : loaded.scaled(scale));
+            }
+        }
+        System.out.printf("Replaying %s (%s, %,d bytes) against %d threshold sets, %s mode, parallelism %d%n",
+            options.input, options.format.name().toLowerCase(), Files.size(options.input), sets.size(),
+            options.mode.name().toLowerCase(), options.parallelism);
+
+        ReplayEngine.Result result = new ReplayEngine(options.input, options.format, sets, keyHasher,
+            options.parallelism, options.chunkBytes, names, (percent, records, recordsPerSecond) ->
+                System.out.printf("  Replay %d%%: %,d records evaluated (%,.0f records/s)%n",
+                    percent, records, recordsPerSecond)).run();
+
+        ReplayReport report = new ReplayReport(result, options);
+        report.printSummary(System.out);
+        if (!options.report.isEmpty()) {
+            report.writeJson(Path.of(options.report));
+            System.out.println("\n✅ Report written to " + options.report);
+        }
+        if (!options.keysReport.isEmpty()) {
+            report.writeKeys(Path.of(options.keysReport));
+            System.out.println("✅ Per-key breaches written to " + options.keysReport);
+        }
+    }
+
+    private static KeyHasher keyHasher(String name) {
+        return switch (name) {
+            case Sha256KeyHasher.NAME -> Sha256KeyHasher.INSTANCE;
+            case XxHash64KeyHasher.NAME -> XxHash64KeyHasher.INSTANCE;
+            default -> throw new IllegalArgumentException("Unknown hashing " + name);
+        };
+    }
+}
@@ -0,0 +1,165 @@
+package com.alerts.replay;
+
+import com.alerts.cache.ThresholdHierarchy;
+import com.alerts.cache.ThresholdNearCache;
+import com.alerts.hashing.KeyHasher;
+import com.alerts.importer.ThresholdLineParser;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ThresholdSet - One alternative set of thresholds to replay against
+ *
+ * Loaded from a threshold file in the import format (ThresholdLineParser):
+ * exact keys into a read-only open-addressing table, "*" keys into a
+ * ThresholdHierarchy, so keys without a threshold of their own fall back to
+ * the same default the live service would pick. A scaled variant shares the
+ * loaded table and multiplies every threshold.
+ *
+ * Read-only once loaded, so all replay workers share one instance.
+ */
+final class ThresholdSet {
+
+    private static final class Table {
+        final long[] keys;
+        final long[] thresholds;
+        final int[] windowSeconds;
+        final int[] windowBuckets;
+        final boolean[] used;
+        final ThresholdHierarchy hierarchy;
+        final int size;
+        final int defaults;
+        final long invalid;
+
+        Table(List<long[]> rows, ThresholdHierarchy hierarchy, int defaults, long invalid) {
+            int capacity = Integer.highestOneBit(Math.max(16, rows.size() * 2 - 1)) << 1;
+            keys = new long[capacity];
+            thresholds = new long[capacity];
+            windowSeconds = new int[capacity];
+            windowBuckets = new int[capacity];
+            used = new boolean[capacity];
+            int mask = capacity - 1;
+            int count = 0;
+            for (long[] row : rows) {
+                int i = spread(row[0]) & mask;
+                while (used[i] && keys[i] != row[0]) {
+                    i = (i + 1) & mask;
+                }
+                if (!used[i]) {
+                    count++;
+                }
+                // Later rows of the same key win, as on eagle-eye.config
+                used[i] = true;
+                keys[i] = row[0];
+                thresholds[i] = row[1];
+                windowSeconds[i] = (int) row[2];
+                windowBuckets[i] = (int) row[3];
+            }
+            this.size = count;
+            this.hierarchy = hierarchy;
+            this.defaults = defaults;
+            this.invalid = invalid;
+        }
+
+        int find(long hash) {
+            int mask = keys.length - 1;
+            int i = spread(hash) & mask;
+            while (used[i]) {
+                if (keys[i] == hash) {
+                    return i;
+                }
+                i = (i + 1) & mask;
+            }
+            return -1;
+        }
+    }
+
+    final String name;
+    final Path path;
+    final double scale;
+    private final Table table;
+
+    private ThresholdSet(String name, Path path, double scale, Table table) {
+        this.name = name;
+        this.path = path;
+        this.scale = scale;
+        this.table = table;
+    }
+
+    /**
+     * Load a threshold file; composite keys found in it are added to names.
+     */
+    static ThresholdSet load(String name, Path path, KeyHasher keyHasher, Map<Long, String> names)
+            throws IOException {
+        List<long[]> rows = new ArrayList<>();
+        List<String> patterns = new ArrayList<>();
+        List<Long> patternThresholds = new ArrayList<>();
+        long[] invalid = new long[1];
+        ThresholdLineParser.readAll(path, null, keyHasher, row -> {
+            if (row.error() != null) {
+                invalid[0]++;
+            } else if (row.pattern() != null) {
+                patterns.add(row.pattern());
+                patternThresholds.add(row.threshold());
+            } else {
+                rows.add(new long[] {row.hash(), row.threshold(), row.windowSeconds(), row.windowBuckets()});
+                names.putIfAbsent(row.hash(), new String(row.key(), StandardCharsets.UTF_8));
+            }
+        });
+        // No resolution cache: workers resolve each key once per set
+        ThresholdHierarchy hierarchy = new ThresholdHierarchy(keyHasher, Math.max(1, patterns.size()), 0);
+        for (int i = 0; i < patterns.size(); i++) {
+            hierarchy.put(patterns.get(i), patternThresholds.get(i));
+        }
+        return new ThresholdSet(name, path, 1.0, new Table(rows, hierarchy, patterns.size(), invalid[0]));
+    }
+
+    ThresholdSet scaled(double factor) {
+        return new ThresholdSet(name + " x" + factor, path, scale * factor, table);
+    }
+
+    /**
+     * Threshold a key is evaluated against: its own, else the most specific
+     * default (needs the composite key), scaled; -1 if none applies.
+     *
+     * @param window receives windowSeconds / windowBuckets of an own threshold, 0 / 0 otherwise
+     */
+    long resolve(long hash, CharSequence key, int[] window, ThresholdNearCache.Entry scratch) {
+        window[0] = 0;
+        window[1] = 0;
+        long threshold;
+        int i = table.find(hash);
+        if (i >= 0) {
+            threshold = table.thresholds[i];
+            window[0] = table.windowSeconds[i];
+            window[1] = table.windowBuckets[i];
+        } else if (table.hierarchy.resolve(hash, key, scratch)) {
+            threshold = scratch.threshold;
+        } else {
+            return -1;
+        }
+        return scale == 1.0 ? threshold : Math.round(threshold * scale);
+    }
+
+    int thresholds() {
+        return table.size;
+    }
+
+    int defaults() {
+        return table.defaults;
+    }
+
+    long invalidRows() {
+        return table.invalid;
+    }
+
+    static int spread(long hash) {
+        long h = hash * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+}
@@ -0,0 +1,531 @@
+package com.alerts.routing;
+
+import com.alerts.cache.ThresholdNearCache;
+import com.alerts.hashing.KeyHashes;
+import com.alerts.model.ThresholdRecord;
+import com.alerts.streams.AlertTopology;
+import com.alerts.streams.StreamsStateChange;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.apache.kafka.common.serialization.Serializer;
+import org.apache.kafka.common.utils.Utils;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyQueryMetadata;
+import org.apache.kafka.streams.StoreQueryParameters;
+import org.apache.kafka.streams.StreamsMetadata;
+import org.apache.kafka.streams.errors.InvalidStateStoreException;
+import org.apache.kafka.streams.state.HostInfo;
+import org.apache.kafka.streams.state.QueryableStoreTypes;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.config.StreamsBuilderFactoryBean;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * ThresholdRouter - Finds a key's threshold wherever its config-store partition lives
+ *
+ * With several instances sharing application.id, each hosts only some
+ * config-store partitions. KafkaStreams.queryMetadataForKey tells which
+ * instance (application.server) hosts the key:
+ * - local active: read the local store (and fill the near-cache)
+ * - remote active: GET /internal/thresholds/{hash} on that instance over a
+ *   shared keep-alive HttpClient; answers (including "no threshold") are kept
+ *   for alerts.routing.remote-cache-ttl-ms, since remote keys are not in the
+ *   near-cache and receive no updates here
+ * - active unreachable or mid-rebalance: fall back to standby replicas
+ *   (num.standby.replicas), reading the local standby with stale stores enabled
+ *   if this instance is one of them
+ *
+ * queryMetadataForKey recomputes the assignment on every call, and isRemote
+ * runs for every request. The partition -> hosts table is therefore built once
+ * per metadata generation from streamsMetadataForStore and the key's partition
+ * computed the way the default partitioner does (murmur2 of the 8-byte key);
+ * any Streams state change (StreamsStateChange, e.g. a rebalance) drops the
+ * table, and it is rebuilt on the next lookup once Streams is RUNNING again.
+ * Until then lookups ask queryMetadataForKey directly.
+ *
+ * Without application.server (single instance) only the local store is read.
+ * lookupAsync follows the same path but returns while a remote instance is
+ * being queried (HttpClient.sendAsync).
+ */
+@Service
+public class ThresholdRouter {
+
+    private static final Logger log = LoggerFactory.getLogger(ThresholdRouter.class);
+
+    private static final Serializer<Long> KEY_SERIALIZER = new LongSerializer();
+
+    private static final class RemoteEntry {
+        final ThresholdRecord record;
+        final long expiresAt;
+
+        RemoteEntry(ThresholdRecord record, long expiresAt) {
+            this.record = record;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /** config-store hosts per partition, valid for one metadata generation */
+    private static final class Routing {
+        final KeyQueryMetadata[] partitions;
+
+        Routing(KeyQueryMetadata[] partitions) {
+            this.partitions = partitions;
+        }
+
+        KeyQueryMetadata metadata(long hash) {
+            return partitions[partition(hash, partitions.length)];
+        }
+    }
+
+    private final StreamsBuilderFactoryBean streamsBuilderFactoryBean;
+    private final ThresholdNearCache nearCache;
+    private final HostInfo self;
+    private final long remoteCacheTtlMillis;
+    private final int remoteCacheMaxEntries;
+    private final Duration timeout;
+    private final HttpClient httpClient;
+
+    private final ConcurrentHashMap<Long, RemoteEntry> remoteCache = new ConcurrentHashMap<>();
+    // Queryable view of the active config-store partitions on this instance
+    private volatile ReadOnlyKeyValueStore<Long, ThresholdRecord> localStore;
+    private volatile Routing routing;
+    // Bumped on every Streams state change; a table built across a bump is discarded
+    private long generation;
+    // Generation whose metadata could not be tabled; not retried until the next change
+    private long unroutableGeneration = -1;
+
+    private final LongAdder localReads = new LongAdder();
+    private final LongAdder remoteReads = new LongAdder();
+    private final LongAdder remoteCacheHits = new LongAdder();
+    private final LongAdder standbyReads = new LongAdder();
+    private final LongAdder remoteFailures = new LongAdder();
+    private final LongAdder unavailable = new LongAdder();
+    private final LongAdder routingRebuilds = new LongAdder();
+
+    public ThresholdRouter(StreamsBuilderFactoryBean streamsBuilderFactoryBean,
+                           ThresholdNearCache nearCache,
+                           @Value("${spring.kafka.streams.properties.application.server:}") String applicationServer,
+                           @Value("${alerts.routing.timeout-ms:500}") long timeoutMillis,
+                           @Value("${alerts.routing.remote-cache-ttl-ms:2000}") long remoteCacheTtlMillis,
+                           @Value("${alerts.routing.remote-cache-max-entries:100000}") int remoteCacheMaxEntries) {
+        this.streamsBuilderFactoryBean = streamsBuilderFactoryBean;
+        this.nearCache = nearCache;
+        this.self = applicationServer.isBlank() ? null : HostInfo.buildFromEndpoint(applicationServer);
+        this.remoteCacheTtlMillis = remoteCacheTtlMillis;
+        this.remoteCacheMaxEntries = remoteCacheMaxEntries;
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        // HTTP/1.1 keeps connections to each peer open and reuses them
+        this.httpClient = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(timeout)
+            .build();
+        if (self == null) {
+            log.info("Threshold routing: local store only (application.server not set)");
+        } else {
+            log.info("Threshold routing: this instance is {}:{}", self.host(), self.port());
+        }
+    }
+
+    /**
+     * Threshold for a key from whichever instance hosts it.
+     *
+     * @return the threshold, or null if the key has none (or no replica could answer)
+     * @throws IllegalStateException if Kafka Streams is not running
+     */
+    public ThresholdRecord lookup(long hash) {
+        KafkaStreams streams = runningStreams();
+        if (self == null) {
+            return readLocal(streams, hash);
+        }
+
+        KeyQueryMetadata metadata = metadataFor(streams, hash);
+        if (metadata == null || KeyQueryMetadata.NOT_AVAILABLE.equals(metadata)) {
+            // Rebalancing: answer from a local replica if there is one
+            return readStandbyOrUnavailable(streams, hash, null);
+        }
+        if (self.equals(metadata.activeHost())) {
+            try {
+                return readLocal(streams, hash);
+            } catch (InvalidStateStoreException e) {
+                localStore = null;
+                return readStandbyOrUnavailable(streams, hash, metadata);
+            }
+        }
+
+        RemoteEntry cached = remoteCache.get(hash);
+        if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+            remoteCacheHits.increment();
+            return cached.record;
+        }
+        try {
+            ThresholdRecord record = fetchRemote(metadata.activeHost(), hash, false);
+            remoteReads.increment();
+            cacheRemote(hash, record);
+            return record;
+        } catch (IOException e) {
+            remoteFailures.increment();
+            return readStandbyOrUnavailable(streams, hash, metadata);
+        }
+    }
+
+    /**
+     * Non-blocking lookup: local reads complete immediately, remote ones when
+     * the owning instance answers (the calling thread is not held meanwhile).
+     *
+     * @throws IllegalStateException if Kafka Streams is not running
+     */
+    public CompletableFuture<ThresholdRecord> lookupAsync(long hash) {
+        KafkaStreams streams = runningStreams();
+        if (self == null) {
+            return CompletableFuture.completedFuture(readLocal(streams, hash));
+        }
+
+        KeyQueryMetadata metadata = metadataFor(streams, hash);
+        if (metadata == null || KeyQueryMetadata.NOT_AVAILABLE.equals(metadata)
+                || self.equals(metadata.activeHost())) {
+            // Local read (or rebalance fallback): nothing to wait for
+            return CompletableFuture.completedFuture(lookup(hash));
+        }
+
+        RemoteEntry cached = remoteCache.get(hash);
+        if (cached != null && cached.expiresAt > System.currentTimeMillis()) {
+            remoteCacheHits.increment();
+            return CompletableFuture.completedFuture(cached.record);
+        }
+        HttpRequest request = remoteRequest(metadata.activeHost(), hash, false);
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+            .handle((response, error) -> {
+                try {
+                    if (error != null) {
+                        throw new IOException("Querying " + request.uri() + " failed", error);
+                    }
+                    ThresholdRecord record = decodeRemote(request.uri(), response);
+                    remoteReads.increment();
+                    cacheRemote(hash, record);
+                    return record;
+                } catch (IOException e) {
+                    // Rare: standby fallback blocks this HttpClient thread, not the caller
+                    remoteFailures.increment();
+                    return readStandbyOrUnavailable(streams, hash, metadata);
+                }
+            });
+    }
+
+    /**
+     * Wait until lookups can be served (Kafka Streams RUNNING).
+     *
+     * @return false if Streams did not get there within the timeout
+     */
+    public boolean awaitRunning(long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (true) {
+            KafkaStreams streams = streamsBuilderFactoryBean.getKafkaStreams();
+            if (streams != null && streams.state() == KafkaStreams.State.RUNNING) {
+                return true;
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                return false;
+            }
+            Thread.sleep(200);
+        }
+    }
+
+    /**
+     * Whether the key is hosted by another instance (the local Bloom filter only
+     * knows local keys).
+     */
+    public boolean isRemote(long hash) {
+        if (self == null) {
+            return false;
+        }
+        KafkaStreams streams = streamsBuilderFactoryBean.getKafkaStreams();
+        if (streams == null || !streams.state().isRunningOrRebalancing()) {
+            return false;
+        }
+        KeyQueryMetadata metadata = metadataFor(streams, hash);
+        return metadata != null && !KeyQueryMetadata.NOT_AVAILABLE.equals(metadata)
+            && !self.equals(metadata.activeHost());
+    }
+
+    /**
+     * Local read for /internal/thresholds; never forwards, so requests cannot loop.
+     *
+     * @param stale also read standby / restoring replicas
+     * @throws InvalidStateStoreException if this instance does not host the key's store
+     */
+    public ThresholdRecord lookupLocal(long hash, boolean stale) {
+        KafkaStreams streams = runningStreams();
+        KeyQueryMetadata metadata = metadataFor(streams, hash);
+        if (metadata == null || KeyQueryMetadata.NOT_AVAILABLE.equals(metadata)) {
+            throw new InvalidStateStoreException("No metadata for " + AlertTopology.CONFIG_STORE + " yet");
+        }
+        // Pin the key's partition so a misrouted request fails instead of answering "no threshold"
+        if (stale) {
+            return staleStore(streams, metadata.partition()).get(hash);
+        }
+        return streams.store(StoreQueryParameters
+            .fromNameAndType(AlertTopology.CONFIG_STORE, QueryableStoreTypes.<Long, ThresholdRecord>keyValueStore())
+            .withPartition(metadata.partition())).get(hash);
+    }
+
+    /**
+     * A rebalance (or any other state change) may move partitions: forget the
+     * routing table and the local store view.
+     */
+    @EventListener
+    public void onStreamsStateChange(StreamsStateChange change) {
+        synchronized (this) {
+            generation++;
+            routing = null;
+        }
+        localStore = null;
+    }
+
+    private KeyQueryMetadata metadataFor(KafkaStreams streams, long hash) {
+        Routing current = routing;
+        if (current == null) {
+            current = buildRouting(streams);
+        }
+        if (current != null) {
+            return current.metadata(hash);
+        }
+        return streams.queryMetadataForKey(AlertTopology.CONFIG_STORE, hash, KEY_SERIALIZER);
+    }
+
+    /**
+     * Partition -> active/standby hosts of config-store, from the metadata of
+     * every instance. Null while Streams is not RUNNING or a partition has no
+     * active host yet.
+     */
+    private Routing buildRouting(KafkaStreams streams) {
+        long builtFor;
+        synchronized (this) {
+            builtFor = generation;
+        }
+        if (builtFor == unroutableGeneration || streams.state() != KafkaStreams.State.RUNNING) {
+            return null;
+        }
+        Collection<StreamsMetadata> instances = streams.streamsMetadataForStore(AlertTopology.CONFIG_STORE);
+        int count = 0;
+        for (StreamsMetadata instance : instances) {
+            for (TopicPartition tp : instance.topicPartitions()) {
+                if (AlertTopology.CONFIG_TOPIC.equals(tp.topic())) {
+                    count = Math.max(count, tp.partition() + 1);
+                }
+            }
+        }
+        if (count == 0) {
+            return unroutable(builtFor, "no " + AlertTopology.CONFIG_TOPIC + " partitions assigned");
+        }
+        HostInfo[] active = new HostInfo[count];
+        List<Set<HostInfo>> standbys = new ArrayList<>(count);
+        for (int p = 0; p < count; p++) {
+            standbys.add(new HashSet<>());
+        }
+        for (StreamsMetadata instance : instances) {
+            for (TopicPartition tp : instance.topicPartitions()) {
+                if (AlertTopology.CONFIG_TOPIC.equals(tp.topic())) {
+                    active[tp.partition()] = instance.hostInfo();
+                }
+            }
+            for (TopicPartition tp : instance.standbyTopicPartitions()) {
+                if (AlertTopology.CONFIG_TOPIC.equals(tp.topic()) && tp.partition() < count) {
+                    standbys.get(tp.partition()).add(instance.hostInfo());
+                }
+            }
+        }
+        KeyQueryMetadata[] partitions = new KeyQueryMetadata[count];
+        for (int p = 0; p < count; p++) {
+            if (active[p] == null) {
+                return unroutable(builtFor, "partition " + p + " has no active host");
+            }
+            partitions[p] = new KeyQueryMetadata(active[p], standbys.get(p), p);
+        }
+        Routing built = new Routing(partitions);
+
+        // The table must agree with Streams' own answer, e.g. after a partition count change
+        KeyQueryMetadata probe = streams.queryMetadataForKey(AlertTopology.CONFIG_STORE, 0L, KEY_SERIALIZER);
+        if (!built.metadata(0L).equals(probe)) {
+            return unroutable(builtFor, "table disagrees with queryMetadataForKey");
+        }
+        synchronized (this) {
+            if (generation != builtFor) {
+                return null;
+            }
+            routing = built;
+        }
+        routingRebuilds.increment();
+        log.info("✅ Threshold routing table built: {} partitions across {} instances", count, instances.size());
+        return built;
+    }
+
+    private Routing unroutable(long builtFor, String reason) {
+        synchronized (this) {
+            if (generation == builtFor) {
+                unroutableGeneration = builtFor;
+            }
+        }
+        log.warn("Threshold routing table not built ({}); asking Streams per lookup until the next rebalance",
+            reason);
+        return null;
+    }
+
+    /**
+     * Partition of a key as the default partitioner assigns it: Utils.murmur2
+     * of the 8 LongSerializer (big-endian) bytes, unrolled over the two
+     * little-endian words murmur2 reads, so no byte[] is allocated per call.
+     */
+    static int partition(long hash, int partitions) {
+        final int m = 0x5bd1e995;
+        int h = 0x9747b28c ^ Long.BYTES;
+        h = murmur2Round(h, Integer.reverseBytes((int) (hash >>> 32)));
+        h = murmur2Round(h, Integer.reverseBytes((int) hash));
+        h ^= h >>> 13;
+        h *= m;
+        h ^= h >>> 15;
+        return Utils.toPositive(h) % partitions;
+    }
+
+    private static int murmur2Round(int h, int k) {
+        final int m = 0x5bd1e995;
+        k *= m;
+        k ^= k >>> 24;
+        k *= m;
+        return h * m ^ k;
+    }
+
+    private KafkaStreams runningStreams() {
+        KafkaStreams streams = streamsBuilderFactoryBean.getKafkaStreams();
+        if (streams == null || !streams.state().isRunningOrRebalancing()) {
+            throw new IllegalStateException("Kafka Streams is not running");
+        }
+        return streams;
+    }
+
+    private ThresholdRecord readLocal(KafkaStreams streams, long hash) {
+        ReadOnlyKeyValueStore<Long, ThresholdRecord> store = localStore;
+        if (store == null) {
+            store = streams.store(StoreQueryParameters.fromNameAndType(
+                AlertTopology.CONFIG_STORE, QueryableStoreTypes.keyValueStore()));
+            localStore = store;
+        }
+        long stamp = nearCache.fillStamp();
+        ThresholdRecord data = store.get(hash);
+        localReads.increment();
+        if (data != null) {
+            nearCache.fillFromStore(hash, data, stamp);
+        }
+        return data;
+    }
+
+    private ThresholdRecord readStandbyOrUnavailable(KafkaStreams streams, long hash, KeyQueryMetadata metadata) {
+        if (metadata == null || KeyQueryMetadata.NOT_AVAILABLE.equals(metadata)) {
+            try {
+                ThresholdRecord record = staleStore(streams, -1).get(hash);
+                standbyReads.increment();
+                return record;
+            } catch (InvalidStateStoreException e) {
+                unavailable.increment();
+                return null;
+            }
+        }
+        for (HostInfo standby : metadata.standbyHosts()) {
+            try {
+                ThresholdRecord record = self.equals(standby)
+                    ? staleStore(streams, metadata.partition()).get(hash)
+                    : fetchRemote(standby, hash, true);
+                standbyReads.increment();
+                return record;
+            } catch (IOException | InvalidStateStoreException e) {
+                remoteFailures.increment();
+            }
+        }
+        unavailable.increment();
+        return null;
+    }
+
+    private static ReadOnlyKeyValueStore<Long, ThresholdRecord> staleStore(KafkaStreams streams, int partition) {
+        StoreQueryParameters<ReadOnlyKeyValueStore<Long, ThresholdRecord>> params = StoreQueryParameters
+            .fromNameAndType(AlertTopology.CONFIG_STORE, QueryableStoreTypes.<Long, ThresholdRecord>keyValueStore())
+            .enableStaleStores();
+        return streams.store(partition >= 0 ? params.withPartition(partition) : params);
+    }
+
+    private ThresholdRecord fetchRemote(HostInfo host, long hash, boolean stale) throws IOException {
+        HttpRequest request = remoteRequest(host, hash, stale);
+        HttpResponse<byte[]> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while querying " + request.uri(), e);
+        }
+        return decodeRemote(request.uri(), response);
+    }
+
+    private HttpRequest remoteRequest(HostInfo host, long hash, boolean stale) {
+        URI uri = URI.create("http://" + host.host() + ":" + host.port()
+            + "/internal/thresholds/" + KeyHashes.toHex(hash) + (stale ? "?stale=true" : ""));
+        return HttpRequest.newBuilder(uri).timeout(timeout).GET().build();
+    }
+
+    private static ThresholdRecord decodeRemote(URI uri, HttpResponse<byte[]> response) throws IOException {
+        if (response.statusCode() == 404) {
+            return null;
+        }
+        if (response.statusCode() != 200) {
+            throw new IOException("HTTP " + response.statusCode() + " from " + uri);
+        }
+        try {
+            return new ThresholdRecord().wrap(response.body());
+        } catch (RuntimeException e) {
+            throw new IOException("Invalid threshold record from " + uri, e);
+        }
+    }
+
+    private void cacheRemote(long hash, ThresholdRecord record) {
+        if (remoteCacheTtlMillis <= 0) {
+            return;
+        }
+        if (remoteCache.size() >= remoteCacheMaxEntries) {
+            // Entries live for seconds; dropping them all is cheaper than tracking age
+            remoteCache.clear();
+        }
+        remoteCache.put(hash, new RemoteEntry(record, System.currentTimeMillis() + remoteCacheTtlMillis));
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("self", self == null ? null : self.host() + ":" + self.port());
+        stats.put("localReads", localReads.sum());
+        stats.put("remoteReads", remoteReads.sum());
+        stats.put("remoteCacheHits", remoteCacheHits.sum());
+        stats.put("remoteCacheSize", remoteCache.size());
+        stats.put("standbyReads", standbyReads.sum());
+        stats.put("remoteFailures", remoteFailures.sum());
+        stats.put("unavailable", unavailable.sum());
+        stats.put("routingRebuilds", routingRebuilds.sum());
+        return stats;
+    }
+}
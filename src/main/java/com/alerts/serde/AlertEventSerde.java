@@ -0,0 +1,47 @@
+package com.alerts.serde;
+
+import com.alerts.model.AlertEvent;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * AlertEventSerde - Kafka Serde for the binary AlertEvent on eagle-eye.alerts
+ *
+ * Used by the stream-mode topology and AlertPublisher to write alerts, and by
+ * AlertConsumer to read them.
+ */
+public class AlertEventSerde implements Serde<AlertEvent> {
+
+    @Override
+    public Serializer<AlertEvent> serializer() {
+        return new AlertEventSerializer();
+    }
+
+    @Override
+    public Deserializer<AlertEvent> deserializer() {
+        return new AlertEventDeserializer();
+    }
+
+    public static class AlertEventSerializer implements Serializer<AlertEvent> {
+        @Override
+        public byte[] serialize(String topic, AlertEvent alert) {
+            return alert == null ? null : alert.toByteArray();
+        }
+    }
+
+    public static class AlertEventDeserializer implements Deserializer<AlertEvent> {
+        @Override
+        public AlertEvent deserialize(String topic, byte[] data) {
+            if (data == null) {
+                return null;
+            }
+            try {
+                return AlertEvent.decode(data);
+            } catch (IllegalArgumentException e) {
+                throw new SerializationException("Invalid alert on " + topic, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.alerts.serde;
+
+import com.alerts.model.ThresholdRecord;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.serialization.Deserializer;
+import org.apache.kafka.common.serialization.Serde;
+import org.apache.kafka.common.serialization.Serializer;
+
+/**
+ * ThresholdRecordSerde - Kafka Serde for the binary ThresholdRecord
+ *
+ * Deserialization wraps the received array (no copy, no parsing); fields are
+ * decoded lazily when read.
+ */
+public class ThresholdRecordSerde implements Serde<ThresholdRecord> {
+
+    @Override
+    public Serializer<ThresholdRecord> serializer() {
+        return new ThresholdRecordSerializer();
+    }
+
+    @Override
+    public Deserializer<ThresholdRecord> deserializer() {
+        return new ThresholdRecordDeserializer();
+    }
+
+    public static class ThresholdRecordSerializer implements Serializer<ThresholdRecord> {
+        @Override
+        public byte[] serialize(String topic, ThresholdRecord record) {
+            return record == null ? null : record.toByteArray();
+        }
+    }
+
+    public static class ThresholdRecordDeserializer implements Deserializer<ThresholdRecord> {
+        @Override
+        public ThresholdRecord deserialize(String topic, byte[] data) {
+            if (data == null) {
+                return null;
+            }
+            try {
+                return new ThresholdRecord().wrap(data);
+            } catch (IllegalArgumentException e) {
+                throw new SerializationException("Invalid threshold record on " + topic, e);
+            }
+        }
+    }
+}
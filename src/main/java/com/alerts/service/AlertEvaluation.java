@@ -0,0 +1,48 @@
+package com.alerts.service;
+
+import com.alerts.window.ErrorRateWindow;
+
+/**
+ * AlertEvaluation - The breach decision shared by every evaluation path
+ *
+ * AlertProcessingService (REST mode), ErrorCountEvaluator (stream mode) and
+ * the offline ReplayEngine decide through these methods, so a replay counts
+ * exactly the breaches the live paths would have counted.
+ *
+ * Plain thresholds are compared with each reported errorCount. For windowed
+ * ones the report is added to the key's ErrorRateWindow and the window sum
+ * is compared - in stream mode the window of the task owning the key, in
+ * REST mode that of the instance receiving the report (RestErrorWindows).
+ */
+public final class AlertEvaluation {
+
+    private AlertEvaluation() {
+    }
+
+    public static boolean breached(long observed, long threshold) {
+        return observed >= threshold;
+    }
+
+    /**
+     * Window to add a windowed threshold's reports to: window itself, or a new
+     * one on the first report or after the window definition changed.
+     */
+    public static byte[] window(byte[] window, int windowBuckets) {
+        int buckets = Math.max(1, windowBuckets);
+        if (window == null || ErrorRateWindow.bucketsOf(window) != buckets) {
+            return ErrorRateWindow.create(buckets);
+        }
+        return window;
+    }
+
+    /**
+     * Add errors reported at timestampMillis to window (from window()) and
+     * return the sum to compare with the threshold.
+     */
+    public static long addToWindow(byte[] window, int windowSeconds, int windowBuckets, long timestampMillis,
+                                   long errors) {
+        int buckets = Math.max(1, windowBuckets);
+        long bucketMillis = Math.max(1, windowSeconds * 1000L / buckets);
+        return ErrorRateWindow.add(window, timestampMillis, errors, bucketMillis);
+    }
+}
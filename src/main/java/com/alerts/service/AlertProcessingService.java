@@ -1,41 +1,98 @@
 package com.alerts.service;
 
-import com.alerts.model.PropertyThreshold;
-import org.apache.kafka.streams.state.QueryableStoreTypes;
-import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
-import org.springframework.kafka.config.StreamsBuilderFactoryBean;
-import org.springframework.kafka.core.KafkaTemplate;
+import com.alerts.cache.ThresholdHierarchy;
+import com.alerts.cache.ThresholdNearCache;
+import com.alerts.counter.AlertCounterService;
+import com.alerts.dynamic.DynamicThresholds;
+import com.alerts.hashing.KeyHasher;
+import com.alerts.hashing.KeyHashes;
+import com.alerts.metrics.AlertMetrics;
+import com.alerts.metrics.AlertMetrics.Stage;
+import com.alerts.model.ThresholdRecord;
+import com.alerts.publish.AlertPublisher;
+import com.alerts.publish.AlertSuppressor;
+import com.alerts.routing.ThresholdRouter;
+import com.alerts.streams.WarmStartService;
+import org.apache.kafka.streams.errors.InvalidStateStoreException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 @Service
 public class AlertProcessingService {
 
-    private final StreamsBuilderFactoryBean streamsBuilderFactoryBean;
+    private static final Logger log = LoggerFactory.getLogger(AlertProcessingService.class);
+
+    private final ThresholdRouter thresholdRouter;
     private final BloomFilterService bloomFilterService;
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final AlertPublisher alertPublisher;
+    private final AlertSuppressor alertSuppressor;
+    private final KeyHasher keyHasher;
+    private final ThresholdNearCache nearCache;
+    private final ThresholdHierarchy hierarchy;
+    private final WarmStartService warmStart;
+    private final DynamicThresholds dynamicThresholds;
+    private final RestErrorWindows errorWindows;
+    private final AlertCounterService alertCounters;
+    private final TransactionProducer transactionProducer;
+    private final AlertMetrics metrics;
+    private final boolean streamEvaluation;
 
-    // Test mode: In-memory threshold store for testing when Kafka Streams is not loading data
-    private final Map<String, String> testThresholdStore = new ConcurrentHashMap<>();
-    private boolean testMode = false;
+    // Reused per thread so near-cache hits allocate nothing
+    private static final ThreadLocal<ThresholdNearCache.Entry> CACHE_ENTRY =
+        ThreadLocal.withInitial(ThresholdNearCache.Entry::new);
 
-    public AlertProcessingService(StreamsBuilderFactoryBean streamsBuilderFactoryBean,
+    public AlertProcessingService(ThresholdRouter thresholdRouter,
                                   BloomFilterService bloomFilterService,
-                                  KafkaTemplate<String, String> kafkaTemplate) {
-        this.streamsBuilderFactoryBean = streamsBuilderFactoryBean;
+                                  AlertPublisher alertPublisher,
+                                  AlertSuppressor alertSuppressor,
+                                  KeyHasher keyHasher,
+                                  ThresholdNearCache nearCache,
+                                  ThresholdHierarchy hierarchy,
+                                  WarmStartService warmStart,
+                                  DynamicThresholds dynamicThresholds,
+                                  RestErrorWindows errorWindows,
+                                  AlertCounterService alertCounters,
+                                  TransactionProducer transactionProducer,
+                                  AlertMetrics metrics,
+                                  @Value("${alerts.evaluation.mode:rest}") String evaluationMode) {
+        this.thresholdRouter = thresholdRouter;
         this.bloomFilterService = bloomFilterService;
-        this.kafkaTemplate = kafkaTemplate;
-    }    public static class AlertResult {
+        this.alertPublisher = alertPublisher;
+        this.alertSuppressor = alertSuppressor;
+        this.keyHasher = keyHasher;
+        this.nearCache = nearCache;
+        this.hierarchy = hierarchy;
+        this.warmStart = warmStart;
+        this.dynamicThresholds = dynamicThresholds;
+        this.errorWindows = errorWindows;
+        this.alertCounters = alertCounters;
+        this.transactionProducer = transactionProducer;
+        this.metrics = metrics;
+        this.streamEvaluation = "stream".equalsIgnoreCase(evaluationMode);
+    }
+
+    public static class AlertResult {
         public String reason;
         public long threshold;
         public long alertTimes;
+        // Breach counted but not published (AlertSuppressor cooldown)
+        public boolean suppressed;
 
         public static AlertResult thresholdBreached(long threshold, long alertTimes) {
+            return thresholdBreached(threshold, alertTimes, false);
+        }
+
+        public static AlertResult thresholdBreached(long threshold, long alertTimes, boolean suppressed) {
             AlertResult result = new AlertResult();
             result.reason = "threshold_breached";
             result.threshold = threshold;
             result.alertTimes = alertTimes;
+            result.suppressed = suppressed;
             return result;
         }
 
@@ -52,6 +109,12 @@ public class AlertProcessingService {
             return result;
         }
 
+        public static AlertResult queued(long errorCount) {
+            AlertResult result = new AlertResult();
+            result.reason = "queued";
+            return result;
+        }
+
         public String getReason() {
             return reason;
         }
@@ -63,128 +126,305 @@ public class AlertProcessingService {
         public long getAlertTimes() {
             return alertTimes;
         }
+
+        public boolean isSuppressed() {
+            return suppressed;
+        }
+    }
+
+    /**
+     * Evaluate a key known only by its hash. Keys without a threshold of
+     * their own resolve to a default only if the hash was resolved before.
+     */
+    public AlertResult processAlert(long hash, long errorCount) {
+        return processAlert(hash, null, errorCount);
     }
 
-    // Method to enable test mode and load thresholds directly
-    public void enableTestMode() {
-        System.out.println("Enabling test mode - loading 100 thresholds with random values (40-90)");
-        testMode = true;
+    /**
+     * @param key the "property;tenant;type;interface" key hash was computed
+     *            from, used to find a default when the key has no threshold
+     */
+    public AlertResult processAlert(long hash, CharSequence key, long errorCount) {
+        long start = metrics.start();
+        AlertResult result = metrics.result(evaluateAlert(hash, key, errorCount));
+        metrics.stop(Stage.PROCESS, start);
+        return result;
+    }
 
-        java.util.Random random = new java.util.Random();
+    /**
+     * Whether keys without a threshold may still resolve to a default, i.e.
+     * whether callers holding only bytes should pass the key along.
+     */
+    public boolean hasDefaults() {
+        return !hierarchy.isEmpty();
+    }
 
-        // Load 100 test thresholds with random threshold values between 40-90
-        for (int i = 1; i <= 100; i++) {
-            String compositeKey = String.format("property_%d;tenant_0;type_error;interface_api", i);
-            String hash = PropertyThreshold.generateHashFromCompositeKey(compositeKey);
+    private AlertResult evaluateAlert(long hash, CharSequence key, long errorCount) {
+        // The Bloom filter only holds keys of locally hosted partitions
+        if (!mightContain(hash) && !thresholdRouter.isRemote(hash)) {
+            return streamEvaluation ? queueInherited(hash, key, errorCount) : evaluateInherited(hash, key, errorCount);
+        }
 
-            // Random threshold between 40 and 90 (inclusive)
-            int randomThreshold = 40 + random.nextInt(51); // 40 + (0-50) = 40-90
-            String value = String.format("%s:%d:0", hash, randomThreshold);
-            testThresholdStore.put(hash, value);
-            bloomFilterService.addHash(hash);
+        if (streamEvaluation) {
+            // Evaluated by ErrorCountEvaluator in the task that owns the key
+            transactionProducer.sendAlert(hash, defaultsKey(key), errorCount);
+            return AlertResult.queued(errorCount);
+        }
 
-            if (i % 20 == 0) {
-                System.out.printf("  Loaded %d/100 thresholds (last threshold: %d)%n", i, randomThreshold);
-            }
+        ThresholdNearCache.Entry cached = CACHE_ENTRY.get();
+        int cacheResult = nearCacheGet(hash, cached);
+        if (cacheResult == ThresholdNearCache.HIT) {
+            return evaluate(hash, errorCount, cached);
+        } else if (cacheResult == ThresholdNearCache.REMOVED) {
+            recordMiss(hash);
+            return evaluateInherited(hash, key, errorCount);
         }
-        System.out.println("✅ Test mode enabled with 100 random thresholds (range: 40-90)");
+        long start = metrics.start();
+        ThresholdRecord data = lookupStore(hash);
+        metrics.stop(Stage.LOOKUP, start);
+        return evaluate(hash, key, errorCount, data);
     }
 
-    public AlertResult processAlert(String hash, long errorCount) {
-        if (!bloomFilterService.mightContain(hash)) {
-            return AlertResult.noThreshold(errorCount);
+    /**
+     * Non-blocking processAlert (alerts.http.execution=async): completes
+     * immediately unless the threshold has to be fetched from the instance
+     * hosting the key, in which case no thread waits for the answer.
+     */
+    public CompletionStage<AlertResult> processAlertAsync(long hash, long errorCount) {
+        return processAlertAsync(hash, null, errorCount);
+    }
+
+    public CompletionStage<AlertResult> processAlertAsync(long hash, CharSequence key, long errorCount) {
+        long start = metrics.start();
+        return evaluateAlertAsync(hash, key, errorCount).thenApply(result -> {
+            metrics.stop(Stage.PROCESS, start);
+            return metrics.result(result);
+        });
+    }
+
+    private CompletionStage<AlertResult> evaluateAlertAsync(long hash, CharSequence key, long errorCount) {
+        if (!mightContain(hash) && !thresholdRouter.isRemote(hash)) {
+            return CompletableFuture.completedFuture(streamEvaluation
+                ? queueInherited(hash, key, errorCount)
+                : evaluateInherited(hash, key, errorCount));
         }
 
-        String value = null;
+        if (streamEvaluation) {
+            transactionProducer.sendAlert(hash, defaultsKey(key), errorCount);
+            return CompletableFuture.completedFuture(AlertResult.queued(errorCount));
+        }
 
-        if (testMode) {
-            // Use in-memory store for testing
-            value = testThresholdStore.get(hash);
-        } else {
-            // Try Kafka Streams state store
-            try {
-                ReadOnlyKeyValueStore<String, String> thresholdStore =
-                    streamsBuilderFactoryBean.getKafkaStreams()
-                        .store(org.apache.kafka.streams.StoreQueryParameters.fromNameAndType(
-                            "config-store",
-                            QueryableStoreTypes.keyValueStore()
-                        ));
-                value = thresholdStore.get(hash);
-            } catch (Exception e) {
-                // Fall back to test mode if Kafka Streams not available
-                System.out.println("Kafka Streams not available, falling back to test mode");
-                enableTestMode();
-                value = testThresholdStore.get(hash);
-            }
-        }
-
-        if (value == null) {
-            return AlertResult.noThreshold(errorCount);
+        ThresholdNearCache.Entry cached = CACHE_ENTRY.get();
+        int cacheResult = nearCacheGet(hash, cached);
+        if (cacheResult == ThresholdNearCache.HIT) {
+            return CompletableFuture.completedFuture(evaluate(hash, errorCount, cached));
+        } else if (cacheResult == ThresholdNearCache.REMOVED) {
+            recordMiss(hash);
+            return CompletableFuture.completedFuture(evaluateInherited(hash, key, errorCount));
         }
+        long start = metrics.start();
+        return lookupStoreAsync(hash).thenApply(data -> {
+            metrics.stop(Stage.LOOKUP, start);
+            return evaluate(hash, key, errorCount, data);
+        });
+    }
+
+    private boolean mightContain(long hash) {
+        long start = metrics.start();
+        boolean result = bloomFilterService.mightContain(hash);
+        metrics.stop(Stage.BLOOM, start);
+        return result;
+    }
 
-        PropertyThreshold.ThresholdData data = PropertyThreshold.parseThresholdValue(value);
+    private int nearCacheGet(long hash, ThresholdNearCache.Entry into) {
+        long start = metrics.start();
+        int result = nearCache.get(hash, into);
+        metrics.stop(Stage.NEAR_CACHE, start);
+        return result;
+    }
+
+    /**
+     * A key that passed the Bloom check has no threshold. Remote keys skip the
+     * (local-only) filter, so only a local key's miss is a false positive.
+     */
+    private void recordMiss(long hash) {
+        if (!thresholdRouter.isRemote(hash)) {
+            bloomFilterService.recordFalsePositive();
+        }
+    }
+
+    private AlertResult evaluate(long hash, CharSequence key, long errorCount, ThresholdRecord data) {
         if (data == null) {
+            recordMiss(hash);
+            return evaluateInherited(hash, key, errorCount);
+        }
+        return evaluate(hash, errorCount, data.threshold(), data.alertTimes(), data.windowSeconds(),
+            data.windowBuckets(), false);
+    }
+
+    /**
+     * Key to send along with a stream-mode error count: the task owning the
+     * key resolves a default from it if the key turns out to have no threshold
+     * of its own. Not sent while there are no defaults.
+     */
+    private CharSequence defaultsKey(CharSequence key) {
+        return hierarchy.isEmpty() ? null : key;
+    }
+
+    /**
+     * Stream mode, local key the Bloom filter rules out: queued only if a
+     * default applies, so that ErrorCountEvaluator counts and suppresses
+     * inherited breaches of a key in one place whichever instance received
+     * the report.
+     */
+    private AlertResult queueInherited(long hash, CharSequence key, long errorCount) {
+        if (!hierarchy.resolve(hash, key, CACHE_ENTRY.get())) {
             return AlertResult.noThreshold(errorCount);
         }
+        transactionProducer.sendAlert(hash, key, errorCount);
+        return AlertResult.queued(errorCount);
+    }
 
-        if (errorCount >= data.threshold) {
-            // Increment alert times
-            long newAlertTimes = data.alertTimes + 1;
+    /**
+     * No threshold of its own: fall back to the most specific default
+     * (ThresholdHierarchy). REST mode only; in stream mode ErrorCountEvaluator
+     * resolves defaults from the key sent along with the error count.
+     */
+    private AlertResult evaluateInherited(long hash, CharSequence key, long errorCount) {
+        ThresholdNearCache.Entry entry = CACHE_ENTRY.get();
+        if (!hierarchy.resolve(hash, key, entry)) {
+            return AlertResult.noThreshold(errorCount);
+        }
+        return evaluate(hash, errorCount, entry.threshold, 0, 0, 0, true);
+    }
 
-            // Update state store with new alert count
-            updateAlertTimes(hash, data.threshold, newAlertTimes);
+    private AlertResult evaluate(long hash, long errorCount, ThresholdNearCache.Entry cached) {
+        return evaluate(hash, errorCount, cached.threshold, cached.alertTimes, cached.windowSeconds,
+            cached.windowBuckets, false);
+    }
 
-            // Publish alert to Kafka topic when threshold is breached
-            publishAlert(hash, errorCount, data.threshold, newAlertTimes);
-            return AlertResult.thresholdBreached(data.threshold, newAlertTimes);
+    /**
+     * Windowed thresholds compare the sum of this instance's window
+     * (RestErrorWindows) rather than the reported count.
+     *
+     * @param configuredThreshold the key's own or inherited threshold; replaced
+     *                            by the quantile-derived one with dynamic thresholds
+     */
+    private AlertResult evaluate(long hash, long errorCount, long configuredThreshold, long alertTimes,
+                                 int windowSeconds, int windowBuckets, boolean inherited) {
+        long observed = windowSeconds > 0
+            ? errorWindows.add(hash, windowSeconds, windowBuckets, System.currentTimeMillis(), errorCount)
+            : errorCount;
+        long threshold = dynamicThresholds.thresholdFor(hash, observed, configuredThreshold);
+        if (AlertEvaluation.breached(observed, threshold)) {
+            // Count the breach locally; the delta reaches config-store on the next flush
+            long start = metrics.start();
+            long newAlertTimes = inherited
+                ? alertCounters.incrementInherited(hash)
+                : alertCounters.increment(hash, alertTimes);
+            metrics.stop(Stage.COUNTER, start);
+
+            // Publish alert to Kafka topic when threshold is breached, unless the key is cooling down
+            start = metrics.start();
+            boolean published = publishAlert(hash, observed, threshold, newAlertTimes);
+            metrics.stop(Stage.PUBLISH, start);
+            return AlertResult.thresholdBreached(threshold, newAlertTimes, !published);
         } else {
-            return AlertResult.belowThreshold(errorCount, data.threshold);
+            return AlertResult.belowThreshold(observed, threshold);
         }
     }
 
     /**
-     * Update alert times in state store
+     * Near-cache miss: read config-store wherever the key is hosted, or the
+     * warm-start snapshot until config-store has been restored.
      */
-    private void updateAlertTimes(String hash, long threshold, long newAlertTimes) {
-        String newValue = String.format("%s:%d:%d", hash, threshold, newAlertTimes);
+    private ThresholdRecord lookupStore(long hash) {
+        if (warmStart.isServingSnapshot()) {
+            metrics.storeFallback();
+            return warmStart.lookup(hash);
+        }
+        // Local store, owning instance or standby replica
+        try {
+            return thresholdRouter.lookup(hash);
+        } catch (IllegalStateException | InvalidStateStoreException e) {
+            return storeUnavailable(hash, e);
+        }
+    }
 
-        if (testMode) {
-            // Update in-memory store
-            testThresholdStore.put(hash, newValue);
-            System.out.println("🔄 Updated alertTimes in test store: " + hash + " -> " + newAlertTimes);
-        } else {
-            // Update Kafka topic which will update state store via stream processor
-            try {
-                kafkaTemplate.send("eagle-eye.config", hash, newValue);
-                System.out.println("🔄 Updated alertTimes in Kafka: " + hash + " -> " + newAlertTimes);
-            } catch (Exception e) {
-                System.err.println("❌ Failed to update alertTimes: " + e.getMessage());
-            }
+    private CompletableFuture<ThresholdRecord> lookupStoreAsync(long hash) {
+        if (warmStart.isServingSnapshot()) {
+            return CompletableFuture.completedFuture(lookupStore(hash));
+        }
+        try {
+            return thresholdRouter.lookupAsync(hash);
+        } catch (IllegalStateException | InvalidStateStoreException e) {
+            return CompletableFuture.completedFuture(storeUnavailable(hash, e));
+        }
+    }
+
+    /**
+     * Restoring without a snapshot, or the store moved mid-rebalance: the key
+     * is evaluated as having no threshold of its own.
+     */
+    private ThresholdRecord storeUnavailable(long hash, RuntimeException e) {
+        if (metrics.sampleEvent()) {
+            log.warn("event=store_unavailable key={} error={} sample_interval={}",
+                KeyHashes.toHex(hash), e.getMessage(), metrics.eventSampleInterval());
         }
+        return null;
+    }
+
+    public Map<String, Object> readinessStats() {
+        return warmStart.stats();
+    }
+
+    public Map<String, Object> routingStats() {
+        return thresholdRouter.stats();
+    }
+
+    public Map<String, Object> nearCacheStats() {
+        return nearCache.stats();
+    }
+
+    public Map<String, Object> alertCounterStats() {
+        return alertCounters.stats();
+    }
+
+    public Map<String, Object> hierarchyStats() {
+        return hierarchy.stats();
+    }
+
+    public Map<String, Object> bloomFilterStats() {
+        return bloomFilterService.stats();
+    }
+
+    public Map<String, Object> publisherStats() {
+        return alertPublisher.stats();
+    }
+
+    public Map<String, Object> dynamicThresholdStats() {
+        return dynamicThresholds.stats();
+    }
+
+    public Map<String, Object> windowStats() {
+        return errorWindows.stats();
+    }
+
+    public Map<String, Object> suppressionStats() {
+        return alertSuppressor.stats();
     }
 
     /**
-     * Publish alert message to eagle-eye.alerts topic
+     * Publish alert message to eagle-eye.alerts topic (queued, sent by AlertPublisher workers)
+     *
+     * @return false if AlertSuppressor suppressed the alert
      */
-    private void publishAlert(String hash, long errorCount, long threshold, long alertTimes) {
-        String alertMessage = String.format("ALERT: Hash %s exceeded threshold! ErrorCount=%d, Threshold=%d, AlertTimes=%d",
-            hash, errorCount, threshold, alertTimes);
-
-        System.out.println("📢 Alert triggered - attempting to publish: " + alertMessage);
-
-        // Send in background thread with minimal overhead
-        new Thread(() -> {
-            try {
-                System.out.println("📤 [" + Thread.currentThread().getName() + "] Calling kafkaTemplate.send()...");
-                var future = kafkaTemplate.send("eagle-eye.alerts", hash, alertMessage);
-                System.out.println("📤 [" + Thread.currentThread().getName() + "] Send returned, future: " + future);
-
-                // Add timeout to prevent hanging
-                var result = future.toCompletableFuture().get(java.util.concurrent.TimeUnit.SECONDS.toMillis(5), java.util.concurrent.TimeUnit.MILLISECONDS);
-                System.out.println("✅ Alert published: " + result.getRecordMetadata().topic() + "-" + result.getRecordMetadata().partition());
-            } catch (Exception e) {
-                System.err.println("❌ Alert publish failed: " + e.getClass().getName() + " - " + e.getMessage());
-            }
-        }, "AlertPublisher").start();
+    private boolean publishAlert(long hash, long errorCount, long threshold, long alertTimes) {
+        long suppressedSince = alertSuppressor.check(hash, errorCount, threshold, alertTimes);
+        if (suppressedSince < 0) {
+            return false;
+        }
+        alertPublisher.publish(hash, errorCount, threshold, alertTimes, suppressedSince);
+        return true;
     }
 }
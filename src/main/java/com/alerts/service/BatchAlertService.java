@@ -0,0 +1,186 @@
+package com.alerts.service;
+
+import com.alerts.admission.AdmissionControl;
+import com.alerts.hashing.KeyHasher;
+import com.alerts.metrics.AlertMetrics;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * BatchAlertService - Evaluates chunks of (key, errorCount) entries in parallel
+ *
+ * The batch endpoint parses entries into a reusable chunk, then this service
+ * splits the chunk into slices evaluated on a fixed worker pool through
+ * AlertProcessingService. Results are written back into the entries so the
+ * caller can stream them out in input order. Entries left without a reason
+ * (the evaluation was interrupted or a slice failed) were not processed.
+ *
+ * Each entry is charged to its tenant's bucket (AdmissionControl.admitEvent)
+ * like a single /api/alert request; entries over the limit are not evaluated
+ * and keep the rejection in rejectedReason / tenant / retryAfterMillis.
+ */
+@Service
+public class BatchAlertService {
+
+    /**
+     * One batch entry; reused across chunks.
+     */
+    public static class Entry {
+        public String key;
+        public long errorCount;
+        public String error;
+        public String reason;
+        public long threshold;
+        public long alertTimes;
+        public boolean suppressed;
+        public String rejectedReason;
+        public String tenant;
+        public long retryAfterMillis;
+
+        public void reset() {
+            key = null;
+            errorCount = 0;
+            error = null;
+            reason = null;
+            threshold = 0;
+            alertTimes = 0;
+            suppressed = false;
+            rejectedReason = null;
+            tenant = null;
+            retryAfterMillis = 0;
+        }
+    }
+
+    private final AlertProcessingService alertProcessingService;
+    private final KeyHasher keyHasher;
+    private final AlertMetrics metrics;
+    private final AdmissionControl admission;
+    private final int chunkSize;
+    private final int parallelism;
+    private final ExecutorService workers;
+
+    public BatchAlertService(AlertProcessingService alertProcessingService,
+                             KeyHasher keyHasher,
+                             AlertMetrics metrics,
+                             AdmissionControl admission,
+                             @Value("${alerts.batch.chunk-size:1024}") int chunkSize,
+                             @Value("${alerts.batch.parallelism:0}") int parallelism) {
+        this.alertProcessingService = alertProcessingService;
+        this.keyHasher = keyHasher;
+        this.metrics = metrics;
+        this.admission = admission;
+        this.chunkSize = Math.max(1, chunkSize);
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadId = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(this.parallelism, r -> {
+            Thread t = new Thread(r, "batch-alert-" + threadId.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public int chunkSize() {
+        return chunkSize;
+    }
+
+    public Entry[] newChunk() {
+        Entry[] chunk = new Entry[chunkSize];
+        for (int i = 0; i < chunkSize; i++) {
+            chunk[i] = new Entry();
+        }
+        return chunk;
+    }
+
+    /**
+     * Evaluate entries [0, count) of a chunk. Entries that already carry an
+     * error (rejected by the parser) are skipped; entries over their tenant's
+     * rate are marked rejected instead of evaluated.
+     *
+     * Returns only once no worker touches the chunk any more, also when it
+     * throws: on interrupt the workers stop at their next entry, leaving the
+     * rest of their slice unprocessed.
+     */
+    public void evaluate(Entry[] chunk, int count) throws InterruptedException {
+        int sliceSize = Math.max(64, (count + parallelism - 1) / parallelism);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        if (count <= sliceSize) {
+            evaluateSlice(chunk, 0, count, cancelled);
+            return;
+        }
+        int slices = (count + sliceSize - 1) / sliceSize;
+        Future<?>[] futures = new Future<?>[slices - 1];
+        for (int s = 1; s < slices; s++) {
+            int from = s * sliceSize;
+            int to = Math.min(count, from + sliceSize);
+            futures[s - 1] = workers.submit(() -> evaluateSlice(chunk, from, to, cancelled));
+        }
+        // The calling thread takes the first slice itself
+        evaluateSlice(chunk, 0, sliceSize, cancelled);
+        InterruptedException interrupted = null;
+        Throwable failure = null;
+        for (Future<?> future : futures) {
+            while (true) {
+                try {
+                    future.get();
+                    break;
+                } catch (InterruptedException e) {
+                    // Keep waiting: the caller writes the chunk out once this returns
+                    interrupted = e;
+                    cancelled.set(true);
+                } catch (ExecutionException e) {
+                    failure = e.getCause();
+                    cancelled.set(true);
+                    break;
+                }
+            }
+        }
+        if (interrupted != null) {
+            throw interrupted;
+        }
+        if (failure != null) {
+            throw new IllegalStateException("Batch slice failed", failure);
+        }
+    }
+
+    private void evaluateSlice(Entry[] chunk, int from, int to, AtomicBoolean cancelled) {
+        for (int i = from; i < to && !cancelled.get(); i++) {
+            Entry entry = chunk[i];
+            if (entry.error != null) {
+                continue;
+            }
+            AdmissionControl.Decision decision = admission.admitEvent(entry.key);
+            if (!decision.admitted()) {
+                entry.rejectedReason = decision.reason();
+                entry.tenant = decision.tenant();
+                entry.retryAfterMillis = decision.retryAfterMillis();
+                continue;
+            }
+            try {
+                long start = metrics.start();
+                long hash = keyHasher.hash(entry.key);
+                metrics.stop(AlertMetrics.Stage.HASH, start);
+                AlertProcessingService.AlertResult result = alertProcessingService.processAlert(hash, entry.key,
+                    entry.errorCount);
+                entry.reason = result.getReason();
+                entry.threshold = result.getThreshold();
+                entry.alertTimes = result.getAlertTimes();
+                entry.suppressed = result.isSuppressed();
+            } catch (RuntimeException e) {
+                entry.error = "Evaluation failed: " + e.getMessage();
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdown();
+    }
+}
@@ -1,30 +1,117 @@
 package com.alerts.service;
 
-import com.google.common.hash.BloomFilter;
-import com.google.common.hash.Funnels;
+import com.alerts.bloom.ScalableBloomFilter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * BloomFilterService - Pre-check that skips threshold lookups for unknown keys
+ *
+ * Backed by a ScalableBloomFilter, so inserts from stream threads and lookups
+ * from request threads never lock, and the filter grows instead of silently
+ * degrading once more keys than alerts.bloom.initial-capacity are loaded.
+ *
+ * ThresholdLoadProcessor adds every threshold applied to config-store.
+ * ConfigStoreRebuilder replaces the whole filter with one built from the local
+ * config-store after restore and after every rebalance (beginRebuild /
+ * finishRebuild); keys added while a rebuild runs go into both filters.
+ */
 @Service
 public class BloomFilterService {
 
-    private BloomFilter<String> thresholdFilter;
-    private static final int EXPECTED_PROPERTIES = 60000;
-    private static final double FALSE_POSITIVE_RATE = 0.01;
-
-    public BloomFilterService() {
-        thresholdFilter = BloomFilter.create(
-            Funnels.stringFunnel(java.nio.charset.StandardCharsets.UTF_8),
-            EXPECTED_PROPERTIES,
-            FALSE_POSITIVE_RATE
-        );
-        System.out.println("Bloom Filter initialized for " + EXPECTED_PROPERTIES + " properties, FP rate: " + (FALSE_POSITIVE_RATE * 100) + "%");
+    private static final Logger log = LoggerFactory.getLogger(BloomFilterService.class);
+
+    private final long initialCapacity;
+    private final double falsePositiveRate;
+
+    private volatile ScalableBloomFilter thresholdFilter;
+    // Filter being rebuilt from config-store, if any
+    private volatile ScalableBloomFilter rebuilding;
+
+    private final LongAdder positives = new LongAdder();
+    private final LongAdder negatives = new LongAdder();
+    private final LongAdder falsePositives = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+    private volatile long lastRebuildAt;
+
+    public BloomFilterService(@Value("${alerts.bloom.initial-capacity:60000}") long initialCapacity,
+                              @Value("${alerts.bloom.fp-rate:0.01}") double falsePositiveRate) {
+        this.initialCapacity = initialCapacity;
+        this.falsePositiveRate = falsePositiveRate;
+        this.thresholdFilter = new ScalableBloomFilter(initialCapacity, falsePositiveRate);
+        log.info("Bloom Filter initialized for {} properties (scalable), FP rate: {}%", initialCapacity, falsePositiveRate * 100);
     }
 
-    public void addHash(String hash) {
+    public void addHash(long hash) {
+        // Read before adding: a rebuild that finishes in between has already swapped thresholdFilter
+        ScalableBloomFilter pending = rebuilding;
         thresholdFilter.put(hash);
+        if (pending != null) {
+            pending.put(hash);
+        }
+    }
+
+    public boolean mightContain(long hash) {
+        boolean result = thresholdFilter.mightContain(hash);
+        (result ? positives : negatives).increment();
+        return result;
+    }
+
+    /**
+     * The filter passed a key that turned out to have no threshold.
+     */
+    public void recordFalsePositive() {
+        falsePositives.increment();
+    }
+
+    /**
+     * Start a rebuild sized for the expected number of keys. Keys added from
+     * now on also go into the new filter.
+     */
+    public synchronized ScalableBloomFilter beginRebuild(long expectedKeys) {
+        ScalableBloomFilter filter = new ScalableBloomFilter(
+            Math.max(initialCapacity, expectedKeys + expectedKeys / 4), falsePositiveRate);
+        rebuilding = filter;
+        return filter;
+    }
+
+    /**
+     * Swap in a filter started with beginRebuild (ignored if a newer rebuild started).
+     */
+    public synchronized void finishRebuild(ScalableBloomFilter filter) {
+        if (rebuilding != filter) {
+            return;
+        }
+        thresholdFilter = filter;
+        rebuilding = null;
+        rebuilds.increment();
+        lastRebuildAt = System.currentTimeMillis();
     }
 
-    public boolean mightContain(String hash) {
-        return thresholdFilter.mightContain(hash);
+    public Map<String, Object> stats() {
+        ScalableBloomFilter filter = thresholdFilter;
+        long fp = falsePositives.sum();
+        long tn = negatives.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("segments", filter.segmentCount());
+        stats.put("approximateKeys", filter.approximateKeys());
+        stats.put("capacity", filter.capacity());
+        stats.put("sizeBytes", filter.sizeInBytes());
+        stats.put("fillRatio", filter.fillRatio());
+        stats.put("estimatedFpRate", filter.estimatedFpRate());
+        stats.put("positives", positives.sum());
+        stats.put("negatives", tn);
+        stats.put("falsePositives", fp);
+        // Keys without a threshold that still passed the filter (REST mode lookups only)
+        stats.put("observedFpRate", fp + tn == 0 ? 0.0 : (double) fp / (fp + tn));
+        stats.put("rebuilds", rebuilds.sum());
+        stats.put("lastRebuildAt", lastRebuildAt);
+        return stats;
     }
 }
@@ -0,0 +1,111 @@
+package com.alerts.service;
+
+import com.alerts.window.ErrorRateWindow;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * RestErrorWindows - Sliding windows of windowed thresholds in REST mode
+ *
+ * Stream mode keeps a key's ErrorRateWindow in the window-state store of the
+ * task owning the key. In REST mode a report is evaluated by whichever
+ * instance receives it, so each instance keeps the windows of the keys it
+ * receives reports for and sums only those reports: when a load balancer
+ * spreads a key over N instances, each sees about 1/N of its errors. Use
+ * stream mode where a window must cover every report of a key.
+ *
+ * At most alerts.window.rest-max-keys windows are held. When full, windows
+ * without a report for a whole window length are dropped (at most once a
+ * second); a key that still finds no room is judged on its report alone and
+ * counted as overflowed.
+ */
+@Service
+public class RestErrorWindows {
+
+    private static final long SWEEP_INTERVAL_MS = 1000;
+
+    private static final class Window {
+        // Guarded by the Window
+        final byte[] counts;
+        volatile long expiresAt;
+
+        Window(int buckets) {
+            this.counts = ErrorRateWindow.create(buckets);
+        }
+    }
+
+    private final ConcurrentHashMap<Long, Window> windows = new ConcurrentHashMap<>();
+    private final int maxKeys;
+    private volatile long lastSweep;
+
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder overflowed = new LongAdder();
+
+    public RestErrorWindows(@Value("${alerts.window.rest-max-keys:100000}") int maxKeys) {
+        this.maxKeys = Math.max(1, maxKeys);
+    }
+
+    /**
+     * Add errors reported at nowMillis to the key's window and return the sum
+     * to compare with the threshold.
+     */
+    public long add(long hash, int windowSeconds, int windowBuckets, long nowMillis, long errors) {
+        int buckets = Math.max(1, windowBuckets);
+        Window window = windows.get(hash);
+        if (window == null || ErrorRateWindow.bucketsOf(window.counts) != buckets) {
+            window = windowFor(hash, buckets, nowMillis);
+            if (window == null) {
+                overflowed.increment();
+                return errors;
+            }
+        }
+        synchronized (window) {
+            window.expiresAt = nowMillis + windowSeconds * 1000L;
+            return AlertEvaluation.addToWindow(window.counts, windowSeconds, windowBuckets, nowMillis, errors);
+        }
+    }
+
+    /**
+     * New window for hash, or a replacement if the window definition changed.
+     *
+     * @return null when no room is left
+     */
+    private Window windowFor(long hash, int buckets, long nowMillis) {
+        if (windows.size() >= maxKeys && !windows.containsKey(hash)) {
+            sweep(nowMillis);
+            if (windows.size() >= maxKeys) {
+                return null;
+            }
+        }
+        return windows.compute(hash, (key, existing) ->
+            existing != null && ErrorRateWindow.bucketsOf(existing.counts) == buckets ? existing : new Window(buckets));
+    }
+
+    private void sweep(long nowMillis) {
+        if (nowMillis - lastSweep < SWEEP_INTERVAL_MS) {
+            return;
+        }
+        lastSweep = nowMillis;
+        windows.values().removeIf(window -> {
+            if (window.expiresAt > nowMillis) {
+                return false;
+            }
+            evicted.increment();
+            return true;
+        });
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("keys", windows.size());
+        stats.put("maxKeys", maxKeys);
+        stats.put("evicted", evicted.sum());
+        stats.put("overflowed", overflowed.sum());
+        return stats;
+    }
+}
@@ -1,6 +1,11 @@
 package com.alerts.service;
 
-import com.alerts.model.PropertyThreshold;
+import com.alerts.hashing.KeyHasher;
+import com.alerts.index.TenantIndex;
+import com.alerts.model.ThresholdRecord;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.boot.CommandLineRunner;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
@@ -8,44 +13,51 @@ import org.springframework.stereotype.Service;
 @Service
 public class ThresholdLoader implements CommandLineRunner {
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private static final Logger log = LoggerFactory.getLogger(ThresholdLoader.class);
+
+    private final KafkaTemplate<Long, ThresholdRecord> kafkaTemplate;
     private final BloomFilterService bloomFilterService;
+    private final KeyHasher keyHasher;
 
-    public ThresholdLoader(KafkaTemplate<String, String> kafkaTemplate, BloomFilterService bloomFilterService) {
+    public ThresholdLoader(KafkaTemplate<Long, ThresholdRecord> kafkaTemplate, BloomFilterService bloomFilterService,
+                           KeyHasher keyHasher) {
         this.kafkaTemplate = kafkaTemplate;
         this.bloomFilterService = bloomFilterService;
+        this.keyHasher = keyHasher;
     }
 
     // Enabled to load random thresholds on startup
     @Override
     public void run(String... args) throws Exception {
-        System.out.println("Loading random thresholds to Kafka...");
+        log.info("Loading random thresholds to Kafka...");
         long startTime = System.currentTimeMillis();
 
         int numProperties = 100;
 
         for (int i = 1; i <= numProperties; i++) {
             String compositeKey = String.format("property_%d;tenant_0;type_error;interface_api", i);
-            String hash = PropertyThreshold.generateHashFromCompositeKey(compositeKey);
+            long hash = keyHasher.hash(compositeKey);
 
             bloomFilterService.addHash(hash);
 
             // Random threshold between 0-100 for each property
             long threshold = (long)(Math.random() * 101);
             long alertTimes = 0;
-            String value = String.format("%s:%d:%d", hash, threshold, alertTimes);
 
-            kafkaTemplate.send("eagle-eye.config", hash, value);
+            ProducerRecord<Long, ThresholdRecord> record =
+                new ProducerRecord<>("eagle-eye.config", hash, ThresholdRecord.of(threshold, alertTimes));
+            record.headers().add(TenantIndex.KEY_HEADER, TenantIndex.header(compositeKey));
+            kafkaTemplate.send(record);
 
             if (i % 25 == 0) {
-                System.out.printf("  Loaded %d/100 (last threshold: %d)%n", i, threshold);
+                log.info("  Loaded {}/100 (last threshold: {})", i, threshold);
             }
         }
 
         long elapsed = System.currentTimeMillis() - startTime;
-        System.out.printf("✅ Random thresholds loaded (%d properties, range: 0-100, time: %dms)%n", numProperties, elapsed);
+        log.info("✅ Random thresholds loaded ({} properties, range: 0-100, time: {}ms)", numProperties, elapsed);
 
         Thread.sleep(2000);
-        System.out.println("Ready to process alerts");
+        log.info("Ready to process alerts");
     }
 }
@@ -1,33 +1,52 @@
 package com.alerts.service;
 
+import com.alerts.streams.AlertTopology;
+import org.apache.kafka.clients.producer.ProducerRecord;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.stereotype.Service;
 
+import java.nio.charset.StandardCharsets;
+
 /**
- * TransactionProducer - Sends alerts to Kafka
+ * TransactionProducer - Sends error counts to Kafka for stream-mode evaluation
+ *
+ * Sends error count data from REST endpoint to the "eagle-eye.errors" topic
+ * where ErrorCountEvaluator compares it with static thresholds
+ * (alerts.evaluation.mode=stream)
  *
- * Sends error count data from REST endpoint to "alerts" topic
- * where AlertStreamProcessor compares with static thresholds
+ * When the composite key is known it travels in the KEY_HEADER header, so
+ * that a key without a threshold of its own can still be evaluated against
+ * its ThresholdHierarchy default in the task owning it.
  */
 @Service
 public class TransactionProducer {
 
-    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final KafkaTemplate<Long, Long> kafkaTemplate;
 
-    public TransactionProducer(KafkaTemplate<String, String> kafkaTemplate) {
+    public TransactionProducer(KafkaTemplate<Long, Long> kafkaTemplate) {
         this.kafkaTemplate = kafkaTemplate;
     }
 
     /**
-     * Send alert to Kafka
+     * Send error count to Kafka
      *
-     * @param key Format: property_id;tenant_id;type;interface
-     * @param errorCount Error count as string (e.g., "75")
+     * @param hash       64-bit key hash of property_id;tenant_id;type;interface
+     * @param errorCount current error count
+     */
+    public void sendAlert(long hash, long errorCount) {
+        sendAlert(hash, null, errorCount);
+    }
+
+    /**
+     * @param key "property;tenant;type;interface", or null if only the hash is known
      */
-    public void sendAlert(String key, String errorCount) {
-        // Key: property_id;tenant_id;type;interface
+    public void sendAlert(long hash, CharSequence key, long errorCount) {
+        // Key: key hash, same partitioning as eagle-eye.config
         // Value: error count (just the number)
-        kafkaTemplate.send("eagle-eye.alerts", key, errorCount);
-        System.out.println("Alert sent - Key: " + key + ", ErrorCount: " + errorCount);
+        ProducerRecord<Long, Long> record = new ProducerRecord<>(AlertTopology.ERRORS_TOPIC, hash, errorCount);
+        if (key != null) {
+            record.headers().add(AlertTopology.KEY_HEADER, key.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        kafkaTemplate.send(record);
     }
 }
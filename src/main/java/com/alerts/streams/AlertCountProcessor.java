@@ -0,0 +1,45 @@
+package com.alerts.streams;
+
+import com.alerts.cache.ThresholdNearCache;
+import com.alerts.model.ThresholdRecord;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+/**
+ * AlertCountProcessor - Adds alertTimes deltas from eagle-eye.alert-counts
+ *
+ * Runs in the task that owns the key in config-store, so it is the only writer
+ * for that key and concurrent deltas cannot overwrite each other.
+ */
+public class AlertCountProcessor implements Processor<Long, Long, Void, Void> {
+
+    private final ThresholdNearCache nearCache;
+    private KeyValueStore<Long, ThresholdRecord> store;
+
+    public AlertCountProcessor(ThresholdNearCache nearCache) {
+        this.nearCache = nearCache;
+    }
+
+    @Override
+    public void init(ProcessorContext<Void, Void> context) {
+        store = context.getStateStore(AlertTopology.CONFIG_STORE);
+    }
+
+    @Override
+    public void process(Record<Long, Long> record) {
+        if (record.key() == null || record.value() == null) {
+            return;
+        }
+        long hash = record.key();
+        ThresholdRecord current = store.get(hash);
+        if (current == null) {
+            // Threshold removed since the breach was counted
+            return;
+        }
+        ThresholdRecord updated = current.withAlertTimes(current.alertTimes() + record.value());
+        store.put(hash, updated);
+        nearCache.put(hash, updated);
+    }
+}
@@ -1,61 +1,84 @@
 package com.alerts.streams;
 
-import org.apache.kafka.common.serialization.Serdes;
+import com.alerts.cache.ThresholdHierarchy;
+import com.alerts.cache.ThresholdNearCache;
+import com.alerts.dynamic.DynamicThresholds;
+import com.alerts.metrics.AlertMetrics;
+import com.alerts.publish.AlertSuppressor;
+import com.alerts.service.BloomFilterService;
+import org.apache.kafka.common.utils.Bytes;
 import org.apache.kafka.streams.StreamsBuilder;
-import org.apache.kafka.streams.kstream.Consumed;
 import org.apache.kafka.streams.kstream.KStream;
-import org.apache.kafka.streams.processor.AbstractProcessor;
-import org.apache.kafka.streams.state.KeyValueStore;
-import org.apache.kafka.streams.state.StoreBuilder;
-import org.apache.kafka.streams.state.Stores;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.annotation.EnableKafkaStreams;
-import java.util.Collections;
 
 /**
- * AlertStreamProcessor - Simplified to only load thresholds into state store
+ * AlertStreamProcessor - Maintains the threshold state store
  *
- * Alert processing now happens directly in REST API controller for lower latency
- * This processor only maintains the threshold state store
+ * In the default REST mode (alerts.evaluation.mode=rest) alert processing
+ * happens directly in the REST API controller for lower latency, and this
+ * processor only maintains config-store.
+ *
+ * In stream mode (alerts.evaluation.mode=stream) error counts are produced to
+ * eagle-eye.errors and evaluated inside the topology, so throughput scales
+ * with partitions and num.stream.threads instead of HTTP workers.
+ *
+ * config-store is keyed by the 64-bit key hash (Long) and holds binary
+ * ThresholdRecords. Every applied record is also pushed to ThresholdNearCache,
+ * which serves the request path without a store round-trip, and to the Bloom
+ * filter; ConfigStoreRebuilder rebuilds both after restore and rebalances.
+ * Wildcard defaults (eagle-eye.config-defaults) are kept in a global store
+ * and ThresholdHierarchy. With alerts.dynamic.enabled, per-key quantile
+ * sketches for DynamicThresholds are kept in error-sketches. With
+ * alerts.index.enabled, tenant-index and key-names index config-store by
+ * tenant for TenantIndexService.
+ * alerts.store.backend picks what holds config-store: RocksDB (tuned by
+ * ConfigStoreRocksDBConfig), the in-memory store or OffHeapKeyValueStore.
+ * The topology itself is built by AlertTopology.
  */
 @Configuration
 @EnableKafkaStreams
 public class AlertStreamProcessor {
 
-    @Bean
-    public KStream<String, String> processAlerts(StreamsBuilder builder) {
-
-        // Use PERSISTENT state store with changelog for production reliability
-        // Changelog topic: eagle-eye-stream-processor-config-store-changelog
-        // This topic must be created manually in all environments (see create-topics.sh)
-        // Benefits: Fast recovery (2-3s), state persistence, disk-backed storage
-        StoreBuilder<KeyValueStore<String, String>> thresholdStoreBuilder =
-            Stores.keyValueStoreBuilder(
-                Stores.persistentKeyValueStore("config-store"),
-                Serdes.String(),
-                Serdes.String()
-            ).withLoggingEnabled(Collections.emptyMap());
+    private static final Logger log = LoggerFactory.getLogger(AlertStreamProcessor.class);
 
-        builder.addStateStore(thresholdStoreBuilder);
+    private final AlertTopology.Options options;
+    private final ThresholdNearCache nearCache;
+    private final AlertSuppressor suppressor;
+    private final BloomFilterService bloomFilter;
+    private final AlertMetrics metrics;
+    private final ThresholdHierarchy hierarchy;
+    private final DynamicThresholds dynamicThresholds;
 
-        // Load thresholds from eagle-eye.config topic into state store
-        KStream<String, String> thresholds = builder.stream("eagle-eye.config",
-            Consumed.with(Serdes.String(), Serdes.String()));
-
-        thresholds
-            .process(() -> new AbstractProcessor<String, String>() {
-                @Override
-                public void process(String key, String value) {
-                    KeyValueStore<String, String> store = context().getStateStore("config-store");
-                    store.put(key, value);
-                    System.out.println("THRESHOLD LOADED: " + key + " -> " + value);
-                }
-            }, "config-store");
+    public AlertStreamProcessor(@Value("${alerts.hashing.legacy-keys:true}") boolean legacyKeys,
+                                @Value("${alerts.evaluation.mode:rest}") String evaluationMode,
+                                ThresholdNearCache nearCache,
+                                AlertSuppressor suppressor,
+                                BloomFilterService bloomFilter,
+                                AlertMetrics metrics,
+                                ThresholdHierarchy hierarchy,
+                                @Value("${alerts.store.backend:ROCKSDB}") StoreBackend storeBackend,
+                                DynamicThresholds dynamicThresholds,
+                                @Value("${alerts.index.enabled:false}") boolean tenantIndex) {
+        this.options = new AlertTopology.Options(legacyKeys, "stream".equalsIgnoreCase(evaluationMode), storeBackend,
+            tenantIndex);
+        this.nearCache = nearCache;
+        this.suppressor = suppressor;
+        this.bloomFilter = bloomFilter;
+        this.metrics = metrics;
+        this.hierarchy = hierarchy;
+        this.dynamicThresholds = dynamicThresholds;
+    }
 
-        // Return thresholds stream (no dynamic stream processing needed)
-        // Alert processing now happens directly in REST API controller
-        return thresholds;
+    @Bean
+    public KStream<Bytes, byte[]> processAlerts(StreamsBuilder builder) {
+        log.info("config-store backend: {}", options.storeBackend());
+        return new AlertTopology(options, nearCache, suppressor, bloomFilter, metrics, hierarchy, dynamicThresholds)
+            .build(builder);
     }
 
 }
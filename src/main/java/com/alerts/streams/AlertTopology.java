@@ -0,0 +1,272 @@
+package com.alerts.streams;
+
+import com.alerts.cache.ThresholdHierarchy;
+import com.alerts.cache.ThresholdNearCache;
+import com.alerts.counter.AlertCounterService;
+import com.alerts.dynamic.DynamicThresholds;
+import com.alerts.hashing.KeyHashes;
+import com.alerts.metrics.AlertMetrics;
+import com.alerts.model.ThresholdRecord;
+import com.alerts.publish.AlertPublisher;
+import com.alerts.publish.AlertSuppressor;
+import com.alerts.serde.AlertEventSerde;
+import com.alerts.serde.ThresholdRecordSerde;
+import com.alerts.service.BloomFilterService;
+import org.apache.kafka.common.serialization.Serdes;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.kstream.Branched;
+import org.apache.kafka.streams.kstream.Consumed;
+import org.apache.kafka.streams.kstream.KStream;
+import org.apache.kafka.streams.kstream.Named;
+import org.apache.kafka.streams.kstream.Produced;
+import org.apache.kafka.streams.kstream.Repartitioned;
+import org.apache.kafka.streams.state.KeyValueBytesStoreSupplier;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.StoreBuilder;
+import org.apache.kafka.streams.state.Stores;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * AlertTopology - Builds the Kafka Streams topology
+ *
+ * Kept free of Spring so the same topology can be driven by
+ * TopologyTestDriver: build it on a fresh StreamsBuilder and pipe records into
+ * eagle-eye.config / eagle-eye.alert-counts / eagle-eye.errors.
+ *
+ * All sources are connected to config-store, so Kafka Streams requires them
+ * to be co-partitioned and each key is handled by a single task. The
+ * exception is eagle-eye.config-defaults: a global store that every instance
+ * reads in full, since any key may fall back to any default.
+ *
+ * Legacy hex keys on eagle-eye.config (alerts.hashing.legacy-keys) were
+ * partitioned by their 16 ASCII bytes, not by the 8-byte key that
+ * config-store, eagle-eye.errors and the router use. They are re-keyed to the
+ * 8-byte form and sent through the CONFIG_LEGACY_REPARTITION topic so they
+ * land in the partition that owns the key; 8-byte keys skip that hop.
+ */
+public class AlertTopology {
+
+    public static final String CONFIG_STORE = "config-store";
+    public static final String CONFIG_TOPIC = "eagle-eye.config";
+    // Internal topic: eagle-eye-stream-processor-config-legacy-keys-repartition
+    public static final String CONFIG_LEGACY_REPARTITION = "config-legacy-keys";
+    public static final String ERRORS_TOPIC = "eagle-eye.errors";
+    public static final String WINDOW_STORE = "window-state";
+    public static final String INHERITED_STORE = "inherited-alert-times";
+    // eagle-eye.errors header carrying the composite key, for keys that may inherit a default
+    public static final String KEY_HEADER = "alert-key";
+    public static final String DEFAULTS_STORE = "config-defaults";
+    public static final String DEFAULTS_TOPIC = "eagle-eye.config-defaults";
+    public static final String SKETCH_STORE = "error-sketches";
+    public static final String TENANT_INDEX_STORE = "tenant-index";
+    public static final String KEY_NAMES_STORE = "key-names";
+    // Off-heap slot width: room for ThresholdRecord v2 (28 bytes) and a little growth
+    static final int OFFHEAP_VALUE_BYTES = 32;
+
+    /**
+     * Topology settings; defaults() is a plain REST-mode topology on RocksDB.
+     *
+     * @param legacyKeys       accept legacy hex keys / string values on eagle-eye.config
+     * @param streamEvaluation evaluate eagle-eye.errors inside the topology
+     * @param storeBackend     storage behind config-store
+     * @param tenantIndex      keep tenant-index / key-names next to config-store
+     */
+    public record Options(boolean legacyKeys, boolean streamEvaluation, StoreBackend storeBackend,
+                          boolean tenantIndex) {
+
+        public static Options defaults() {
+            return new Options(false, false, StoreBackend.ROCKSDB, false);
+        }
+
+        public Options withLegacyKeys(boolean legacyKeys) {
+            return new Options(legacyKeys, streamEvaluation, storeBackend, tenantIndex);
+        }
+
+        public Options withStreamEvaluation(boolean streamEvaluation) {
+            return new Options(legacyKeys, streamEvaluation, storeBackend, tenantIndex);
+        }
+
+        public Options withStoreBackend(StoreBackend storeBackend) {
+            return new Options(legacyKeys, streamEvaluation, storeBackend, tenantIndex);
+        }
+
+        public Options withTenantIndex(boolean tenantIndex) {
+            return new Options(legacyKeys, streamEvaluation, storeBackend, tenantIndex);
+        }
+    }
+
+    private final boolean legacyKeys;
+    private final boolean streamEvaluation;
+    private final ThresholdNearCache nearCache;
+    private final AlertSuppressor suppressor;
+    private final BloomFilterService bloomFilter;
+    private final AlertMetrics metrics;
+    private final ThresholdHierarchy hierarchy;
+    private final StoreBackend storeBackend;
+    private final DynamicThresholds dynamicThresholds;
+    private final boolean tenantIndex;
+
+    /**
+     * @param options           topology settings
+     * @param nearCache         cache kept in sync with config-store (may be disabled)
+     * @param suppressor        cooldown applied to stream-mode alerts (may be disabled)
+     * @param bloomFilter       request-path pre-check, fed with every loaded threshold
+     * @param metrics           decode timing and sampled load logging
+     * @param hierarchy         wildcard defaults, fed from eagle-eye.config-defaults
+     * @param dynamicThresholds quantile-derived thresholds; when enabled, per-key sketches
+     *                          are kept in error-sketches
+     */
+    public AlertTopology(Options options, ThresholdNearCache nearCache, AlertSuppressor suppressor,
+                         BloomFilterService bloomFilter, AlertMetrics metrics, ThresholdHierarchy hierarchy,
+                         DynamicThresholds dynamicThresholds) {
+        this.legacyKeys = options.legacyKeys();
+        this.streamEvaluation = options.streamEvaluation();
+        this.nearCache = nearCache;
+        this.suppressor = suppressor;
+        this.bloomFilter = bloomFilter;
+        this.metrics = metrics;
+        this.hierarchy = hierarchy;
+        this.storeBackend = options.storeBackend();
+        this.dynamicThresholds = dynamicThresholds;
+        this.tenantIndex = options.tenantIndex();
+    }
+
+    public KStream<Bytes, byte[]> build(StreamsBuilder builder) {
+
+        // Every backend keeps the changelog
+        // Changelog topic: eagle-eye-stream-processor-config-store-changelog
+        // This topic must be created manually in all environments (see create-topics.sh)
+        // ROCKSDB restores only the changelog tail on restart; MEMORY / OFFHEAP replay all of it
+        StoreBuilder<KeyValueStore<Long, ThresholdRecord>> thresholdStoreBuilder =
+            Stores.keyValueStoreBuilder(
+                configStoreSupplier(),
+                Serdes.Long(),
+                new ThresholdRecordSerde()
+            ).withLoggingEnabled(Collections.emptyMap());
+
+        builder.addStateStore(thresholdStoreBuilder);
+
+        // Tenant index: "tenant;property;type;interface" -> hash, sorted so a
+        // tenant's keys are one RocksDB range, plus hash -> composite key for
+        // tombstones. Changelogs: eagle-eye-stream-processor-tenant-index-changelog,
+        // eagle-eye-stream-processor-key-names-changelog
+        if (tenantIndex) {
+            builder.addStateStore(Stores.keyValueStoreBuilder(
+                Stores.persistentKeyValueStore(TENANT_INDEX_STORE),
+                Serdes.String(),
+                Serdes.Long()
+            ).withLoggingEnabled(Collections.emptyMap()));
+            builder.addStateStore(Stores.keyValueStoreBuilder(
+                Stores.persistentKeyValueStore(KEY_NAMES_STORE),
+                Serdes.Long(),
+                Serdes.String()
+            ).withLoggingEnabled(Collections.emptyMap()));
+        }
+
+        // Load thresholds from eagle-eye.config topic into state store
+        KStream<Bytes, byte[]> thresholds = builder.stream(CONFIG_TOPIC,
+            Consumed.with(Serdes.Bytes(), Serdes.ByteArray()));
+        if (legacyKeys) {
+            thresholds = rekeyLegacyKeys(thresholds);
+        }
+        String[] configStores = tenantIndex
+            ? new String[] {CONFIG_STORE, TENANT_INDEX_STORE, KEY_NAMES_STORE}
+            : new String[] {CONFIG_STORE};
+        thresholds.process(() -> new ThresholdLoadProcessor(legacyKeys, nearCache, bloomFilter, metrics, tenantIndex),
+            configStores);
+
+        // Wildcard defaults: global store keyed by pattern. The topic is its
+        // changelog, and restoration copies it verbatim, so values stay raw bytes
+        builder.addGlobalStore(
+            Stores.keyValueStoreBuilder(
+                Stores.persistentKeyValueStore(DEFAULTS_STORE),
+                Serdes.String(),
+                Serdes.ByteArray()
+            ).withLoggingDisabled(),
+            DEFAULTS_TOPIC,
+            Consumed.with(Serdes.String(), Serdes.ByteArray()),
+            () -> new DefaultThresholdProcessor(hierarchy, metrics));
+
+        // Apply alertTimes deltas flushed by AlertCounterService
+        builder.stream(AlertCounterService.COUNTS_TOPIC, Consumed.with(Serdes.Long(), Serdes.Long()))
+            .process(() -> new AlertCountProcessor(nearCache), CONFIG_STORE);
+
+        // Dynamic thresholds: one QuantileSketch per key, restored from
+        // eagle-eye-stream-processor-error-sketches-changelog. Deltas flushed by
+        // DynamicThresholds are merged in the task owning the key; connecting
+        // config-store puts a key's sketch on the instance hosting its threshold
+        if (dynamicThresholds.isEnabled()) {
+            builder.addStateStore(Stores.keyValueStoreBuilder(
+                Stores.persistentKeyValueStore(SKETCH_STORE),
+                Serdes.Long(),
+                Serdes.ByteArray()
+            ).withLoggingEnabled(Collections.emptyMap()));
+
+            builder.stream(DynamicThresholds.SKETCHES_TOPIC, Consumed.with(Serdes.Long(), Serdes.ByteArray()))
+                .process(() -> new SketchMergeProcessor(dynamicThresholds), SKETCH_STORE, CONFIG_STORE);
+        }
+
+        // Stream mode: evaluate error counts next to their thresholds
+        if (streamEvaluation) {
+            // Sliding-window ring buffers per key, restored from
+            // eagle-eye-stream-processor-window-state-changelog on restart
+            builder.addStateStore(Stores.keyValueStoreBuilder(
+                Stores.persistentKeyValueStore(WINDOW_STORE),
+                Serdes.Long(),
+                Serdes.ByteArray()
+            ).withLoggingEnabled(Collections.emptyMap()));
+
+            // alertTimes of keys breaching an inherited default, which have no
+            // config-store record. Changelog:
+            // eagle-eye-stream-processor-inherited-alert-times-changelog
+            builder.addStateStore(Stores.keyValueStoreBuilder(
+                Stores.persistentKeyValueStore(INHERITED_STORE),
+                Serdes.Long(),
+                Serdes.Long()
+            ).withLoggingEnabled(Collections.emptyMap()));
+
+            String[] stores = dynamicThresholds.isEnabled()
+                ? new String[] {CONFIG_STORE, WINDOW_STORE, INHERITED_STORE, SKETCH_STORE}
+                : new String[] {CONFIG_STORE, WINDOW_STORE, INHERITED_STORE};
+            builder.stream(ERRORS_TOPIC, Consumed.with(Serdes.Long(), Serdes.Long()))
+                .process(() -> new ErrorCountEvaluator(nearCache, suppressor, dynamicThresholds, hierarchy), stores)
+                .to(AlertPublisher.ALERTS_TOPIC, Produced.with(Serdes.Long(), new AlertEventSerde()));
+        }
+
+        return thresholds;
+    }
+
+    /**
+     * Route legacy hex keys to the partition of their 8-byte form. Keys that do
+     * not parse keep their bytes and are rejected by ThresholdLoadProcessor.
+     */
+    private static KStream<Bytes, byte[]> rekeyLegacyKeys(KStream<Bytes, byte[]> thresholds) {
+        Map<String, KStream<Bytes, byte[]>> branches = thresholds.split(Named.as("config-"))
+            .branch((key, value) -> key != null && key.get().length == KeyHashes.LEGACY_HEX_LENGTH,
+                Branched.as("legacy"))
+            .defaultBranch(Branched.as("wire"));
+        KStream<Bytes, byte[]> rekeyed = branches.get("config-legacy")
+            .selectKey((key, value) -> {
+                try {
+                    return Bytes.wrap(KeyHashes.toBytes(KeyHashes.parseHex(key.get())));
+                } catch (IllegalArgumentException e) {
+                    return key;
+                }
+            })
+            .repartition(Repartitioned.<Bytes, byte[]>as(CONFIG_LEGACY_REPARTITION)
+                .withKeySerde(Serdes.Bytes())
+                .withValueSerde(Serdes.ByteArray()));
+        return branches.get("config-wire").merge(rekeyed);
+    }
+
+    private KeyValueBytesStoreSupplier configStoreSupplier() {
+        return switch (storeBackend) {
+            case ROCKSDB -> Stores.persistentKeyValueStore(CONFIG_STORE);
+            case MEMORY -> Stores.inMemoryKeyValueStore(CONFIG_STORE);
+            case OFFHEAP -> OffHeapKeyValueStore.supplier(CONFIG_STORE, OFFHEAP_VALUE_BYTES);
+        };
+    }
+}
@@ -0,0 +1,168 @@
+package com.alerts.streams;
+
+import com.alerts.bloom.ScalableBloomFilter;
+import com.alerts.cache.ThresholdHierarchy;
+import com.alerts.cache.ThresholdNearCache;
+import com.alerts.model.ThresholdRecord;
+import com.alerts.service.BloomFilterService;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StoreQueryParameters;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.QueryableStoreTypes;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.kafka.config.StreamsBuilderFactoryBean;
+import org.springframework.kafka.config.StreamsBuilderFactoryBeanConfigurer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * ConfigStoreRebuilder - Rebuilds request-path indexes from config-store
+ *
+ * Changelog restoration writes straight into config-store without passing
+ * through ThresholdLoadProcessor, and a rebalance moves partitions (and their
+ * thresholds) between instances. Whenever Kafka Streams reaches RUNNING -
+ * after the initial restore and after every rebalance - the Bloom filter is
+ * rebuilt and the near-cache refilled from the thresholds this instance now
+ * hosts.
+ *
+ * The global defaults store (eagle-eye.config-defaults) is likewise restored
+ * without its processor, but it is complete on every instance and does not
+ * move on rebalances: ThresholdHierarchy is loaded from it on the first
+ * RUNNING transition only and kept current by DefaultThresholdProcessor.
+ *
+ * The first rebuild also ends the warm start: WarmStartService stops
+ * serving its snapshot and reports the instance ready.
+ *
+ * Every transition is also republished as a StreamsStateChange event, since
+ * the factory bean takes only this one state listener.
+ *
+ * The scan runs on its own thread so the stream thread that fired the state
+ * change is not held up; a state change during a scan schedules another one.
+ */
+@Component
+public class ConfigStoreRebuilder implements StreamsBuilderFactoryBeanConfigurer {
+
+    private static final Logger log = LoggerFactory.getLogger(ConfigStoreRebuilder.class);
+
+    private final BloomFilterService bloomFilterService;
+    private final ThresholdNearCache nearCache;
+    private final ThresholdHierarchy hierarchy;
+    private final WarmStartService warmStart;
+    private final ApplicationEventPublisher events;
+    private final ExecutorService executor;
+    private final AtomicBoolean scheduled = new AtomicBoolean();
+    private volatile boolean defaultsLoaded;
+
+    private volatile StreamsBuilderFactoryBean factoryBean;
+
+    public ConfigStoreRebuilder(BloomFilterService bloomFilterService, ThresholdNearCache nearCache,
+                                ThresholdHierarchy hierarchy, WarmStartService warmStart,
+                                ApplicationEventPublisher events) {
+        this.bloomFilterService = bloomFilterService;
+        this.nearCache = nearCache;
+        this.hierarchy = hierarchy;
+        this.warmStart = warmStart;
+        this.events = events;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "config-store-rebuild");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public void configure(StreamsBuilderFactoryBean factoryBean) {
+        this.factoryBean = factoryBean;
+        factoryBean.setStateListener((newState, oldState) -> {
+            events.publishEvent(new StreamsStateChange(newState, oldState));
+            if (newState == KafkaStreams.State.RUNNING) {
+                scheduleRebuild();
+            }
+        });
+    }
+
+    private void scheduleRebuild() {
+        if (scheduled.compareAndSet(false, true) && !executor.isShutdown()) {
+            executor.execute(() -> {
+                scheduled.set(false);
+                try {
+                    rebuild();
+                } catch (Exception e) {
+                    // Store migrated again mid-scan; the next RUNNING transition retries
+                    log.error("❌ config-store rebuild failed: {}", e.getMessage());
+                }
+            });
+        }
+    }
+
+    void rebuild() {
+        KafkaStreams streams = factoryBean.getKafkaStreams();
+        if (streams == null || streams.state() != KafkaStreams.State.RUNNING) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        ReadOnlyKeyValueStore<Long, ThresholdRecord> store;
+        if (streams.metadataForLocalThreads().stream().allMatch(thread -> thread.activeTasks().isEmpty())) {
+            // More instances than partitions: nothing hosted here
+            store = null;
+        } else {
+            store = streams.store(StoreQueryParameters.fromNameAndType(
+                AlertTopology.CONFIG_STORE, QueryableStoreTypes.keyValueStore()));
+        }
+
+        ScalableBloomFilter filter = bloomFilterService.beginRebuild(store == null ? 0 : store.approximateNumEntries());
+        // Entries for partitions this instance no longer hosts must not linger
+        nearCache.clear();
+        long stamp = nearCache.fillStamp();
+        long keys = 0;
+        if (store != null) {
+            try (KeyValueIterator<Long, ThresholdRecord> it = store.all()) {
+                while (it.hasNext()) {
+                    KeyValue<Long, ThresholdRecord> entry = it.next();
+                    filter.put(entry.key);
+                    nearCache.fillFromStore(entry.key, entry.value, stamp);
+                    keys++;
+                }
+            }
+        }
+        bloomFilterService.finishRebuild(filter);
+
+        log.info("✅ Rebuilt Bloom filter and near-cache from config-store: {} thresholds in {}ms",
+            keys, System.currentTimeMillis() - start);
+
+        if (!defaultsLoaded) {
+            loadDefaults(streams);
+            defaultsLoaded = true;
+        }
+        warmStart.liveStoreReady();
+    }
+
+    private void loadDefaults(KafkaStreams streams) {
+        ReadOnlyKeyValueStore<String, byte[]> store = streams.store(StoreQueryParameters.fromNameAndType(
+            AlertTopology.DEFAULTS_STORE, QueryableStoreTypes.keyValueStore()));
+        int loaded = 0;
+        try (KeyValueIterator<String, byte[]> it = store.all()) {
+            while (it.hasNext()) {
+                KeyValue<String, byte[]> entry = it.next();
+                ThresholdRecord threshold = ThresholdRecord.decode(entry.value, false);
+                if (threshold != null && hierarchy.put(entry.key, threshold.threshold())) {
+                    loaded++;
+                }
+            }
+        }
+        log.info("✅ Loaded {} default thresholds, levels: {}", loaded, hierarchy.stats().get("levels"));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
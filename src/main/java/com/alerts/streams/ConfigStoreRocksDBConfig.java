@@ -0,0 +1,135 @@
+package com.alerts.streams;
+
+import org.apache.kafka.streams.state.RocksDBConfigSetter;
+import org.rocksdb.BlockBasedTableConfig;
+import org.rocksdb.BloomFilter;
+import org.rocksdb.Cache;
+import org.rocksdb.CompactionStyle;
+import org.rocksdb.CompressionType;
+import org.rocksdb.IndexType;
+import org.rocksdb.LRUCache;
+import org.rocksdb.Options;
+import org.rocksdb.WriteBufferManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+
+/**
+ * ConfigStoreRocksDBConfig - RocksDB options for the topology's stores
+ *
+ * Registered as rocksdb.config.setter, so Kafka Streams instantiates it for
+ * every RocksDB store it opens and passes the streams configuration; the
+ * settings are therefore alerts.rocksdb.* entries under
+ * spring.kafka.streams.properties, not ordinary alerts.* properties.
+ *
+ * Instead of Kafka's defaults (50MB block cache and 3 x 16MB memtables per
+ * store, universal compaction, no compression) all stores share one LRU
+ * block cache, and their memtables are charged to it through a
+ * WriteBufferManager, so RocksDB memory is bounded by block-cache-bytes
+ * regardless of store and partition count. Index and filter blocks live in
+ * the cache at high priority with the top level (and L0) pinned, so a point
+ * lookup does not have to re-read them from disk under cache pressure.
+ * Level compaction keeps the number of sorted runs a lookup probes small.
+ */
+public class ConfigStoreRocksDBConfig implements RocksDBConfigSetter {
+
+    private static final Logger log = LoggerFactory.getLogger(ConfigStoreRocksDBConfig.class);
+
+    public static final String PREFIX = "alerts.rocksdb.";
+
+    // Shared by every store in the process; never closed (lives as long as the JVM)
+    private static Cache cache;
+    private static WriteBufferManager writeBufferManager;
+
+    private BloomFilter filter;
+
+    @Override
+    public void setConfig(String storeName, Options options, Map<String, Object> configs) {
+        long blockCacheBytes = longSetting(configs, "block-cache-bytes", 64L << 20);
+        long memtableBytes = longSetting(configs, "memtable-bytes", 16L << 20);
+        long writeBufferBytes = longSetting(configs, "write-buffer-bytes", 4L << 20);
+        int maxWriteBuffers = (int) longSetting(configs, "max-write-buffers", 2);
+        long blockSizeBytes = longSetting(configs, "block-size-bytes", 4096);
+        double bloomBitsPerKey = Double.parseDouble(setting(configs, "bloom-bits-per-key", "10"));
+        boolean pinIndexAndFilter = Boolean.parseBoolean(setting(configs, "pin-index-and-filter", "true"));
+        boolean partitionedIndex = Boolean.parseBoolean(setting(configs, "partitioned-index", "false"));
+        boolean optimizeFiltersForHits = Boolean.parseBoolean(setting(configs, "optimize-filters-for-hits", "false"));
+        CompressionType compression = compression(setting(configs, "compression", "lz4"));
+        CompactionStyle compactionStyle = CompactionStyle.valueOf(
+            setting(configs, "compaction-style", "level").toUpperCase());
+        int maxBackgroundJobs = (int) longSetting(configs, "max-background-jobs", 2);
+
+        BlockBasedTableConfig table = (BlockBasedTableConfig) options.tableFormatConfig();
+        table.setBlockCache(sharedCache(blockCacheBytes, memtableBytes));
+        table.setBlockSize(blockSizeBytes);
+        if (bloomBitsPerKey > 0) {
+            filter = new BloomFilter(bloomBitsPerKey);
+            table.setFilterPolicy(filter);
+        }
+        table.setCacheIndexAndFilterBlocks(true);
+        table.setCacheIndexAndFilterBlocksWithHighPriority(true);
+        table.setPinTopLevelIndexAndFilter(pinIndexAndFilter);
+        table.setPinL0FilterAndIndexBlocksInCache(pinIndexAndFilter);
+        if (partitionedIndex) {
+            // Two-level index: only the top level has to stay resident
+            table.setIndexType(IndexType.kTwoLevelIndexSearch);
+            table.setPartitionFilters(bloomBitsPerKey > 0);
+        }
+        options.setTableFormatConfig(table);
+
+        options.setWriteBufferManager(writeBufferManager);
+        options.setWriteBufferSize(writeBufferBytes);
+        options.setMaxWriteBufferNumber(Math.max(2, maxWriteBuffers));
+        options.setCompressionType(compression);
+        options.setCompactionStyle(compactionStyle);
+        if (compactionStyle == CompactionStyle.LEVEL) {
+            options.setLevelCompactionDynamicLevelBytes(true);
+        }
+        options.setOptimizeFiltersForHits(optimizeFiltersForHits);
+        options.setMaxBackgroundJobs(Math.max(1, maxBackgroundJobs));
+
+        log.debug("RocksDB options for {}: block size {}, bloom {} bits/key, pinned index {}, partitioned {}, "
+                + "{} / {} compaction", storeName, blockSizeBytes, bloomBitsPerKey, pinIndexAndFilter,
+            partitionedIndex, compression, compactionStyle);
+    }
+
+    @Override
+    public void close(String storeName, Options options) {
+        // The shared cache and WriteBufferManager outlive individual stores
+        if (filter != null) {
+            filter.close();
+            filter = null;
+        }
+    }
+
+    private static synchronized Cache sharedCache(long blockCacheBytes, long memtableBytes) {
+        if (cache == null) {
+            // Half the cache reserved for high-priority (index and filter) blocks
+            cache = new LRUCache(blockCacheBytes, -1, false, 0.5);
+            writeBufferManager = new WriteBufferManager(memtableBytes, cache);
+            log.info("RocksDB shared block cache {}MB (memtables up to {}MB of it)",
+                blockCacheBytes >> 20, memtableBytes >> 20);
+        }
+        return cache;
+    }
+
+    private static String setting(Map<String, Object> configs, String name, String defaultValue) {
+        Object value = configs.get(PREFIX + name);
+        return value == null ? defaultValue : value.toString().trim();
+    }
+
+    private static long longSetting(Map<String, Object> configs, String name, long defaultValue) {
+        return Long.parseLong(setting(configs, name, Long.toString(defaultValue)));
+    }
+
+    private static CompressionType compression(String name) {
+        return switch (name.toLowerCase()) {
+            case "none" -> CompressionType.NO_COMPRESSION;
+            case "snappy" -> CompressionType.SNAPPY_COMPRESSION;
+            case "lz4" -> CompressionType.LZ4_COMPRESSION;
+            case "zstd" -> CompressionType.ZSTD_COMPRESSION;
+            default -> throw new IllegalArgumentException("Unknown " + PREFIX + "compression: " + name);
+        };
+    }
+}
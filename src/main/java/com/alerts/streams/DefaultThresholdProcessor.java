@@ -0,0 +1,73 @@
+package com.alerts.streams;
+
+import com.alerts.cache.ThresholdHierarchy;
+import com.alerts.metrics.AlertMetrics;
+import com.alerts.model.ThresholdRecord;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * DefaultThresholdProcessor - Applies eagle-eye.config-defaults to config-defaults
+ *
+ * Maintains the global store (every instance holds all defaults) and
+ * ThresholdHierarchy. Keys are the wildcard patterns themselves
+ * ("*;tenant_0;*;*"); they are hashed here with the configured KeyHasher, so
+ * producers never need to know the hash algorithm. Null values delete.
+ *
+ * Restoration at startup fills the store without passing through this
+ * processor; ConfigStoreRebuilder loads ThresholdHierarchy from the store once
+ * Kafka Streams is RUNNING.
+ */
+public class DefaultThresholdProcessor implements Processor<String, byte[], Void, Void> {
+
+    private static final Logger log = LoggerFactory.getLogger(DefaultThresholdProcessor.class);
+
+    private final ThresholdHierarchy hierarchy;
+    private final AlertMetrics metrics;
+    private KeyValueStore<String, byte[]> store;
+
+    public DefaultThresholdProcessor(ThresholdHierarchy hierarchy, AlertMetrics metrics) {
+        this.hierarchy = hierarchy;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public void init(ProcessorContext<Void, Void> context) {
+        store = context.getStateStore(AlertTopology.DEFAULTS_STORE);
+    }
+
+    @Override
+    public void process(Record<String, byte[]> record) {
+        String pattern = record.key();
+        if (pattern == null) {
+            return;
+        }
+        if (record.value() == null) {
+            store.delete(pattern);
+            hierarchy.remove(pattern);
+            if (metrics.sampleEvent()) {
+                log.info("event=default_threshold_removed pattern=\"{}\" sample_interval={}",
+                    pattern, metrics.eventSampleInterval());
+            }
+            return;
+        }
+        ThresholdRecord threshold = ThresholdRecord.decode(record.value(), false);
+        if (threshold == null || ThresholdHierarchy.wildcardMask(pattern) <= 0) {
+            if (metrics.sampleEvent()) {
+                log.warn("event=default_threshold_skipped reason={} pattern=\"{}\" sample_interval={}",
+                    threshold == null ? "invalid_value" : "not_a_pattern", pattern, metrics.eventSampleInterval());
+            }
+            return;
+        }
+        store.put(pattern, record.value());
+        hierarchy.put(pattern, threshold.threshold());
+        if (metrics.sampleEvent()) {
+            log.info("event=default_threshold_loaded pattern=\"{}\" threshold={} sample_interval={}",
+                pattern, threshold.threshold(), metrics.eventSampleInterval());
+        }
+    }
+}
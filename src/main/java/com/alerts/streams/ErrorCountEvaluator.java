@@ -0,0 +1,149 @@
+package com.alerts.streams;
+
+import com.alerts.cache.ThresholdHierarchy;
+import com.alerts.cache.ThresholdNearCache;
+import com.alerts.dynamic.DynamicThresholds;
+import com.alerts.model.AlertEvent;
+import com.alerts.model.ThresholdRecord;
+import com.alerts.publish.AlertSuppressor;
+import com.alerts.service.AlertEvaluation;
+import com.alerts.window.QuantileSketch;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ErrorCountEvaluator - Stream-mode threshold evaluation
+ *
+ * Consumes (key hash, errorCount) from eagle-eye.errors, which is
+ * co-partitioned with eagle-eye.config, so every key is evaluated in the task
+ * that holds its threshold. On a breach alertTimes is incremented in
+ * config-store and the alert is forwarded downstream to eagle-eye.alerts -
+ * with processing.guarantee=exactly_once_v2 both happen atomically.
+ *
+ * For windowed thresholds (v2 records) each value is treated as the number of
+ * new errors in the report; it is added to the key's ErrorRateWindow in
+ * window-state and the window sum is compared against the threshold.
+ *
+ * With dynamic thresholds the observed value is judged against the key's
+ * QuantileSketch in error-sketches (DynamicThresholds), then added to it.
+ *
+ * A key without a threshold of its own is judged against its most specific
+ * ThresholdHierarchy default, resolved from the composite key in the
+ * KEY_HEADER header. It has no config-store record to count in, so its
+ * alertTimes are kept in inherited-alert-times.
+ *
+ * Breaches pass through AlertSuppressor before being forwarded; suppressed
+ * breaches still count towards alertTimes.
+ */
+public class ErrorCountEvaluator implements Processor<Long, Long, Long, AlertEvent> {
+
+    private final ThresholdNearCache nearCache;
+    private final AlertSuppressor suppressor;
+    private final DynamicThresholds dynamicThresholds;
+    private final ThresholdHierarchy hierarchy;
+    private final ThresholdNearCache.Entry inherited = new ThresholdNearCache.Entry();
+    private ProcessorContext<Long, AlertEvent> context;
+    private KeyValueStore<Long, ThresholdRecord> store;
+    private KeyValueStore<Long, byte[]> windowStore;
+    private KeyValueStore<Long, byte[]> sketchStore;
+    private KeyValueStore<Long, Long> inheritedStore;
+
+    public ErrorCountEvaluator(ThresholdNearCache nearCache, AlertSuppressor suppressor,
+                               DynamicThresholds dynamicThresholds, ThresholdHierarchy hierarchy) {
+        this.nearCache = nearCache;
+        this.suppressor = suppressor;
+        this.dynamicThresholds = dynamicThresholds;
+        this.hierarchy = hierarchy;
+    }
+
+    @Override
+    public void init(ProcessorContext<Long, AlertEvent> context) {
+        this.context = context;
+        this.store = context.getStateStore(AlertTopology.CONFIG_STORE);
+        this.windowStore = context.getStateStore(AlertTopology.WINDOW_STORE);
+        this.inheritedStore = context.getStateStore(AlertTopology.INHERITED_STORE);
+        if (dynamicThresholds.isEnabled()) {
+            this.sketchStore = context.getStateStore(AlertTopology.SKETCH_STORE);
+        }
+    }
+
+    @Override
+    public void process(Record<Long, Long> record) {
+        if (record.key() == null || record.value() == null) {
+            return;
+        }
+        long hash = record.key();
+        long errorCount = record.value();
+        ThresholdRecord current = store.get(hash);
+        if (current == null) {
+            processInherited(record, hash, errorCount);
+            return;
+        }
+        long observed = current.isWindowed() ? addToWindow(hash, current, record.timestamp(), errorCount) : errorCount;
+        long threshold = sketchStore != null
+            ? dynamicThreshold(hash, current.threshold(), record.timestamp(), observed)
+            : current.threshold();
+        if (!AlertEvaluation.breached(observed, threshold)) {
+            return;
+        }
+        long alertTimes = current.alertTimes() + 1;
+        ThresholdRecord updated = current.withAlertTimes(alertTimes);
+        store.put(hash, updated);
+        nearCache.put(hash, updated);
+        long suppressedSince = suppressor.check(hash, observed, threshold, alertTimes);
+        if (suppressedSince < 0) {
+            return;
+        }
+        context.forward(record.withValue(new AlertEvent(hash, observed, threshold, alertTimes,
+            suppressedSince, record.timestamp())));
+    }
+
+    private void processInherited(Record<Long, Long> record, long hash, long errorCount) {
+        Header key = record.headers().lastHeader(AlertTopology.KEY_HEADER);
+        String compositeKey = key == null || key.value() == null
+            ? null
+            : new String(key.value(), StandardCharsets.UTF_8);
+        if (!hierarchy.resolve(hash, compositeKey, inherited)) {
+            return;
+        }
+        long threshold = sketchStore != null
+            ? dynamicThreshold(hash, inherited.threshold, record.timestamp(), errorCount)
+            : inherited.threshold;
+        if (!AlertEvaluation.breached(errorCount, threshold)) {
+            return;
+        }
+        Long previous = inheritedStore.get(hash);
+        long alertTimes = (previous == null ? 0 : previous) + 1;
+        inheritedStore.put(hash, alertTimes);
+        long suppressedSince = suppressor.check(hash, errorCount, threshold, alertTimes);
+        if (suppressedSince < 0) {
+            return;
+        }
+        context.forward(record.withValue(new AlertEvent(hash, errorCount, threshold, alertTimes,
+            suppressedSince, record.timestamp())));
+    }
+
+    private long dynamicThreshold(long hash, long configured, long timestamp, long observed) {
+        byte[] sketch = sketchStore.get(hash);
+        if (sketch == null) {
+            sketch = QuantileSketch.create();
+        }
+        long threshold = dynamicThresholds.threshold(sketch, configured);
+        dynamicThresholds.record(sketch, timestamp, observed);
+        sketchStore.put(hash, sketch);
+        return threshold;
+    }
+
+    private long addToWindow(long hash, ThresholdRecord threshold, long timestamp, long errors) {
+        byte[] window = AlertEvaluation.window(windowStore.get(hash), threshold.windowBuckets());
+        long sum = AlertEvaluation.addToWindow(window, threshold.windowSeconds(), threshold.windowBuckets(),
+            timestamp, errors);
+        windowStore.put(hash, window);
+        return sum;
+    }
+}
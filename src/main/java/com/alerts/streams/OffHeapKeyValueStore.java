@@ -0,0 +1,662 @@
+package com.alerts.streams;
+
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.errors.InvalidStateStoreException;
+import org.apache.kafka.streams.errors.ProcessorStateException;
+import org.apache.kafka.streams.processor.ProcessorContext;
+import org.apache.kafka.streams.processor.StateRestoreCallback;
+import org.apache.kafka.streams.processor.StateStore;
+import org.apache.kafka.streams.processor.StateStoreContext;
+import org.apache.kafka.streams.query.Position;
+import org.apache.kafka.streams.state.KeyValueBytesStoreSupplier;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * OffHeapKeyValueStore - config-store as a hash table in direct memory
+ *
+ * Used with alerts.store.backend=OFFHEAP. Open addressing with linear probing
+ * over fixed-width slots held in direct ByteBuffers, so millions of
+ * thresholds add nothing to the heap the collector has to trace, and a point
+ * lookup is one probe sequence instead of RocksDB's JNI call, memtable and
+ * block cache.
+ *
+ * Slot: [state:1][valueLength:1][key:8][value:maxValueBytes]. Keys must be
+ * the 8-byte key hashes config-store uses; values are at most maxValueBytes
+ * (ThresholdRecords are 20 or 28). The table doubles at load factor 0.5 and
+ * is split into chunks, so it is not bounded by the 2GB buffer limit.
+ *
+ * Not persistent: like the in-memory store it is restored from the changelog
+ * on restart. Interactive queries (ThresholdRouter) read while the stream
+ * thread writes: writes and rehashes take a StampedLock's write lock, while
+ * get() and all() read optimistically - probe without locking, then validate
+ * the stamp - and only fall back to the read lock when a write interfered.
+ * A rehash fills new chunks and never touches the old ones, so an optimistic
+ * reader holding the old table only ever sees a stale, not a broken, one.
+ * all() is weakly consistent; range() scans and sorts under the read lock,
+ * since the table has no key order (the topology itself only uses point
+ * lookups and all()).
+ */
+public class OffHeapKeyValueStore implements KeyValueStore<Bytes, byte[]> {
+
+    public static final int KEY_BYTES = Long.BYTES;
+
+    private static final int CHUNK_BITS = 16;
+    private static final int CHUNK_SLOTS = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SLOTS - 1;
+    private static final int MAX_CAPACITY = 1 << 30;
+
+    private static final byte FREE = 0;
+    private static final byte USED = 1;
+    private static final byte DELETED = 2;
+
+    // lookup() result for a read torn by a concurrent write
+    private static final byte[] RETRY = new byte[0];
+
+    // Slot field offsets
+    private static final int STATE = 0;
+    private static final int LENGTH = 1;
+    private static final int KEY = 2;
+    private static final int VALUE = KEY + KEY_BYTES;
+
+    private static final VarHandle LONG_BE =
+        MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private final String name;
+    private final int maxValueBytes;
+    private final int slotBytes;
+    private final int initialCapacity;
+    private final Position position = Position.emptyPosition();
+    private final StampedLock lock = new StampedLock();
+
+    // Written under the write lock; chunks.length * CHUNK_SLOTS == capacity
+    private ByteBuffer[] chunks;
+    private int capacity;
+    private int size;
+    private int deleted;
+    private StateStoreContext context;
+    private volatile boolean open;
+
+    /**
+     * @param maxValueBytes   largest value accepted (at most 255)
+     * @param initialCapacity initial slot count, rounded up to a power of two
+     */
+    public OffHeapKeyValueStore(String name, int maxValueBytes, int initialCapacity) {
+        if (maxValueBytes < 1 || maxValueBytes > 255) {
+            throw new IllegalArgumentException("maxValueBytes must be 1..255: " + maxValueBytes);
+        }
+        this.name = name;
+        this.maxValueBytes = maxValueBytes;
+        this.slotBytes = VALUE + maxValueBytes;
+        this.initialCapacity = Math.max(CHUNK_SLOTS,
+            Integer.highestOneBit(Math.min(MAX_CAPACITY, Math.max(1, initialCapacity) * 2 - 1)));
+    }
+
+    public static KeyValueBytesStoreSupplier supplier(String name, int maxValueBytes) {
+        return new KeyValueBytesStoreSupplier() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public KeyValueStore<Bytes, byte[]> get() {
+                return new OffHeapKeyValueStore(name, maxValueBytes, CHUNK_SLOTS);
+            }
+
+            @Override
+            public String metricsScope() {
+                return "offheap";
+            }
+        };
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    @Deprecated
+    @Override
+    public void init(ProcessorContext context, StateStore root) {
+        open(null);
+        if (root != null) {
+            context.register(root, restoreCallback());
+        }
+    }
+
+    @Override
+    public void init(StateStoreContext context, StateStore root) {
+        open(context);
+        if (root != null) {
+            context.register(root, restoreCallback());
+        }
+    }
+
+    private void open(StateStoreContext context) {
+        long stamp = lock.writeLock();
+        try {
+            this.context = context;
+            this.chunks = allocate(initialCapacity);
+            this.capacity = initialCapacity;
+            this.size = 0;
+            this.deleted = 0;
+            this.open = true;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    private StateRestoreCallback restoreCallback() {
+        return (key, value) -> {
+            long stamp = lock.writeLock();
+            try {
+                if (value == null) {
+                    remove(toLong(key));
+                } else {
+                    write(toLong(key), value);
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        };
+    }
+
+    @Override
+    public byte[] get(Bytes key) {
+        checkOpen();
+        long hash = toLong(key.get());
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            ByteBuffer[] table = chunks;
+            byte[] value = table == null ? RETRY : lookup(table, hash);
+            if (value != RETRY && lock.validate(stamp)) {
+                return value;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            checkOpen();
+            int slot = find(hash);
+            return slot < 0 ? null : readValue(slot);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void put(Bytes key, byte[] value) {
+        long stamp = lock.writeLock();
+        try {
+            checkOpen();
+            apply(toLong(key.get()), value);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public byte[] putIfAbsent(Bytes key, byte[] value) {
+        long stamp = lock.writeLock();
+        try {
+            checkOpen();
+            long hash = toLong(key.get());
+            int slot = find(hash);
+            if (slot >= 0) {
+                return readValue(slot);
+            }
+            apply(hash, value);
+            return null;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void putAll(List<KeyValue<Bytes, byte[]>> entries) {
+        long stamp = lock.writeLock();
+        try {
+            checkOpen();
+            for (KeyValue<Bytes, byte[]> entry : entries) {
+                apply(toLong(entry.key.get()), entry.value);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public byte[] delete(Bytes key) {
+        long stamp = lock.writeLock();
+        try {
+            checkOpen();
+            byte[] previous = remove(toLong(key.get()));
+            updatePosition();
+            return previous;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public KeyValueIterator<Bytes, byte[]> range(Bytes from, Bytes to) {
+        TreeMap<Bytes, byte[]> matches = new TreeMap<>();
+        if (from != null && to != null && from.compareTo(to) > 0) {
+            checkOpen();
+            return new SortedIterator(matches);
+        }
+        long stamp = lock.readLock();
+        try {
+            checkOpen();
+            for (int slot = 0; slot < capacity; slot++) {
+                if (state(slot) == USED) {
+                    Bytes key = Bytes.wrap(toBytes(readKey(slot)));
+                    if ((from == null || key.compareTo(from) >= 0) && (to == null || key.compareTo(to) <= 0)) {
+                        matches.put(key, readValue(slot));
+                    }
+                }
+            }
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        return new SortedIterator(matches);
+    }
+
+    @Override
+    public KeyValueIterator<Bytes, byte[]> all() {
+        long stamp = lock.readLock();
+        try {
+            checkOpen();
+            return new SlotIterator(chunks);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public long approximateNumEntries() {
+        long stamp = lock.readLock();
+        try {
+            return size;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public void flush() {
+        // Nothing to flush: the changelog is the durable copy
+    }
+
+    @Override
+    public void close() {
+        long stamp = lock.writeLock();
+        try {
+            open = false;
+            // Direct buffers are freed once unreachable
+            chunks = null;
+            capacity = 0;
+            size = 0;
+            deleted = 0;
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public boolean persistent() {
+        return false;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public Position getPosition() {
+        return position;
+    }
+
+    private void checkOpen() {
+        if (!open) {
+            throw new InvalidStateStoreException("Store " + name + " is currently closed");
+        }
+    }
+
+    private void updatePosition() {
+        if (context != null) {
+            context.recordMetadata().ifPresent(metadata ->
+                position.withComponent(metadata.topic(), metadata.partition(), metadata.offset()));
+        }
+    }
+
+    // Under the write lock
+    private void apply(long key, byte[] value) {
+        if (value == null) {
+            remove(key);
+        } else {
+            write(key, value);
+        }
+        updatePosition();
+    }
+
+    // Under the write lock
+    private void write(long key, byte[] value) {
+        if (value.length > maxValueBytes) {
+            throw new ProcessorStateException("Value of " + value.length + " bytes exceeds " + maxValueBytes
+                + " for off-heap store " + name);
+        }
+        int slot = find(key);
+        if (slot < 0) {
+            slot = -slot - 1;
+            if (state(slot) == DELETED) {
+                deleted--;
+            }
+            size++;
+            ByteBuffer chunk = chunks[slot >>> CHUNK_BITS];
+            int offset = offset(slot);
+            chunk.putLong(offset + KEY, key);
+            chunk.put(offset + STATE, USED);
+        }
+        ByteBuffer chunk = chunks[slot >>> CHUNK_BITS];
+        int offset = offset(slot);
+        chunk.put(offset + LENGTH, (byte) value.length);
+        chunk.put(offset + VALUE, value);
+        if ((size + deleted) * 2L > capacity) {
+            // Grow when live entries fill a quarter of the table, otherwise just drop tombstones
+            rehash(size * 4L > capacity ? capacity << 1 : capacity);
+        }
+    }
+
+    // Under the write lock
+    private byte[] remove(long key) {
+        int slot = find(key);
+        if (slot < 0) {
+            return null;
+        }
+        byte[] previous = readValue(slot);
+        chunks[slot >>> CHUNK_BITS].put(offset(slot) + STATE, DELETED);
+        size--;
+        deleted++;
+        return previous;
+    }
+
+    /**
+     * Slot holding key, or -(slot to insert at) - 1.
+     */
+    private int find(long key) {
+        int mask = capacity - 1;
+        int slot = index(key) & mask;
+        int firstDeleted = -1;
+        while (true) {
+            ByteBuffer chunk = chunks[slot >>> CHUNK_BITS];
+            int offset = offset(slot);
+            byte state = chunk.get(offset + STATE);
+            if (state == FREE) {
+                return -(firstDeleted >= 0 ? firstDeleted : slot) - 1;
+            }
+            if (state == DELETED) {
+                if (firstDeleted < 0) {
+                    firstDeleted = slot;
+                }
+            } else if (chunk.getLong(offset + KEY) == key) {
+                return slot;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Optimistic point lookup on a table that may be changing underneath:
+     * the value, null if absent, or RETRY if what was read cannot be right.
+     * Only valid if the stamp validates afterwards.
+     */
+    private byte[] lookup(ByteBuffer[] table, long key) {
+        int slots = table.length << CHUNK_BITS;
+        int mask = slots - 1;
+        int slot = index(key) & mask;
+        for (int probes = 0; probes < slots; probes++) {
+            ByteBuffer chunk = table[slot >>> CHUNK_BITS];
+            int offset = offset(slot);
+            byte state = chunk.get(offset + STATE);
+            if (state == FREE) {
+                return null;
+            }
+            if (state == USED && chunk.getLong(offset + KEY) == key) {
+                int length = chunk.get(offset + LENGTH) & 0xFF;
+                if (length > maxValueBytes) {
+                    return RETRY;
+                }
+                byte[] value = new byte[length];
+                chunk.get(offset + VALUE, value);
+                return value;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return RETRY;
+    }
+
+    private void rehash(long newCapacity) {
+        if (newCapacity > MAX_CAPACITY) {
+            throw new ProcessorStateException("Off-heap store " + name + " is full (" + size + " entries)");
+        }
+        ByteBuffer[] old = chunks;
+        int oldCapacity = capacity;
+        chunks = allocate((int) newCapacity);
+        capacity = (int) newCapacity;
+        size = 0;
+        deleted = 0;
+        byte[] value = new byte[maxValueBytes];
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            ByteBuffer chunk = old[slot >>> CHUNK_BITS];
+            int offset = offset(slot);
+            if (chunk.get(offset + STATE) == USED) {
+                int length = chunk.get(offset + LENGTH) & 0xFF;
+                chunk.get(offset + VALUE, value, 0, length);
+                int target = -find(chunk.getLong(offset + KEY)) - 1;
+                ByteBuffer targetChunk = chunks[target >>> CHUNK_BITS];
+                int targetOffset = offset(target);
+                targetChunk.putLong(targetOffset + KEY, chunk.getLong(offset + KEY));
+                targetChunk.put(targetOffset + LENGTH, (byte) length);
+                targetChunk.put(targetOffset + VALUE, value, 0, length);
+                targetChunk.put(targetOffset + STATE, USED);
+                size++;
+            }
+        }
+    }
+
+    private ByteBuffer[] allocate(int slots) {
+        ByteBuffer[] allocated = new ByteBuffer[slots / CHUNK_SLOTS];
+        for (int i = 0; i < allocated.length; i++) {
+            allocated[i] = ByteBuffer.allocateDirect(CHUNK_SLOTS * slotBytes);
+        }
+        return allocated;
+    }
+
+    private byte state(int slot) {
+        return chunks[slot >>> CHUNK_BITS].get(offset(slot) + STATE);
+    }
+
+    private long readKey(int slot) {
+        return chunks[slot >>> CHUNK_BITS].getLong(offset(slot) + KEY);
+    }
+
+    private byte[] readValue(int slot) {
+        ByteBuffer chunk = chunks[slot >>> CHUNK_BITS];
+        int offset = offset(slot);
+        byte[] value = new byte[chunk.get(offset + LENGTH) & 0xFF];
+        chunk.get(offset + VALUE, value);
+        return value;
+    }
+
+    private int offset(int slot) {
+        return (slot & CHUNK_MASK) * slotBytes;
+    }
+
+    private static int index(long key) {
+        // Keys are already hashes; mixing guards against patterned test keys
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private long toLong(byte[] key) {
+        if (key.length != KEY_BYTES) {
+            throw new ProcessorStateException("Off-heap store " + name + " takes " + KEY_BYTES
+                + "-byte keys, got " + key.length);
+        }
+        return (long) LONG_BE.get(key, 0);
+    }
+
+    private static byte[] toBytes(long key) {
+        byte[] bytes = new byte[KEY_BYTES];
+        LONG_BE.set(bytes, 0, key);
+        return bytes;
+    }
+
+    /**
+     * Walks the slots of the table current at creation. A rehash swaps in new
+     * chunks and leaves these untouched, so the walk stays valid but misses
+     * later writes. Each slot is read optimistically, under the read lock
+     * only if a write interfered.
+     */
+    private final class SlotIterator implements KeyValueIterator<Bytes, byte[]> {
+        private final ByteBuffer[] snapshot;
+        private final int slots;
+        private int slot;
+        private KeyValue<Bytes, byte[]> next;
+
+        SlotIterator(ByteBuffer[] snapshot) {
+            this.snapshot = snapshot;
+            this.slots = snapshot.length << CHUNK_BITS;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = advance();
+            }
+            return next != null;
+        }
+
+        private KeyValue<Bytes, byte[]> advance() {
+            checkOpen();
+            while (slot < slots) {
+                long stamp = lock.tryOptimisticRead();
+                byte[] value = stamp == 0 ? RETRY : readSlot(slot);
+                long key = keyOf(slot);
+                if (value == RETRY || !lock.validate(stamp)) {
+                    stamp = lock.readLock();
+                    try {
+                        checkOpen();
+                        value = readSlot(slot);
+                        key = keyOf(slot);
+                    } finally {
+                        lock.unlockRead(stamp);
+                    }
+                }
+                slot++;
+                if (value != null) {
+                    return KeyValue.pair(Bytes.wrap(toBytes(key)), value);
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Value of a used slot, null for a free or deleted one, RETRY if torn.
+         */
+        private byte[] readSlot(int index) {
+            ByteBuffer chunk = snapshot[index >>> CHUNK_BITS];
+            int offset = offset(index);
+            if (chunk.get(offset + STATE) != USED) {
+                return null;
+            }
+            int length = chunk.get(offset + LENGTH) & 0xFF;
+            if (length > maxValueBytes) {
+                return RETRY;
+            }
+            byte[] value = new byte[length];
+            chunk.get(offset + VALUE, value);
+            return value;
+        }
+
+        private long keyOf(int index) {
+            return snapshot[index >>> CHUNK_BITS].getLong(offset(index) + KEY);
+        }
+
+        @Override
+        public KeyValue<Bytes, byte[]> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            KeyValue<Bytes, byte[]> result = next;
+            next = null;
+            return result;
+        }
+
+        @Override
+        public Bytes peekNextKey() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return next.key;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final class SortedIterator implements KeyValueIterator<Bytes, byte[]> {
+        private final Iterator<Map.Entry<Bytes, byte[]>> entries;
+        private KeyValue<Bytes, byte[]> next;
+
+        SortedIterator(TreeMap<Bytes, byte[]> matches) {
+            this.entries = matches.entrySet().iterator();
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && entries.hasNext()) {
+                Map.Entry<Bytes, byte[]> entry = entries.next();
+                next = KeyValue.pair(entry.getKey(), entry.getValue());
+            }
+            return next != null;
+        }
+
+        @Override
+        public KeyValue<Bytes, byte[]> next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            KeyValue<Bytes, byte[]> result = next;
+            next = null;
+            return result;
+        }
+
+        @Override
+        public Bytes peekNextKey() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return next.key;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.alerts.streams;
+
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.streams.processor.StateRestoreListener;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RestoreProgress - Changelog restoration progress per state store
+ *
+ * Registered with Kafka Streams by WarmStartService. Counts are cumulative
+ * over the life of the process, so a rebalance that restores partitions
+ * again adds to them; "restoring" is the number of partitions in progress.
+ */
+class RestoreProgress implements StateRestoreListener {
+
+    private static final class StoreProgress {
+        final AtomicInteger partitions = new AtomicInteger();
+        final AtomicInteger restoring = new AtomicInteger();
+        final AtomicLong toRestore = new AtomicLong();
+        final AtomicLong restored = new AtomicLong();
+    }
+
+    private final ConcurrentHashMap<String, StoreProgress> stores = new ConcurrentHashMap<>();
+
+    @Override
+    public void onRestoreStart(TopicPartition partition, String storeName, long startingOffset, long endingOffset) {
+        StoreProgress progress = stores.computeIfAbsent(storeName, name -> new StoreProgress());
+        progress.partitions.incrementAndGet();
+        progress.restoring.incrementAndGet();
+        progress.toRestore.addAndGet(Math.max(0, endingOffset - startingOffset));
+    }
+
+    @Override
+    public void onBatchRestored(TopicPartition partition, String storeName, long batchEndOffset, long numRestored) {
+        StoreProgress progress = stores.get(storeName);
+        if (progress != null) {
+            progress.restored.addAndGet(numRestored);
+        }
+    }
+
+    @Override
+    public void onRestoreEnd(TopicPartition partition, String storeName, long totalRestored) {
+        StoreProgress progress = stores.get(storeName);
+        if (progress != null) {
+            progress.restoring.decrementAndGet();
+        }
+    }
+
+    boolean isRestoring() {
+        return stores.values().stream().anyMatch(progress -> progress.restoring.get() > 0);
+    }
+
+    Map<String, Object> stats() {
+        Map<String, Object> stats = new TreeMap<>();
+        stores.forEach((name, progress) -> {
+            long toRestore = progress.toRestore.get();
+            // Offsets include transaction markers, so restored can fall short of toRestore
+            long restored = progress.restored.get();
+            Map<String, Object> store = new LinkedHashMap<>();
+            store.put("partitions", progress.partitions.get());
+            store.put("restoring", progress.restoring.get());
+            store.put("records", toRestore);
+            store.put("restored", restored);
+            store.put("percent", progress.restoring.get() == 0 || toRestore == 0
+                ? 100.0
+                : Math.min(100.0, Math.round(restored * 1000.0 / toRestore) / 10.0));
+            stats.put(name, store);
+        });
+        return stats;
+    }
+}
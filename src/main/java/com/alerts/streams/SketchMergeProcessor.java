@@ -0,0 +1,47 @@
+package com.alerts.streams;
+
+import com.alerts.dynamic.DynamicThresholds;
+import com.alerts.window.QuantileSketch;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+
+/**
+ * SketchMergeProcessor - Merges sketch deltas from eagle-eye.error-sketches
+ *
+ * Every instance evaluating a key sends what it counted since its last flush
+ * (DynamicThresholds); this processor, in the task that owns the key, merges
+ * them into error-sketches. The merged sketch is the key's distribution across
+ * all instances and survives restarts via the store's changelog.
+ */
+public class SketchMergeProcessor implements Processor<Long, byte[], Void, Void> {
+
+    private final DynamicThresholds dynamicThresholds;
+    private KeyValueStore<Long, byte[]> store;
+
+    public SketchMergeProcessor(DynamicThresholds dynamicThresholds) {
+        this.dynamicThresholds = dynamicThresholds;
+    }
+
+    @Override
+    public void init(ProcessorContext<Void, Void> context) {
+        store = context.getStateStore(AlertTopology.SKETCH_STORE);
+    }
+
+    @Override
+    public void process(Record<Long, byte[]> record) {
+        if (record.key() == null || !QuantileSketch.isSketch(record.value())) {
+            return;
+        }
+        long hash = record.key();
+        byte[] sketch = store.get(hash);
+        if (sketch == null) {
+            sketch = record.value();
+        } else {
+            QuantileSketch.merge(sketch, record.value());
+        }
+        store.put(hash, sketch);
+        dynamicThresholds.merged(hash, sketch);
+    }
+}
@@ -0,0 +1,25 @@
+package com.alerts.streams;
+
+/**
+ * StoreBackend - Storage behind config-store (alerts.store.backend)
+ */
+public enum StoreBackend {
+
+    /**
+     * Persistent RocksDB store, tuned through ConfigStoreRocksDBConfig
+     * (rocksdb.config.setter); only the changelog tail is restored on restart
+     */
+    ROCKSDB,
+
+    /**
+     * Kafka Streams' in-memory store (on-heap TreeMap), rebuilt from the
+     * changelog on every restart
+     */
+    MEMORY,
+
+    /**
+     * OffHeapKeyValueStore: hash table in direct memory, no GC or JNI cost,
+     * rebuilt from the changelog on every restart
+     */
+    OFFHEAP
+}
@@ -0,0 +1,14 @@
+package com.alerts.streams;
+
+import org.apache.kafka.streams.KafkaStreams;
+
+/**
+ * StreamsStateChange - Application event for every Kafka Streams state transition
+ *
+ * StreamsBuilderFactoryBean takes a single state listener, owned by
+ * ConfigStoreRebuilder; it republishes each transition so other components
+ * (ThresholdRouter) can react without a second listener. Published on the
+ * stream thread that changed state - listeners must return quickly.
+ */
+public record StreamsStateChange(KafkaStreams.State newState, KafkaStreams.State oldState) {
+}
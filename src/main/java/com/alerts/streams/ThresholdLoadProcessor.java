@@ -0,0 +1,162 @@
+package com.alerts.streams;
+
+import com.alerts.cache.ThresholdNearCache;
+import com.alerts.hashing.KeyHashes;
+import com.alerts.index.TenantIndex;
+import com.alerts.metrics.AlertMetrics;
+import com.alerts.model.ThresholdRecord;
+import com.alerts.service.BloomFilterService;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.processor.api.Processor;
+import org.apache.kafka.streams.processor.api.ProcessorContext;
+import org.apache.kafka.streams.processor.api.Record;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * ThresholdLoadProcessor - Applies eagle-eye.config records to config-store
+ *
+ * Keys and values arrive as raw bytes so legacy hex keys / string values can
+ * be normalized (alerts.hashing.legacy-keys). Null values delete the threshold.
+ *
+ * A record updates the threshold and window of an existing key only: the
+ * alertTimes already in config-store are kept, since alertTimes belong to
+ * eagle-eye.alert-counts (AlertCountProcessor) and producers of
+ * eagle-eye.config (ThresholdLoader, the importer, tenant bulk updates) do not
+ * know them. The alertTimes of a record only seed a key that is not in the
+ * store yet.
+ *
+ * Loaded keys are added to the Bloom filter; deleted ones drop out of it at the
+ * next ConfigStoreRebuilder run.
+ *
+ * With the tenant index enabled, records carrying the TenantIndex.KEY_HEADER
+ * header are also applied to tenant-index and key-names, in the same task and
+ * thus in step with config-store. A key renamed under the same hash moves in
+ * the index; a tombstone removes the key from both stores.
+ *
+ * A bulk load applies hundreds of thousands of records, so per-record log
+ * lines are sampled (AlertMetrics.sampleEvent).
+ */
+public class ThresholdLoadProcessor implements Processor<Bytes, byte[], Void, Void> {
+
+    private static final Logger log = LoggerFactory.getLogger(ThresholdLoadProcessor.class);
+
+    private final boolean legacyKeys;
+    private final ThresholdNearCache nearCache;
+    private final BloomFilterService bloomFilter;
+    private final AlertMetrics metrics;
+    private final boolean tenantIndex;
+    private KeyValueStore<Long, ThresholdRecord> store;
+    private KeyValueStore<String, Long> indexStore;
+    private KeyValueStore<Long, String> keyNames;
+
+    public ThresholdLoadProcessor(boolean legacyKeys, ThresholdNearCache nearCache, BloomFilterService bloomFilter,
+                                  AlertMetrics metrics, boolean tenantIndex) {
+        this.legacyKeys = legacyKeys;
+        this.nearCache = nearCache;
+        this.bloomFilter = bloomFilter;
+        this.metrics = metrics;
+        this.tenantIndex = tenantIndex;
+    }
+
+    @Override
+    public void init(ProcessorContext<Void, Void> context) {
+        store = context.getStateStore(AlertTopology.CONFIG_STORE);
+        if (tenantIndex) {
+            indexStore = context.getStateStore(AlertTopology.TENANT_INDEX_STORE);
+            keyNames = context.getStateStore(AlertTopology.KEY_NAMES_STORE);
+        }
+    }
+
+    @Override
+    public void process(Record<Bytes, byte[]> record) {
+        long hash;
+        try {
+            hash = KeyHashes.decodeKey(record.key() == null ? null : record.key().get(), legacyKeys);
+        } catch (IllegalArgumentException e) {
+            if (metrics.sampleEvent()) {
+                log.warn("event=threshold_skipped reason=invalid_key detail=\"{}\" sample_interval={}",
+                    e.getMessage(), metrics.eventSampleInterval());
+            }
+            return;
+        }
+        if (record.value() == null) {
+            store.delete(hash);
+            nearCache.remove(hash);
+            if (tenantIndex) {
+                unindex(hash);
+            }
+            if (metrics.sampleEvent()) {
+                log.info("event=threshold_removed key={} sample_interval={}",
+                    KeyHashes.toHex(hash), metrics.eventSampleInterval());
+            }
+            return;
+        }
+        long start = metrics.start();
+        ThresholdRecord threshold = ThresholdRecord.decode(record.value(), legacyKeys);
+        metrics.stop(AlertMetrics.Stage.DECODE, start);
+        if (threshold == null) {
+            if (metrics.sampleEvent()) {
+                log.warn("event=threshold_skipped reason=invalid_value key={} sample_interval={}",
+                    KeyHashes.toHex(hash), metrics.eventSampleInterval());
+            }
+            return;
+        }
+        ThresholdRecord existing = store.get(hash);
+        if (existing != null && existing.alertTimes() != threshold.alertTimes()) {
+            threshold = threshold.withAlertTimes(existing.alertTimes());
+        }
+        store.put(hash, threshold);
+        nearCache.put(hash, threshold);
+        bloomFilter.addHash(hash);
+        if (tenantIndex) {
+            index(hash, record.headers().lastHeader(TenantIndex.KEY_HEADER));
+        }
+        if (metrics.sampleEvent()) {
+            log.info("event=threshold_loaded key={} threshold={} alert_times={} sample_interval={}",
+                KeyHashes.toHex(hash), threshold.threshold(), threshold.alertTimes(), metrics.eventSampleInterval());
+        }
+    }
+
+    private void index(long hash, Header header) {
+        if (header == null || header.value() == null) {
+            return;
+        }
+        String name = new String(header.value(), StandardCharsets.UTF_8);
+        String indexKey = TenantIndex.indexKey(name);
+        if (indexKey == null) {
+            if (metrics.sampleEvent()) {
+                log.warn("event=index_skipped reason=invalid_key key={} name=\"{}\" sample_interval={}",
+                    KeyHashes.toHex(hash), name, metrics.eventSampleInterval());
+            }
+            return;
+        }
+        String previous = keyNames.get(hash);
+        if (name.equals(previous)) {
+            return;
+        }
+        if (previous != null) {
+            String previousIndexKey = TenantIndex.indexKey(previous);
+            if (previousIndexKey != null) {
+                indexStore.delete(previousIndexKey);
+            }
+        }
+        indexStore.put(indexKey, hash);
+        keyNames.put(hash, name);
+    }
+
+    private void unindex(long hash) {
+        String name = keyNames.delete(hash);
+        if (name == null) {
+            return;
+        }
+        String indexKey = TenantIndex.indexKey(name);
+        if (indexKey != null) {
+            indexStore.delete(indexKey);
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package com.alerts.streams;
+
+import com.alerts.bloom.ScalableBloomFilter;
+import com.alerts.cache.ThresholdNearCache;
+import com.alerts.cache.ThresholdSnapshot;
+import com.alerts.model.ThresholdRecord;
+import com.alerts.service.BloomFilterService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.StoreQueryParameters;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.apache.kafka.streams.state.QueryableStoreTypes;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.kafka.config.StreamsBuilderFactoryBean;
+import org.springframework.kafka.config.StreamsBuilderFactoryBeanConfigurer;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * WarmStartService - Serves thresholds from a snapshot until config-store is restored
+ *
+ * config-store cannot be queried until Kafka Streams has restored it from
+ * the changelog - the tail of it with RocksDB, all of it with the in-memory
+ * backends. Once the live store is up, the thresholds this instance hosts are
+ * written every alerts.snapshot.interval-ms to a ThresholdSnapshot file. On
+ * the next start that file is mapped before Kafka Streams starts; the Bloom
+ * filter and near-cache are filled from it and lookups that reach the store
+ * are answered from it.
+ *
+ * Modes:
+ * - STARTING: no snapshot, store not restored yet; readiness REFUSING_TRAFFIC
+ * - SNAPSHOT: serving the snapshot; readiness ACCEPTING_TRAFFIC
+ * - LIVE: ConfigStoreRebuilder has rebuilt the indexes from the live store;
+ *   the snapshot is dropped and every lookup goes to config-store
+ *
+ * The switch to LIVE is a single volatile write, so a lookup sees either the
+ * snapshot or the live store, never a mix. Thresholds changed while the
+ * snapshot was being served reach the near-cache through
+ * ThresholdLoadProcessor as usual, so a stale snapshot value is only served
+ * for keys that processor has not seen yet.
+ *
+ * The snapshot lives under the Kafka Streams state.dir by default, which
+ * deployments keep on a persistent volume (tmpdir often is not). A scan that
+ * finds no thresholds - e.g. no active tasks right after a rebalance - does
+ * not replace a non-empty snapshot.
+ */
+@Component
+public class WarmStartService implements StreamsBuilderFactoryBeanConfigurer {
+
+    private static final Logger log = LoggerFactory.getLogger(WarmStartService.class);
+
+    public enum Mode { STARTING, SNAPSHOT, LIVE }
+
+    private static final ThreadLocal<ThresholdNearCache.Entry> SNAPSHOT_ENTRY =
+        ThreadLocal.withInitial(ThresholdNearCache.Entry::new);
+
+    private final BloomFilterService bloomFilterService;
+    private final ThresholdNearCache nearCache;
+    private final ApplicationEventPublisher events;
+    private final boolean enabled;
+    private final Path path;
+    private final long intervalMs;
+    private final RestoreProgress restoreProgress = new RestoreProgress();
+    private final ScheduledExecutorService writer;
+
+    private volatile Mode mode = Mode.STARTING;
+    private volatile ThresholdSnapshot snapshot;
+    private volatile StreamsBuilderFactoryBean factoryBean;
+
+    private final LongAdder snapshotLookups = new LongAdder();
+    private final LongAdder snapshotHits = new LongAdder();
+    private final LongAdder writeFailures = new LongAdder();
+    private final LongAdder emptyWritesSkipped = new LongAdder();
+    private volatile long snapshotEntries;
+    private volatile long snapshotCreatedAt;
+    private volatile long snapshotLoadMs;
+    private volatile long liveAt;
+    private volatile long lastWriteAt;
+    private volatile long lastWriteEntries;
+    private volatile long lastWriteMs;
+    // Entries of the snapshot currently on disk, as far as this instance knows
+    private volatile long entriesOnDisk;
+
+    // Reused by the writer thread between scans
+    private long[] hashes = new long[0];
+    private long[] thresholds = new long[0];
+    private long[] alertTimes = new long[0];
+    private int[] windowSeconds = new int[0];
+    private int[] windowBuckets = new int[0];
+
+    public WarmStartService(BloomFilterService bloomFilterService,
+                            ThresholdNearCache nearCache,
+                            ApplicationEventPublisher events,
+                            @Value("${alerts.snapshot.enabled:true}") boolean enabled,
+                            @Value("${alerts.snapshot.path:}") String path,
+                            @Value("${spring.kafka.streams.state-dir:${java.io.tmpdir}/kafka-streams}") String stateDir,
+                            @Value("${alerts.snapshot.interval-ms:60000}") long intervalMs) {
+        this.bloomFilterService = bloomFilterService;
+        this.nearCache = nearCache;
+        this.events = events;
+        this.enabled = enabled;
+        this.path = path.isEmpty() ? Path.of(stateDir, "alerts-snapshot", "thresholds.snap") : Path.of(path);
+        this.intervalMs = intervalMs;
+        this.writer = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "threshold-snapshot");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    @Override
+    public void configure(StreamsBuilderFactoryBean factoryBean) {
+        this.factoryBean = factoryBean;
+        factoryBean.setStateRestoreListener(restoreProgress);
+    }
+
+    @PostConstruct
+    public void load() {
+        if (!enabled) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        ThresholdSnapshot loaded;
+        try {
+            loaded = ThresholdSnapshot.open(path);
+        } catch (IOException e) {
+            log.warn("❌ Ignoring threshold snapshot {}: {}", path, e.getMessage());
+            return;
+        }
+        if (loaded == null) {
+            log.info("No threshold snapshot at {}, serving once config-store is restored", path);
+            return;
+        }
+        ScalableBloomFilter filter = bloomFilterService.beginRebuild(loaded.entries());
+        long stamp = nearCache.fillStamp();
+        loaded.forEach((hash, threshold, times, windowSeconds, windowBuckets) -> {
+            filter.put(hash);
+            nearCache.fillFromStore(hash, threshold, times, windowSeconds, windowBuckets, stamp);
+        });
+        bloomFilterService.finishRebuild(filter);
+
+        snapshotEntries = loaded.entries();
+        entriesOnDisk = snapshotEntries;
+        snapshotCreatedAt = loaded.createdAt();
+        snapshotLoadMs = System.currentTimeMillis() - start;
+        snapshot = loaded;
+        mode = Mode.SNAPSHOT;
+        log.info("✅ Serving {} thresholds from snapshot {} (loaded in {}ms, {}s old) until config-store is restored",
+            snapshotEntries, path, snapshotLoadMs, (start - snapshotCreatedAt) / 1000);
+    }
+
+    /**
+     * Threshold from the snapshot.
+     *
+     * @return the threshold, or null if the snapshot has none for hash (or is no longer served)
+     */
+    public ThresholdRecord lookup(long hash) {
+        ThresholdSnapshot current = snapshot;
+        if (current == null) {
+            return null;
+        }
+        snapshotLookups.increment();
+        ThresholdNearCache.Entry entry = SNAPSHOT_ENTRY.get();
+        if (!current.get(hash, entry)) {
+            return null;
+        }
+        snapshotHits.increment();
+        return entry.windowSeconds > 0
+            ? ThresholdRecord.windowed(entry.threshold, entry.alertTimes, entry.windowSeconds, entry.windowBuckets)
+            : ThresholdRecord.of(entry.threshold, entry.alertTimes);
+    }
+
+    /**
+     * @return true while lookups are answered from the snapshot rather than config-store
+     */
+    public boolean isServingSnapshot() {
+        return mode == Mode.SNAPSHOT;
+    }
+
+    /**
+     * Called by ConfigStoreRebuilder once the Bloom filter and near-cache hold
+     * the live store's thresholds.
+     */
+    synchronized void liveStoreReady() {
+        if (mode == Mode.LIVE) {
+            return;
+        }
+        Mode previous = mode;
+        mode = Mode.LIVE;
+        snapshot = null;
+        liveAt = System.currentTimeMillis();
+        if (previous == Mode.SNAPSHOT) {
+            log.info("✅ Switched from snapshot to live config-store ({} snapshot lookups, {} hits)",
+                snapshotLookups.sum(), snapshotHits.sum());
+        }
+        AvailabilityChangeEvent.publish(events, this, ReadinessState.ACCEPTING_TRAFFIC);
+        if (enabled && !writer.isShutdown()) {
+            writer.scheduleWithFixedDelay(this::writeSnapshot, 0, intervalMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Spring Boot reports ready once the context has started; without a
+     * snapshot nothing can be served until config-store is restored.
+     */
+    @EventListener
+    public synchronized void onReadiness(AvailabilityChangeEvent<ReadinessState> event) {
+        if (event.getState() == ReadinessState.ACCEPTING_TRAFFIC && mode == Mode.STARTING) {
+            AvailabilityChangeEvent.publish(events, this, ReadinessState.REFUSING_TRAFFIC);
+        }
+    }
+
+    private void writeSnapshot() {
+        try {
+            KafkaStreams streams = factoryBean.getKafkaStreams();
+            if (streams == null || streams.state() != KafkaStreams.State.RUNNING) {
+                // Rebalancing: the hosted partitions are about to change, try next interval
+                return;
+            }
+            long start = System.currentTimeMillis();
+            int count = 0;
+            if (!streams.metadataForLocalThreads().stream().allMatch(thread -> thread.activeTasks().isEmpty())) {
+                ReadOnlyKeyValueStore<Long, ThresholdRecord> store = streams.store(StoreQueryParameters.fromNameAndType(
+                    AlertTopology.CONFIG_STORE, QueryableStoreTypes.keyValueStore()));
+                try (KeyValueIterator<Long, ThresholdRecord> it = store.all()) {
+                    while (it.hasNext()) {
+                        KeyValue<Long, ThresholdRecord> entry = it.next();
+                        if (count == hashes.length) {
+                            grow();
+                        }
+                        hashes[count] = entry.key;
+                        thresholds[count] = entry.value.threshold();
+                        alertTimes[count] = entry.value.alertTimes();
+                        windowSeconds[count] = entry.value.windowSeconds();
+                        windowBuckets[count] = entry.value.windowBuckets();
+                        count++;
+                    }
+                }
+            }
+            if (count == 0 && entriesOnDisk > 0) {
+                emptyWritesSkipped.increment();
+                log.debug("event=snapshot_skipped reason=empty entries_on_disk={}", entriesOnDisk);
+                return;
+            }
+            ThresholdSnapshot.write(path, hashes, thresholds, alertTimes, windowSeconds, windowBuckets, count, start);
+            entriesOnDisk = count;
+            lastWriteAt = start;
+            lastWriteEntries = count;
+            lastWriteMs = System.currentTimeMillis() - start;
+            log.debug("event=snapshot_written entries={} duration_ms={}", count, lastWriteMs);
+        } catch (Exception e) {
+            // Store migrated mid-scan or disk trouble; the previous snapshot stays in place
+            writeFailures.increment();
+            log.warn("❌ Threshold snapshot write failed: {}", e.getMessage());
+        }
+    }
+
+    private void grow() {
+        int capacity = Math.max(1024, hashes.length * 2);
+        hashes = Arrays.copyOf(hashes, capacity);
+        thresholds = Arrays.copyOf(thresholds, capacity);
+        alertTimes = Arrays.copyOf(alertTimes, capacity);
+        windowSeconds = Arrays.copyOf(windowSeconds, capacity);
+        windowBuckets = Arrays.copyOf(windowBuckets, capacity);
+    }
+
+    public Map<String, Object> stats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        Mode current = mode;
+        stats.put("mode", current.name());
+        stats.put("ready", current != Mode.STARTING);
+        KafkaStreams streams = factoryBean == null ? null : factoryBean.getKafkaStreams();
+        stats.put("streamsState", streams == null ? "NOT_STARTED" : streams.state().name());
+        stats.put("restore", restoreProgress.stats());
+
+        Map<String, Object> snap = new LinkedHashMap<>();
+        snap.put("enabled", enabled);
+        snap.put("path", path.toString());
+        snap.put("loadedEntries", snapshotEntries);
+        snap.put("loadedCreatedAt", snapshotCreatedAt);
+        snap.put("loadMs", snapshotLoadMs);
+        snap.put("lookups", snapshotLookups.sum());
+        snap.put("hits", snapshotHits.sum());
+        snap.put("liveAt", liveAt);
+        snap.put("lastWriteAt", lastWriteAt);
+        snap.put("lastWriteEntries", lastWriteEntries);
+        snap.put("lastWriteMs", lastWriteMs);
+        snap.put("writeFailures", writeFailures.sum());
+        snap.put("emptyWritesSkipped", emptyWritesSkipped.sum());
+        stats.put("snapshot", snap);
+        return stats;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        writer.shutdownNow();
+    }
+}
@@ -0,0 +1,102 @@
+package com.alerts.window;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * ErrorRateWindow - Time-bucketed ring buffer of error counts for one key
+ *
+ * Backs "N errors in the last M seconds" thresholds. The window is split into
+ * a fixed number of buckets; the buffer keeps one int count per bucket plus
+ * the running sum, so adding an event and reading the window sum are O(1)
+ * (buckets that time has moved past are cleared as the head advances, each
+ * at most once per window).
+ *
+ * Stored as a plain byte[] in the window-state store so it is restored from
+ * the changelog like any other value. Layout (big-endian):
+ *   [0..7]   head bucket epoch (timestamp / bucketMillis of the newest bucket)
+ *   [8..15]  sum of all bucket counts
+ *   [16..]   int count per bucket
+ *
+ * 60 buckets take 256 bytes per key.
+ */
+public final class ErrorRateWindow {
+
+    private static final int HEAD_OFFSET = 0;
+    private static final int SUM_OFFSET = 8;
+    private static final int COUNTS_OFFSET = 16;
+
+    private static final VarHandle LONG_BE =
+        MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT_BE =
+        MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    private ErrorRateWindow() {
+    }
+
+    public static int sizeFor(int buckets) {
+        return COUNTS_OFFSET + buckets * Integer.BYTES;
+    }
+
+    public static int bucketsOf(byte[] window) {
+        return (window.length - COUNTS_OFFSET) / Integer.BYTES;
+    }
+
+    public static byte[] create(int buckets) {
+        return new byte[sizeFor(buckets)];
+    }
+
+    public static long sum(byte[] window) {
+        return (long) LONG_BE.get(window, SUM_OFFSET);
+    }
+
+    /**
+     * Add errors observed at timestampMillis and return the sum over the window
+     * ending at the newest bucket.
+     *
+     * Events older than the window are ignored; late events inside the window
+     * land in their own bucket.
+     */
+    public static long add(byte[] window, long timestampMillis, long count, long bucketMillis) {
+        int buckets = bucketsOf(window);
+        long epoch = Math.floorDiv(timestampMillis, bucketMillis);
+        long head = (long) LONG_BE.get(window, HEAD_OFFSET);
+        long sum = (long) LONG_BE.get(window, SUM_OFFSET);
+
+        if (head == 0 && sum == 0) {
+            // Fresh buffer
+            head = epoch;
+        } else if (epoch > head) {
+            long advance = epoch - head;
+            if (advance >= buckets) {
+                java.util.Arrays.fill(window, COUNTS_OFFSET, window.length, (byte) 0);
+                sum = 0;
+            } else {
+                for (long b = head + 1; b <= epoch; b++) {
+                    int idx = countOffset(b, buckets);
+                    sum -= (int) INT_BE.get(window, idx);
+                    INT_BE.set(window, idx, 0);
+                }
+            }
+            head = epoch;
+        } else if (epoch <= head - buckets) {
+            return sum;
+        }
+
+        int idx = countOffset(epoch, buckets);
+        int current = (int) INT_BE.get(window, idx);
+        // Saturate instead of overflowing a bucket
+        long next = Math.min((long) current + Math.max(0, count), Integer.MAX_VALUE);
+        INT_BE.set(window, idx, (int) next);
+        sum += next - current;
+
+        LONG_BE.set(window, HEAD_OFFSET, head);
+        LONG_BE.set(window, SUM_OFFSET, sum);
+        return sum;
+    }
+
+    private static int countOffset(long epoch, int buckets) {
+        return COUNTS_OFFSET + (int) Math.floorMod(epoch, (long) buckets) * Integer.BYTES;
+    }
+}
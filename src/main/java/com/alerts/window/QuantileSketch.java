@@ -0,0 +1,185 @@
+package com.alerts.window;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * QuantileSketch - Decaying, mergeable histogram of one key's error counts
+ *
+ * Backs dynamic thresholds (DynamicThresholds): "alert above p99 of what this
+ * key usually reports". Values are counted in logarithmic buckets - exact up
+ * to 11, then each bucket 25% wider than the one before - so any quantile is
+ * known to within one bucket (at most 25% high) from a fixed 80 buckets.
+ * Counts halve every half-life, so the sketch follows the key's recent
+ * behaviour; halving is applied lazily, when a value of a later half-life
+ * arrives.
+ *
+ * Two sketches of the same key (e.g. kept by different instances) merge by
+ * adding their buckets once both are decayed to the same half-life. Halving
+ * rounds each bucket down, and the two sketches are rounded separately, so a
+ * merged bucket can hold up to one count less per merge than if all values
+ * had been added to one sketch - and an odd count decayed n half-lives at
+ * once keeps floor(c / 2^n), not the c / 2^n a fractional count would. The
+ * merge is approximate in that sense; it never adds counts that were not
+ * seen.
+ *
+ * Stored as a plain byte[] like ErrorRateWindow, so it is restored from a
+ * changelog like any other value. Layout (big-endian):
+ *   [0..7]   decay epoch (timestamp / halfLifeMillis of the newest value)
+ *   [8..15]  sum of all bucket counts
+ *   [16..]   int count per bucket
+ *
+ * 336 bytes per key.
+ */
+public final class QuantileSketch {
+
+    public static final int BUCKETS = 80;
+    public static final int SIZE = 16 + BUCKETS * Integer.BYTES;
+
+    private static final double GAMMA = 1.25;
+    private static final int EPOCH_OFFSET = 0;
+    private static final int COUNT_OFFSET = 8;
+    private static final int COUNTS_OFFSET = 16;
+
+    private static final VarHandle LONG_BE =
+        MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle INT_BE =
+        MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+
+    // Inclusive upper bound of each bucket; bucket 0 holds values <= 0
+    private static final long[] UPPER = new long[BUCKETS];
+
+    static {
+        for (int i = 1; i < BUCKETS - 1; i++) {
+            UPPER[i] = Math.max(UPPER[i - 1] + 1, (long) Math.pow(GAMMA, i));
+        }
+        UPPER[BUCKETS - 1] = Long.MAX_VALUE;
+    }
+
+    private QuantileSketch() {
+    }
+
+    public static byte[] create() {
+        return new byte[SIZE];
+    }
+
+    public static boolean isSketch(byte[] bytes) {
+        return bytes != null && bytes.length == SIZE;
+    }
+
+    /**
+     * Values counted, after decay.
+     */
+    public static long count(byte[] sketch) {
+        return (long) LONG_BE.get(sketch, COUNT_OFFSET);
+    }
+
+    /**
+     * Count value observed at timestampMillis.
+     *
+     * A value from an earlier half-life than the sketch's is counted as if it
+     * were current.
+     */
+    public static void add(byte[] sketch, long timestampMillis, long value, long halfLifeMillis) {
+        long epoch = Math.floorDiv(timestampMillis, halfLifeMillis);
+        long current = (long) LONG_BE.get(sketch, EPOCH_OFFSET);
+        if (current == 0 && count(sketch) == 0) {
+            LONG_BE.set(sketch, EPOCH_OFFSET, epoch);
+        } else if (epoch > current) {
+            decay(sketch, epoch);
+        }
+        int idx = countOffset(bucketOf(value));
+        int bucket = (int) INT_BE.get(sketch, idx);
+        if (bucket < Integer.MAX_VALUE) {
+            INT_BE.set(sketch, idx, bucket + 1);
+            LONG_BE.set(sketch, COUNT_OFFSET, count(sketch) + 1);
+        }
+    }
+
+    /**
+     * Add the values counted in from into into. from is not modified.
+     */
+    public static void merge(byte[] into, byte[] from) {
+        long fromCount = count(from);
+        if (fromCount == 0) {
+            return;
+        }
+        long intoEpoch = (long) LONG_BE.get(into, EPOCH_OFFSET);
+        long fromEpoch = (long) LONG_BE.get(from, EPOCH_OFFSET);
+        if (count(into) == 0) {
+            System.arraycopy(from, 0, into, 0, SIZE);
+            return;
+        }
+        if (fromEpoch > intoEpoch) {
+            decay(into, fromEpoch);
+            intoEpoch = fromEpoch;
+        }
+        long shift = intoEpoch - fromEpoch;
+        if (shift >= Integer.SIZE - 1) {
+            return;
+        }
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            int idx = countOffset(i);
+            long merged = Math.min((long) (int) INT_BE.get(into, idx) + ((int) INT_BE.get(from, idx) >>> shift),
+                Integer.MAX_VALUE);
+            INT_BE.set(into, idx, (int) merged);
+            total += merged;
+        }
+        LONG_BE.set(into, COUNT_OFFSET, total);
+    }
+
+    /**
+     * Value at quantile q (0..1): the upper bound of the bucket holding it,
+     * so at most 25% above the exact value. -1 for an empty sketch.
+     */
+    public static long quantile(byte[] sketch, double q) {
+        long count = count(sketch);
+        if (count == 0) {
+            return -1;
+        }
+        long rank = Math.max(1, (long) Math.ceil(q * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += (int) INT_BE.get(sketch, countOffset(i));
+            if (seen >= rank) {
+                return i == BUCKETS - 1 ? (long) (UPPER[BUCKETS - 2] * GAMMA) : UPPER[i];
+            }
+        }
+        return UPPER[BUCKETS - 2];
+    }
+
+    /**
+     * Halve all counts once per half-life between the sketch's epoch and epoch.
+     */
+    private static void decay(byte[] sketch, long epoch) {
+        long shift = epoch - (long) LONG_BE.get(sketch, EPOCH_OFFSET);
+        LONG_BE.set(sketch, EPOCH_OFFSET, epoch);
+        if (shift >= Integer.SIZE - 1) {
+            Arrays.fill(sketch, COUNT_OFFSET, SIZE, (byte) 0);
+            return;
+        }
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            int idx = countOffset(i);
+            int decayed = (int) INT_BE.get(sketch, idx) >>> shift;
+            INT_BE.set(sketch, idx, decayed);
+            total += decayed;
+        }
+        LONG_BE.set(sketch, COUNT_OFFSET, total);
+    }
+
+    static int bucketOf(long value) {
+        if (value <= 0) {
+            return 0;
+        }
+        int idx = Arrays.binarySearch(UPPER, value);
+        return idx >= 0 ? idx : -idx - 1;
+    }
+
+    private static int countOffset(int bucket) {
+        return COUNTS_OFFSET + bucket * Integer.BYTES;
+    }
+}
@@ -0,0 +1,91 @@
+package com.alerts;
+
+import com.alerts.cache.ThresholdHierarchy;
+import com.alerts.cache.ThresholdNearCache;
+import com.alerts.dynamic.DynamicThresholds;
+import com.alerts.hashing.Sha256KeyHasher;
+import com.alerts.metrics.AlertMetrics;
+import com.alerts.publish.AlertPublisher;
+import com.alerts.publish.AlertSuppressor;
+import com.alerts.publish.BackpressurePolicy;
+import com.alerts.service.BloomFilterService;
+import com.alerts.streams.AlertTopology;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.springframework.kafka.core.KafkaTemplate;
+
+/**
+ * AlertFixtures - Alerting components for tests, wired without Spring or a broker
+ *
+ * Producers are MockProducers without serializers: tests read what the
+ * publisher queued or the topology emitted, never the produced bytes.
+ */
+public final class AlertFixtures {
+
+    /**
+     * Components an AlertTopology or AlertProcessingService is built from;
+     * close() stops their threads.
+     */
+    public static final class Components implements AutoCloseable {
+        public final AlertMetrics metrics;
+        public final AlertPublisher publisher;
+        public final AlertSuppressor suppressor;
+        public final DynamicThresholds dynamicThresholds;
+        public final BloomFilterService bloomFilter;
+        public final ThresholdHierarchy hierarchy;
+
+        Components(boolean suppression) {
+            metrics = metrics();
+            publisher = publisher(metrics);
+            suppressor = new AlertSuppressor(publisher, suppression, 60000, 3600000, 2, 0, 1024, 60000);
+            dynamicThresholds = dynamicThresholds(metrics);
+            bloomFilter = new BloomFilterService(1000, 0.01);
+            hierarchy = new ThresholdHierarchy(Sha256KeyHasher.INSTANCE, 16, 16);
+        }
+
+        public AlertTopology topology(AlertTopology.Options options, ThresholdNearCache nearCache) {
+            return new AlertTopology(options, nearCache, suppressor, bloomFilter, metrics, hierarchy,
+                dynamicThresholds);
+        }
+
+        @Override
+        public void close() {
+            suppressor.shutdown();
+            publisher.shutdown();
+            dynamicThresholds.shutdown();
+        }
+    }
+
+    private AlertFixtures() {
+    }
+
+    /**
+     * Components with stream-mode suppression on or off.
+     */
+    public static Components components(boolean suppression) {
+        return new Components(suppression);
+    }
+
+    /**
+     * Same sampling as the application defaults.
+     */
+    public static AlertMetrics metrics() {
+        return new AlertMetrics(new SimpleMeterRegistry(), 16, 1000);
+    }
+
+    /**
+     * One worker, a small queue, COALESCE backpressure.
+     */
+    public static AlertPublisher publisher(AlertMetrics metrics) {
+        return new AlertPublisher(new KafkaTemplate<>(() -> new MockProducer<>(true, null, null)), metrics, 1, 1024,
+            100, BackpressurePolicy.COALESCE, 1000);
+    }
+
+    /**
+     * Disabled: every key is evaluated against its configured threshold.
+     */
+    public static DynamicThresholds dynamicThresholds(AlertMetrics metrics) {
+        return new DynamicThresholds(new KafkaTemplate<>(() -> new MockProducer<>(true, null, null)), metrics,
+            DynamicThresholds.Settings.defaults().withMaxKeys(1024));
+    }
+}
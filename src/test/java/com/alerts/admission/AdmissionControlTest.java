@@ -0,0 +1,139 @@
+package com.alerts.admission;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AdmissionControlTest {
+
+    private static final long T0 = TimeUnit.SECONDS.toNanos(1000);
+    private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private AdmissionControl admission;
+
+    /** 10 events/s, bursts of 5; the adaptive controller never runs during a test */
+    private AdmissionControl start(String tenantLimits, int maxTenants) {
+        admission = new AdmissionControl(null, true, 10, 5, tenantLimits, maxTenants, 0, 50, 0.5, 0.1, 3_600_000);
+        return admission;
+    }
+
+    @AfterEach
+    void tearDown() {
+        admission.shutdown();
+    }
+
+    @Test
+    void burstIsAdmittedThenOneEventPerEmissionInterval() {
+        start("", 16);
+        for (int i = 0; i < 5; i++) {
+            assertThat(admission.admit("p;tenant_a;t;i", T0).admitted()).isTrue();
+        }
+        AdmissionControl.Decision rejected = admission.admit("p;tenant_a;t;i", T0);
+        assertThat(rejected.admitted()).isFalse();
+        assertThat(rejected.reason()).isEqualTo("tenant_rate_limited");
+        assertThat(rejected.tenant()).isEqualTo("tenant_a");
+        // The next token is one emission interval (100ms) away
+        assertThat(rejected.retryAfterMillis()).isEqualTo(101);
+        assertThat(rejected.retryAfterSeconds()).isEqualTo(1);
+
+        assertThat(admission.admit("p;tenant_a;t;i", T0 + 99 * MILLIS).admitted()).isFalse();
+        assertThat(admission.admit("p;tenant_a;t;i", T0 + 100 * MILLIS).admitted()).isTrue();
+        assertThat(admission.admit("p;tenant_a;t;i", T0 + 100 * MILLIS).admitted()).isFalse();
+    }
+
+    @Test
+    void idleBucketRefillsToTheBurstOnly() {
+        start("", 16);
+        for (int i = 0; i < 5; i++) {
+            admission.admit("p;tenant_a;t;i", T0);
+        }
+        long later = T0 + TimeUnit.SECONDS.toNanos(60);
+        int admitted = 0;
+        for (int i = 0; i < 20; i++) {
+            if (admission.admit("p;tenant_a;t;i", later).admitted()) {
+                admitted++;
+            }
+        }
+        assertThat(admitted).isEqualTo(5);
+    }
+
+    @Test
+    void tenantsHaveSeparateBucketsAndOverrides() {
+        start("tenant_b:2:1", 16);
+        for (int i = 0; i < 5; i++) {
+            admission.admit("p;tenant_a;t;i", T0);
+        }
+        assertThat(admission.admit("p;tenant_a;t;i", T0).admitted()).isFalse();
+
+        // tenant_b: 2/s, burst 1
+        assertThat(admission.admit("q;tenant_b;t;i", T0).admitted()).isTrue();
+        AdmissionControl.Decision rejected = admission.admit("q;tenant_b;t;i", T0);
+        assertThat(rejected.admitted()).isFalse();
+        assertThat(rejected.retryAfterMillis()).isEqualTo(501);
+        assertThat(admission.admit("q;tenant_b;t;i", T0 + 500 * MILLIS).admitted()).isTrue();
+
+        // Keys without a tenant segment share one bucket
+        assertThat(admission.admit(null, T0).admitted()).isTrue();
+        assertThat(admission.stats().get("tenants")).isEqualTo(3);
+    }
+
+    @Test
+    void idleTenantsAreEvictedSoNewTenantsGetTheirOwnBucket() {
+        // 16 slots
+        start("", 16);
+        for (int i = 0; i < 16; i++) {
+            assertThat(admission.admit("p;tenant_" + i + ";t;i", T0).admitted()).isTrue();
+        }
+        assertThat(exhaust("p;newcomer;t;i", T0).tenant()).isEqualTo("(overflow)");
+
+        // Not idle yet: the burst window (500ms) has not passed since the buckets refilled
+        assertThat(admission.evictIdle(T0 + 400 * MILLIS)).isZero();
+        assertThat(admission.evictIdle(T0 + TimeUnit.SECONDS.toNanos(2))).isEqualTo(16);
+        assertThat(admission.stats().get("tenants")).isEqualTo(0);
+
+        long later = T0 + TimeUnit.SECONDS.toNanos(2);
+        assertThat(exhaust("p;newcomer;t;i", later).tenant()).isEqualTo("newcomer");
+        assertThat(admission.admit("p;tenant_3;t;i", later).admitted()).isTrue();
+        assertThat(admission.stats().get("tenants")).isEqualTo(2);
+    }
+
+    @Test
+    void activeTenantsAreNotEvicted() {
+        start("", 16);
+        exhaust("p;tenant_a;t;i", T0);
+        // Bucket empty: its tat is 500ms ahead of T0
+        assertThat(admission.evictIdle(T0 + TimeUnit.SECONDS.toNanos(1))).isZero();
+        assertThat(admission.admit("p;tenant_a;t;i", T0).admitted()).isFalse();
+    }
+
+    @Test
+    void bulkEventsShareTheTenantBucketWithRequests() {
+        start("", 16);
+        for (int i = 0; i < 3; i++) {
+            assertThat(admission.admit("p;tenant_a;t;i", T0).admitted()).isTrue();
+        }
+        // Batch entries and ingest events hand over CharSequences, not Strings
+        StringBuilder key = new StringBuilder("q;tenant_a;t;j");
+        assertThat(admission.admitEvent(key, T0).admitted()).isTrue();
+        assertThat(admission.admitEvent(key, T0).admitted()).isTrue();
+        AdmissionControl.Decision rejected = admission.admitEvent(key, T0);
+        assertThat(rejected.admitted()).isFalse();
+        assertThat(rejected.tenant()).isEqualTo("tenant_a");
+        assertThat(admission.admit("p;tenant_a;t;i", T0).admitted()).isFalse();
+        assertThat(admission.admitEvent("p;tenant_b;t;i", T0).admitted()).isTrue();
+    }
+
+    /** Admit until rejected and return the rejection */
+    private AdmissionControl.Decision exhaust(String key, long now) {
+        for (int i = 0; i < 100; i++) {
+            AdmissionControl.Decision decision = admission.admit(key, now);
+            if (!decision.admitted()) {
+                return decision;
+            }
+        }
+        throw new AssertionError("never rate limited");
+    }
+}
@@ -0,0 +1,84 @@
+package com.alerts.bloom;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ScalableBloomFilterTest {
+
+    private static final double FP_RATE = 0.01;
+    private static final long ABSENT = 1L << 40;
+
+    @Test
+    void falsePositiveRateStaysBelowTheTargetAfterGrowth() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(1000, FP_RATE);
+        for (long key = 0; key < 50_000; key++) {
+            filter.put(key);
+        }
+        // 1000 + 2000 + ... + 32000 >= 50000
+        assertThat(filter.segmentCount()).isEqualTo(6);
+        assertThat(filter.capacity()).isEqualTo(63_000);
+
+        for (long key = 0; key < 50_000; key++) {
+            assertThat(filter.mightContain(key)).as("key %d", key).isTrue();
+        }
+        assertThat(measuredFpRate(filter, 200_000)).isLessThan(FP_RATE);
+        assertThat(filter.estimatedFpRate()).isLessThan(FP_RATE);
+    }
+
+    @Test
+    void withoutGrowthTheFirstSegmentMeetsHalfTheTarget() {
+        ScalableBloomFilter filter = new ScalableBloomFilter(10_000, FP_RATE);
+        for (long key = 0; key < 10_000; key++) {
+            filter.put(key);
+        }
+        assertThat(filter.segmentCount()).isEqualTo(1);
+        // The first segment is sized for FP_RATE * (1 - TIGHTENING); allow for sampling noise
+        assertThat(measuredFpRate(filter, 200_000)).isLessThan(FP_RATE * 0.5 * 1.2);
+    }
+
+    @Test
+    void concurrentInsertsLoseNoKeys() throws InterruptedException {
+        ScalableBloomFilter filter = new ScalableBloomFilter(100, FP_RATE);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            long first = t * 10_000L;
+            threads.add(new Thread(() -> {
+                for (long key = first; key < first + 10_000; key++) {
+                    filter.put(key);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        for (long key = 0; key < 40_000; key++) {
+            assertThat(filter.mightContain(key)).as("key %d", key).isTrue();
+        }
+        assertThat(filter.segmentCount()).isGreaterThan(1);
+        assertThat(measuredFpRate(filter, 200_000)).isLessThan(FP_RATE);
+    }
+
+    @Test
+    void rejectsFalsePositiveRatesOutsideZeroToOne() {
+        assertThatThrownBy(() -> new ScalableBloomFilter(1000, 0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new ScalableBloomFilter(1000, 1)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    /** Share of never inserted keys the filter reports */
+    private static double measuredFpRate(ScalableBloomFilter filter, int probes) {
+        int positives = 0;
+        for (long key = ABSENT; key < ABSENT + probes; key++) {
+            if (filter.mightContain(key)) {
+                positives++;
+            }
+        }
+        return (double) positives / probes;
+    }
+}
@@ -0,0 +1,121 @@
+package com.alerts.cache;
+
+import com.alerts.hashing.KeyHasher;
+import com.alerts.hashing.Sha256KeyHasher;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ThresholdHierarchyTest {
+
+    private static final String KEY = "property_7;tenant_0;type_error;interface_api";
+
+    private final ThresholdNearCache.Entry entry = new ThresholdNearCache.Entry();
+    private Runnable onHash = () -> { };
+
+    /** Sha256KeyHasher that runs onHash before hashing a key with a wildcard */
+    private final KeyHasher hasher = new KeyHasher() {
+        @Override
+        public long hash(CharSequence compositeKey) {
+            if (ThresholdHierarchy.hasWildcard(compositeKey)) {
+                Runnable hook = onHash;
+                onHash = () -> { };
+                hook.run();
+            }
+            return Sha256KeyHasher.INSTANCE.hash(compositeKey);
+        }
+
+        @Override
+        public long hash(byte[] utf8, int offset, int length) {
+            return Sha256KeyHasher.INSTANCE.hash(utf8, offset, length);
+        }
+
+        @Override
+        public String name() {
+            return "test";
+        }
+    };
+
+    private final ThresholdHierarchy hierarchy = new ThresholdHierarchy(hasher, 64, 64);
+
+    @Test
+    void fewerWildcardsThenPropertyInterfaceTypeTenant() {
+        assertThat(ThresholdHierarchy.RESOLUTION_ORDER).startsWith(
+            ThresholdHierarchy.TENANT, ThresholdHierarchy.TYPE, ThresholdHierarchy.INTERFACE,
+            ThresholdHierarchy.PROPERTY);
+        assertThat(ThresholdHierarchy.RESOLUTION_ORDER).endsWith(
+            ThresholdHierarchy.PROPERTY | ThresholdHierarchy.TENANT | ThresholdHierarchy.TYPE
+                | ThresholdHierarchy.INTERFACE);
+
+        hierarchy.put("*;*;*;*", 10);
+        hierarchy.put("property_7;*;*;*", 20);
+        hierarchy.put("*;tenant_0;type_error;interface_api", 30);
+        hierarchy.put("property_7;tenant_0;*;interface_api", 40);
+        hierarchy.put("property_7;*;type_error;interface_api", 50);
+
+        assertThat(resolve(KEY)).isEqualTo(50);
+        hierarchy.remove("property_7;*;type_error;interface_api");
+        assertThat(resolve(KEY)).isEqualTo(40);
+        hierarchy.remove("property_7;tenant_0;*;interface_api");
+        // One wildcard beats three, even over the property
+        assertThat(resolve(KEY)).isEqualTo(30);
+        hierarchy.remove("*;tenant_0;type_error;interface_api");
+        assertThat(resolve(KEY)).isEqualTo(20);
+        hierarchy.remove("property_7;*;*;*");
+        assertThat(resolve(KEY)).isEqualTo(10);
+        assertThat(resolve("property_8;tenant_1;type_warn;interface_db")).isEqualTo(10);
+    }
+
+    @Test
+    void resolutionsAreCachedUntilTheDefaultsChange() {
+        hierarchy.put("*;tenant_0;*;*", 30);
+        assertThat(resolve(KEY)).isEqualTo(30);
+        assertThat(resolve(KEY)).isEqualTo(30);
+        assertThat(hierarchy.stats().get("cacheHits")).isEqualTo(1L);
+        // A cached resolution needs only the hash
+        assertThat(hierarchy.resolve(hash(KEY), null, entry)).isTrue();
+
+        // "No default" is cached too
+        String other = "property_7;tenant_1;type_error;interface_api";
+        assertThat(resolve(other)).isEqualTo(-1);
+        assertThat(hierarchy.resolve(hash(other), null, entry)).isFalse();
+        assertThat(hierarchy.stats().get("cacheHits")).isEqualTo(3L);
+
+        hierarchy.put("*;tenant_1;*;*", 60);
+        assertThat(resolve(other)).isEqualTo(60);
+        hierarchy.put("property_7;tenant_0;*;*", 40);
+        assertThat(resolve(KEY)).isEqualTo(40);
+        assertThat(hierarchy.stats().get("cacheHits")).isEqualTo(3L);
+    }
+
+    @Test
+    void resolutionRacingADefaultChangeIsNotCached() {
+        hierarchy.put("*;tenant_0;*;*", 30);
+        // The first level lookup of the next resolve sees a more specific default arrive
+        onHash = () -> hierarchy.put("property_7;tenant_0;type_error;*", 70);
+
+        assertThat(resolve(KEY)).isEqualTo(30);
+        // Not served from the cache: resolved again against the current defaults
+        assertThat(hierarchy.resolve(hash(KEY), null, entry)).isFalse();
+        assertThat(resolve(KEY)).isEqualTo(70);
+        assertThat(hierarchy.stats().get("cacheHits")).isEqualTo(0L);
+    }
+
+    @Test
+    void onlyWildcardKeysWithFourComponentsAreDefaults() {
+        assertThat(hierarchy.put(KEY, 10)).isFalse();
+        assertThat(hierarchy.put("*;tenant_0;*", 10)).isFalse();
+        assertThat(hierarchy.isEmpty()).isTrue();
+        assertThat(hierarchy.stats().get("rejected")).isEqualTo(2L);
+        assertThat(resolve(KEY)).isEqualTo(-1);
+    }
+
+    /** Resolved threshold, -1 if no default applies */
+    private long resolve(String key) {
+        return hierarchy.resolve(hash(key), key, entry) ? entry.threshold : -1;
+    }
+
+    private static long hash(String key) {
+        return Sha256KeyHasher.INSTANCE.hash(key);
+    }
+}
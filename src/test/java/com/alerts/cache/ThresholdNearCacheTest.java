@@ -0,0 +1,109 @@
+package com.alerts.cache;
+
+import com.alerts.model.ThresholdRecord;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ThresholdNearCacheTest {
+
+    private final ThresholdNearCache.Entry entry = new ThresholdNearCache.Entry();
+
+    @Test
+    void streamWritesWinOverStoreFills() {
+        ThresholdNearCache cache = new ThresholdNearCache(true, 1000);
+        assertThat(cache.get(1, entry)).isEqualTo(ThresholdNearCache.MISS);
+
+        cache.put(1, 50, 2);
+        cache.fillFromStore(1, 10, 0, cache.fillStamp());
+        assertThat(cache.get(1, entry)).isEqualTo(ThresholdNearCache.HIT);
+        assertThat(entry.threshold).isEqualTo(50);
+        assertThat(entry.alertTimes).isEqualTo(2);
+
+        cache.remove(1);
+        cache.fillFromStore(1, 50, 2, cache.fillStamp());
+        assertThat(cache.get(1, entry)).isEqualTo(ThresholdNearCache.REMOVED);
+    }
+
+    @Test
+    void windowDefinitionSurvivesGrowth() {
+        ThresholdNearCache cache = new ThresholdNearCache(true, 100_000);
+        cache.put(1, ThresholdRecord.windowed(100, 3, 60, 6));
+        cache.fillFromStore(2, ThresholdRecord.of(50, 0), cache.fillStamp());
+        for (long key = 3; key < 5000; key++) {
+            cache.put(key, key, 0);
+        }
+
+        assertThat(cache.get(1, entry)).isEqualTo(ThresholdNearCache.HIT);
+        assertThat(entry.threshold).isEqualTo(100);
+        assertThat(entry.windowSeconds).isEqualTo(60);
+        assertThat(entry.windowBuckets).isEqualTo(6);
+        assertThat(cache.get(2, entry)).isEqualTo(ThresholdNearCache.HIT);
+        assertThat(entry.windowSeconds).isZero();
+        assertThat(entry.windowBuckets).isZero();
+    }
+
+    @Test
+    void tombstonesSurviveGrowth() {
+        ThresholdNearCache cache = new ThresholdNearCache(true, 100_000);
+        cache.put(1, 50, 0);
+        // A store read for key 1 starts before the delete...
+        long stamp = cache.fillStamp();
+        cache.remove(1);
+        // ...and the table grows several times before it completes
+        for (long key = 2; key < 5000; key++) {
+            cache.put(key, key, 0);
+        }
+        assertThat((int) cache.stats().get("capacity")).isGreaterThan(1024);
+
+        cache.fillFromStore(1, 50, 0, stamp);
+        assertThat(cache.get(1, entry)).isEqualTo(ThresholdNearCache.REMOVED);
+        assertThat(cache.get(4999, entry)).isEqualTo(ThresholdNearCache.HIT);
+        assertThat(entry.threshold).isEqualTo(4999);
+    }
+
+    @Test
+    void fillsOlderThanACompactionAreDiscarded() {
+        // 16 entries: a 32-slot table that compacts instead of growing
+        ThresholdNearCache cache = new ThresholdNearCache(true, 16);
+        for (long key = 1; key <= 16; key++) {
+            cache.put(key, 50, 0);
+        }
+        long stamp = cache.fillStamp();
+        for (long key = 1; key <= 16; key++) {
+            cache.remove(key);
+        }
+        // Needs room: the tombstones of 1..16 are compacted away
+        cache.put(100, 70, 0);
+        assertThat(cache.stats().get("tombstones")).isEqualTo(0);
+        assertThat(cache.stats().get("capacity")).isEqualTo(32);
+
+        cache.fillFromStore(1, 50, 0, stamp);
+        assertThat(cache.get(1, entry)).isEqualTo(ThresholdNearCache.MISS);
+        assertThat(cache.stats().get("staleFills")).isEqualTo(1L);
+
+        cache.fillFromStore(2, 60, 0, cache.fillStamp());
+        assertThat(cache.get(2, entry)).isEqualTo(ThresholdNearCache.HIT);
+        assertThat(entry.threshold).isEqualTo(60);
+    }
+
+    @Test
+    void clearDiscardsFillsStartedBeforeIt() {
+        ThresholdNearCache cache = new ThresholdNearCache(true, 1000);
+        long stamp = cache.fillStamp();
+        cache.clear();
+        cache.fillFromStore(1, 50, 0, stamp);
+        assertThat(cache.get(1, entry)).isEqualTo(ThresholdNearCache.MISS);
+    }
+
+    @Test
+    void fullCacheRejectsNewKeys() {
+        ThresholdNearCache cache = new ThresholdNearCache(true, 16);
+        for (long key = 1; key <= 20; key++) {
+            cache.put(key, key, 0);
+        }
+        assertThat(cache.stats().get("entries")).isEqualTo(16);
+        assertThat(cache.stats().get("rejected")).isEqualTo(4L);
+        assertThat(cache.get(20, entry)).isEqualTo(ThresholdNearCache.MISS);
+    }
+}
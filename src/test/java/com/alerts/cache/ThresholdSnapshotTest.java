@@ -0,0 +1,128 @@
+package com.alerts.cache;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ThresholdSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    private final ThresholdNearCache.Entry entry = new ThresholdNearCache.Entry();
+
+    @Test
+    void writtenEntriesAreReadFromTheMapping() throws IOException {
+        Path path = directory.resolve("snap/thresholds.snap");
+        int count = 1000;
+        long[] hashes = new long[count];
+        long[] thresholds = new long[count];
+        long[] alertTimes = new long[count];
+        int[] windowSeconds = new int[count];
+        int[] windowBuckets = new int[count];
+        for (int i = 0; i < count; i++) {
+            hashes[i] = i * 0x9E3779B97F4A7C15L;
+            thresholds[i] = 100 + i;
+            alertTimes[i] = i % 7;
+            if (i % 10 == 0) {
+                windowSeconds[i] = 300;
+                windowBuckets[i] = 30;
+            }
+        }
+        // A later entry of the same hash replaces the earlier one; negative thresholds are skipped
+        hashes[999] = hashes[5];
+        thresholds[998] = -1;
+
+        ThresholdSnapshot.write(path, hashes, thresholds, alertTimes, windowSeconds, windowBuckets, count, 1234L);
+        ThresholdSnapshot snapshot = ThresholdSnapshot.open(path);
+
+        assertThat(snapshot.entries()).isEqualTo(count - 2);
+        assertThat(snapshot.createdAt()).isEqualTo(1234L);
+        assertThat(snapshot.get(hashes[10], entry)).isTrue();
+        assertThat(entry.threshold).isEqualTo(110);
+        assertThat(entry.alertTimes).isEqualTo(3);
+        assertThat(entry.windowSeconds).isEqualTo(300);
+        assertThat(entry.windowBuckets).isEqualTo(30);
+        assertThat(snapshot.get(hashes[5], entry)).isTrue();
+        assertThat(entry.threshold).isEqualTo(1099);
+        assertThat(snapshot.get(hashes[998], entry)).isFalse();
+        assertThat(snapshot.get(42, entry)).isFalse();
+
+        List<Long> visited = new ArrayList<>();
+        snapshot.forEach((hash, threshold, times, seconds, buckets) -> visited.add(hash));
+        assertThat(visited).hasSize(count - 2).doesNotHaveDuplicates();
+        assertThat(Files.exists(path.resolveSibling("thresholds.snap.tmp"))).isFalse();
+    }
+
+    @Test
+    void missingFileIsNoSnapshot() throws IOException {
+        assertThat(ThresholdSnapshot.open(directory.resolve("none.snap"))).isNull();
+    }
+
+    @Test
+    void emptySnapshotHasNoEntries() throws IOException {
+        Path path = directory.resolve("empty.snap");
+        ThresholdSnapshot.write(path, new long[0], new long[0], new long[0], new int[0], new int[0], 0, 1L);
+
+        ThresholdSnapshot snapshot = ThresholdSnapshot.open(path);
+        assertThat(snapshot.entries()).isZero();
+        assertThat(snapshot.get(7, entry)).isFalse();
+    }
+
+    @Test
+    void truncatedAndForeignFilesAreRejected() throws IOException {
+        Path path = directory.resolve("thresholds.snap");
+        ThresholdSnapshot.write(path, new long[] {1, 2}, new long[] {10, 20}, new long[2], new int[2], new int[2],
+            2, 1L);
+        byte[] valid = Files.readAllBytes(path);
+
+        // Cut inside the header
+        Files.write(path, Arrays.copyOf(valid, 16));
+        assertThatThrownBy(() -> ThresholdSnapshot.open(path)).isInstanceOf(IOException.class)
+            .hasMessageContaining("Truncated");
+
+        // Cut inside the slots
+        Files.write(path, Arrays.copyOf(valid, valid.length - 8));
+        assertThatThrownBy(() -> ThresholdSnapshot.open(path)).isInstanceOf(IOException.class)
+            .hasMessageContaining("size");
+
+        Files.write(path, new byte[valid.length]);
+        assertThatThrownBy(() -> ThresholdSnapshot.open(path)).isInstanceOf(IOException.class)
+            .hasMessageContaining("Not a threshold snapshot");
+    }
+
+    @Test
+    void otherVersionsAndBadCapacitiesAreRejected() throws IOException {
+        Path path = directory.resolve("thresholds.snap");
+        ThresholdSnapshot.write(path, new long[] {1}, new long[] {10}, new long[1], new int[1], new int[1], 1, 1L);
+
+        // Version 1 (no window fields)
+        patchInt(path, 4, 1);
+        assertThatThrownBy(() -> ThresholdSnapshot.open(path)).isInstanceOf(IOException.class)
+            .hasMessageContaining("version");
+
+        patchInt(path, 4, 2);
+        assertThat(ThresholdSnapshot.open(path)).isNotNull();
+        patchInt(path, 16, 24);
+        assertThatThrownBy(() -> ThresholdSnapshot.open(path)).isInstanceOf(IOException.class)
+            .hasMessageContaining("header");
+    }
+
+    private static void patchInt(Path path, int offset, int value) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.allocate(4).putInt(0, value), offset);
+        }
+    }
+}
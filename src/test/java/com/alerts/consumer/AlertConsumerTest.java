@@ -0,0 +1,47 @@
+package com.alerts.consumer;
+
+import com.alerts.metrics.AlertMetrics;
+import com.alerts.model.AlertEvent;
+import com.alerts.notify.NotificationDispatcher;
+import com.alerts.notify.NotificationSink;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AlertConsumerTest {
+
+    private final NotificationDispatcher dispatcher = new NotificationDispatcher(
+        new StaticListableBeanFactory().getBeanProvider(NotificationSink.class),
+        16, 1, 0, 1, 1, 1);
+
+    @AfterEach
+    void tearDown() {
+        dispatcher.shutdown();
+    }
+
+    @Test
+    void everyAlertIsCountedWhateverTheLogSampling() {
+        // One log line in a billion: practically nothing is logged
+        AlertConsumer consumer = new AlertConsumer(new AlertMetrics(new SimpleMeterRegistry(), 16, 1_000_000_000),
+            dispatcher);
+        List<ConsumerRecord<Long, AlertEvent>> records = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            AlertEvent alert = i % 4 == 0 ? null : new AlertEvent(i, 60, 50, 1, 0, 1_700_000_000_000L);
+            records.add(new ConsumerRecord<>("eagle-eye.alerts", 0, i, null, alert));
+        }
+
+        consumer.listen(records);
+        consumer.listen(records.subList(0, 10));
+
+        assertThat(consumer.stats().get("received")).isEqualTo(75L + 7);
+        assertThat(consumer.stats().get("unparsable")).isEqualTo(25L + 3);
+        assertThat(consumer.stats().get("batches")).isEqualTo(2L);
+    }
+}
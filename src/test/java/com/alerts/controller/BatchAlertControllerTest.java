@@ -0,0 +1,224 @@
+package com.alerts.controller;
+
+import com.alerts.admission.AdmissionControl;
+import com.alerts.hashing.Sha256KeyHasher;
+import com.alerts.metrics.AlertMetrics;
+import com.alerts.service.AlertProcessingService;
+import com.alerts.service.BatchAlertService;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The batch endpoint over a stub evaluation: errorCount >= 100 breaches a
+ * threshold of 100, 0 has no threshold, the key "fatal" fails its worker.
+ */
+class BatchAlertControllerTest {
+
+    private static final String NDJSON = "application/x-ndjson";
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final AlertMetrics metrics = new AlertMetrics(new SimpleMeterRegistry(), 16, 1000);
+    private final List<AdmissionControl> admissions = new ArrayList<>();
+    private final List<BatchAlertService> services = new ArrayList<>();
+
+    private final AlertProcessingService evaluation = new AlertProcessingService(null, null, null, null,
+            Sha256KeyHasher.INSTANCE, null, null, null, null, null, null, null, metrics, "rest") {
+        @Override
+        public AlertResult processAlert(long hash, CharSequence key, long errorCount) {
+            if ("fatal".contentEquals(key)) {
+                throw new AssertionError("worker died");
+            }
+            if (errorCount == 0) {
+                return AlertResult.noThreshold(errorCount);
+            }
+            return errorCount >= 100 ? AlertResult.thresholdBreached(100, 1)
+                : AlertResult.belowThreshold(errorCount, 100);
+        }
+    };
+
+    @AfterEach
+    void tearDown() {
+        services.forEach(BatchAlertService::shutdown);
+        admissions.forEach(AdmissionControl::shutdown);
+    }
+
+    private BatchAlertController controller(int chunkSize, double tenantBurst) {
+        AdmissionControl admission = new AdmissionControl(null, true, 1, tenantBurst, "", 64, 0, 50, 0.5, 0.1,
+            3_600_000);
+        admissions.add(admission);
+        BatchAlertService service = new BatchAlertService(evaluation, Sha256KeyHasher.INSTANCE, metrics, admission,
+            chunkSize, 2);
+        services.add(service);
+        return new BatchAlertController(service, mapper);
+    }
+
+    @Test
+    void jsonArrayResultsComeBackInInputOrder() throws IOException {
+        MockHttpServletResponse response = post(controller(2, 1000), "application/json",
+            "[{\"key\":\"p;t;a;i\",\"errorCount\":150},{\"key\":\"p;t;b;i\",\"errorCount\":\"75\"},"
+                + "{\"key\":\"p;t;c;i\",\"errorCount\":0}]");
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        JsonNode body = mapper.readTree(response.getContentAsByteArray());
+        JsonNode results = body.get("results");
+        assertThat(results).hasSize(3);
+        assertThat(results.get(0).get("key").asText()).isEqualTo("p;t;a;i");
+        assertThat(results.get(0).get("status").asText()).isEqualTo("alert_triggered");
+        assertThat(results.get(0).get("threshold").asLong()).isEqualTo(100);
+        assertThat(results.get(1).get("status").asText()).isEqualTo("below_threshold");
+        assertThat(results.get(1).get("errorCount").asLong()).isEqualTo(75);
+        assertThat(results.get(2).get("status").asText()).isEqualTo("no_threshold");
+
+        JsonNode summary = body.get("summary");
+        assertThat(summary.get("total").asLong()).isEqualTo(3);
+        assertThat(summary.get("breached").asLong()).isEqualTo(1);
+        assertThat(summary.get("below").asLong()).isEqualTo(1);
+        assertThat(summary.get("noThreshold").asLong()).isEqualTo(1);
+        assertThat(summary.has("error")).isFalse();
+    }
+
+    @Test
+    void ndjsonGetsOneResultPerLineThenTheSummary() throws IOException {
+        MockHttpServletResponse response = post(controller(2, 1000), NDJSON,
+            "{\"key\":\"p;t;a;i\",\"errorCount\":150}\n{\"key\":\"p;t;b;i\",\"errorCount\":5}\n"
+                + "{\"key\":\"p;t;c;i\",\"errorCount\":500}\n");
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        assertThat(response.getContentType()).isEqualTo(NDJSON);
+        List<JsonNode> lines = lines(response);
+        assertThat(lines).hasSize(4);
+        assertThat(lines.get(0).get("status").asText()).isEqualTo("alert_triggered");
+        assertThat(lines.get(1).get("status").asText()).isEqualTo("below_threshold");
+        assertThat(lines.get(2).get("key").asText()).isEqualTo("p;t;c;i");
+        assertThat(lines.get(3).get("summary").get("total").asLong()).isEqualTo(3);
+        assertThat(lines.get(3).get("summary").get("breached").asLong()).isEqualTo(2);
+    }
+
+    @Test
+    void invalidEntriesAreReportedWithoutFailingTheBatch() throws IOException {
+        MockHttpServletResponse response = post(controller(16, 1000), "application/json",
+            "[{\"errorCount\":1},{\"key\":\"p;t;a;i\",\"errorCount\":\"many\"},{\"key\":\"p;t;b;i\"},"
+                + "42,{\"key\":\"p;t;c;i\",\"errorCount\":120,\"extra\":{\"nested\":[1,2]}}]");
+
+        assertThat(response.getStatus()).isEqualTo(200);
+        JsonNode body = mapper.readTree(response.getContentAsByteArray());
+        JsonNode results = body.get("results");
+        assertThat(results).hasSize(5);
+        assertThat(results.get(0).get("message").asText()).isEqualTo("Missing key");
+        assertThat(results.get(1).get("message").asText()).isEqualTo("Invalid errorCount");
+        assertThat(results.get(2).get("message").asText()).isEqualTo("Missing errorCount");
+        assertThat(results.get(3).get("message").asText()).isEqualTo("Expected an object");
+        for (int i = 0; i < 4; i++) {
+            assertThat(results.get(i).get("status").asText()).isEqualTo("invalid");
+        }
+        assertThat(results.get(4).get("status").asText()).isEqualTo("alert_triggered");
+        assertThat(body.get("summary").get("invalid").asLong()).isEqualTo(4);
+        assertThat(body.get("summary").get("breached").asLong()).isEqualTo(1);
+    }
+
+    @Test
+    void entriesOverTheTenantRateAreRejected() throws IOException {
+        MockHttpServletResponse response = post(controller(16, 2), NDJSON,
+            "{\"key\":\"p;tenant_1;a;i\",\"errorCount\":1}\n{\"key\":\"p;tenant_1;a;i\",\"errorCount\":1}\n"
+                + "{\"key\":\"p;tenant_1;a;i\",\"errorCount\":1}\n{\"key\":\"p;tenant_2;a;i\",\"errorCount\":1}\n");
+
+        List<JsonNode> lines = lines(response);
+        assertThat(lines.get(2).get("status").asText()).isEqualTo("rejected");
+        assertThat(lines.get(2).get("reason").asText()).isEqualTo("tenant_rate_limited");
+        assertThat(lines.get(2).get("tenant").asText()).isEqualTo("tenant_1");
+        assertThat(lines.get(2).get("retryAfterMs").asLong()).isPositive();
+        // Other tenants are unaffected
+        assertThat(lines.get(3).get("status").asText()).isEqualTo("below_threshold");
+        assertThat(lines.get(4).get("summary").get("rejected").asLong()).isEqualTo(1);
+    }
+
+    @Test
+    void malformedInputBeforeAnyResultIsABadRequest() throws IOException {
+        BatchAlertController controller = controller(4, 1000);
+
+        MockHttpServletResponse notAnArray = post(controller, "application/json", "{\"key\":\"p;t;a;i\"}");
+        assertThat(notAnArray.getStatus()).isEqualTo(400);
+        JsonNode error = mapper.readTree(notAnArray.getContentAsByteArray());
+        assertThat(error.get("status").asText()).isEqualTo("error");
+        assertThat(error.get("message").asText()).isEqualTo("Expected a JSON array of alerts");
+
+        // Broken in the first chunk: nothing was evaluated
+        String body = "[{\"key\":\"p;t;a;i\",\"errorCount\":150},{\"key\":p}]";
+        MockHttpServletResponse broken = post(controller, "application/json", body);
+        assertThat(broken.getStatus()).isEqualTo(400);
+        error = mapper.readTree(broken.getContentAsByteArray());
+        assertThat(error.get("message").asText()).startsWith("Malformed input after 1 entries");
+        // Within the broken entry (Jackson points past the unrecognised token)
+        assertThat(error.get("offset").asLong())
+            .isBetween((long) body.indexOf("{\"key\":p"), (long) body.length());
+    }
+
+    @Test
+    void malformedInputAfterTheFirstChunkEndsTheResults() throws IOException {
+        MockHttpServletResponse response = post(controller(2, 1000), NDJSON,
+            "{\"key\":\"p;t;a;i\",\"errorCount\":150}\n{\"key\":\"p;t;b;i\",\"errorCount\":5}\n"
+                + "{\"key\":\"p;t;c;i\",\"errorCount\":500}\n{\"key\":\n");
+
+        // The results already sent stand; the summary carries the error
+        assertThat(response.getStatus()).isEqualTo(200);
+        List<JsonNode> lines = lines(response);
+        assertThat(lines).hasSize(4);
+        assertThat(lines.get(2).get("status").asText()).isEqualTo("alert_triggered");
+        JsonNode summary = lines.get(3).get("summary");
+        assertThat(summary.get("total").asLong()).isEqualTo(3);
+        assertThat(summary.get("error").asText()).startsWith("Malformed input after 3 entries");
+        assertThat(summary.has("offset")).isTrue();
+    }
+
+    @Test
+    void entriesOfAFailedSliceAreNotProcessed() throws IOException {
+        // 200 entries in one chunk: two slices of 100, the second on a worker that dies at entry 150
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            body.append("{\"key\":\"").append(i == 150 ? "fatal" : "p;t;" + i + ";i")
+                .append("\",\"errorCount\":5}\n");
+        }
+
+        List<JsonNode> lines = lines(post(controller(256, 1000), NDJSON, body.toString()));
+
+        assertThat(lines).hasSize(201);
+        assertThat(lines.get(99).get("status").asText()).isEqualTo("below_threshold");
+        assertThat(lines.get(149).get("status").asText()).isEqualTo("below_threshold");
+        assertThat(lines.get(150).get("status").asText()).isEqualTo("not_processed");
+        assertThat(lines.get(199).get("status").asText()).isEqualTo("not_processed");
+        JsonNode summary = lines.get(200).get("summary");
+        assertThat(summary.get("below").asLong()).isEqualTo(150);
+        assertThat(summary.get("notProcessed").asLong()).isEqualTo(50);
+        assertThat(summary.get("error").asText()).startsWith("Batch slice failed");
+    }
+
+    private static MockHttpServletResponse post(BatchAlertController controller, String contentType, String body)
+            throws IOException {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/alerts/batch");
+        request.setContentType(contentType);
+        request.setContent(body.getBytes(StandardCharsets.UTF_8));
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.receiveBatch(request, response);
+        return response;
+    }
+
+    private List<JsonNode> lines(MockHttpServletResponse response) throws IOException {
+        List<JsonNode> lines = new ArrayList<>();
+        for (String line : response.getContentAsString(StandardCharsets.UTF_8).split("\n")) {
+            lines.add(mapper.readTree(line));
+        }
+        return lines;
+    }
+}
@@ -0,0 +1,151 @@
+package com.alerts.counter;
+
+import com.alerts.metrics.AlertMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AlertCounterServiceTest {
+
+    private static final long HOUR = 3_600_000;
+
+    /** Keeps every record; KafkaTemplate closes its producer after each send */
+    private final MockProducer<Long, Long> producer = new MockProducer<>(true, new LongSerializer(),
+            new LongSerializer()) {
+        @Override
+        public void close(Duration timeout) {
+        }
+    };
+    private AlertCounterService counters;
+
+    private AlertCounterService start(long flushIntervalMillis, int flushMaxKeys) {
+        counters = new AlertCounterService(new KafkaTemplate<>(() -> producer),
+            new AlertMetrics(new SimpleMeterRegistry(), 16, 1000), flushIntervalMillis, flushMaxKeys, HOUR);
+        return counters;
+    }
+
+    @AfterEach
+    void tearDown() {
+        counters.shutdown();
+    }
+
+    @Test
+    void concurrentIncrementsCoalesceIntoOneDeltaPerKey() throws InterruptedException {
+        start(HOUR, 5000);
+        CountDownLatch go = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            threads.add(new Thread(() -> {
+                try {
+                    go.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 1000; i++) {
+                    counters.increment(1, 5);
+                    counters.increment(2, 0);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        go.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        // The persisted base is taken once, when the key's cell is created
+        assertThat(counters.current(1)).isEqualTo(5 + 8000);
+        assertThat(counters.current(2)).isEqualTo(8000);
+        assertThat(counters.stats().get("pendingKeys")).isEqualTo(2);
+
+        counters.flush();
+        assertThat(deltas()).containsExactlyInAnyOrder(List.of(1L, 8000L), List.of(2L, 8000L));
+        assertThat(counters.stats().get("flushes")).isEqualTo(1L);
+        assertThat(counters.stats().get("deltasSent")).isEqualTo(2L);
+
+        // Nothing new: nothing sent
+        counters.flush();
+        assertThat(producer.history()).hasSize(2);
+    }
+
+    @Test
+    void dirtyKeysAreFlushedEveryInterval() throws InterruptedException {
+        start(50, 5000);
+        counters.increment(7, 0);
+        counters.increment(7, 0);
+        counters.increment(7, 0);
+        awaitRecords(1);
+        assertThat(producer.history().get(0).topic()).isEqualTo(AlertCounterService.COUNTS_TOPIC);
+
+        counters.increment(7, 0);
+        counters.increment(7, 0);
+        awaitRecords(2);
+        // Deltas since the previous flush, not totals
+        assertThat(deltas()).containsExactly(List.of(7L, 3L), List.of(7L, 2L));
+        assertThat(counters.current(7)).isEqualTo(5);
+    }
+
+    @Test
+    void manyPendingKeysFlushBeforeTheInterval() throws InterruptedException {
+        start(HOUR, 3);
+        counters.increment(1, 0);
+        counters.increment(2, 0);
+        assertThat(producer.history()).isEmpty();
+
+        counters.increment(3, 0);
+        awaitRecords(3);
+    }
+
+    @Test
+    void shutdownFlushesWhatIsPending() {
+        start(HOUR, 5000);
+        counters.increment(9, 2);
+        counters.increment(9, 2);
+
+        counters.shutdown();
+        assertThat(deltas()).containsExactly(List.of(9L, 2L));
+    }
+
+    @Test
+    void inheritedBreachesStayLocalUntilTheKeyHasItsOwnThreshold() {
+        start(HOUR, 5000);
+        assertThat(counters.incrementInherited(4)).isEqualTo(1);
+        assertThat(counters.incrementInherited(4)).isEqualTo(2);
+        counters.flush();
+        assertThat(producer.history()).isEmpty();
+
+        // Earlier inherited breaches are included in the first delta
+        assertThat(counters.increment(4, 0)).isEqualTo(3);
+        counters.flush();
+        assertThat(deltas()).containsExactly(List.of(4L, 3L));
+    }
+
+    /** [key, delta] per record sent */
+    private List<List<Long>> deltas() {
+        List<List<Long>> deltas = new ArrayList<>();
+        for (ProducerRecord<Long, Long> record : producer.history()) {
+            deltas.add(List.of(record.key(), record.value()));
+        }
+        return deltas;
+    }
+
+    private void awaitRecords(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (producer.history().size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(producer.history()).hasSize(count);
+    }
+}
@@ -0,0 +1,75 @@
+package com.alerts.hashing;
+
+import com.alerts.model.PropertyThreshold;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class KeyHasherTest {
+
+    private static final String[] KEYS = {
+        "",
+        "property_1;tenant_0;type_error;interface_api",
+        "property_123456;tenant_987;type_timeout;interface_payments_v2",
+        "pröperty_ü;tenant_0;type_error;interface_api",
+    };
+
+    @Test
+    void sha256MatchesTheLegacyHexKey() {
+        for (String key : KEYS) {
+            long hash = Sha256KeyHasher.INSTANCE.hash(key);
+            String legacy = PropertyThreshold.generateHashFromCompositeKey(key);
+            assertThat(KeyHashes.toHex(hash)).as(key).isEqualTo(legacy);
+            assertThat(KeyHashes.parseHex(legacy.getBytes(StandardCharsets.US_ASCII))).isEqualTo(hash);
+            assertThat(KeyHashes.decodeKey(legacy.getBytes(StandardCharsets.US_ASCII), true)).isEqualTo(hash);
+            assertThat(KeyHashes.decodeKey(KeyHashes.toBytes(hash), false)).isEqualTo(hash);
+        }
+        assertThat(Sha256KeyHasher.INSTANCE.hash("property_1;tenant_0;type_error;interface_api"))
+            .isEqualTo(0x2ae1fd9eae05bf85L);
+    }
+
+    @Test
+    void xxHash64KnownVectors() {
+        // Reference XXH64, seed 0
+        assertThat(XxHash64KeyHasher.INSTANCE.hash("")).isEqualTo(0xEF46DB3751D8E999L);
+        assertThat(XxHash64KeyHasher.INSTANCE.hash("a")).isEqualTo(0xD24EC4F1A98C6E5BL);
+        assertThat(XxHash64KeyHasher.INSTANCE.hash("abc")).isEqualTo(0x44BC2CF5AD770999L);
+        // 39 bytes: the 32-byte stripe loop, then 8- and 1-byte tails
+        assertThat(XxHash64KeyHasher.INSTANCE.hash("Nobody inspects the spammish repetition"))
+            .isEqualTo(0xFBCEA83C8A378BF1L);
+    }
+
+    @Test
+    void charBytesAndBufferInputsHashAlike() {
+        for (KeyHasher hasher : new KeyHasher[] {Sha256KeyHasher.INSTANCE, XxHash64KeyHasher.INSTANCE}) {
+            for (String key : KEYS) {
+                long expected = hasher.hash(key);
+                byte[] utf8 = key.getBytes(StandardCharsets.UTF_8);
+                byte[] padded = new byte[utf8.length + 7];
+                System.arraycopy(utf8, 0, padded, 3, utf8.length);
+                assertThat(hasher.hash(new StringBuilder(key))).isEqualTo(expected);
+                assertThat(hasher.hash(padded, 3, utf8.length)).isEqualTo(expected);
+
+                ByteBuffer direct = ByteBuffer.allocateDirect(padded.length).put(padded);
+                assertThat(hasher.hash(direct, 3, utf8.length)).as("%s %s", hasher.name(), key).isEqualTo(expected);
+                assertThat(direct.position()).isEqualTo(padded.length);
+            }
+        }
+    }
+
+    @Test
+    void hexKeysRoundTripAndRejectMalformedInput() {
+        assertThat(KeyHashes.toHex(0x00000000000000ffL)).isEqualTo("00000000000000ff");
+        assertThat(KeyHashes.toHex(-1L)).isEqualTo("ffffffffffffffff");
+        assertThatThrownBy(() -> KeyHashes.parseHex("00000000000000fg".getBytes(StandardCharsets.US_ASCII)))
+            .isInstanceOf(IllegalArgumentException.class);
+        // Hex keys only with alerts.hashing.legacy-keys
+        assertThatThrownBy(() -> KeyHashes.decodeKey("2ae1fd9eae05bf85".getBytes(StandardCharsets.US_ASCII), false))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> KeyHashes.decodeKey(new byte[4], true)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
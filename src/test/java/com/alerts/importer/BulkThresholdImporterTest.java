@@ -0,0 +1,158 @@
+package com.alerts.importer;
+
+import com.alerts.hashing.Sha256KeyHasher;
+import com.alerts.index.TenantIndex;
+import com.alerts.model.ThresholdRecord;
+import com.alerts.serde.ThresholdRecordSerde;
+import org.apache.kafka.clients.producer.Callback;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.Producer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.clients.producer.RecordMetadata;
+import org.apache.kafka.common.KafkaException;
+import org.apache.kafka.common.serialization.Serializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.autoconfigure.kafka.KafkaProperties;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Imports of a ten-row CSV in batches of three rows, one segment.
+ */
+class BulkThresholdImporterTest {
+
+    @TempDir
+    Path directory;
+
+    private final List<String> sentKeys = new CopyOnWriteArrayList<>();
+    // Send number (0-based) that fails, -1 for none
+    private volatile int failAt = -1;
+    private Importer importer;
+
+    private final class Importer extends BulkThresholdImporter {
+        Importer() {
+            super(new KafkaProperties(), Sha256KeyHasher.INSTANCE, null, 1, 3, "none", 0, 16384, 0,
+                directory.toString());
+        }
+
+        @Override
+        <K> Producer<K, ThresholdRecord> createProducer(String clientId, Serializer<K> keySerializer) {
+            return new MockProducer<>(true, keySerializer, new ThresholdRecordSerde.ThresholdRecordSerializer()) {
+                @Override
+                public synchronized Future<RecordMetadata> send(ProducerRecord<K, ThresholdRecord> record,
+                                                                Callback callback) {
+                    if (sentKeys.size() == failAt) {
+                        failAt = -1;
+                        return CompletableFuture.failedFuture(new KafkaException("broker unavailable"));
+                    }
+                    sentKeys.add(new String(record.headers().lastHeader(TenantIndex.KEY_HEADER).value(),
+                        StandardCharsets.UTF_8));
+                    return super.send(record, callback);
+                }
+            };
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        importer = new Importer();
+    }
+
+    @AfterEach
+    void tearDown() {
+        importer.shutdown();
+    }
+
+    @Test
+    void fullImportSendsEveryValidRow() throws IOException {
+        Path input = write();
+
+        ImportJob job = importer.runBlocking(input, null, false, false);
+
+        assertThat(job.state()).isEqualTo(ImportJob.State.COMPLETED);
+        assertThat(sentKeys).hasSize(9).startsWith(key(1)).endsWith(key(10));
+        assertThat(job.stats().get("rowsInvalid")).isEqualTo(1L);
+        assertThat(job.stats().get("invalidSamples")).isEqualTo(List.of("line 8: Invalid number in thresholdValue"));
+        assertThat(Files.exists(ImportCheckpoint.pathFor(input))).isFalse();
+    }
+
+    @Test
+    void failedImportResumesAfterTheLastAcknowledgedBatch() throws IOException {
+        Path input = write();
+        // The second row of the second batch fails: only the first batch is acknowledged
+        failAt = 4;
+
+        ImportJob failed = importer.runBlocking(input, null, false, false);
+
+        assertThat(failed.state()).isEqualTo(ImportJob.State.FAILED);
+        // Rows 4 and 6 went through, but not the whole batch
+        assertThat(failed.stats().get("rowsSent")).isEqualTo(5L);
+        assertThat(failed.stats().get("bytesDone")).isEqualTo((long) rowBytes(3));
+        assertThat(Files.exists(ImportCheckpoint.pathFor(input))).isTrue();
+
+        sentKeys.clear();
+        ImportJob resumed = importer.runBlocking(input, null, false, true);
+
+        assertThat(resumed.state()).isEqualTo(ImportJob.State.COMPLETED);
+        assertThat(resumed.stats().get("resumedFromBytes")).isEqualTo((long) rowBytes(3));
+        // Rows 4..10 again, the invalid one still reported by its line
+        assertThat(sentKeys).containsExactly(key(4), key(5), key(6), key(8), key(9), key(10));
+        assertThat(resumed.stats().get("invalidSamples")).isEqualTo(List.of("line 8: Invalid number in thresholdValue"));
+        assertThat(Files.exists(ImportCheckpoint.pathFor(input))).isFalse();
+    }
+
+    @Test
+    void checkpointOfAChangedFileIsIgnored() throws IOException {
+        Path input = write();
+        failAt = 4;
+        importer.runBlocking(input, null, false, false);
+
+        Files.writeString(input, "\n", StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+        sentKeys.clear();
+        ImportJob job = importer.runBlocking(input, null, false, true);
+
+        assertThat(job.state()).isEqualTo(ImportJob.State.COMPLETED);
+        assertThat(job.stats().get("resumedFromBytes")).isEqualTo(0L);
+        assertThat(sentKeys).hasSize(9);
+    }
+
+    /** Header, then rows 1..10 on lines 2..11; row 7 (line 8) has a bad threshold */
+    private Path write() throws IOException {
+        StringBuilder csv = new StringBuilder("key,threshold\n");
+        for (int i = 1; i <= 10; i++) {
+            csv.append(row(i));
+        }
+        Path input = directory.resolve("thresholds.csv");
+        Files.writeString(input, csv, StandardCharsets.UTF_8);
+        return input;
+    }
+
+    private static String row(int i) {
+        return key(i) + "," + (i == 7 ? "x" : String.valueOf(40 + i)) + "\n";
+    }
+
+    private static int rowBytes(int rows) {
+        int bytes = 0;
+        for (int i = 1; i <= rows; i++) {
+            bytes += row(i).length();
+        }
+        return bytes;
+    }
+
+    private static String key(int i) {
+        return "property_" + i + ";tenant_0;type_error;interface_api";
+    }
+}
@@ -0,0 +1,137 @@
+package com.alerts.importer;
+
+import com.alerts.hashing.Sha256KeyHasher;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ThresholdLineParserTest {
+
+    private static final String KEY = "property_1;tenant_0;type_error;interface_api";
+
+    private final ThresholdLineParser.Row row = new ThresholdLineParser.Row();
+
+    @Test
+    void headerColumnsAreMatchedByName() {
+        ThresholdLineParser parser = csv("windowSeconds,thresholdValue,tenantId,propertyId,transactionType,interfaceId");
+
+        assertThat(parse(parser, "300,50,tenant_0,property_1,type_error,interface_api")).isTrue();
+        assertThat(row.error()).isNull();
+        assertThat(row.hash()).isEqualTo(Sha256KeyHasher.INSTANCE.hash(KEY));
+        assertThat(new String(row.key(), StandardCharsets.UTF_8)).isEqualTo(KEY);
+        assertThat(row.threshold()).isEqualTo(50);
+        assertThat(row.windowSeconds()).isEqualTo(300);
+        assertThat(row.windowBuckets()).isZero();
+    }
+
+    @Test
+    void onlyAColumnNamedThresholdMakesAHeader() {
+        assertThat(header("key,threshold")).isNotNull();
+        assertThat(header("\"tenant_id\",\"threshold_value\"\r\n")).isNotNull();
+        // Data rows whose values merely contain the word
+        assertThat(header("tenant_0,property_threshold,interface_api,type_error,50")).isNull();
+        assertThat(header("thresholds;tenant_0;*;*,50")).isNull();
+        assertThat(header("key,limit")).isNull();
+    }
+
+    @Test
+    void withoutAHeaderTheFieldOrderIsAssumed() {
+        ThresholdLineParser parser = new ThresholdLineParser(ImportFormat.CSV, Sha256KeyHasher.INSTANCE, null);
+
+        assertThat(parse(parser, "tenant_0,property_1,interface_api,type_error,50,60,12")).isTrue();
+        assertThat(row.hash()).isEqualTo(Sha256KeyHasher.INSTANCE.hash(KEY));
+        assertThat(row.windowSeconds()).isEqualTo(60);
+        assertThat(row.windowBuckets()).isEqualTo(12);
+    }
+
+    @Test
+    void quotedFieldsAndBlankLines() {
+        ThresholdLineParser parser = csv("key,threshold");
+
+        assertThat(parse(parser, "\"" + KEY + "\" , 75\r")).isTrue();
+        assertThat(row.hash()).isEqualTo(Sha256KeyHasher.INSTANCE.hash(KEY));
+        assertThat(row.threshold()).isEqualTo(75);
+        assertThat(parse(parser, "")).isFalse();
+        assertThat(parse(parser, "# comment")).isFalse();
+    }
+
+    @Test
+    void wildcardKeysAreDefaults() {
+        ThresholdLineParser parser = csv("key,threshold");
+
+        assertThat(parse(parser, "*;tenant_0;*;*,30")).isTrue();
+        assertThat(row.pattern()).isEqualTo("*;tenant_0;*;*");
+        assertThat(parse(parser, "*;tenant_0,30")).isTrue();
+        assertThat(row.error()).startsWith("Default threshold key");
+    }
+
+    @Test
+    void windowsOutsideTheRecordFieldsAreRejected() {
+        ThresholdLineParser parser = csv("key,threshold,windowSeconds,windowBuckets");
+
+        // Would have wrapped to a negative int
+        assertThat(parse(parser, KEY + ",50,2147483648,10")).isTrue();
+        assertThat(row.error()).startsWith("windowSeconds out of range");
+        // Would have wrapped to 4 buckets as a short
+        assertThat(parse(parser, KEY + ",50,60,65540")).isTrue();
+        assertThat(row.error()).startsWith("windowBuckets out of range");
+        assertThat(parse(parser, KEY + ",50,-1,10")).isTrue();
+        assertThat(row.error()).startsWith("windowSeconds out of range");
+        assertThat(parse(parser, KEY + ",50,2147483647,65535")).isTrue();
+        assertThat(row.error()).isNull();
+        assertThat(row.windowSeconds()).isEqualTo(Integer.MAX_VALUE);
+        assertThat(row.windowBuckets()).isEqualTo(65535);
+    }
+
+    @Test
+    void invalidNumbersNameTheFieldOnly() {
+        ThresholdLineParser parser = csv("key,threshold,windowSeconds");
+
+        assertThat(parse(parser, KEY + ",fifty")).isTrue();
+        assertThat(row.error()).isEqualTo("Invalid number in thresholdValue");
+        assertThat(parse(parser, KEY + ",50,9x")).isTrue();
+        assertThat(row.error()).isEqualTo("Invalid number in windowSeconds");
+        assertThat(parse(parser, KEY + ",-5")).isTrue();
+        assertThat(row.error()).isEqualTo("Threshold must not be negative");
+        assertThat(parse(parser, ",5")).isTrue();
+        assertThat(row.error()).isEqualTo("Missing key column");
+    }
+
+    @Test
+    void ndjsonRows() {
+        ThresholdLineParser parser = new ThresholdLineParser(ImportFormat.NDJSON, Sha256KeyHasher.INSTANCE, null);
+
+        assertThat(parse(parser, "{\"propertyId\":\"property_1\",\"tenantId\":\"tenant_0\","
+            + "\"transactionType\":\"type_error\",\"interfaceId\":\"interface_api\",\"thresholdValue\":50,"
+            + "\"windowSeconds\":120,\"tags\":{\"a\":1}}")).isTrue();
+        assertThat(row.error()).isNull();
+        assertThat(row.hash()).isEqualTo(Sha256KeyHasher.INSTANCE.hash(KEY));
+        assertThat(row.windowSeconds()).isEqualTo(120);
+
+        assertThat(parse(parser, "{\"key\":\"" + KEY + "\",\"threshold\":50,\"windowBuckets\":70000}")).isTrue();
+        assertThat(row.error()).startsWith("windowBuckets out of range");
+        assertThat(parse(parser, "{\"key\":\"" + KEY + "\",\"threshold\":50,\"windowSeconds\":4294967296}"))
+            .isTrue();
+        assertThat(row.error()).startsWith("windowSeconds out of range");
+        assertThat(parse(parser, "{\"key\":\"" + KEY + "\"}")).isTrue();
+        assertThat(row.error()).isEqualTo("Missing thresholdValue");
+        assertThat(parse(parser, "{\"key\":")).isTrue();
+        assertThat(row.error()).startsWith("Malformed JSON");
+    }
+
+    private static ThresholdLineParser csv(String header) {
+        return new ThresholdLineParser(ImportFormat.CSV, Sha256KeyHasher.INSTANCE, header(header));
+    }
+
+    private static int[] header(String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        return ThresholdLineParser.headerColumns(bytes, bytes.length);
+    }
+
+    private boolean parse(ThresholdLineParser parser, String line) {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        return parser.parse(bytes, bytes.length, row);
+    }
+}
@@ -0,0 +1,299 @@
+package com.alerts.index;
+
+import com.alerts.AlertFixtures;
+import com.alerts.cache.ThresholdNearCache;
+import com.alerts.hashing.Sha256KeyHasher;
+import com.alerts.model.ThresholdRecord;
+import com.alerts.serde.ThresholdRecordSerde;
+import com.alerts.streams.AlertTopology;
+import com.alerts.streams.StoreBackend;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.apache.kafka.streams.state.ReadOnlyKeyValueStore;
+import org.apache.kafka.streams.test.TestRecord;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * eagle-eye.config piped through AlertTopology with the tenant index enabled,
+ * queried by a TenantIndexService reading the driver's stores.
+ */
+class TenantIndexServiceTest {
+
+    private static final Instant T0 = Instant.ofEpochMilli(1_700_000_000_000L);
+
+    @TempDir
+    Path stateDir;
+
+    private final MockProducer<Long, ThresholdRecord> producer = new MockProducer<>(true, new LongSerializer(),
+            new ThresholdRecordSerde.ThresholdRecordSerializer()) {
+        @Override
+        public void close(Duration timeout) {
+            // KafkaTemplate closes its producer after every send
+        }
+    };
+
+    private TopologyTestDriver driver;
+    private AlertFixtures.Components components;
+    private TestInputTopic<Long, byte[]> config;
+    private KeyValueStore<String, Long> indexStore;
+    private KeyValueStore<Long, String> keyNames;
+    private KeyValueStore<Long, ThresholdRecord> configStore;
+
+    @BeforeEach
+    void setUp() {
+        components = AlertFixtures.components(false);
+        StreamsBuilder builder = new StreamsBuilder();
+        components.topology(AlertTopology.Options.defaults().withStoreBackend(StoreBackend.MEMORY)
+            .withTenantIndex(true), new ThresholdNearCache(false, 0)).build(builder);
+
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "tenant-index-test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        driver = new TopologyTestDriver(builder.build(), props, T0);
+
+        config = driver.createInputTopic(AlertTopology.CONFIG_TOPIC, new LongSerializer(), new ByteArraySerializer(),
+            T0, Duration.ZERO);
+        indexStore = driver.getKeyValueStore(AlertTopology.TENANT_INDEX_STORE);
+        keyNames = driver.getKeyValueStore(AlertTopology.KEY_NAMES_STORE);
+        configStore = driver.getKeyValueStore(AlertTopology.CONFIG_STORE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        driver.close();
+        components.close();
+    }
+
+    /**
+     * No application.server: one instance whose only partition is the driver's.
+     */
+    private TenantIndexService service(int maxPageSize, int bulkMaxKeys) {
+        return new TenantIndexService(null, new KafkaTemplate<>(() -> producer), new ObjectMapper(), "", true,
+                maxPageSize, bulkMaxKeys, 2000) {
+            @Override
+            List<Integer> localPartitions() {
+                return List.of(0);
+            }
+
+            @Override
+            ReadOnlyKeyValueStore<String, Long> indexStore(int partition) {
+                return indexStore;
+            }
+
+            @Override
+            ReadOnlyKeyValueStore<Long, ThresholdRecord> configStore(int partition) {
+                return configStore;
+            }
+        };
+    }
+
+    @Test
+    void indexFollowsInsertsRenamesAndTombstones() {
+        String key = "property_1;tenant_0;type_error;interface_api";
+        long hash = hash(key);
+
+        load(key, ThresholdRecord.encode(100, 0));
+        assertThat(indexStore.get("tenant_0;property_1;type_error;interface_api")).isEqualTo(hash);
+        assertThat(keyNames.get(hash)).isEqualTo(key);
+
+        // A new threshold under the same name leaves the index alone
+        load(key, ThresholdRecord.encode(120, 0));
+        assertThat(indexStore.approximateNumEntries()).isEqualTo(1);
+        assertThat(configStore.get(hash).threshold()).isEqualTo(120);
+
+        // The hash under another name moves its index entry
+        String renamed = "property_1;tenant_0;type_error;interface_web";
+        config.pipeInput(withKey(hash, renamed, ThresholdRecord.encode(120, 0)));
+        assertThat(indexStore.get("tenant_0;property_1;type_error;interface_api")).isNull();
+        assertThat(indexStore.get("tenant_0;property_1;type_error;interface_web")).isEqualTo(hash);
+
+        config.pipeInput(withKey(hash, renamed, null));
+        assertThat(configStore.get(hash)).isNull();
+        assertThat(indexStore.get("tenant_0;property_1;type_error;interface_web")).isNull();
+        assertThat(keyNames.get(hash)).isNull();
+    }
+
+    @Test
+    void recordsWithoutAUsableKeyAreNotIndexed() {
+        config.pipeInput(0x1234L, ThresholdRecord.encode(100, 0));
+        load("*;tenant_0;*;*", ThresholdRecord.encode(40, 0));
+        load("property_1;tenant_0;type_error", ThresholdRecord.encode(40, 0));
+
+        assertThat(configStore.get(0x1234L).threshold()).isEqualTo(100);
+        assertThat(indexStore.approximateNumEntries()).isZero();
+        assertThat(service(10, 100).page("tenant_0", null, null, 10).entries).isEmpty();
+    }
+
+    @Test
+    void tenantAndPropertyPrefixesDoNotMatchLongerNames() {
+        load("property_1;a;type_error;interface_api", ThresholdRecord.encode(10, 0));
+        load("property_10;a;type_error;interface_api", ThresholdRecord.encode(20, 0));
+        load("property_1;ab;type_error;interface_api", ThresholdRecord.encode(30, 0));
+        TenantIndexService service = service(10, 100);
+
+        // Index-key order: '0' sorts before ';'
+        assertThat(keys(service.page("a", null, null, 10)))
+            .containsExactly("property_10;a;type_error;interface_api", "property_1;a;type_error;interface_api");
+        assertThat(keys(service.page("a", "property_1", null, 10)))
+            .containsExactly("property_1;a;type_error;interface_api");
+        assertThat(keys(service.page("ab", null, null, 10)))
+            .containsExactly("property_1;ab;type_error;interface_api");
+    }
+
+    @Test
+    void pagesResumeAfterTheCursor() {
+        for (int i = 0; i < 5; i++) {
+            load("property_" + i + ";tenant_0;type_error;interface_api", ThresholdRecord.encode(10 + i, 0));
+        }
+        load("property_0;tenant_1;type_error;interface_api", ThresholdRecord.encode(10, 0));
+        TenantIndexService service = service(2, 100);
+
+        // The limit is capped at maxPageSize
+        TenantIndexService.Result first = service.page("tenant_0", null, null, 100);
+        assertThat(keys(first)).containsExactly("property_0;tenant_0;type_error;interface_api",
+            "property_1;tenant_0;type_error;interface_api");
+        assertThat(first.next).isEqualTo("tenant_0;property_1;type_error;interface_api");
+        assertThat(first.partial()).isFalse();
+
+        // Keys added before the cursor are not seen, those after it are
+        load("property_00;tenant_0;type_error;interface_api", ThresholdRecord.encode(10, 0));
+        load("property_5;tenant_0;type_error;interface_api", ThresholdRecord.encode(15, 0));
+
+        List<String> rest = new ArrayList<>();
+        String cursor = first.next;
+        int pages = 0;
+        while (cursor != null) {
+            TenantIndexService.Result page = service.page("tenant_0", null, cursor, 2);
+            rest.addAll(keys(page));
+            cursor = page.next;
+            pages++;
+        }
+        assertThat(rest).containsExactly("property_2;tenant_0;type_error;interface_api",
+            "property_3;tenant_0;type_error;interface_api", "property_4;tenant_0;type_error;interface_api",
+            "property_5;tenant_0;type_error;interface_api");
+        // The last full page has a cursor; the empty page after it has none
+        assertThat(pages).isEqualTo(3);
+    }
+
+    @Test
+    void topBreachingOrdersByAlertTimes() {
+        load("property_1;tenant_0;type_error;interface_api", ThresholdRecord.encode(10, 3));
+        load("property_2;tenant_0;type_error;interface_api", ThresholdRecord.encode(10, 7));
+        load("property_3;tenant_0;type_error;interface_api", ThresholdRecord.encode(10, 0));
+        load("property_4;tenant_0;type_error;interface_api", ThresholdRecord.encode(10, 5));
+        load("property_1;tenant_1;type_error;interface_api", ThresholdRecord.encode(10, 9));
+
+        List<TenantIndexService.Entry> top = service(10, 100).topBreaching("tenant_0", null, 2).entries;
+
+        assertThat(top).extracting(e -> e.alertTimes).containsExactly(7L, 5L);
+        assertThat(top.get(0).toMap()).containsEntry("key", "property_2;tenant_0;type_error;interface_api");
+        // Keys that never breached are left out
+        assertThat(service(10, 100).topBreaching("tenant_0", null, 10).entries).hasSize(3);
+    }
+
+    @Test
+    void bulkUpdateResendsThresholdsAndKeepsAlertTimes() {
+        String plain = "property_1;tenant_0;type_error;interface_api";
+        String windowed = "property_2;tenant_0;type_error;interface_api";
+        String same = "property_3;tenant_0;type_error;interface_api";
+        load(plain, ThresholdRecord.encode(100, 4));
+        load(windowed, ThresholdRecord.encode(250, 2, 300, 30));
+        load(same, ThresholdRecord.encode(0, 0));
+        load("property_1;tenant_01;type_error;interface_api", ThresholdRecord.encode(100, 0));
+        // Page size 2: the update walks two pages
+        TenantIndexService service = service(2, 100);
+
+        Map<String, Object> dryRun = service.bulkUpdate("tenant_0", null, t -> t * 2, true);
+        assertThat(dryRun).containsEntry("matched", 3L).containsEntry("updated", 2L)
+            .containsEntry("unchanged", 1L).containsEntry("truncated", false);
+        assertThat(producer.history()).isEmpty();
+
+        Map<String, Object> response = service.bulkUpdate("tenant_0", null, t -> t * 2, false);
+        assertThat(response).containsEntry("matched", 3L).containsEntry("updated", 2L)
+            .containsEntry("failed", 0L).containsEntry("partial", false);
+        List<ProducerRecord<Long, ThresholdRecord>> sent = producer.history();
+        assertThat(sent).hasSize(2);
+        for (ProducerRecord<Long, ThresholdRecord> record : sent) {
+            assertThat(record.topic()).isEqualTo(AlertTopology.CONFIG_TOPIC);
+            assertThat(record.value().alertTimes()).isZero();
+            String name = new String(record.headers().lastHeader(TenantIndex.KEY_HEADER).value(),
+                StandardCharsets.UTF_8);
+            assertThat(record.key()).isEqualTo(hash(name));
+            config.pipeInput(new TestRecord<>(record.key(), record.value().toByteArray(), record.headers(), T0));
+        }
+
+        ThresholdRecord plainRecord = configStore.get(hash(plain));
+        assertThat(plainRecord.threshold()).isEqualTo(200);
+        assertThat(plainRecord.alertTimes()).isEqualTo(4);
+        ThresholdRecord windowedRecord = configStore.get(hash(windowed));
+        assertThat(windowedRecord.threshold()).isEqualTo(500);
+        assertThat(windowedRecord.alertTimes()).isEqualTo(2);
+        assertThat(windowedRecord.windowSeconds()).isEqualTo(300);
+        assertThat(windowedRecord.windowBuckets()).isEqualTo(30);
+        assertThat(configStore.get(hash("property_1;tenant_01;type_error;interface_api")).threshold())
+            .isEqualTo(100);
+        assertThat(indexStore.approximateNumEntries()).isEqualTo(4);
+    }
+
+    @Test
+    void bulkUpdateStopsAtTheKeyLimit() {
+        for (int i = 0; i < 5; i++) {
+            load("property_" + i + ";tenant_0;type_error;interface_api", ThresholdRecord.encode(10, 0));
+        }
+
+        Map<String, Object> response = service(2, 3).bulkUpdate("tenant_0", "", t -> 50, false);
+
+        assertThat(response).containsEntry("matched", 3L).containsEntry("updated", 3L)
+            .containsEntry("truncated", true);
+        assertThat(producer.history()).extracting(ProducerRecord::key).containsExactly(
+            hash("property_0;tenant_0;type_error;interface_api"), hash("property_1;tenant_0;type_error;interface_api"),
+            hash("property_2;tenant_0;type_error;interface_api"));
+    }
+
+    private void load(String key, byte[] value) {
+        config.pipeInput(withKey(hash(key), key, value));
+    }
+
+    private static TestRecord<Long, byte[]> withKey(long hash, String key, byte[] value) {
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(TenantIndex.KEY_HEADER, TenantIndex.header(key));
+        return new TestRecord<>(hash, value, headers, T0);
+    }
+
+    private static long hash(String key) {
+        return Sha256KeyHasher.INSTANCE.hash(key);
+    }
+
+    private static List<String> keys(TenantIndexService.Result result) {
+        List<String> keys = new ArrayList<>();
+        for (TenantIndexService.Entry entry : result.entries) {
+            keys.add(TenantIndex.compositeKey(entry.indexKey));
+        }
+        return keys;
+    }
+}
@@ -0,0 +1,254 @@
+package com.alerts.ingest;
+
+import com.alerts.admission.AdmissionControl;
+import com.alerts.hashing.Sha256KeyHasher;
+import com.alerts.metrics.AlertMetrics;
+import com.alerts.service.AlertProcessingService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * The three listeners on loopback over a stub evaluation: errorCount >= 100
+ * breaches a threshold of 100, 0 has no threshold.
+ */
+class IngestServerTest {
+
+    private static final String HOST = "127.0.0.1";
+    private static final int BUFFER_BYTES = 512;
+    private static final int MAX_KEY_BYTES = 64;
+
+    private final AlertMetrics metrics = new AlertMetrics(new SimpleMeterRegistry(), 16, 1000);
+    // Key hashes in the order they were evaluated
+    private final List<Long> hashes = new CopyOnWriteArrayList<>();
+    private final AlertProcessingService evaluation = new AlertProcessingService(null, null, null, null,
+            Sha256KeyHasher.INSTANCE, null, null, null, null, null, null, null, metrics, "rest") {
+        @Override
+        public AlertResult processAlert(long hash, CharSequence key, long errorCount) {
+            hashes.add(hash);
+            if (errorCount == 0) {
+                return AlertResult.noThreshold(errorCount);
+            }
+            return errorCount >= 100 ? AlertResult.thresholdBreached(100, 1)
+                : AlertResult.belowThreshold(errorCount, 100);
+        }
+
+        @Override
+        public boolean hasDefaults() {
+            return false;
+        }
+    };
+
+    private AdmissionControl admission;
+    private IngestServer server;
+    private int linePort;
+    private int binaryPort;
+    private int udpPort;
+
+    private void start(double tenantBurst) throws IOException {
+        linePort = freePort();
+        binaryPort = freePort();
+        try (DatagramSocket socket = new DatagramSocket(0)) {
+            udpPort = socket.getLocalPort();
+        }
+        admission = new AdmissionControl(null, true, 1, tenantBurst, "", 64, 0, 50, 0.5, 0.1, 3_600_000);
+        server = new IngestServer(evaluation, Sha256KeyHasher.INSTANCE, metrics, admission, true, HOST, linePort,
+            binaryPort, udpPort, 1, 2, BUFFER_BYTES, MAX_KEY_BYTES);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.shutdown();
+        admission.shutdown();
+    }
+
+    @Test
+    void linesSplitAcrossReadsArePipelined() throws IOException, InterruptedException {
+        start(1000);
+        try (Socket socket = connect(linePort)) {
+            OutputStream out = socket.getOutputStream();
+            BufferedReader in = reader(socket);
+
+            // The first line arrives in two reads
+            send(out, "p;t;a;i 1");
+            Thread.sleep(50);
+            send(out, "50\r\np;t;b;i 5\np;t;c;i 0\n");
+            assertThat(in.readLine()).isEqualTo("A 100 1");
+            assertThat(in.readLine()).isEqualTo("B 100");
+            assertThat(in.readLine()).isEqualTo("N");
+
+            send(out, "no-count\np;t;a;i -5\n\np;t;a;i 7\n");
+            assertThat(in.readLine()).isEqualTo("E expected <key> <errorCount>");
+            assertThat(in.readLine()).isEqualTo("E invalid errorCount");
+            // The blank line is skipped, the connection stays usable
+            assertThat(in.readLine()).isEqualTo("B 100");
+        }
+        assertThat(hashes).startsWith(Sha256KeyHasher.INSTANCE.hash("p;t;a;i"));
+        assertThat(server.stats().get("events")).isEqualTo(4L);
+        assertThat(server.stats().get("malformed")).isEqualTo(2L);
+    }
+
+    @Test
+    void lineLongerThanTheBufferClosesTheConnection() throws IOException {
+        start(1000);
+        try (Socket socket = connect(linePort)) {
+            // Exactly one buffer, so nothing is left unread when the server closes
+            send(socket.getOutputStream(), "x".repeat(BUFFER_BYTES));
+            BufferedReader in = reader(socket);
+            assertThat(in.readLine()).isEqualTo("E line too long");
+            assertThat(in.readLine()).isNull();
+        }
+        assertThat(server.stats().get("protocolErrors")).isEqualTo(1L);
+    }
+
+    @Test
+    void binaryFramesSplitAcrossReads() throws IOException, InterruptedException {
+        start(1000);
+        try (Socket socket = connect(binaryPort)) {
+            OutputStream out = socket.getOutputStream();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+
+            byte[] frame = frame("p;t;a;i", 150);
+            for (byte b : frame) {
+                out.write(b);
+                out.flush();
+                Thread.sleep(2);
+            }
+            assertResponse(in, IngestProtocol.ALERT, 100, 1);
+
+            // Prehashed key, a negative count, then a regular frame, pipelined in one write
+            byte[] last = frame("p;t;b", 0);
+            ByteBuffer frames = ByteBuffer.allocate(2 * 18 + last.length);
+            frames.putShort((short) IngestProtocol.PREHASHED).putLong(42L).putLong(5);
+            frames.putShort((short) IngestProtocol.PREHASHED).putLong(43L).putLong(-1);
+            frames.put(last);
+            out.write(frames.array());
+            out.flush();
+            assertResponse(in, IngestProtocol.BELOW_THRESHOLD, 100, 0);
+            assertResponse(in, IngestProtocol.ERROR, 0, 0);
+            assertResponse(in, IngestProtocol.NO_THRESHOLD, 0, 0);
+        }
+        assertThat(hashes).containsExactly(Sha256KeyHasher.INSTANCE.hash("p;t;a;i"), 42L,
+            Sha256KeyHasher.INSTANCE.hash("p;t;b"));
+        assertThat(server.stats().get("malformed")).isEqualTo(1L);
+    }
+
+    @Test
+    void oversizedBinaryFrameClosesTheConnection() throws IOException {
+        start(1000);
+        try (Socket socket = connect(binaryPort)) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.write(frame("p;t;a;i", 1));
+            // Only the length: the server has read everything when it closes
+            out.writeShort(MAX_KEY_BYTES + 1);
+            out.flush();
+
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            assertResponse(in, IngestProtocol.BELOW_THRESHOLD, 100, 0);
+            assertThat(in.read()).isEqualTo(-1);
+        }
+        assertThat(server.stats().get("protocolErrors")).isEqualTo(1L);
+        assertThat(server.stats().get("malformed")).isEqualTo(1L);
+    }
+
+    @Test
+    void datagramsCarryOneOrMoreLines() throws IOException, InterruptedException {
+        start(1000);
+        try (DatagramSocket socket = new DatagramSocket()) {
+            // The last line of a datagram needs no newline
+            byte[] datagram = "p;t;a;i 150\nbroken\np;t;b;i 5".getBytes(StandardCharsets.US_ASCII);
+            socket.send(new DatagramPacket(datagram, datagram.length, new InetSocketAddress(HOST, udpPort)));
+        }
+        awaitStat("events", 2);
+        assertThat(hashes).containsExactly(Sha256KeyHasher.INSTANCE.hash("p;t;a;i"),
+            Sha256KeyHasher.INSTANCE.hash("p;t;b;i"));
+        assertThat(server.stats().get("datagrams")).isEqualTo(1L);
+        assertThat(server.stats().get("malformed")).isEqualTo(1L);
+    }
+
+    @Test
+    void eventsOverTheTenantRateAreRejected() throws IOException {
+        start(2);
+        try (Socket socket = connect(linePort)) {
+            BufferedReader in = reader(socket);
+            send(socket.getOutputStream(), "p;tenant_1;a;i 5\np;tenant_1;a;i 5\np;tenant_1;a;i 5\np;tenant_2;a;i 5\n");
+            assertThat(in.readLine()).isEqualTo("B 100");
+            assertThat(in.readLine()).isEqualTo("B 100");
+            assertThat(in.readLine()).matches("E tenant_rate_limited [1-9][0-9]*");
+            assertThat(in.readLine()).isEqualTo("B 100");
+        }
+        try (Socket socket = connect(binaryPort)) {
+            socket.getOutputStream().write(frame("p;tenant_2;a;i", 5));
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            assertResponse(in, IngestProtocol.BELOW_THRESHOLD, 100, 0);
+            socket.getOutputStream().write(frame("p;tenant_2;a;i", 5));
+            assertThat(in.readByte()).isEqualTo(IngestProtocol.RATE_LIMITED);
+            assertThat(in.readLong()).isPositive();
+            assertThat(in.readLong()).isZero();
+        }
+        assertThat(hashes).hasSize(4);
+        assertThat(server.stats().get("rateLimited")).isEqualTo(2L);
+    }
+
+    private static byte[] frame(String key, long errorCount) {
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(2 + bytes.length + 8).putShort((short) bytes.length).put(bytes)
+            .putLong(errorCount).array();
+    }
+
+    private static void assertResponse(DataInputStream in, byte status, long threshold, long alertTimes)
+            throws IOException {
+        assertThat(in.readByte()).isEqualTo(status);
+        assertThat(in.readLong()).isEqualTo(threshold);
+        assertThat(in.readLong()).isEqualTo(alertTimes);
+    }
+
+    private static Socket connect(int port) throws IOException {
+        Socket socket = new Socket(HOST, port);
+        socket.setTcpNoDelay(true);
+        socket.setSoTimeout(10_000);
+        return socket;
+    }
+
+    private static BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+    }
+
+    private static void send(OutputStream out, String text) throws IOException {
+        out.write(text.getBytes(StandardCharsets.US_ASCII));
+        out.flush();
+    }
+
+    private void awaitStat(String name, long value) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!Long.valueOf(value).equals(server.stats().get(name)) && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(server.stats().get(name)).isEqualTo(value);
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package com.alerts.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ThresholdRecordTest {
+
+    @Test
+    void v1RoundTrip() {
+        byte[] bytes = ThresholdRecord.encode(100, 3);
+        assertThat(bytes).hasSize(ThresholdRecord.V1_SIZE);
+
+        ThresholdRecord record = ThresholdRecord.decode(bytes, false);
+        assertThat(record.version()).isEqualTo(ThresholdRecord.VERSION_1);
+        assertThat(record.threshold()).isEqualTo(100);
+        assertThat(record.alertTimes()).isEqualTo(3);
+        assertThat(record.isWindowed()).isFalse();
+        assertThat(record.windowSeconds()).isZero();
+        assertThat(record.toByteArray()).isSameAs(bytes);
+        assertThat(record.withAlertTimes(4).toByteArray()).isEqualTo(ThresholdRecord.encode(100, 4));
+    }
+
+    @Test
+    void v2RoundTrip() {
+        byte[] bytes = ThresholdRecord.encode(500, 7, 300, 60_000);
+        assertThat(bytes).hasSize(ThresholdRecord.V2_SIZE);
+
+        ThresholdRecord record = ThresholdRecord.decode(bytes, false);
+        assertThat(record.version()).isEqualTo(ThresholdRecord.VERSION_2);
+        assertThat(record.threshold()).isEqualTo(500);
+        assertThat(record.alertTimes()).isEqualTo(7);
+        assertThat(record.isWindowed()).isTrue();
+        assertThat(record.windowSeconds()).isEqualTo(300);
+        // Unsigned short
+        assertThat(record.windowBuckets()).isEqualTo(60_000);
+
+        ThresholdRecord updated = record.withAlertTimes(8);
+        assertThat(updated.windowSeconds()).isEqualTo(300);
+        assertThat(updated.toByteArray()).isEqualTo(ThresholdRecord.encode(500, 8, 300, 60_000));
+        assertThatThrownBy(() -> ThresholdRecord.encode(500, 7, 300, 0))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void buffersAreReadAtAnAbsoluteOffsetInEitherByteOrder() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(64).order(ByteOrder.LITTLE_ENDIAN);
+        ThresholdRecord.encode(buffer, 8, 250, 2);
+        buffer.position(40);
+
+        ThresholdRecord record = new ThresholdRecord().wrap(buffer, 8);
+        assertThat(record.threshold()).isEqualTo(250);
+        assertThat(record.alertTimes()).isEqualTo(2);
+        assertThat(record.toByteArray()).isEqualTo(ThresholdRecord.encode(250, 2));
+        assertThat(buffer.position()).isEqualTo(40);
+        assertThat(buffer.order()).isEqualTo(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Test
+    void legacyColonFormatIsDecodedOnlyWhenAccepted() {
+        byte[] legacy = "2ae1fd9eae05bf85:100:3".getBytes(StandardCharsets.UTF_8);
+
+        ThresholdRecord record = ThresholdRecord.decode(legacy, true);
+        assertThat(record.threshold()).isEqualTo(100);
+        assertThat(record.alertTimes()).isEqualTo(3);
+        assertThat(record.toByteArray()).isEqualTo(ThresholdRecord.encode(100, 3));
+
+        assertThat(ThresholdRecord.decode(legacy, false)).isNull();
+        assertThat(ThresholdRecord.decode("2ae1fd9eae05bf85:x:3".getBytes(StandardCharsets.UTF_8), true)).isNull();
+        assertThat(ThresholdRecord.decode("2ae1fd9eae05bf85:100".getBytes(StandardCharsets.UTF_8), true)).isNull();
+        assertThat(ThresholdRecord.decode(new byte[0], true)).isNull();
+        assertThat(ThresholdRecord.decode(null, true)).isNull();
+    }
+
+    @Test
+    void truncatedRecordsAreRejected() {
+        byte[] v1 = Arrays.copyOf(ThresholdRecord.encode(100, 3), ThresholdRecord.V1_SIZE - 1);
+        byte[] v2 = Arrays.copyOf(ThresholdRecord.encode(100, 3, 60, 6), ThresholdRecord.V1_SIZE);
+
+        assertThat(ThresholdRecord.decode(v1, false)).isNull();
+        assertThat(ThresholdRecord.decode(v2, false)).isNull();
+        assertThatThrownBy(() -> new ThresholdRecord().wrap(v1))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("truncated");
+        assertThatThrownBy(() -> new ThresholdRecord().wrap(ThresholdRecord.encode(100, 3), 4))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void bufferRecordsMustEndBeforeTheLimit() {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        ThresholdRecord.encode(buffer, 30, 100, 3);
+        assertThat(new ThresholdRecord().wrap(buffer, 30).threshold()).isEqualTo(100);
+
+        // The bytes are there, but past the limit
+        buffer.limit(40);
+        assertThatThrownBy(() -> new ThresholdRecord().wrap(buffer, 30))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("truncated");
+    }
+
+    @Test
+    void unknownVersionsAreRejected() {
+        byte[] bytes = ThresholdRecord.encode(100, 3, 60, 6);
+        bytes[0] = 3;
+
+        assertThat(ThresholdRecord.decode(bytes, false)).isNull();
+        assertThatThrownBy(() -> new ThresholdRecord().wrap(bytes))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("version");
+        assertThatThrownBy(() -> new ThresholdRecord().wrap(ByteBuffer.wrap(bytes), 0))
+            .isInstanceOf(IllegalArgumentException.class).hasMessageContaining("version");
+    }
+}
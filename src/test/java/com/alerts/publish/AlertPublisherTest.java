@@ -0,0 +1,132 @@
+package com.alerts.publish;
+
+import com.alerts.metrics.AlertMetrics;
+import com.alerts.model.AlertEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * One shard of two queued alerts. The worker takes one alert at a time and
+ * is held inside its first send, so the queue fills up behind it.
+ */
+class AlertPublisherTest {
+
+    private final CountDownLatch sending = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<AlertEvent> sent = new CopyOnWriteArrayList<>();
+    private AlertPublisher publisher;
+
+    private final class HeldTemplate extends KafkaTemplate<Long, AlertEvent> {
+        HeldTemplate() {
+            super(() -> new MockProducer<>(true, null, null));
+        }
+
+        @Override
+        public CompletableFuture<SendResult<Long, AlertEvent>> send(String topic, Long key, AlertEvent data) {
+            sending.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            sent.add(data);
+            return CompletableFuture.completedFuture(null);
+        }
+    }
+
+    /** Start with alert 1 held by the worker and an empty queue */
+    private void start(BackpressurePolicy policy) throws InterruptedException {
+        publisher = new AlertPublisher(new HeldTemplate(), new AlertMetrics(new SimpleMeterRegistry(), 16, 1000),
+            1, 2, 1, policy, 0);
+        publisher.publish(1, 100, 50, 1);
+        assertThat(sending.await(10, TimeUnit.SECONDS)).isTrue();
+        assertThat(publisher.queueDepth()).isZero();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        publisher.shutdown();
+    }
+
+    @Test
+    void dropOldestEvictsTheOldestQueuedAlert() throws InterruptedException {
+        start(BackpressurePolicy.DROP_OLDEST);
+        assertThat(publisher.publish(2, 100, 50, 1)).isTrue();
+        assertThat(publisher.publish(3, 100, 50, 1)).isTrue();
+        assertThat(publisher.publish(4, 100, 50, 1)).isTrue();
+        // The same key is not merged under DROP_OLDEST
+        assertThat(publisher.publish(4, 120, 50, 2)).isTrue();
+
+        assertThat(publisher.stats().get("dropped")).isEqualTo(2L);
+        assertThat(publisher.stats().get("coalesced")).isEqualTo(0L);
+        assertThat(drain(3)).extracting(AlertEvent::hash).containsExactly(1L, 4L, 4L);
+        assertThat(sent.get(2).errorCount()).isEqualTo(120);
+    }
+
+    @Test
+    void coalesceMergesAlertsQueuedForOneKey() throws InterruptedException {
+        start(BackpressurePolicy.COALESCE);
+        publisher.publish(2, 100, 50, 3);
+        publisher.publish(2, 120, 60, 2, 1);
+        publisher.publish(2, 140, 60, 5, 2);
+
+        assertThat(publisher.queueDepth()).isEqualTo(1);
+        assertThat(publisher.stats().get("coalesced")).isEqualTo(2L);
+        List<AlertEvent> events = drain(2);
+        assertThat(events).extracting(AlertEvent::hash).containsExactly(1L, 2L);
+        // Latest counts, highest alertTimes, suppressed breaches summed
+        assertThat(events.get(1).errorCount()).isEqualTo(140);
+        assertThat(events.get(1).threshold()).isEqualTo(60);
+        assertThat(events.get(1).alertTimes()).isEqualTo(5);
+        assertThat(events.get(1).suppressed()).isEqualTo(3);
+        // Merged alerts count as published
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (!publisher.stats().get("published").equals(4L) && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(publisher.stats().get("published")).isEqualTo(4L);
+        assertThat(publisher.stats().get("dropped")).isEqualTo(0L);
+    }
+
+    @Test
+    void coalesceEvictsTheOldestForANewKeyOnAFullQueue() throws InterruptedException {
+        start(BackpressurePolicy.COALESCE);
+        publisher.publish(2, 100, 50, 1);
+        publisher.publish(3, 100, 50, 1);
+        publisher.publish(4, 100, 50, 1);
+        assertThat(publisher.stats().get("dropped")).isEqualTo(1L);
+
+        // Alert 2 was evicted: the key is queued afresh rather than merged into it
+        publisher.publish(2, 130, 50, 2);
+        assertThat(publisher.stats().get("coalesced")).isEqualTo(0L);
+        assertThat(publisher.stats().get("dropped")).isEqualTo(2L);
+
+        List<AlertEvent> events = drain(3);
+        assertThat(events).extracting(AlertEvent::hash).containsExactly(1L, 4L, 2L);
+        assertThat(events.get(2).errorCount()).isEqualTo(130);
+    }
+
+    /** Let the worker go and wait for the expected number of sends */
+    private List<AlertEvent> drain(int expected) throws InterruptedException {
+        release.countDown();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (sent.size() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertThat(sent).hasSize(expected);
+        return sent;
+    }
+}
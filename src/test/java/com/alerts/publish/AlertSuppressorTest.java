@@ -0,0 +1,126 @@
+package com.alerts.publish;
+
+import com.alerts.AlertFixtures;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AlertSuppressorTest {
+
+    private static final long KEY = 0x2ae1fd9eae05bf85L;
+    private static final long T0 = 1_700_000_000_000L;
+    private static final long COOLDOWN = 60_000;
+
+    private AlertPublisher publisher;
+    private AlertSuppressor suppressor;
+
+    @BeforeEach
+    void setUp() {
+        publisher = AlertFixtures.publisher(AlertFixtures.metrics());
+        // 60s cooldown doubling up to 10 minutes, escalation x2; the sweep thread never runs during a test
+        suppressor = new AlertSuppressor(publisher, true, COOLDOWN, 600_000, 2, 2.0, 1024, 3_600_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        suppressor.shutdown();
+        publisher.shutdown();
+    }
+
+    @Test
+    void breachesDuringTheCooldownAreSuppressedAndReportedWithTheNextAlert() {
+        assertThat(check(100, T0)).isZero();
+        assertThat(check(110, T0 + 1)).isEqualTo(-1);
+        assertThat(check(120, T0 + COOLDOWN - 1)).isEqualTo(-1);
+
+        assertThat(check(130, T0 + COOLDOWN)).isEqualTo(2);
+        assertThat(suppressor.stats().get("notified")).isEqualTo(2L);
+        assertThat(suppressor.stats().get("suppressed")).isEqualTo(2L);
+    }
+
+    @Test
+    void cooldownBacksOffWhileBreachesContinueAndIsCapped() {
+        long now = T0;
+        check(100, now);
+        long cooldown = COOLDOWN;
+        for (int round = 0; round < 6; round++) {
+            assertThat(check(100, now + 1)).isEqualTo(-1);
+            assertThat(check(100, now + cooldown - 1)).isEqualTo(-1);
+            now += cooldown;
+            assertThat(check(100, now)).isEqualTo(2);
+            cooldown = Math.min(cooldown * 2, 600_000);
+        }
+        // 60s, 120s, 240s, 480s, then the 600s cap
+        assertThat(cooldown).isEqualTo(600_000);
+        assertThat(check(100, now + 599_999)).isEqualTo(-1);
+        assertThat(check(100, now + 600_000)).isEqualTo(1);
+    }
+
+    @Test
+    void keyQuietForAFullCooldownStartsOverAtTheBase() {
+        check(100, T0);
+        check(100, T0 + 1);
+        // Backed off to 120s
+        assertThat(check(100, T0 + COOLDOWN)).isEqualTo(1);
+
+        // Quiet from the end of that cooldown for a full cooldown
+        long later = T0 + COOLDOWN + 2 * 120_000;
+        assertThat(check(100, later)).isZero();
+        assertThat(check(100, later + COOLDOWN - 1)).isEqualTo(-1);
+        assertThat(check(100, later + COOLDOWN)).isEqualTo(1);
+    }
+
+    @Test
+    void escalatedBreachIsPublishedDuringTheCooldown() {
+        check(100, T0);
+        assertThat(check(199, T0 + 1)).isEqualTo(-1);
+        assertThat(check(200, T0 + 2)).isEqualTo(1);
+        assertThat(suppressor.stats().get("escalations")).isEqualTo(1L);
+
+        // The escalated count is the new baseline
+        assertThat(check(300, T0 + 3)).isEqualTo(-1);
+        assertThat(check(400, T0 + 4)).isEqualTo(1);
+    }
+
+    @Test
+    void zeroErrorCountGivesNoBaselineToEscalateFrom() {
+        assertThat(check(0, T0)).isZero();
+        assertThat(check(5, T0 + 1)).isEqualTo(-1);
+        assertThat(check(1000, T0 + 2)).isEqualTo(-1);
+        assertThat(suppressor.stats().get("escalations")).isEqualTo(0L);
+    }
+
+    @Test
+    void sweepPublishesASummaryWhenACooldownWithSuppressedBreachesExpires() {
+        check(100, T0);
+        check(100, T0 + 1);
+        check(100, T0 + 2);
+
+        suppressor.sweep(T0 + COOLDOWN - 1);
+        assertThat(suppressor.stats().get("summaries")).isEqualTo(0L);
+        suppressor.sweep(T0 + COOLDOWN);
+        assertThat(suppressor.stats().get("summaries")).isEqualTo(1L);
+        assertThat(publisher.stats().get("enqueued")).isEqualTo(1L);
+
+        // The summary started a backed-off cooldown with nothing pending
+        assertThat(check(100, T0 + COOLDOWN + 1)).isEqualTo(-1);
+        assertThat(check(100, T0 + COOLDOWN + 120_000)).isEqualTo(1);
+    }
+
+    @Test
+    void quietKeysAreDroppedBySweep() {
+        check(100, T0);
+        assertThat(suppressor.stats().get("trackedKeys")).isEqualTo(1);
+        suppressor.sweep(T0 + COOLDOWN + 600_000 - 1);
+        assertThat(suppressor.stats().get("trackedKeys")).isEqualTo(1);
+        suppressor.sweep(T0 + COOLDOWN + 600_000);
+        assertThat(suppressor.stats().get("trackedKeys")).isEqualTo(0);
+        assertThat(check(100, T0 + COOLDOWN + 600_001)).isZero();
+    }
+
+    private long check(long errorCount, long now) {
+        return suppressor.check(KEY, errorCount, 50, 1, now);
+    }
+}
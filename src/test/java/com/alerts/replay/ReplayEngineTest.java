@@ -0,0 +1,147 @@
+package com.alerts.replay;
+
+import com.alerts.AlertFixtures;
+import com.alerts.cache.ThresholdNearCache;
+import com.alerts.counter.AlertCounterService;
+import com.alerts.hashing.Sha256KeyHasher;
+import com.alerts.routing.ThresholdRouter;
+import com.alerts.service.AlertProcessingService;
+import com.alerts.service.RestErrorWindows;
+import com.alerts.service.TransactionProducer;
+import com.alerts.streams.WarmStartService;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.kafka.core.KafkaTemplate;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Replays a small recording and sends the same reports through a REST-mode
+ * AlertProcessingService holding the same thresholds: both must count the
+ * same breaches per key.
+ */
+class ReplayEngineTest {
+
+    private static final String PLAIN = "property_1;tenant_0;type_error;interface_api";
+    private static final String WINDOWED = "property_2;tenant_0;type_error;interface_api";
+    private static final String TENANT_DEFAULT = "property_3;tenant_0;type_warn;interface_api";
+    private static final String TYPE_DEFAULT = "property_4;tenant_1;type_error;interface_api";
+    private static final String NONE = "property_5;tenant_1;type_warn;interface_api";
+
+    @TempDir
+    Path directory;
+
+    private final AlertFixtures.Components components = AlertFixtures.components(false);
+    private final AlertCounterService counters = new AlertCounterService(
+        new KafkaTemplate<>(() -> new MockProducer<>(true, new LongSerializer(), new LongSerializer())),
+        components.metrics, 3_600_000, 5000, 3_600_000);
+    private WarmStartService warmStart;
+
+    @AfterEach
+    void tearDown() {
+        counters.shutdown();
+        components.close();
+        if (warmStart != null) {
+            warmStart.shutdown();
+        }
+    }
+
+    @Test
+    void replayCountsTheBreachesTheServiceCounts() throws IOException, InterruptedException {
+        Path thresholds = directory.resolve("thresholds.csv");
+        Files.writeString(thresholds, String.join("\n",
+            "key,threshold,windowSeconds,windowBuckets",
+            PLAIN + ",100",
+            WINDOWED + ",250,3600,60",
+            "*;tenant_0;*;*,40",
+            "*;*;type_error;*,70",
+            ""), StandardCharsets.UTF_8);
+
+        // Reports a few ms apart: all in the same window, live and replayed
+        long now = System.currentTimeMillis();
+        String[][] reports = {
+            {PLAIN, "50"}, {WINDOWED, "100"}, {TENANT_DEFAULT, "30"}, {PLAIN, "120"}, {WINDOWED, "100"},
+            {TYPE_DEFAULT, "80"}, {NONE, "1000"}, {PLAIN, "150"}, {WINDOWED, "100"}, {TENANT_DEFAULT, "45"},
+            {PLAIN, "99"}, {WINDOWED, "10"}, {TYPE_DEFAULT, "10"}
+        };
+        StringBuilder input = new StringBuilder("timestamp,key,errorCount\n");
+        for (int i = 0; i < reports.length; i++) {
+            input.append(now + i).append(',').append(reports[i][0]).append(',').append(reports[i][1]).append('\n');
+        }
+        Path recording = directory.resolve("errors.csv");
+        Files.writeString(recording, input, StandardCharsets.UTF_8);
+
+        Map<Long, String> names = new ConcurrentHashMap<>();
+        ThresholdSet set = ThresholdSet.load("current", thresholds, Sha256KeyHasher.INSTANCE, names);
+        // Small chunks and two partitions, so chunk ordering is exercised too
+        ReplayEngine.Result result = new ReplayEngine(recording, ReplayFormat.CSV, List.of(set),
+            Sha256KeyHasher.INSTANCE, 2, 64, names, (percent, records, recordsPerSecond) -> { }).run();
+
+        assertThat(result.records()).isEqualTo(reports.length);
+        assertThat(result.invalid).isZero();
+        Map<String, Long> replayed = new HashMap<>();
+        long replayedNoThreshold = 0;
+        for (ReplayEngine.Partition partition : result.partitions) {
+            for (int slot = 0; slot < partition.size; slot++) {
+                replayed.put(names.get(partition.slotKeys[slot]), partition.breaches[slot * partition.setCount]);
+            }
+            replayedNoThreshold += partition.noThreshold;
+        }
+
+        AlertProcessingService service = service();
+        Map<String, Long> live = new HashMap<>();
+        long liveNoThreshold = 0;
+        for (String[] report : reports) {
+            long hash = Sha256KeyHasher.INSTANCE.hash(report[0]);
+            AlertProcessingService.AlertResult alert = service.processAlert(hash, report[0],
+                Long.parseLong(report[1]));
+            live.merge(report[0], "threshold_breached".equals(alert.getReason()) ? 1L : 0L, Long::sum);
+            if ("no_threshold".equals(alert.getReason())) {
+                liveNoThreshold++;
+            }
+        }
+
+        assertThat(replayed).isEqualTo(live);
+        assertThat(replayed).containsEntry(PLAIN, 2L).containsEntry(WINDOWED, 2L)
+            .containsEntry(TENANT_DEFAULT, 1L).containsEntry(TYPE_DEFAULT, 1L).containsEntry(NONE, 0L);
+        assertThat(replayedNoThreshold).isEqualTo(liveNoThreshold).isEqualTo(1);
+    }
+
+    /**
+     * REST-mode evaluation with the thresholds of the file: own thresholds in
+     * the near cache (and Bloom filter), defaults in the hierarchy.
+     */
+    private AlertProcessingService service() {
+        ThresholdNearCache nearCache = new ThresholdNearCache(true, 1024);
+        for (String key : List.of(PLAIN, WINDOWED)) {
+            long hash = Sha256KeyHasher.INSTANCE.hash(key);
+            components.bloomFilter.addHash(hash);
+            nearCache.put(hash, PLAIN.equals(key) ? 100 : 250, 0, PLAIN.equals(key) ? 0 : 3600,
+                PLAIN.equals(key) ? 0 : 60);
+        }
+        components.hierarchy.put("*;tenant_0;*;*", 40);
+        components.hierarchy.put("*;*;type_error;*", 70);
+
+        // No application.server: every key is local, nothing is looked up remotely
+        ThresholdRouter router = new ThresholdRouter(null, nearCache, "", 500, 0, 1000);
+        warmStart = new WarmStartService(components.bloomFilter, nearCache, event -> { }, false, "",
+            directory.toString(), 60000);
+        return new AlertProcessingService(router, components.bloomFilter, components.publisher,
+            components.suppressor, Sha256KeyHasher.INSTANCE, nearCache, components.hierarchy, warmStart,
+            components.dynamicThresholds, new RestErrorWindows(1000), counters,
+            new TransactionProducer(new KafkaTemplate<>(() -> new MockProducer<>(true, null, null))),
+            components.metrics, "rest");
+    }
+}
@@ -0,0 +1,271 @@
+package com.alerts.routing;
+
+import com.alerts.AlertFixtures;
+import com.alerts.cache.ThresholdNearCache;
+import com.alerts.controller.InternalThresholdController;
+import com.alerts.counter.AlertCounterService;
+import com.alerts.hashing.Sha256KeyHasher;
+import com.alerts.model.ThresholdRecord;
+import com.alerts.service.AlertProcessingService;
+import com.alerts.service.RestErrorWindows;
+import com.alerts.service.TransactionProducer;
+import com.alerts.streams.AlertTopology;
+import com.alerts.streams.StoreBackend;
+import com.alerts.streams.StreamsStateChange;
+import com.alerts.streams.WarmStartService;
+import com.sun.net.httpserver.HttpServer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.MockProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.apache.kafka.common.utils.Utils;
+import org.apache.kafka.streams.KafkaStreams;
+import org.apache.kafka.streams.KeyQueryMetadata;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.state.HostInfo;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.ResponseEntity;
+import org.springframework.kafka.config.KafkaStreamsConfiguration;
+import org.springframework.kafka.config.StreamsBuilderFactoryBean;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.test.EmbeddedKafkaBroker;
+import org.springframework.kafka.test.context.EmbeddedKafka;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Two KafkaStreams instances of one application.id in this JVM, each with
+ * its own application.server and a minimal /internal/thresholds endpoint
+ * backed by InternalThresholdController.
+ */
+@EmbeddedKafka(partitions = 2, topics = {AlertTopology.CONFIG_TOPIC, AlertTopology.DEFAULTS_TOPIC,
+    AlertCounterService.COUNTS_TOPIC})
+class ThresholdRouterTest {
+
+    private static final long TIMEOUT_MILLIS = 60_000;
+
+    @TempDir
+    Path stateDir;
+
+    private final List<Instance> instances = new ArrayList<>();
+
+    /** One application instance: Streams, router and internal HTTP endpoint */
+    private final class Instance {
+        final HttpServer server;
+        final HostInfo host;
+        final StreamsBuilderFactoryBean factoryBean;
+        final ThresholdRouter router;
+        final AlertFixtures.Components components;
+        final AlertCounterService counters;
+        final WarmStartService warmStart;
+        final AlertProcessingService service;
+
+        Instance(EmbeddedKafkaBroker broker, String name) throws Exception {
+            server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+            host = new HostInfo("localhost", server.getAddress().getPort());
+
+            Map<String, Object> props = new HashMap<>();
+            props.put(StreamsConfig.APPLICATION_ID_CONFIG, "threshold-router-test");
+            props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString());
+            props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.resolve(name).toString());
+            props.put(StreamsConfig.APPLICATION_SERVER_CONFIG, host.host() + ":" + host.port());
+            props.put(StreamsConfig.NUM_STANDBY_REPLICAS_CONFIG, 1);
+            props.put(StreamsConfig.REPLICATION_FACTOR_CONFIG, 1);
+            props.put(StreamsConfig.COMMIT_INTERVAL_MS_CONFIG, 100);
+            factoryBean = new StreamsBuilderFactoryBean(new KafkaStreamsConfiguration(props));
+            factoryBean.afterPropertiesSet();
+
+            ThresholdNearCache nearCache = new ThresholdNearCache(false, 0);
+            components = AlertFixtures.components(false);
+            components.topology(AlertTopology.Options.defaults().withStoreBackend(StoreBackend.MEMORY), nearCache)
+                .build(factoryBean.getObject());
+
+            router = new ThresholdRouter(factoryBean, nearCache, host.host() + ":" + host.port(), 500, 0, 1000);
+            counters = new AlertCounterService(new KafkaTemplate<>(() -> new MockProducer<>(true, null, null)),
+                components.metrics, 1000, 5000, 300000);
+            warmStart = new WarmStartService(components.bloomFilter, nearCache, event -> { }, false, "",
+                stateDir.toString(), 60000);
+            service = new AlertProcessingService(router, components.bloomFilter, components.publisher,
+                components.suppressor, Sha256KeyHasher.INSTANCE, nearCache, components.hierarchy, warmStart,
+                components.dynamicThresholds, new RestErrorWindows(1000), counters,
+                new TransactionProducer(new KafkaTemplate<>(() -> new MockProducer<>(true, null, null))),
+                components.metrics, "rest");
+            // What ConfigStoreRebuilder's state listener publishes in the application
+            factoryBean.setStateListener((newState, oldState) ->
+                router.onStreamsStateChange(new StreamsStateChange(newState, oldState)));
+
+            InternalThresholdController controller = new InternalThresholdController(router, null);
+            server.createContext("/internal/thresholds/", exchange -> {
+                String path = exchange.getRequestURI().getPath();
+                boolean stale = "stale=true".equals(exchange.getRequestURI().getQuery());
+                ResponseEntity<byte[]> response = controller.threshold(path.substring(path.lastIndexOf('/') + 1),
+                    stale);
+                byte[] body = response.getBody() == null ? new byte[0] : response.getBody();
+                exchange.sendResponseHeaders(response.getStatusCode().value(), body.length == 0 ? -1 : body.length);
+                if (body.length > 0) {
+                    try (OutputStream out = exchange.getResponseBody()) {
+                        out.write(body);
+                    }
+                }
+                exchange.close();
+            });
+            server.start();
+            factoryBean.start();
+        }
+
+        KafkaStreams streams() {
+            return factoryBean.getKafkaStreams();
+        }
+
+        void close() {
+            server.stop(0);
+            factoryBean.stop();
+            components.close();
+            counters.shutdown();
+            warmStart.shutdown();
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        instances.forEach(Instance::close);
+    }
+
+    @Test
+    void routesToTheActiveInstanceAndFallsBackToItsStandby(EmbeddedKafkaBroker broker) throws Exception {
+        Instance a = start(broker, "a");
+        Instance b = start(broker, "b");
+        awaitBalanced(a, b);
+
+        long remoteKey = keyHostedBy(a, b.host);
+        long localKey = keyHostedBy(a, a.host);
+        produce(broker, remoteKey, ThresholdRecord.encode(70, 3));
+        produce(broker, localKey, ThresholdRecord.encode(40, 0));
+        await(() -> b.router.lookupLocal(remoteKey, false) != null && a.router.lookupLocal(localKey, false) != null);
+
+        assertThat(a.router.isRemote(remoteKey)).isTrue();
+        assertThat(a.router.isRemote(localKey)).isFalse();
+
+        ThresholdRecord remote = a.router.lookup(remoteKey);
+        assertThat(remote.threshold()).isEqualTo(70);
+        assertThat(remote.alertTimes()).isEqualTo(3);
+        assertThat(a.router.lookupAsync(remoteKey).get().threshold()).isEqualTo(70);
+        assertThat(a.router.lookup(localKey).threshold()).isEqualTo(40);
+        assertThat(a.router.stats().get("remoteReads")).isEqualTo(2L);
+        assertThat(a.router.stats().get("localReads")).isEqualTo(1L);
+
+        // A remote key bypasses a's (local-only) Bloom filter: its missing threshold is no false positive
+        long missingRemote = keyHostedBy(a, b.host, remoteKey + 1);
+        assertThat(a.service.processAlert(missingRemote, 100).getReason()).isEqualTo("no_threshold");
+        assertThat(a.components.bloomFilter.stats().get("falsePositives")).isEqualTo(0L);
+
+        // b's HTTP endpoint goes away: a answers from its standby of b's partition
+        await(() -> a.router.lookupLocal(remoteKey, true) != null);
+        b.server.stop(0);
+        assertThat(a.router.lookup(remoteKey).threshold()).isEqualTo(70);
+        assertThat(a.router.stats().get("standbyReads")).isEqualTo(1L);
+        assertThat(a.router.stats().get("remoteFailures")).isEqualTo(1L);
+    }
+
+    @Test
+    void routingTableAgreesWithStreamsMetadata(EmbeddedKafkaBroker broker) throws Exception {
+        Instance a = start(broker, "a");
+        Instance b = start(broker, "b");
+        awaitBalanced(a, b);
+
+        Random random = new Random(42);
+        for (int i = 0; i < 1000; i++) {
+            long key = random.nextLong();
+            KeyQueryMetadata metadata = a.streams().queryMetadataForKey(AlertTopology.CONFIG_STORE, key,
+                new LongSerializer());
+            assertThat(a.router.isRemote(key)).isEqualTo(!a.host.equals(metadata.activeHost()));
+            assertThat(ThresholdRouter.partition(key, 2)).isEqualTo(metadata.partition());
+        }
+        // Built once for the current generation, not per lookup
+        assertThat(a.router.stats().get("routingRebuilds")).isEqualTo(1L);
+    }
+
+    @Test
+    void partitionIsMurmur2OfTheSerializedKey() {
+        Random random = new Random(7);
+        LongSerializer serializer = new LongSerializer();
+        long[] edges = {0, 1, -1, Long.MIN_VALUE, Long.MAX_VALUE, 0x2ae1fd9eae05bf85L};
+        for (int i = 0; i < 10_000; i++) {
+            long key = i < edges.length ? edges[i] : random.nextLong();
+            int expected = Utils.toPositive(Utils.murmur2(serializer.serialize(null, key)));
+            for (int partitions : new int[] {1, 2, 3, 12, 64}) {
+                assertThat(ThresholdRouter.partition(key, partitions)).as("key %d", key)
+                    .isEqualTo(expected % partitions);
+            }
+        }
+    }
+
+    private Instance start(EmbeddedKafkaBroker broker, String name) throws Exception {
+        Instance instance = new Instance(broker, name);
+        instances.add(instance);
+        return instance;
+    }
+
+    /** Both RUNNING, each active for one partition and standby for the other */
+    private static void awaitBalanced(Instance a, Instance b) throws InterruptedException {
+        await(() -> a.streams().state() == KafkaStreams.State.RUNNING
+            && b.streams().state() == KafkaStreams.State.RUNNING
+            && a.streams().streamsMetadataForStore(AlertTopology.CONFIG_STORE).stream().allMatch(instance ->
+                instance.topicPartitions().stream().filter(tp -> tp.topic().equals(AlertTopology.CONFIG_TOPIC))
+                    .count() == 1
+                    && instance.standbyTopicPartitions().stream()
+                    .filter(tp -> tp.topic().equals(AlertTopology.CONFIG_TOPIC)).count() == 1)
+            && a.streams().streamsMetadataForStore(AlertTopology.CONFIG_STORE).size() == 2);
+    }
+
+    private static long keyHostedBy(Instance from, HostInfo host) {
+        return keyHostedBy(from, host, 1);
+    }
+
+    private static long keyHostedBy(Instance from, HostInfo host, long first) {
+        for (long key = first; ; key++) {
+            if (host.equals(from.streams().queryMetadataForKey(AlertTopology.CONFIG_STORE, key,
+                    new LongSerializer()).activeHost())) {
+                return key;
+            }
+        }
+    }
+
+    private static void produce(EmbeddedKafkaBroker broker, long key, byte[] value) throws Exception {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, broker.getBrokersAsString());
+        try (KafkaProducer<Long, byte[]> producer = new KafkaProducer<>(props, new LongSerializer(),
+                new ByteArraySerializer())) {
+            producer.send(new ProducerRecord<>(AlertTopology.CONFIG_TOPIC, key, value)).get();
+        }
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+        while (true) {
+            try {
+                if (condition.getAsBoolean()) {
+                    return;
+                }
+            } catch (RuntimeException e) {
+                // Store not queryable yet
+            }
+            assertThat(System.currentTimeMillis()).as("condition within %dms", TIMEOUT_MILLIS).isLessThan(deadline);
+            Thread.sleep(100);
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.alerts.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RestErrorWindowsTest {
+
+    private static final long T0 = 1_700_000_000_000L;
+
+    @Test
+    void reportsAreSummedOverTheWindow() {
+        RestErrorWindows windows = new RestErrorWindows(16);
+        assertThat(windows.add(1, 60, 6, T0, 40)).isEqualTo(40);
+        assertThat(windows.add(1, 60, 6, T0 + 10_000, 40)).isEqualTo(80);
+        assertThat(windows.add(2, 60, 6, T0 + 10_000, 5)).isEqualTo(5);
+        assertThat(windows.add(1, 60, 6, T0 + 20_000, 40)).isEqualTo(120);
+
+        // The earlier reports have left the 60s window
+        assertThat(windows.add(1, 60, 6, T0 + 200_000, 40)).isEqualTo(40);
+    }
+
+    @Test
+    void changedWindowDefinitionStartsAFreshWindow() {
+        RestErrorWindows windows = new RestErrorWindows(16);
+        windows.add(1, 60, 6, T0, 40);
+        assertThat(windows.add(1, 60, 12, T0 + 1000, 10)).isEqualTo(10);
+        assertThat(windows.stats().get("keys")).isEqualTo(1);
+    }
+
+    @Test
+    void fullTableDropsIdleWindowsOrJudgesTheReportAlone() {
+        RestErrorWindows windows = new RestErrorWindows(2);
+        windows.add(1, 10, 10, T0, 1);
+        windows.add(2, 60, 10, T0, 1);
+
+        // Both still inside their window: no room
+        assertThat(windows.add(3, 10, 10, T0 + 5000, 7)).isEqualTo(7);
+        assertThat(windows.add(3, 10, 10, T0 + 5000, 7)).isEqualTo(7);
+        assertThat(windows.stats().get("overflowed")).isEqualTo(2L);
+
+        // Key 1 has had no report for its 10s window
+        assertThat(windows.add(3, 10, 10, T0 + 11_000, 7)).isEqualTo(7);
+        assertThat(windows.add(3, 10, 10, T0 + 12_000, 7)).isEqualTo(14);
+        assertThat(windows.stats().get("evicted")).isEqualTo(1L);
+        assertThat(windows.stats().get("keys")).isEqualTo(2);
+    }
+}
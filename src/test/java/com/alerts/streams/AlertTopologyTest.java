@@ -0,0 +1,244 @@
+package com.alerts.streams;
+
+import com.alerts.AlertFixtures;
+import com.alerts.cache.ThresholdNearCache;
+import com.alerts.counter.AlertCounterService;
+import com.alerts.hashing.KeyHashes;
+import com.alerts.hashing.Sha256KeyHasher;
+import com.alerts.model.AlertEvent;
+import com.alerts.model.ThresholdRecord;
+import com.alerts.publish.AlertPublisher;
+import com.alerts.serde.AlertEventSerde;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import org.apache.kafka.common.serialization.ByteArraySerializer;
+import org.apache.kafka.common.serialization.LongDeserializer;
+import org.apache.kafka.common.serialization.LongSerializer;
+import org.apache.kafka.common.serialization.StringSerializer;
+import org.apache.kafka.streams.StreamsBuilder;
+import org.apache.kafka.streams.StreamsConfig;
+import org.apache.kafka.streams.TestInputTopic;
+import org.apache.kafka.streams.TestOutputTopic;
+import org.apache.kafka.streams.TopologyTestDriver;
+import org.apache.kafka.streams.test.TestRecord;
+import org.apache.kafka.streams.state.KeyValueStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Stream evaluation mode: eagle-eye.config, eagle-eye.errors and
+ * eagle-eye.alert-counts piped through AlertTopology.
+ */
+class AlertTopologyTest {
+
+    private static final long KEY = 0x2ae1fd9eae05bf85L;
+    private static final long OTHER_KEY = 0x1234L;
+    private static final Instant T0 = Instant.ofEpochMilli(1_700_000_000_000L);
+
+    @TempDir
+    Path stateDir;
+
+    private TopologyTestDriver driver;
+    private AlertFixtures.Components components;
+    private TestInputTopic<Long, byte[]> config;
+    private TestInputTopic<Long, Long> errors;
+    private TestInputTopic<Long, Long> counts;
+    private TestInputTopic<String, byte[]> defaults;
+    private TestOutputTopic<Long, AlertEvent> alerts;
+    private KeyValueStore<Long, ThresholdRecord> configStore;
+
+    private void start(boolean suppression) {
+        start(suppression, false);
+    }
+
+    private void start(boolean suppression, boolean legacyKeys) {
+        components = AlertFixtures.components(suppression);
+        StreamsBuilder builder = new StreamsBuilder();
+        components.topology(AlertTopology.Options.defaults().withLegacyKeys(legacyKeys).withStreamEvaluation(true)
+            .withStoreBackend(StoreBackend.MEMORY), new ThresholdNearCache(false, 0)).build(builder);
+
+        Properties props = new Properties();
+        props.put(StreamsConfig.APPLICATION_ID_CONFIG, "alert-topology-test");
+        props.put(StreamsConfig.BOOTSTRAP_SERVERS_CONFIG, "dummy:9092");
+        props.put(StreamsConfig.STATE_DIR_CONFIG, stateDir.toString());
+        driver = new TopologyTestDriver(builder.build(), props, T0);
+
+        config = driver.createInputTopic(AlertTopology.CONFIG_TOPIC, new LongSerializer(), new ByteArraySerializer(),
+            T0, Duration.ZERO);
+        errors = driver.createInputTopic(AlertTopology.ERRORS_TOPIC, new LongSerializer(), new LongSerializer(),
+            T0, Duration.ZERO);
+        counts = driver.createInputTopic(AlertCounterService.COUNTS_TOPIC, new LongSerializer(), new LongSerializer(),
+            T0, Duration.ZERO);
+        defaults = driver.createInputTopic(AlertTopology.DEFAULTS_TOPIC, new StringSerializer(),
+            new ByteArraySerializer(), T0, Duration.ZERO);
+        alerts = driver.createOutputTopic(AlertPublisher.ALERTS_TOPIC, new LongDeserializer(),
+            new AlertEventSerde().deserializer());
+        configStore = driver.getKeyValueStore(AlertTopology.CONFIG_STORE);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (driver != null) {
+            driver.close();
+        }
+        components.close();
+    }
+
+    @Test
+    void breachIsForwardedAndCountedInConfigStore() {
+        start(false);
+        config.pipeInput(KEY, ThresholdRecord.encode(50, 0));
+
+        errors.pipeInput(KEY, 49L, T0);
+        errors.pipeInput(KEY, 50L, T0.plusMillis(1));
+        errors.pipeInput(KEY, 75L, T0.plusMillis(2));
+
+        List<AlertEvent> emitted = alerts.readValuesToList();
+        assertThat(emitted).hasSize(2);
+        assertThat(emitted.get(0).hash()).isEqualTo(KEY);
+        assertThat(emitted.get(0).errorCount()).isEqualTo(50);
+        assertThat(emitted.get(0).threshold()).isEqualTo(50);
+        assertThat(emitted.get(0).alertTimes()).isEqualTo(1);
+        assertThat(emitted.get(1).errorCount()).isEqualTo(75);
+        assertThat(emitted.get(1).alertTimes()).isEqualTo(2);
+        assertThat(configStore.get(KEY).alertTimes()).isEqualTo(2);
+    }
+
+    @Test
+    void keysWithoutThresholdAreIgnored() {
+        start(false);
+        config.pipeInput(KEY, ThresholdRecord.encode(50, 0));
+
+        errors.pipeInput(OTHER_KEY, 1000L);
+
+        assertThat(alerts.isEmpty()).isTrue();
+        assertThat(configStore.get(OTHER_KEY)).isNull();
+    }
+
+    @Test
+    void alertCountDeltasAddUpAndSurviveThresholdUpdates() {
+        start(false);
+        config.pipeInput(KEY, ThresholdRecord.encode(50, 0));
+        counts.pipeInput(KEY, 5L);
+        counts.pipeInput(KEY, 2L);
+        assertThat(configStore.get(KEY).alertTimes()).isEqualTo(7);
+
+        // A new threshold from a producer that does not know the count
+        config.pipeInput(KEY, ThresholdRecord.encode(80, 0));
+        assertThat(configStore.get(KEY).threshold()).isEqualTo(80);
+        assertThat(configStore.get(KEY).alertTimes()).isEqualTo(7);
+
+        errors.pipeInput(KEY, 80L);
+        assertThat(alerts.readValue().alertTimes()).isEqualTo(8);
+        assertThat(configStore.get(KEY).alertTimes()).isEqualTo(8);
+
+        // Deltas for a removed threshold are dropped
+        config.pipeInput(KEY, (byte[]) null);
+        counts.pipeInput(KEY, 1L);
+        assertThat(configStore.get(KEY)).isNull();
+    }
+
+    @Test
+    void windowedThresholdComparesTheWindowSum() {
+        start(false);
+        config.pipeInput(KEY, ThresholdRecord.encode(100, 0, 60, 6));
+
+        errors.pipeInput(KEY, 40L, T0);
+        errors.pipeInput(KEY, 40L, T0.plusSeconds(10));
+        assertThat(alerts.isEmpty()).isTrue();
+
+        errors.pipeInput(KEY, 40L, T0.plusSeconds(20));
+        AlertEvent alert = alerts.readValue();
+        assertThat(alert.errorCount()).isEqualTo(120);
+        assertThat(alert.threshold()).isEqualTo(100);
+
+        // The earlier reports have left the 60s window
+        errors.pipeInput(KEY, 40L, T0.plusSeconds(200));
+        assertThat(alerts.isEmpty()).isTrue();
+        assertThat(configStore.get(KEY).alertTimes()).isEqualTo(1);
+    }
+
+    @Test
+    void keyWithoutThresholdBreachesItsDefault() {
+        start(false);
+        String key = "property_7;tenant_0;type_error;interface_api";
+        long hash = Sha256KeyHasher.INSTANCE.hash(key);
+        defaults.pipeInput("*;tenant_0;*;*", ThresholdRecord.encode(50, 0));
+        config.pipeInput(KEY, ThresholdRecord.encode(500, 0));
+
+        errors.pipeInput(errorWithKey(hash, key, 49L));
+        assertThat(alerts.isEmpty()).isTrue();
+        errors.pipeInput(errorWithKey(hash, key, 60L));
+        // Resolved once: the hash alone now finds the default
+        errors.pipeInput(hash, 70L);
+
+        List<AlertEvent> emitted = alerts.readValuesToList();
+        assertThat(emitted).hasSize(2);
+        assertThat(emitted.get(0).hash()).isEqualTo(hash);
+        assertThat(emitted.get(0).errorCount()).isEqualTo(60);
+        assertThat(emitted.get(0).threshold()).isEqualTo(50);
+        assertThat(emitted.get(0).alertTimes()).isEqualTo(1);
+        assertThat(emitted.get(1).alertTimes()).isEqualTo(2);
+        KeyValueStore<Long, Long> inherited = driver.getKeyValueStore(AlertTopology.INHERITED_STORE);
+        assertThat(inherited.get(hash)).isEqualTo(2);
+        // Never written to config-store, so the key does not gain a threshold of its own
+        assertThat(configStore.get(hash)).isNull();
+
+        // A key's own threshold wins over the default
+        errors.pipeInput(errorWithKey(KEY, "property_1;tenant_0;type_error;interface_api", 60L));
+        assertThat(alerts.isEmpty()).isTrue();
+
+        // No default for the key's tenant
+        String otherTenant = "property_7;tenant_1;type_error;interface_api";
+        errors.pipeInput(errorWithKey(Sha256KeyHasher.INSTANCE.hash(otherTenant), otherTenant, 1000L));
+        assertThat(alerts.isEmpty()).isTrue();
+    }
+
+    private static TestRecord<Long, Long> errorWithKey(long hash, String key, long errorCount) {
+        RecordHeaders headers = new RecordHeaders();
+        headers.add(AlertTopology.KEY_HEADER, key.getBytes(StandardCharsets.UTF_8));
+        return new TestRecord<>(hash, errorCount, headers, T0);
+    }
+
+    @Test
+    void suppressedBreachesStillCountTowardsAlertTimes() {
+        start(true);
+        config.pipeInput(KEY, ThresholdRecord.encode(50, 0));
+
+        errors.pipeInput(KEY, 60L);
+        errors.pipeInput(KEY, 61L);
+        errors.pipeInput(KEY, 62L);
+
+        List<AlertEvent> emitted = alerts.readValuesToList();
+        assertThat(emitted).hasSize(1);
+        assertThat(emitted.get(0).suppressed()).isZero();
+        assertThat(configStore.get(KEY).alertTimes()).isEqualTo(3);
+    }
+
+    @Test
+    void legacyHexKeysAreStoredUnderTheirLongKey() {
+        start(false, true);
+        TestInputTopic<byte[], byte[]> legacy = driver.createInputTopic(AlertTopology.CONFIG_TOPIC,
+            new ByteArraySerializer(), new ByteArraySerializer(), T0, Duration.ZERO);
+        String hex = KeyHashes.toHex(KEY);
+
+        legacy.pipeInput(hex.getBytes(StandardCharsets.US_ASCII),
+            (hex + ":50:4").getBytes(StandardCharsets.US_ASCII));
+        config.pipeInput(OTHER_KEY, ThresholdRecord.encode(30, 0));
+
+        assertThat(configStore.get(KEY).threshold()).isEqualTo(50);
+        assertThat(configStore.get(KEY).alertTimes()).isEqualTo(4);
+        assertThat(configStore.get(OTHER_KEY).threshold()).isEqualTo(30);
+        errors.pipeInput(KEY, 60L);
+        assertThat(alerts.readValue().alertTimes()).isEqualTo(5);
+    }
+}
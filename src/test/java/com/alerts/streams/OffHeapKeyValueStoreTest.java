@@ -0,0 +1,107 @@
+package com.alerts.streams;
+
+import org.apache.kafka.common.utils.Bytes;
+import org.apache.kafka.streams.KeyValue;
+import org.apache.kafka.streams.processor.StateStoreContext;
+import org.apache.kafka.streams.state.KeyValueIterator;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OffHeapKeyValueStoreTest {
+
+    private final OffHeapKeyValueStore store = new OffHeapKeyValueStore("test-store", 28, 1024);
+
+    @AfterEach
+    void tearDown() {
+        store.close();
+    }
+
+    @Test
+    void keepsEntriesAcrossRehashes() {
+        store.init((StateStoreContext) null, null);
+        for (long key = 0; key < 200_000; key++) {
+            store.put(key(key), value(key, 20));
+        }
+        for (long key = 0; key < 200_000; key += 2) {
+            assertThat(store.delete(key(key))).isEqualTo(value(key, 20));
+        }
+        assertThat(store.approximateNumEntries()).isEqualTo(100_000);
+        assertThat(store.get(key(7))).isEqualTo(value(7, 20));
+        assertThat(store.get(key(8))).isNull();
+        assertThat(store.putIfAbsent(key(7), value(1, 20))).isEqualTo(value(7, 20));
+        assertThat(store.putIfAbsent(key(8), value(8, 28))).isNull();
+        assertThat(store.get(key(8))).isEqualTo(value(8, 28));
+
+        long count = 0;
+        try (KeyValueIterator<Bytes, byte[]> it = store.all()) {
+            while (it.hasNext()) {
+                KeyValue<Bytes, byte[]> entry = it.next();
+                long key = ByteBuffer.wrap(entry.key.get()).getLong();
+                assertThat(key % 2 == 1 || key == 8).isTrue();
+                count++;
+            }
+        }
+        assertThat(count).isEqualTo(100_001);
+    }
+
+    @Test
+    void readersNeverSeeTornValuesWhileTheTableChanges() throws InterruptedException {
+        store.init((StateStoreContext) null, null);
+        AtomicBoolean stop = new AtomicBoolean();
+        AtomicReference<String> failure = new AtomicReference<>();
+        AtomicLong reads = new AtomicLong();
+
+        List<Thread> readers = new ArrayList<>();
+        for (int r = 0; r < 3; r++) {
+            Thread reader = new Thread(() -> {
+                while (!stop.get()) {
+                    byte[] value = store.get(key(-1));
+                    if (value != null) {
+                        ByteBuffer buffer = ByteBuffer.wrap(value);
+                        long version = buffer.getLong();
+                        if (value.length != 16 || buffer.getLong() != ~version) {
+                            failure.compareAndSet(null, "torn value for version " + version);
+                        }
+                    }
+                    reads.incrementAndGet();
+                }
+            });
+            reader.start();
+            readers.add(reader);
+        }
+
+        // Rewrites the watched key while inserts and deletes force rehashes
+        for (long i = 0; i < 300_000; i++) {
+            store.put(key(-1), ByteBuffer.allocate(16).putLong(i).putLong(~i).array());
+            store.put(key(i), value(i, 20));
+            if (i % 3 == 0) {
+                store.delete(key(i / 2));
+            }
+        }
+        stop.set(true);
+        for (Thread reader : readers) {
+            reader.join();
+        }
+        assertThat(failure.get()).isNull();
+        assertThat(reads.get()).isPositive();
+    }
+
+    private static Bytes key(long key) {
+        return Bytes.wrap(ByteBuffer.allocate(Long.BYTES).putLong(key).array());
+    }
+
+    private static byte[] value(long key, int length) {
+        byte[] value = new byte[length];
+        ByteBuffer.wrap(value).putLong(key);
+        return value;
+    }
+}
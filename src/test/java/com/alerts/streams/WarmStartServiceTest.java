@@ -0,0 +1,115 @@
+package com.alerts.streams;
+
+import com.alerts.cache.ThresholdNearCache;
+import com.alerts.cache.ThresholdSnapshot;
+import com.alerts.model.ThresholdRecord;
+import com.alerts.service.BloomFilterService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.kafka.config.StreamsBuilderFactoryBean;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WarmStartServiceTest {
+
+    @TempDir
+    Path stateDir;
+
+    private final BloomFilterService bloomFilter = new BloomFilterService(1000, 0.001);
+    private final ThresholdNearCache nearCache = new ThresholdNearCache(true, 1024);
+    private final List<ReadinessState> readiness = new ArrayList<>();
+    private WarmStartService warmStart;
+
+    @AfterEach
+    void tearDown() {
+        warmStart.shutdown();
+    }
+
+    private WarmStartService start() {
+        warmStart = new WarmStartService(bloomFilter, nearCache, event -> {
+            if (event instanceof AvailabilityChangeEvent<?> change
+                    && change.getState() instanceof ReadinessState state) {
+                readiness.add(state);
+            }
+        }, true, "", stateDir.toString(), 3_600_000);
+        // Never started: the snapshot writer finds no running Streams and writes nothing
+        warmStart.configure(new StreamsBuilderFactoryBean());
+        warmStart.load();
+        return warmStart;
+    }
+
+    private Path snapshotPath() {
+        return stateDir.resolve("alerts-snapshot").resolve("thresholds.snap");
+    }
+
+    @Test
+    void withoutASnapshotTrafficWaitsForTheLiveStore() {
+        start();
+
+        assertThat(warmStart.isServingSnapshot()).isFalse();
+        assertThat(warmStart.stats().get("mode")).isEqualTo("STARTING");
+        assertThat(warmStart.lookup(1)).isNull();
+        // Spring Boot's ready signal is overridden until config-store is restored
+        warmStart.onReadiness(new AvailabilityChangeEvent<>(this, ReadinessState.ACCEPTING_TRAFFIC));
+        assertThat(readiness).containsExactly(ReadinessState.REFUSING_TRAFFIC);
+
+        warmStart.liveStoreReady();
+        assertThat(warmStart.stats().get("mode")).isEqualTo("LIVE");
+        assertThat(readiness).containsExactly(ReadinessState.REFUSING_TRAFFIC, ReadinessState.ACCEPTING_TRAFFIC);
+    }
+
+    @Test
+    void snapshotIsServedUntilTheLiveStoreIsReady() throws IOException {
+        ThresholdSnapshot.write(snapshotPath(), new long[] {11, 22}, new long[] {100, 250}, new long[] {3, 0},
+            new int[] {0, 300}, new int[] {0, 30}, 2, System.currentTimeMillis());
+        start();
+
+        assertThat(warmStart.isServingSnapshot()).isTrue();
+        assertThat(warmStart.stats().get("mode")).isEqualTo("SNAPSHOT");
+        // Bloom filter and near-cache are filled from the snapshot
+        assertThat(bloomFilter.mightContain(11)).isTrue();
+        assertThat(bloomFilter.mightContain(22)).isTrue();
+        ThresholdNearCache.Entry entry = new ThresholdNearCache.Entry();
+        assertThat(nearCache.get(22, entry)).isEqualTo(ThresholdNearCache.HIT);
+        assertThat(entry.windowSeconds).isEqualTo(300);
+
+        ThresholdRecord plain = warmStart.lookup(11);
+        assertThat(plain.threshold()).isEqualTo(100);
+        assertThat(plain.alertTimes()).isEqualTo(3);
+        assertThat(plain.isWindowed()).isFalse();
+        ThresholdRecord windowed = warmStart.lookup(22);
+        assertThat(windowed.windowSeconds()).isEqualTo(300);
+        assertThat(windowed.windowBuckets()).isEqualTo(30);
+        assertThat(warmStart.lookup(33)).isNull();
+        // Ready as soon as the snapshot is served
+        warmStart.onReadiness(new AvailabilityChangeEvent<>(this, ReadinessState.ACCEPTING_TRAFFIC));
+        assertThat(readiness).isEmpty();
+
+        warmStart.liveStoreReady();
+        assertThat(warmStart.isServingSnapshot()).isFalse();
+        assertThat(warmStart.stats().get("mode")).isEqualTo("LIVE");
+        // Every lookup goes to config-store now
+        assertThat(warmStart.lookup(11)).isNull();
+        assertThat(readiness).containsExactly(ReadinessState.ACCEPTING_TRAFFIC);
+    }
+
+    @Test
+    void corruptSnapshotIsIgnored() throws IOException {
+        Files.createDirectories(snapshotPath().getParent());
+        Files.write(snapshotPath(), new byte[100]);
+        start();
+
+        assertThat(warmStart.isServingSnapshot()).isFalse();
+        assertThat(warmStart.stats().get("mode")).isEqualTo("STARTING");
+        assertThat(warmStart.lookup(11)).isNull();
+    }
+}
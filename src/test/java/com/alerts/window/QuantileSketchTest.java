@@ -0,0 +1,128 @@
+package com.alerts.window;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class QuantileSketchTest {
+
+    private static final long HALF_LIFE = 1000;
+    private static final long T0 = 1_700_000_000_000L;
+
+    @Test
+    void smallValuesHaveABucketOfTheirOwn() {
+        for (long value = 0; value <= 11; value++) {
+            byte[] sketch = QuantileSketch.create();
+            QuantileSketch.add(sketch, T0, value, HALF_LIFE);
+            assertThat(QuantileSketch.quantile(sketch, 0.5)).isEqualTo(value);
+        }
+        assertThat(QuantileSketch.quantile(QuantileSketch.create(), 0.5)).isEqualTo(-1);
+    }
+
+    @Test
+    void quantilesAreAtMost25PercentAboveTheExactValue() {
+        Random random = new Random(42);
+        long[] values = new long[20_000];
+        byte[] sketch = QuantileSketch.create();
+        for (int i = 0; i < values.length; i++) {
+            // Log-uniform over 1..10^6
+            values[i] = Math.max(1, (long) Math.pow(10, random.nextDouble() * 6));
+            QuantileSketch.add(sketch, T0, values[i], HALF_LIFE);
+        }
+        Arrays.sort(values);
+        for (double q : new double[] {0.01, 0.25, 0.5, 0.9, 0.99, 0.999, 1.0}) {
+            long exact = values[(int) Math.ceil(q * values.length) - 1];
+            long estimate = QuantileSketch.quantile(sketch, q);
+            assertThat(estimate).as("q=%s", q).isGreaterThanOrEqualTo(exact);
+            assertThat((double) estimate).as("q=%s", q).isLessThanOrEqualTo(exact * 1.25);
+        }
+    }
+
+    @Test
+    void countsHalveEveryHalfLifeRoundingDown() {
+        byte[] sketch = QuantileSketch.create();
+        for (int i = 0; i < 7; i++) {
+            QuantileSketch.add(sketch, T0, 5, HALF_LIFE);
+        }
+        // One half-life later: 7 -> 3, plus the new value
+        QuantileSketch.add(sketch, T0 + HALF_LIFE, 5, HALF_LIFE);
+        assertThat(QuantileSketch.count(sketch)).isEqualTo(4);
+        // Two more at once: 4 -> 1
+        QuantileSketch.add(sketch, T0 + 3 * HALF_LIFE, 5, HALF_LIFE);
+        assertThat(QuantileSketch.count(sketch)).isEqualTo(2);
+
+        // A value of an earlier half-life counts as current
+        QuantileSketch.add(sketch, T0, 5, HALF_LIFE);
+        assertThat(QuantileSketch.count(sketch)).isEqualTo(3);
+
+        // Old enough to be gone entirely
+        QuantileSketch.add(sketch, T0 + 100 * HALF_LIFE, 5, HALF_LIFE);
+        assertThat(QuantileSketch.count(sketch)).isEqualTo(1);
+    }
+
+    @Test
+    void mergeWithinOneHalfLifeEqualsASingleSketch() {
+        Random random = new Random(7);
+        byte[] a = QuantileSketch.create();
+        byte[] b = QuantileSketch.create();
+        byte[] all = QuantileSketch.create();
+        for (int i = 0; i < 1000; i++) {
+            long value = random.nextInt(100_000);
+            QuantileSketch.add(i % 3 == 0 ? a : b, T0 + i % HALF_LIFE, value, HALF_LIFE);
+            QuantileSketch.add(all, T0 + i % HALF_LIFE, value, HALF_LIFE);
+        }
+        byte[] bCopy = b.clone();
+        QuantileSketch.merge(a, b);
+        assertThat(a).isEqualTo(all);
+        assertThat(b).isEqualTo(bCopy);
+
+        byte[] empty = QuantileSketch.create();
+        QuantileSketch.merge(empty, all);
+        assertThat(empty).isEqualTo(all);
+    }
+
+    @Test
+    void mergeAcrossHalfLivesRoundsEachSketchDownSeparately() {
+        // One value of 5 on each of two instances in the same half-life...
+        byte[] into = QuantileSketch.create();
+        byte[] from = QuantileSketch.create();
+        QuantileSketch.add(into, T0, 5, HALF_LIFE);
+        QuantileSketch.add(from, T0, 5, HALF_LIFE);
+        // ...then into moves on a half-life before the merge
+        QuantileSketch.add(into, T0 + HALF_LIFE, 1000, HALF_LIFE);
+
+        byte[] all = QuantileSketch.create();
+        QuantileSketch.add(all, T0, 5, HALF_LIFE);
+        QuantileSketch.add(all, T0, 5, HALF_LIFE);
+        QuantileSketch.add(all, T0 + HALF_LIFE, 1000, HALF_LIFE);
+
+        QuantileSketch.merge(into, from);
+        // floor(1/2) + floor(1/2) = 0 values of 5 left, where one sketch keeps floor(2/2) = 1
+        assertThat(QuantileSketch.count(all)).isEqualTo(2);
+        assertThat(QuantileSketch.count(into)).isEqualTo(1);
+        assertThat(QuantileSketch.quantile(all, 0.5)).isEqualTo(5);
+        assertThat(QuantileSketch.quantile(into, 0.5)).isGreaterThanOrEqualTo(1000);
+    }
+
+    @Test
+    void olderSketchIsDecayedBeforeItIsAdded() {
+        byte[] into = QuantileSketch.create();
+        byte[] from = QuantileSketch.create();
+        for (int i = 0; i < 8; i++) {
+            QuantileSketch.add(from, T0, 5, HALF_LIFE);
+        }
+        QuantileSketch.add(into, T0 + 2 * HALF_LIFE, 5, HALF_LIFE);
+
+        QuantileSketch.merge(into, from);
+        assertThat(QuantileSketch.count(into)).isEqualTo(1 + (8 >> 2));
+
+        // And the newer one decays the sketch it is merged into
+        byte[] newer = QuantileSketch.create();
+        QuantileSketch.add(newer, T0 + 3 * HALF_LIFE, 5, HALF_LIFE);
+        QuantileSketch.merge(into, newer);
+        assertThat(QuantileSketch.count(into)).isEqualTo((3 >> 1) + 1);
+    }
+}